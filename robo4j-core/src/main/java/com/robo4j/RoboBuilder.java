@@ -21,6 +21,7 @@ import com.robo4j.configuration.ConfigurationFactory;
 import com.robo4j.configuration.ConfigurationFactoryException;
 import com.robo4j.configuration.XmlConfigurationFactory;
 import com.robo4j.net.LookupServiceProvider;
+import com.robo4j.reflect.InstanceFactories;
 import com.robo4j.util.StringConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,8 +36,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -80,8 +83,11 @@ public final class RoboBuilder {
      * Class responsible for the XML parsing. Using SAX to keep down resource
      * requirements.
      */
-    private class RoboXMLHandler extends DefaultHandler {
+    static class RoboXMLHandler extends DefaultHandler {
         private static final String ELEMENT_ROBO_UNIT = "roboUnit";
+        private final List<String> unitIds = new ArrayList<>();
+        private final List<String> unitClassNames = new ArrayList<>();
+        private final List<String> unitConfigurations = new ArrayList<>();
         private String currentId = StringConstants.EMPTY;
         private String currentClassName = StringConstants.EMPTY;
         private String currentConfiguration = StringConstants.EMPTY;
@@ -119,17 +125,10 @@ public final class RoboBuilder {
                 if (!verifyUnit()) {
                     clearCurrentVariables();
                 } else {
-                    try {
-                        LOGGER.debug("Loading {} id={}", currentClassName.trim(), currentId);
-                        @SuppressWarnings("unchecked")
-                        Class<RoboUnit<?>> roboUnitClass = (Class<RoboUnit<?>>) Thread.currentThread().getContextClassLoader()
-                                .loadClass(currentClassName.trim());
-                        Configuration config = currentConfiguration.trim().equals(StringConstants.EMPTY) ? null
-                                : XmlConfigurationFactory.fromXml(currentConfiguration);
-                        internalAddUnit(instantiateAndInitialize(roboUnitClass, currentId.trim(), config));
-                    } catch (Exception e) {
-                        throw new SAXException("Failed to parse robo unit", e);
-                    }
+                    LOGGER.debug("Loading {} id={}", currentClassName.trim(), currentId);
+                    unitIds.add(currentId.trim());
+                    unitClassNames.add(currentClassName.trim());
+                    unitConfigurations.add(currentConfiguration.trim().equals(StringConstants.EMPTY) ? null : currentConfiguration);
                     clearCurrentVariables();
                 }
                 configState = false;
@@ -191,13 +190,15 @@ public final class RoboBuilder {
     /**
      * Separate handler for reading the system part.
      */
-    private static class SystemXMLHandler extends DefaultHandler {
+    static class SystemXMLHandler extends DefaultHandler {
         private static final String ELEMENT_SYSTEM = "roboSystem";
         private String currentId = StringConstants.EMPTY;
         private String currentConfiguration = StringConstants.EMPTY;
         private String lastElement = StringConstants.EMPTY;
         private boolean configState = false;
-        private RoboSystem system;
+        private boolean systemDefined = false;
+        private String systemId;
+        private Configuration systemConfiguration;
 
         @Override
         public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
@@ -226,11 +227,9 @@ public final class RoboBuilder {
                 try {
                     // TODO : review config = null
                     config = currentConfiguration.trim().isEmpty() ? null : XmlConfigurationFactory.fromXml(currentConfiguration);
-                    if (currentId == null) {
-                        system = new RoboSystem(config);
-                    } else {
-                        system = new RoboSystem(currentId, config);
-                    }
+                    systemId = currentId;
+                    systemConfiguration = config;
+                    systemDefined = true;
                 } catch (ConfigurationFactoryException e) {
                     LOGGER.error("Error parsing system", e);
                 }
@@ -270,11 +269,49 @@ public final class RoboBuilder {
             return String.valueOf(data, offset, count);
         }
 
+        boolean isSystemDefined() {
+            return systemDefined;
+        }
+
+        String getSystemId() {
+            return systemId;
+        }
+
+        Configuration getSystemConfiguration() {
+            return systemConfiguration;
+        }
+
         public RoboSystem createSystem() {
-            return system == null ? new RoboSystem() : system;
+            return RoboBuilder.createSystem(systemDefined, systemId, systemConfiguration);
         }
     }
 
+    /**
+     * Reads the unit definitions from unit definition XML. The configurations
+     * of the units are parsed in parallel.
+     */
+    static List<RoboSnapshot.UnitDefinition> readUnitDefinitions(InputStream inputStream) throws RoboBuilderException {
+        RoboXMLHandler handler = new RoboXMLHandler();
+        try {
+            SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+            saxParser.parse(inputStream, handler);
+        } catch (SAXException | IOException | ParserConfigurationException e) {
+            throw new RoboBuilderException("Could not initialize from xml", e);
+        }
+        List<Configuration> configurations;
+        try {
+            configurations = XmlConfigurationFactory.fromXml(handler.unitConfigurations);
+        } catch (ConfigurationFactoryException e) {
+            throw new RoboBuilderException("Could not parse the unit configurations", e);
+        }
+        List<RoboSnapshot.UnitDefinition> definitions = new ArrayList<>(handler.unitIds.size());
+        for (int i = 0; i < handler.unitIds.size(); i++) {
+            definitions.add(new RoboSnapshot.UnitDefinition(handler.unitIds.get(i), handler.unitClassNames.get(i),
+                    configurations.get(i)));
+        }
+        return definitions;
+    }
+
     /**
      * Constructor.
      */
@@ -312,6 +349,23 @@ public final class RoboBuilder {
         system = readSystemFromXML(systemConfig);
     }
 
+    /**
+     * Use this builder constructor to set up the system, and all the units,
+     * from a binary snapshot. No XML is parsed.
+     *
+     * @param snapshot the snapshot to build from, normally read using
+     *                 {@link RoboSnapshot#read(InputStream)}.
+     * @throws RoboBuilderException if a unit could not be instantiated or
+     *                              initialized.
+     * @see RoboSnapshot
+     */
+    public RoboBuilder(RoboSnapshot snapshot) throws RoboBuilderException {
+        system = snapshot.createSystem();
+        for (RoboSnapshot.UnitDefinition definition : snapshot.getUnitDefinitions()) {
+            addUnitDefinition(definition.getId(), definition.getClassName(), definition.getConfiguration());
+        }
+    }
+
     /**
      * Adds a Robo4J unit to the builder.
      *
@@ -366,7 +420,7 @@ public final class RoboBuilder {
      * @throws RoboBuilderException if the creation or adding of the unit failed.
      */
     public RoboBuilder add(Class<? extends RoboUnit<?>> clazz, String id) throws RoboBuilderException {
-        internalAddUnit(instantiateAndInitialize(clazz, id, ConfigurationFactory.createEmptyConfiguration()));
+        internalAddUnit(initialize(instantiateRoboUnit(clazz, id), ConfigurationFactory.createEmptyConfiguration()));
         return this;
     }
 
@@ -381,18 +435,22 @@ public final class RoboBuilder {
      * @throws RoboBuilderException if the creation or adding of the unit failed.
      */
     public RoboBuilder add(Class<? extends RoboUnit<?>> clazz, Configuration configuration, String id) throws RoboBuilderException {
-        internalAddUnit(instantiateAndInitialize(clazz, id, configuration));
+        internalAddUnit(initialize(instantiateRoboUnit(clazz, id), configuration));
         return this;
     }
 
     /**
      * Returns the built {@link RoboContext}. This should be the final method
-     * called on the builder.
+     * called on the builder. The targets declared by the units are resolved
+     * here.
      *
      * @return the RoboContext.
+     * @throws IllegalStateException if a declared target does not exist, or
+     *                               does not accept the declared message type.
      */
     public RoboContext build() {
         system.addUnits(units);
+        system.resolveTargets();
         LookupServiceProvider.registerLocalContext(system);
         system.setState(LifecycleState.INITIALIZED);
         return system;
@@ -418,11 +476,8 @@ public final class RoboBuilder {
      * @throws RoboBuilderException possible exception
      */
     public RoboBuilder add(InputStream inputStream) throws RoboBuilderException {
-        try {
-            SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
-            saxParser.parse(inputStream, new RoboXMLHandler());
-        } catch (SAXException | IOException | ParserConfigurationException e) {
-            throw new RoboBuilderException("Could not initialize from xml", e);
+        for (RoboSnapshot.UnitDefinition definition : readUnitDefinitions(inputStream)) {
+            addUnitDefinition(definition.getId(), definition.getClassName(), definition.getConfiguration());
         }
         return this;
     }
@@ -448,6 +503,46 @@ public final class RoboBuilder {
         units.add(unit);
     }
 
+    private void addUnitDefinition(String id, String className, Configuration configuration) throws RoboBuilderException {
+        // Prefer the factories generated by the IndexProcessor, falling back to reflection
+        RoboUnit<?> unit = InstanceFactories.get(Thread.currentThread().getContextClassLoader()).newUnit(className, system, id);
+        if (unit == null) {
+            unit = instantiateRoboUnit(loadUnitClass(className), id);
+        }
+        internalAddUnit(initialize(unit, configuration));
+    }
+
+    /**
+     * Loads a unit class and checks that it can be instantiated by the
+     * builder.
+     */
+    static Class<? extends RoboUnit<?>> loadUnitClass(String className) throws RoboBuilderException {
+        Class<?> clazz;
+        try {
+            clazz = Thread.currentThread().getContextClassLoader().loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new RoboBuilderException("Could not load robo unit class " + className, e);
+        }
+        if (!RoboUnit.class.isAssignableFrom(clazz)) {
+            throw new RoboBuilderException(className + " is not a robo unit");
+        }
+        try {
+            clazz.getConstructor(RoboContext.class, String.class);
+        } catch (NoSuchMethodException e) {
+            throw new RoboBuilderException(className + " has no public (RoboContext, String) constructor", e);
+        }
+        @SuppressWarnings("unchecked")
+        Class<? extends RoboUnit<?>> unitClass = (Class<? extends RoboUnit<?>>) clazz;
+        return unitClass;
+    }
+
+    static RoboSystem createSystem(boolean systemDefined, String id, Configuration configuration) {
+        if (!systemDefined) {
+            return new RoboSystem();
+        }
+        return id == null ? new RoboSystem(configuration) : new RoboSystem(id, configuration);
+    }
+
     private RoboUnit<?> instantiateRoboUnit(Class<? extends RoboUnit<?>> clazz, String id) throws RoboBuilderException {
         try {
             Constructor<? extends RoboUnit<?>> constructor = clazz.getConstructor(RoboContext.class, String.class);
@@ -459,9 +554,7 @@ public final class RoboBuilder {
         }
     }
 
-    private RoboUnit<?> instantiateAndInitialize(Class<? extends RoboUnit<?>> clazz, String id, Configuration configuration)
-            throws RoboBuilderException {
-        RoboUnit<?> unit = instantiateRoboUnit(clazz, id);
+    private static RoboUnit<?> initialize(RoboUnit<?> unit, Configuration configuration) throws RoboBuilderException {
         if (configuration != null) {
             try {
                 unit.initialize(configuration);
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.ConfigurationDiff;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reloads the configuration of the units in a running context, without
+ * rebuilding the system. The new configuration of each unit is compared to
+ * the current one, and only the units whose configuration changed are
+ * notified, through {@link RoboUnit#onReconfigure(ConfigurationDiff)}, with
+ * what changed.
+ * <p>
+ * Units which are not mentioned in the new definitions are left alone. Adding
+ * units, or changing the class of a unit, requires rebuilding the system.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class RoboReloader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoboReloader.class);
+
+    private RoboReloader() {
+        // Not to be instantiated
+    }
+
+    /**
+     * Reloads the unit configurations from unit definition XML, the same
+     * format as used with {@link RoboBuilder#add(InputStream)}.
+     *
+     * @param context  the running context, built by the {@link RoboBuilder}.
+     * @param unitsXml the XML containing the unit definitions.
+     * @return for every unit whose configuration changed, whether the unit
+     * applied the change (true), or needs to be recreated for it to take
+     * effect (false).
+     * @throws RoboBuilderException if the XML could not be parsed, or does not
+     *                              match the units in the context. Nothing is
+     *                              reloaded in that case.
+     */
+    public static Map<String, Boolean> reload(RoboContext context, InputStream unitsXml) throws RoboBuilderException {
+        return reload(context, RoboBuilder.readUnitDefinitions(unitsXml));
+    }
+
+    /**
+     * Reloads the unit configurations from a snapshot.
+     *
+     * @param context  the running context, built by the {@link RoboBuilder}.
+     * @param snapshot the snapshot containing the unit definitions.
+     * @return for every unit whose configuration changed, whether the unit
+     * applied the change (true), or needs to be recreated for it to take
+     * effect (false).
+     * @throws RoboBuilderException if the snapshot does not match the units in
+     *                              the context. Nothing is reloaded in that
+     *                              case.
+     * @see #reload(RoboContext, InputStream)
+     */
+    public static Map<String, Boolean> reload(RoboContext context, RoboSnapshot snapshot) throws RoboBuilderException {
+        return reload(context, snapshot.getUnitDefinitions());
+    }
+
+    private static Map<String, Boolean> reload(RoboContext context, List<RoboSnapshot.UnitDefinition> definitions)
+            throws RoboBuilderException {
+        if (!(context instanceof RoboSystem system)) {
+            throw new RoboBuilderException("Can only reload contexts built by the RoboBuilder, not " + context);
+        }
+        // Check everything before changing anything
+        Map<RoboUnit<?>, ConfigurationDiff> diffs = new LinkedHashMap<>();
+        for (RoboSnapshot.UnitDefinition definition : definitions) {
+            RoboUnit<?> unit = system.getUnit(definition.getId());
+            if (unit == null) {
+                throw new RoboBuilderException("No unit with the id " + definition.getId() + ", adding units requires rebuilding the system");
+            }
+            if (!unit.getClass().getName().equals(definition.getClassName())) {
+                throw new RoboBuilderException("Changing the class of " + definition.getId() + " requires rebuilding the system");
+            }
+            ConfigurationDiff diff = ConfigurationDiff.between(unit.getConfiguration(), definition.getConfiguration());
+            if (!diff.isEmpty()) {
+                diffs.put(unit, diff);
+            }
+        }
+
+        Map<String, Future<Boolean>> pending = new LinkedHashMap<>();
+        for (Map.Entry<RoboUnit<?>, ConfigurationDiff> entry : diffs.entrySet()) {
+            RoboUnit<?> unit = entry.getKey();
+            LOGGER.debug("Reconfiguring {}: {}", unit.getId(), entry.getValue());
+            pending.put(unit.getId(), system.getScheduler().submit(() -> unit.reconfigure(entry.getValue())));
+        }
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<Boolean>> entry : pending.entrySet()) {
+            result.put(entry.getKey(), awaitReconfiguration(entry.getKey(), entry.getValue()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static boolean awaitReconfiguration(String id, Future<Boolean> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while reconfiguring {}", id, e);
+        } catch (ExecutionException e) {
+            LOGGER.error("Failed to reconfigure {}", id, e.getCause());
+        }
+        return false;
+    }
+}
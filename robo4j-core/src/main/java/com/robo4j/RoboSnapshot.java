@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.BinaryConfigurationFactory;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationFactoryException;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compiled form of the XML system and unit definitions. The snapshot is
+ * produced from the XML once, typically at build or deployment time, and
+ * validated when produced. It can then be written in a compact binary format,
+ * which the {@link RoboBuilder} can load without any XML parsing, saving
+ * noticeable startup time on small devices.
+ *
+ * <pre>
+ * // Once
+ * RoboSnapshot.fromXml(systemXml, unitsXml).write(out);
+ * // On every start
+ * RoboContext ctx = new RoboBuilder(RoboSnapshot.read(in)).build();
+ * </pre>
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class RoboSnapshot {
+    private static final short MAGIC = (short) 0x5234;
+    private static final byte VERSION = 1;
+
+    private final boolean systemDefined;
+    private final String systemId;
+    private final Configuration systemConfiguration;
+    private final List<UnitDefinition> unitDefinitions;
+
+    /**
+     * The definition of a unit in the snapshot.
+     */
+    public static final class UnitDefinition {
+        private final String id;
+        private final String className;
+        private final Configuration configuration;
+
+        UnitDefinition(String id, String className, Configuration configuration) {
+            this.id = id;
+            this.className = className;
+            this.configuration = configuration;
+        }
+
+        /**
+         * @return the id of the unit.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the fully qualified name of the unit class.
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * @return the configuration of the unit, or null if it had none.
+         */
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public String toString() {
+            return "UnitDefinition{id='" + id + "', className='" + className + "'}";
+        }
+    }
+
+    private RoboSnapshot(boolean systemDefined, String systemId, Configuration systemConfiguration,
+                         List<UnitDefinition> unitDefinitions) {
+        this.systemDefined = systemDefined;
+        this.systemId = systemId;
+        this.systemConfiguration = systemConfiguration;
+        this.unitDefinitions = Collections.unmodifiableList(unitDefinitions);
+    }
+
+    /**
+     * Creates a snapshot from an XML file containing both the system and the
+     * unit definitions.
+     *
+     * @param xml the XML containing the definitions.
+     * @return the validated snapshot.
+     * @throws RoboBuilderException if the XML could not be parsed, or the
+     *                              definitions are not valid.
+     */
+    public static RoboSnapshot fromXml(InputStream xml) throws RoboBuilderException {
+        byte[] bytes;
+        try {
+            bytes = xml.readAllBytes();
+        } catch (IOException e) {
+            throw new RoboBuilderException("Could not read xml", e);
+        }
+        return fromXml(new ByteArrayInputStream(bytes), new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Creates a snapshot from the same XML as used with the
+     * {@link RoboBuilder#RoboBuilder(InputStream)} constructor and
+     * {@link RoboBuilder#add(InputStream)}. The snapshot is validated: all unit
+     * ids must be unique, and all unit classes must be loadable robo units
+     * that the builder can instantiate.
+     *
+     * @param systemXml the XML containing the system definition, or null to
+     *                  use a default system.
+     * @param unitsXml  the XML containing the unit definitions.
+     * @return the validated snapshot.
+     * @throws RoboBuilderException if the XML could not be parsed, or the
+     *                              definitions are not valid.
+     */
+    public static RoboSnapshot fromXml(InputStream systemXml, InputStream unitsXml) throws RoboBuilderException {
+        RoboBuilder.SystemXMLHandler systemHandler = new RoboBuilder.SystemXMLHandler();
+        if (systemXml != null) {
+            try {
+                SAXParserFactory.newInstance().newSAXParser().parse(systemXml, systemHandler);
+            } catch (SAXException | IOException | ParserConfigurationException e) {
+                throw new RoboBuilderException("Could not create snapshot from xml", e);
+            }
+        }
+        List<UnitDefinition> definitions = RoboBuilder.readUnitDefinitions(unitsXml);
+        validate(definitions);
+        return new RoboSnapshot(systemHandler.isSystemDefined(), systemHandler.getSystemId(),
+                systemHandler.getSystemConfiguration(), definitions);
+    }
+
+    /**
+     * Reads a snapshot previously written with {@link #write(OutputStream)}.
+     * The classes of the units are not loaded until the snapshot is built.
+     *
+     * @param in the stream to read the snapshot from.
+     * @return the snapshot.
+     * @throws RoboBuilderException if the stream did not contain a snapshot
+     *                              of a supported version.
+     */
+    public static RoboSnapshot read(InputStream in) throws RoboBuilderException {
+        try {
+            DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+            if (dataIn.readShort() != MAGIC) {
+                throw new RoboBuilderException("Not a robo snapshot");
+            }
+            byte version = dataIn.readByte();
+            if (version != VERSION) {
+                throw new RoboBuilderException("Unsupported snapshot version " + version);
+            }
+            boolean systemDefined = dataIn.readBoolean();
+            String systemId = dataIn.readBoolean() ? dataIn.readUTF() : null;
+            Configuration systemConfiguration = readConfiguration(dataIn);
+            int unitCount = dataIn.readInt();
+            List<UnitDefinition> definitions = new ArrayList<>(unitCount);
+            for (int i = 0; i < unitCount; i++) {
+                String id = dataIn.readUTF();
+                String className = dataIn.readUTF();
+                definitions.add(new UnitDefinition(id, className, readConfiguration(dataIn)));
+            }
+            return new RoboSnapshot(systemDefined, systemId, systemConfiguration, definitions);
+        } catch (IOException | ConfigurationFactoryException e) {
+            throw new RoboBuilderException("Could not read snapshot", e);
+        }
+    }
+
+    /**
+     * Writes the snapshot in the binary format.
+     *
+     * @param out the stream to write to. Will be flushed, but not closed.
+     * @throws IOException if the snapshot could not be written.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+        dataOut.writeShort(MAGIC);
+        dataOut.writeByte(VERSION);
+        dataOut.writeBoolean(systemDefined);
+        dataOut.writeBoolean(systemId != null);
+        if (systemId != null) {
+            dataOut.writeUTF(systemId);
+        }
+        writeConfiguration(dataOut, systemConfiguration);
+        dataOut.writeInt(unitDefinitions.size());
+        for (UnitDefinition definition : unitDefinitions) {
+            dataOut.writeUTF(definition.getId());
+            dataOut.writeUTF(definition.getClassName());
+            writeConfiguration(dataOut, definition.getConfiguration());
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * @return the id of the system, or null if none was defined.
+     */
+    public String getSystemId() {
+        return systemId;
+    }
+
+    /**
+     * @return the configuration of the system, or null if none was defined.
+     */
+    public Configuration getSystemConfiguration() {
+        return systemConfiguration;
+    }
+
+    /**
+     * @return the definitions of the units, in the order they were defined.
+     */
+    public List<UnitDefinition> getUnitDefinitions() {
+        return unitDefinitions;
+    }
+
+    RoboSystem createSystem() {
+        return RoboBuilder.createSystem(systemDefined, systemId, systemConfiguration);
+    }
+
+    private static void validate(List<UnitDefinition> definitions) throws RoboBuilderException {
+        Set<String> ids = new HashSet<>();
+        for (UnitDefinition definition : definitions) {
+            if (!ids.add(definition.getId())) {
+                throw new RoboBuilderException("Only one unit with the id " + definition.getId() + " can be defined");
+            }
+            RoboBuilder.loadUnitClass(definition.getClassName());
+        }
+    }
+
+    private static void writeConfiguration(DataOutputStream out, Configuration configuration) throws IOException {
+        out.writeBoolean(configuration != null);
+        if (configuration != null) {
+            BinaryConfigurationFactory.write(out, configuration);
+        }
+    }
+
+    private static Configuration readConfiguration(DataInputStream in) throws IOException, ConfigurationFactoryException {
+        return in.readBoolean() ? BinaryConfigurationFactory.read(in) : null;
+    }
+}
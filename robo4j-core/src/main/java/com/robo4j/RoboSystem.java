@@ -294,6 +294,46 @@ final class RoboSystem implements RoboContext {
         addToMap(units);
     }
 
+    /**
+     * Resolves the targets declared by the units. Called when the system is
+     * built, so that misconfigured targets are found before anything is
+     * started.
+     *
+     * @throws IllegalStateException if a target does not exist, or does not
+     *                               accept the declared message type.
+     */
+    void resolveTargets() {
+        List<String> problems = new ArrayList<>();
+        for (RoboUnit<?> unit : units.values()) {
+            for (RoboTarget<?> target : unit.getDeclaredTargets()) {
+                if (!target.isResolved()) {
+                    String problem = resolveTarget(target);
+                    if (problem != null) {
+                        problems.add(unit.getId() + ": " + problem);
+                    }
+                }
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Could not resolve targets in " + uid + ": " + String.join(", ", problems));
+        }
+    }
+
+    private <T> String resolveTarget(RoboTarget<T> target) {
+        RoboUnit<?> targetUnit = units.get(target.getId());
+        if (targetUnit == null) {
+            return "no unit with id " + target.getId();
+        }
+        if (!targetUnit.getMessageType().isAssignableFrom(target.getMessageType())) {
+            return "the unit " + target.getId() + " accepts " + targetUnit.getMessageType().getName() + ", not "
+                    + target.getMessageType().getName();
+        }
+        @SuppressWarnings("unchecked")
+        RoboUnit<T> typedUnit = (RoboUnit<T>) targetUnit;
+        target.resolve(getReference(typedUnit));
+        return null;
+    }
+
     @Override
     public void start() {
         if (state.compareAndSet(LifecycleState.STOPPED, LifecycleState.STARTING)) {
@@ -308,6 +348,7 @@ final class RoboSystem implements RoboContext {
         // This is only used from testing for now, it should never happen from
         // the builder.
         if (state.compareAndSet(LifecycleState.UNINITIALIZED, LifecycleState.STARTING)) {
+            resolveTargets();
             startUnits();
         }
 
@@ -421,6 +462,16 @@ final class RoboSystem implements RoboContext {
         return uid;
     }
 
+    /**
+     * Returns the local unit with the specified id.
+     *
+     * @param id the id of the unit.
+     * @return the unit, or null if there is no unit with the id.
+     */
+    RoboUnit<?> getUnit(String id) {
+        return units.get(id);
+    }
+
     /**
      * Returns the reference for a specific unit.
      *
@@ -476,7 +527,7 @@ final class RoboSystem implements RoboContext {
                 public void handleMessage(String sourceUuid, String id, Object message) {
                     getReference(id).sendMessage(message);
                 }
-            }, serverConfiguration);
+            }, serverConfiguration, this);
         } else {
             return null;
         }
@@ -504,6 +555,9 @@ final class RoboSystem implements RoboContext {
                 ContextEmitter.DEFAULT_HEARTBEAT_INTERVAL);
         Map<String, String> metadata = toStringMap(emitterConfiguration.getChildConfiguration(RoboBuilder.KEY_CONFIGURATION_EMITTER_METADATA));
         metadata.put(RoboContextDescriptor.KEY_URI, uri.toString());
+        if (messageServer.isSharedMemoryEnabled()) {
+            metadata.put(RoboContextDescriptor.KEY_SHARED_MEMORY, Boolean.TRUE.toString());
+        }
         return new RoboContextDescriptor(getId(), heartbeatInterval, metadata);
     }
 
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+/**
+ * A typed handle to another unit in the same {@link RoboContext}, declared by a
+ * unit with {@link RoboUnit#declareTarget(String, Class)}. The handle is
+ * resolved and validated when the context is built, so that sending a message
+ * does not require looking up the target by id.
+ *
+ * @param <T> the type of the messages sent to the target.
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class RoboTarget<T> {
+	private final String id;
+	private final Class<T> messageType;
+	private volatile RoboReference<T> reference;
+
+	RoboTarget(String id, Class<T> messageType) {
+		this.id = id;
+		this.messageType = messageType;
+	}
+
+	/**
+	 * @return the id of the target unit.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the type of the messages sent to the target.
+	 */
+	public Class<T> getMessageType() {
+		return messageType;
+	}
+
+	/**
+	 * @return true if the target has been resolved.
+	 */
+	public boolean isResolved() {
+		return reference != null;
+	}
+
+	/**
+	 * Returns the reference to the target.
+	 * 
+	 * @return the reference.
+	 * @throws IllegalStateException
+	 *             if the context has not been built yet.
+	 */
+	public RoboReference<T> getReference() {
+		RoboReference<T> resolved = reference;
+		if (resolved == null) {
+			throw new IllegalStateException("The target " + id + " has not been resolved yet");
+		}
+		return resolved;
+	}
+
+	/**
+	 * Sends a message to the target.
+	 * 
+	 * @param message
+	 *            the message to send.
+	 * @throws IllegalStateException
+	 *             if the context has not been built yet.
+	 */
+	public void sendMessage(T message) {
+		getReference().sendMessage(message);
+	}
+
+	void resolve(RoboReference<T> reference) {
+		this.reference = reference;
+	}
+
+	@Override
+	public String toString() {
+		return "RoboTarget [id=" + id + ", messageType=" + messageType.getName() + ", resolved=" + isResolved() + "]";
+	}
+}
@@ -17,11 +17,16 @@
 package com.robo4j;
 
 import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationDiff;
+import com.robo4j.configuration.ConfigurationFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Future;
 
 /**
@@ -38,7 +43,8 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
 	private final String id;
 	private volatile LifecycleState state = LifecycleState.UNINITIALIZED;
 	private RoboReference<T> reference;
-	private Configuration configuration;
+	private volatile Configuration configuration;
+	private final List<RoboTarget<?>> targets = new ArrayList<>();
 
 	/**
 	 * Constructor.
@@ -76,7 +82,9 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
 
 	/**
 	 * If initializing the unit programmatically, call unit with the proper
-	 * configuration.
+	 * configuration. The unit keeps, and is initialized with, an immutable copy
+	 * of the configuration (see {@link ConfigurationFactory#freeze(Configuration)}),
+	 * so reading it while handling messages is cheap and thread safe.
 	 * 
 	 * @param configuration
 	 *            the {@link Configuration} provided.
@@ -84,8 +92,9 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
 	 *             possible exception
 	 */
 	public void initialize(Configuration configuration) throws ConfigurationException {
-		setConfiguration(configuration);
-		onInitialization(configuration);
+		Configuration frozenConfiguration = ConfigurationFactory.freeze(configuration);
+		setConfiguration(frozenConfiguration);
+		onInitialization(frozenConfiguration);
 		setState(LifecycleState.INITIALIZED);
 	}
 
@@ -101,6 +110,71 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
 	protected void onInitialization(Configuration configuration) throws ConfigurationException {
 	}
 
+	/**
+	 * Should be overridden in subclasses which can apply configuration changes
+	 * while running, for example new controller gains. Called when the
+	 * configuration of the unit is reloaded, see {@link RoboReloader}, and only
+	 * if something actually changed. The default implementation refuses all
+	 * changes.
+	 * 
+	 * @param diff
+	 *            the changes to the configuration.
+	 * @return true if the changes were applied, in which case the new
+	 *         configuration replaces the current one. False if the changes
+	 *         require the unit to be created anew, for example to re-initialize
+	 *         the hardware, in which case the unit keeps the current
+	 *         configuration.
+	 * @throws ConfigurationException
+	 *             if the new configuration is invalid.
+	 */
+	protected boolean onReconfigure(ConfigurationDiff diff) throws ConfigurationException {
+		return false;
+	}
+
+	/**
+	 * Applies a configuration change. Internal use only.
+	 */
+	boolean reconfigure(ConfigurationDiff diff) throws ConfigurationException {
+		if (onReconfigure(diff)) {
+			setConfiguration(diff.getConfiguration());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Declares another unit in the same context that this unit will send messages
+	 * to. Normally called from {@link #onInitialization(Configuration)} with the
+	 * id read from the configuration. The target is resolved when the context is
+	 * built, which will fail if there is no unit with the id, or if the unit does
+	 * not accept messages of the given type.
+	 * 
+	 * @param id
+	 *            the id of the target unit.
+	 * @param messageType
+	 *            the type of the messages that will be sent to the target.
+	 * @param <R>
+	 *            the type of the messages that will be sent to the target.
+	 * @return the handle to send the messages through, once the context has been
+	 *         built.
+	 */
+	protected <R> RoboTarget<R> declareTarget(String id, Class<R> messageType) {
+		RoboTarget<R> target = new RoboTarget<>(Objects.requireNonNull(id, "target id"), messageType);
+		synchronized (targets) {
+			targets.add(target);
+		}
+		return target;
+	}
+
+	/**
+	 * @return the targets declared by this unit. Internal use only.
+	 */
+	List<RoboTarget<?>> getDeclaredTargets() {
+		synchronized (targets) {
+			return new ArrayList<>(targets);
+		}
+	}
+
 	/**
 	 * Should be overridden in subclasses which need to do some initialization on
 	 * start.
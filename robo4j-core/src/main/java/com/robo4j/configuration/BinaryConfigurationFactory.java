@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.configuration;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Factory for writing configurations to, and reading them from, a compact
+ * binary form. Much cheaper to read than XML, since there is no parsing
+ * involved. The format is internal to Robo4J and may change between releases,
+ * so always produce it from the XML (or programmatically) rather than keeping
+ * it as the master copy.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class BinaryConfigurationFactory {
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_INT = 2;
+	private static final byte TYPE_FLOAT = 3;
+	private static final byte TYPE_LONG = 4;
+	private static final byte TYPE_DOUBLE = 5;
+	private static final byte TYPE_BOOLEAN = 6;
+	private static final byte TYPE_CHARACTER = 7;
+
+	private BinaryConfigurationFactory() {
+		// Not to be instantiated
+	}
+
+	/**
+	 * Writes a {@link Configuration}, including all child configurations, in
+	 * binary form.
+	 * 
+	 * @param out
+	 *            where to write the configuration.
+	 * @param configuration
+	 *            the {@link Configuration} to write.
+	 * @throws IOException
+	 *             if the configuration could not be written, or contained a
+	 *             value of a type not supported by configurations.
+	 */
+	public static void write(DataOutput out, Configuration configuration) throws IOException {
+		Set<String> valueNames = configuration.getValueNames();
+		out.writeInt(valueNames.size());
+		for (String valueName : valueNames) {
+			out.writeUTF(valueName);
+			writeValue(out, valueName, configuration.getValue(valueName, null));
+		}
+		Set<String> childNames = configuration.getChildNames();
+		out.writeInt(childNames.size());
+		for (String childName : childNames) {
+			out.writeUTF(childName);
+			write(out, configuration.getChildConfiguration(childName));
+		}
+	}
+
+	/**
+	 * Reads a {@link Configuration} written by
+	 * {@link #write(DataOutput, Configuration)}.
+	 * 
+	 * @param in
+	 *            where to read the configuration from.
+	 * @return the {@link Configuration}.
+	 * @throws ConfigurationFactoryException
+	 *             if there was a problem reading the configuration.
+	 */
+	public static Configuration read(DataInput in) throws ConfigurationFactoryException {
+		try {
+			return readBuilder(in).build();
+		} catch (IOException e) {
+			throw new ConfigurationFactoryException("Could not read the configuration", e);
+		}
+	}
+
+	private static ConfigurationBuilder readBuilder(DataInput in) throws IOException {
+		ConfigurationBuilder builder = new ConfigurationBuilder();
+		int valueCount = in.readInt();
+		for (int i = 0; i < valueCount; i++) {
+			readValue(in, builder, in.readUTF());
+		}
+		int childCount = in.readInt();
+		for (int i = 0; i < childCount; i++) {
+			String childName = in.readUTF();
+			builder.addBuilder(childName, readBuilder(in));
+		}
+		return builder;
+	}
+
+	private static void writeValue(DataOutput out, String name, Object value) throws IOException {
+		if (value instanceof String) {
+			out.writeByte(TYPE_STRING);
+			out.writeUTF((String) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(TYPE_INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Float) {
+			out.writeByte(TYPE_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Long) {
+			out.writeByte(TYPE_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(TYPE_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Character) {
+			out.writeByte(TYPE_CHARACTER);
+			out.writeChar((Character) value);
+		} else {
+			throw new IOException("Unsupported value for " + name + ": " + value);
+		}
+	}
+
+	private static void readValue(DataInput in, ConfigurationBuilder builder, String name) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+		case TYPE_STRING:
+			builder.addString(name, in.readUTF());
+			break;
+		case TYPE_INT:
+			builder.addInteger(name, in.readInt());
+			break;
+		case TYPE_FLOAT:
+			builder.addFloat(name, in.readFloat());
+			break;
+		case TYPE_LONG:
+			builder.addLong(name, in.readLong());
+			break;
+		case TYPE_DOUBLE:
+			builder.addDouble(name, in.readDouble());
+			break;
+		case TYPE_BOOLEAN:
+			builder.addBoolean(name, in.readBoolean());
+			break;
+		case TYPE_CHARACTER:
+			builder.addCharacter(name, in.readChar());
+			break;
+		default:
+			throw new IOException("Unknown value type " + type + " for " + name);
+		}
+	}
+}
@@ -64,6 +64,22 @@ public interface Configuration extends Serializable {
 	 */
 	Boolean getBoolean(String name, Boolean defaultValue);
 
+	/**
+	 * Returns the boolean stored under the specified name. Implementations
+	 * should override this method to avoid the boxing.
+	 * 
+	 * @param name
+	 *            the name of the boolean to retrieve.
+	 * @param defaultValue
+	 *            the default value if no value is set.
+	 * @return the value stored under the specified name, or defaultValue if no
+	 *         such value could be found.
+	 */
+	default boolean getBoolean(String name, boolean defaultValue) {
+		Boolean value = getBoolean(name, (Boolean) null);
+		return value == null ? defaultValue : value;
+	}
+
 	/**
 	 * Returns the Double stored under the specified name.
 	 * 
@@ -77,6 +93,22 @@ public interface Configuration extends Serializable {
 	 */
 	Double getDouble(String name, Double defaultValue);
 
+	/**
+	 * Returns the double stored under the specified name. Implementations
+	 * should override this method to avoid the boxing.
+	 * 
+	 * @param name
+	 *            the name of the double to retrieve.
+	 * @param defaultValue
+	 *            the default value if no value is set.
+	 * @return the value stored under the specified name, or defaultValue if no
+	 *         such value could be found.
+	 */
+	default double getDouble(String name, double defaultValue) {
+		Double value = getDouble(name, (Double) null);
+		return value == null ? defaultValue : value;
+	}
+
 	/**
 	 * Returns the Float stored under the specified name.
 	 *
@@ -90,6 +122,22 @@ public interface Configuration extends Serializable {
 	 */
 	Float getFloat(String name, Float defaultValue);
 
+	/**
+	 * Returns the float stored under the specified name. Implementations
+	 * should override this method to avoid the boxing.
+	 * 
+	 * @param name
+	 *            the name of the float to retrieve.
+	 * @param defaultValue
+	 *            the default value if no value is set.
+	 * @return the value stored under the specified name, or defaultValue if no
+	 *         such value could be found.
+	 */
+	default float getFloat(String name, float defaultValue) {
+		Float value = getFloat(name, (Float) null);
+		return value == null ? defaultValue : value;
+	}
+
 	/**
 	 * Returns the Integer stored under the specified name.
 	 * 
@@ -103,6 +151,22 @@ public interface Configuration extends Serializable {
 	 */
 	Integer getInteger(String name, Integer defaultValue);
 
+	/**
+	 * Returns the int stored under the specified name. Implementations
+	 * should override this method to avoid the boxing.
+	 * 
+	 * @param name
+	 *            the name of the int to retrieve.
+	 * @param defaultValue
+	 *            the default value if no value is set.
+	 * @return the value stored under the specified name, or defaultValue if no
+	 *         such value could be found.
+	 */
+	default int getInteger(String name, int defaultValue) {
+		Integer value = getInteger(name, (Integer) null);
+		return value == null ? defaultValue : value;
+	}
+
 	/**
 	 * Returns the Long stored under the specified name.
 	 * 
@@ -116,6 +180,22 @@ public interface Configuration extends Serializable {
 	 */
 	Long getLong(String name, Long defaultValue);
 
+	/**
+	 * Returns the long stored under the specified name. Implementations
+	 * should override this method to avoid the boxing.
+	 * 
+	 * @param name
+	 *            the name of the long to retrieve.
+	 * @param defaultValue
+	 *            the default value if no value is set.
+	 * @return the value stored under the specified name, or defaultValue if no
+	 *         such value could be found.
+	 */
+	default long getLong(String name, long defaultValue) {
+		Long value = getLong(name, (Long) null);
+		return value == null ? defaultValue : value;
+	}
+
 	/**
 	 * Returns the String stored under the specified name.
 	 * 
@@ -142,6 +222,22 @@ public interface Configuration extends Serializable {
 	 */
 	Character getCharacter(String name, Character character);
 
+	/**
+	 * Returns the char stored under the specified name. Implementations
+	 * should override this method to avoid the boxing.
+	 * 
+	 * @param name
+	 *            the name of the char to retrieve.
+	 * @param defaultValue
+	 *            the default value if no value is set.
+	 * @return the value stored under the specified name, or defaultValue if no
+	 *         such value could be found.
+	 */
+	default char getCharacter(String name, char defaultValue) {
+		Character value = getCharacter(name, (Character) null);
+		return value == null ? defaultValue : value;
+	}
+
 	/**
 	 * General getter to retrieve any named value. This method will only return
 	 * an instance of a type of the other supported getter types. This method is
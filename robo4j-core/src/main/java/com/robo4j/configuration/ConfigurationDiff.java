@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.configuration;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The difference between two versions of a {@link Configuration}, for example
+ * when reloading the configuration of a running unit. Changes are tracked per
+ * value, and per child configuration; if anything in a child configuration
+ * changed, the complete new child configuration is part of the changes.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class ConfigurationDiff {
+	private final Configuration configuration;
+	private final Configuration changes;
+	private final Set<String> removedValueNames;
+	private final Set<String> removedChildNames;
+
+	private ConfigurationDiff(Configuration configuration, Configuration changes, Set<String> removedValueNames,
+			Set<String> removedChildNames) {
+		this.configuration = configuration;
+		this.changes = changes;
+		this.removedValueNames = Collections.unmodifiableSet(removedValueNames);
+		this.removedChildNames = Collections.unmodifiableSet(removedChildNames);
+	}
+
+	/**
+	 * Calculates the difference between two configurations.
+	 * 
+	 * @param oldConfiguration
+	 *            the current configuration. Null is treated as empty.
+	 * @param newConfiguration
+	 *            the new configuration. Null is treated as empty.
+	 * @return the difference.
+	 */
+	public static ConfigurationDiff between(Configuration oldConfiguration, Configuration newConfiguration) {
+		Configuration oldConfig = oldConfiguration == null ? ConfigurationFactory.createEmptyConfiguration() : oldConfiguration;
+		Configuration newConfig = ConfigurationFactory
+				.freeze(newConfiguration == null ? ConfigurationFactory.createEmptyConfiguration() : newConfiguration);
+
+		DefaultConfiguration changes = new DefaultConfiguration();
+		for (String name : newConfig.getValueNames()) {
+			Object value = newConfig.getValue(name, null);
+			if (!Objects.equals(value, oldConfig.getValue(name, null))) {
+				changes.setValue(name, value);
+			}
+		}
+		for (String name : newConfig.getChildNames()) {
+			Configuration child = newConfig.getChildConfiguration(name);
+			if (!between(oldConfig.getChildConfiguration(name), child).isEmpty()) {
+				changes.addChildConfiguration(name, child);
+			}
+		}
+		Set<String> removedValueNames = new LinkedHashSet<>(oldConfig.getValueNames());
+		removedValueNames.removeAll(newConfig.getValueNames());
+		Set<String> removedChildNames = new LinkedHashSet<>(oldConfig.getChildNames());
+		removedChildNames.removeAll(newConfig.getChildNames());
+		return new ConfigurationDiff(newConfig, ConfigurationFactory.freeze(changes), removedValueNames, removedChildNames);
+	}
+
+	/**
+	 * @return true if the configurations were the same.
+	 */
+	public boolean isEmpty() {
+		return changes.getValueNames().isEmpty() && changes.getChildNames().isEmpty() && removedValueNames.isEmpty()
+				&& removedChildNames.isEmpty();
+	}
+
+	/**
+	 * @return the complete new configuration.
+	 */
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * @return the values that were added or changed, and the new versions of
+	 *         the child configurations that were added or changed.
+	 */
+	public Configuration getChanges() {
+		return changes;
+	}
+
+	/**
+	 * @return the names of the values that were removed.
+	 */
+	public Set<String> getRemovedValueNames() {
+		return removedValueNames;
+	}
+
+	/**
+	 * @return the names of the child configurations that were removed.
+	 */
+	public Set<String> getRemovedChildNames() {
+		return removedChildNames;
+	}
+
+	/**
+	 * Checks if a value or a child configuration was added, changed or removed.
+	 * 
+	 * @param name
+	 *            the name of the value or child configuration.
+	 * @return true if it was added, changed or removed.
+	 */
+	public boolean isChanged(String name) {
+		return changes.getValueNames().contains(name) || changes.getChildNames().contains(name)
+				|| removedValueNames.contains(name) || removedChildNames.contains(name);
+	}
+
+	/**
+	 * Checks if anything but the given values and child configurations
+	 * changed. Useful for units which can only apply some changes while
+	 * running.
+	 * 
+	 * @param names
+	 *            the names of the values and child configurations that may
+	 *            change.
+	 * @return true if anything else was added, changed or removed.
+	 */
+	public boolean isChangedExcept(String... names) {
+		Set<String> changed = new LinkedHashSet<>(changes.getValueNames());
+		changed.addAll(changes.getChildNames());
+		changed.addAll(removedValueNames);
+		changed.addAll(removedChildNames);
+		for (String name : names) {
+			changed.remove(name);
+		}
+		return !changed.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "Changes: " + changes + " Removed values: " + removedValueNames + " Removed configurations: " + removedChildNames;
+	}
+}
@@ -17,7 +17,7 @@
 package com.robo4j.configuration;
 
 /**
- * Factory for creating empty configurations.
+ * Factory for creating empty and immutable configurations.
  * 
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -32,4 +32,19 @@ public class ConfigurationFactory {
 		return new DefaultConfiguration();
 	}
 
+	/**
+	 * Creates an immutable copy of a configuration, including all child
+	 * configurations. The copy is optimized for reading, with the primitive
+	 * values stored unboxed, and can be shared between threads without
+	 * locking.
+	 * 
+	 * @param configuration
+	 *            the {@link Configuration} to copy.
+	 * @return the immutable copy, the configuration itself if it already was
+	 *         immutable, or null if the configuration was null.
+	 */
+	public static Configuration freeze(Configuration configuration) {
+		return FrozenConfiguration.freeze(configuration);
+	}
+
 }
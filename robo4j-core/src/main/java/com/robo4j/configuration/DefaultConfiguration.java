@@ -170,6 +170,13 @@ class DefaultConfiguration implements Configuration {
 		return "Settings: " + settings.toString() + " Configurations: " + configurations.toString();
 	}
 	
+	/*
+	 * Package local, to be used by the diff.
+	 */
+	void setValue(String name, Object value) {
+		settings.put(name, value);
+	}
+
 	/*
 	 * Package local, to be used by the builder.
 	 */
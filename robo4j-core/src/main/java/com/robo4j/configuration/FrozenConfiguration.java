@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.configuration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable {@link Configuration}, created by
+ * {@link ConfigurationFactory#freeze(Configuration)}.
+ * 
+ * <p>
+ * The values are kept in an open addressing table with interned keys, where
+ * the primitive values are also stored unboxed, so that the primitive getters
+ * neither cast nor unbox. All fields are final and never modified after
+ * construction, so instances can be shared between threads without locking.
+ * </p>
+ * 
+ * <p>
+ * Internal Use Only
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class FrozenConfiguration implements Configuration {
+	private static final long serialVersionUID = 1L;
+	private static final byte TYPE_OBJECT = 0;
+	private static final byte TYPE_INT = 1;
+	private static final byte TYPE_LONG = 2;
+	private static final byte TYPE_FLOAT = 3;
+	private static final byte TYPE_DOUBLE = 4;
+	private static final byte TYPE_BOOLEAN = 5;
+	private static final byte TYPE_CHARACTER = 6;
+	private static final String[] TYPE_NAMES = { "Object", "int", "long", "float", "double", "boolean", "char" };
+
+	private final String[] keys;
+	private final byte[] types;
+	private final long[] primitives;
+	private final Object[] values;
+	private final Set<String> valueNames;
+
+	private final String[] childKeys;
+	private final FrozenConfiguration[] children;
+	private final Set<String> childNames;
+
+	private FrozenConfiguration(Configuration configuration) {
+		Map<String, Object> settings = new LinkedHashMap<>();
+		for (String name : configuration.getValueNames()) {
+			Object value = configuration.getValue(name, null);
+			// Null values are treated as not set by the getters
+			if (value != null) {
+				settings.put(name, value);
+			}
+		}
+		keys = new String[tableSize(settings.size())];
+		types = new byte[keys.length];
+		primitives = new long[keys.length];
+		values = new Object[keys.length];
+		for (Map.Entry<String, Object> entry : settings.entrySet()) {
+			int slot = freeSlot(keys, entry.getKey());
+			keys[slot] = entry.getKey().intern();
+			values[slot] = entry.getValue();
+			store(slot, entry.getValue());
+		}
+		valueNames = Collections.unmodifiableSet(new LinkedHashSet<>(settings.keySet()));
+
+		Set<String> sourceChildNames = configuration.getChildNames();
+		childKeys = new String[tableSize(sourceChildNames.size())];
+		children = new FrozenConfiguration[childKeys.length];
+		for (String name : sourceChildNames) {
+			int slot = freeSlot(childKeys, name);
+			childKeys[slot] = name.intern();
+			children[slot] = freeze(configuration.getChildConfiguration(name));
+		}
+		childNames = Collections.unmodifiableSet(new LinkedHashSet<>(sourceChildNames));
+	}
+
+	static FrozenConfiguration freeze(Configuration configuration) {
+		if (configuration == null || configuration instanceof FrozenConfiguration) {
+			return (FrozenConfiguration) configuration;
+		}
+		return new FrozenConfiguration(configuration);
+	}
+
+	@Override
+	public Configuration getChildConfiguration(String name) {
+		int slot = indexOf(childKeys, name);
+		return slot < 0 ? null : children[slot];
+	}
+
+	@Override
+	public Set<String> getChildNames() {
+		return childNames;
+	}
+
+	@Override
+	public Set<String> getValueNames() {
+		return valueNames;
+	}
+
+	@Override
+	public Boolean getBoolean(String name, Boolean defaultValue) {
+		return (Boolean) getValue(name, defaultValue);
+	}
+
+	@Override
+	public boolean getBoolean(String name, boolean defaultValue) {
+		int slot = indexOf(name, TYPE_BOOLEAN);
+		return slot < 0 ? defaultValue : primitives[slot] != 0;
+	}
+
+	@Override
+	public Double getDouble(String name, Double defaultValue) {
+		return (Double) getValue(name, defaultValue);
+	}
+
+	@Override
+	public double getDouble(String name, double defaultValue) {
+		int slot = indexOf(name, TYPE_DOUBLE);
+		return slot < 0 ? defaultValue : Double.longBitsToDouble(primitives[slot]);
+	}
+
+	@Override
+	public Float getFloat(String name, Float defaultValue) {
+		return (Float) getValue(name, defaultValue);
+	}
+
+	@Override
+	public float getFloat(String name, float defaultValue) {
+		int slot = indexOf(name, TYPE_FLOAT);
+		return slot < 0 ? defaultValue : Float.intBitsToFloat((int) primitives[slot]);
+	}
+
+	@Override
+	public Integer getInteger(String name, Integer defaultValue) {
+		return (Integer) getValue(name, defaultValue);
+	}
+
+	@Override
+	public int getInteger(String name, int defaultValue) {
+		int slot = indexOf(name, TYPE_INT);
+		return slot < 0 ? defaultValue : (int) primitives[slot];
+	}
+
+	@Override
+	public Long getLong(String name, Long defaultValue) {
+		return (Long) getValue(name, defaultValue);
+	}
+
+	@Override
+	public long getLong(String name, long defaultValue) {
+		int slot = indexOf(name, TYPE_LONG);
+		return slot < 0 ? defaultValue : primitives[slot];
+	}
+
+	@Override
+	public String getString(String name, String defaultValue) {
+		return (String) getValue(name, defaultValue);
+	}
+
+	@Override
+	public Character getCharacter(String name, Character defaultValue) {
+		return (Character) getValue(name, defaultValue);
+	}
+
+	@Override
+	public char getCharacter(String name, char defaultValue) {
+		int slot = indexOf(name, TYPE_CHARACTER);
+		return slot < 0 ? defaultValue : (char) primitives[slot];
+	}
+
+	@Override
+	public Object getValue(String name, Object defaultValue) {
+		int slot = indexOf(keys, name);
+		return slot < 0 ? defaultValue : values[slot];
+	}
+
+	@Override
+	public int hashCode() {
+		// Same as for the maps in DefaultConfiguration
+		int result = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null) {
+				result += keys[i].hashCode() ^ values[i].hashCode();
+			}
+		}
+		int childResult = 0;
+		for (int i = 0; i < childKeys.length; i++) {
+			if (childKeys[i] != null) {
+				childResult += childKeys[i].hashCode() ^ children[i].hashCode();
+			}
+		}
+		return 31 * (31 + childResult) + result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		FrozenConfiguration other = (FrozenConfiguration) obj;
+		if (!valueNames.equals(other.valueNames) || !childNames.equals(other.childNames))
+			return false;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null && !values[i].equals(other.getValue(keys[i], null)))
+				return false;
+		}
+		for (int i = 0; i < childKeys.length; i++) {
+			if (childKeys[i] != null && !children[i].equals(other.getChildConfiguration(childKeys[i])))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		Map<String, Object> settings = new LinkedHashMap<>();
+		for (String name : valueNames) {
+			settings.put(name, getValue(name, null));
+		}
+		Map<String, Configuration> configurations = new LinkedHashMap<>();
+		for (String name : childNames) {
+			configurations.put(name, getChildConfiguration(name));
+		}
+		return "Settings: " + settings + " Configurations: " + configurations;
+	}
+
+	private void store(int slot, Object value) {
+		if (value instanceof Integer) {
+			types[slot] = TYPE_INT;
+			primitives[slot] = (Integer) value;
+		} else if (value instanceof Long) {
+			types[slot] = TYPE_LONG;
+			primitives[slot] = (Long) value;
+		} else if (value instanceof Float) {
+			types[slot] = TYPE_FLOAT;
+			primitives[slot] = Float.floatToRawIntBits((Float) value);
+		} else if (value instanceof Double) {
+			types[slot] = TYPE_DOUBLE;
+			primitives[slot] = Double.doubleToRawLongBits((Double) value);
+		} else if (value instanceof Boolean) {
+			types[slot] = TYPE_BOOLEAN;
+			primitives[slot] = (Boolean) value ? 1 : 0;
+		} else if (value instanceof Character) {
+			types[slot] = TYPE_CHARACTER;
+			primitives[slot] = (Character) value;
+		} else {
+			types[slot] = TYPE_OBJECT;
+		}
+	}
+
+	/*
+	 * Finds a primitive value, failing the same way as the boxed getters if the
+	 * value is of another type.
+	 */
+	private int indexOf(String name, byte type) {
+		int slot = indexOf(keys, name);
+		if (slot >= 0 && types[slot] != type) {
+			throw new ClassCastException(
+					"Configuration value " + name + " is a " + values[slot].getClass().getName() + ", not a " + TYPE_NAMES[type]);
+		}
+		return slot;
+	}
+
+	private static int indexOf(String[] table, String name) {
+		int mask = table.length - 1;
+		for (int slot = hash(name) & mask;; slot = (slot + 1) & mask) {
+			String key = table[slot];
+			if (key == null) {
+				return -1;
+			}
+			// Keys are interned, so constants will normally match on identity
+			if (key == name || key.equals(name)) {
+				return slot;
+			}
+		}
+	}
+
+	private static int freeSlot(String[] table, String name) {
+		int mask = table.length - 1;
+		int slot = hash(name) & mask;
+		while (table[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(String name) {
+		int h = name.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/*
+	 * Power of two, at most half full, so that there is always a free slot to
+	 * end the probing.
+	 */
+	private static int tableSize(int entries) {
+		return Integer.highestOneBit(Math.max(1, entries) * 2 - 1) << 1;
+	}
+}
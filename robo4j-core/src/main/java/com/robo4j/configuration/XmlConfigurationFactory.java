@@ -19,7 +19,10 @@ package com.robo4j.configuration;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -32,7 +35,8 @@ import org.xml.sax.helpers.DefaultHandler;
 import com.robo4j.util.StringConstants;
 
 /**
- * Factory for creating configurations from XML and vice versa.
+ * Factory for creating configurations from XML and vice versa. All methods
+ * are thread safe, and configurations can be parsed concurrently.
  * 
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -52,13 +56,22 @@ public class XmlConfigurationFactory {
 	private static final String TYPE_STRING = "String";
 	private static final String ELEMENT_ROOT = "com.robo4j.root";
 	private static final String ELEMENT_VALUE = "value";
+	/*
+	 * Bulk loads smaller than this are not worth splitting across threads.
+	 */
+	private static final int PARALLEL_THRESHOLD = 4;
 
-	private static final Deque<ConfigurationBuilder> CONFIG_STACK = new ArrayDeque<>();
+	/*
+	 * SAX parsers are expensive to create, but not thread safe, so keep one
+	 * per thread.
+	 */
+	private static final ThreadLocal<SAXParser> PARSER = new ThreadLocal<>();
 
 	/*
 	 * Internal XML Handler class for parsing the XML.
 	 */
 	private static class ConfigurationHandler extends DefaultHandler {
+		private final Deque<ConfigurationBuilder> configStack = new ArrayDeque<>();
 		private final ConfigurationBuilder rootBuilder = new ConfigurationBuilder();
 		private ConfigurationBuilder currentBuilder;
 		private String lastElement = StringConstants.EMPTY;
@@ -76,7 +89,7 @@ public class XmlConfigurationFactory {
 			if (qName.equals(ELEMENT_CONFIG)) {
 				String value = attributes.getValue(ATTRIBUTE_NAME);
 				if (!value.equals(ELEMENT_ROOT)) {
-					CONFIG_STACK.push(currentBuilder);
+					configStack.push(currentBuilder);
 					ConfigurationBuilder tmpBuilder = new ConfigurationBuilder();
 					currentBuilder.addBuilder(value, tmpBuilder);
 					currentBuilder = tmpBuilder;
@@ -96,8 +109,8 @@ public class XmlConfigurationFactory {
 				currentValue = StringConstants.EMPTY;
 				break;
 			case ELEMENT_CONFIG:
-				if (!CONFIG_STACK.isEmpty()) { // Closing of the last config...
-					currentBuilder = CONFIG_STACK.pop();
+				if (!configStack.isEmpty()) { // Closing of the last config...
+					currentBuilder = configStack.pop();
 				}
 				break;
 			}
@@ -154,17 +167,47 @@ public class XmlConfigurationFactory {
 	 *             if there was a problem reading the configuration.
 	 */
 	public static Configuration fromXml(String xml) throws ConfigurationFactoryException {
-		SAXParser saxParser;
 		try {
-			saxParser = SAXParserFactory.newInstance().newSAXParser();
-			 ConfigurationHandler handler = new ConfigurationHandler();
-			saxParser.parse(new ByteArrayInputStream(xml.getBytes(ENCODING)), handler);
-			return handler.getBuilder().build();
+			SAXParser saxParser = getParser();
+			try {
+				ConfigurationHandler handler = new ConfigurationHandler();
+				saxParser.parse(new ByteArrayInputStream(xml.getBytes(ENCODING)), handler);
+				return handler.getBuilder().build();
+			} finally {
+				saxParser.reset();
+			}
 		} catch (ParserConfigurationException | SAXException | IOException e) {
 			throw new ConfigurationFactoryException("Could not parse the configuration", e);
 		}
 	}
 
+	/**
+	 * Reads many {@link Configuration}s at once, for example the
+	 * configurations of all the units in a system. Larger batches are parsed
+	 * in parallel across the available cores.
+	 * 
+	 * @param xmls
+	 *            the Strings containing the XML to read. A null entry results
+	 *            in a null configuration.
+	 * @return the {@link Configuration}s, in the same order as the XML.
+	 * @throws ConfigurationFactoryException
+	 *             if there was a problem reading any of the configurations.
+	 */
+	public static List<Configuration> fromXml(List<String> xmls) throws ConfigurationFactoryException {
+		if (xmls.size() < PARALLEL_THRESHOLD) {
+			List<Configuration> result = new ArrayList<>(xmls.size());
+			for (String xml : xmls) {
+				result.add(xml == null ? null : fromXml(xml));
+			}
+			return result;
+		}
+		try {
+			return xmls.parallelStream().map(XmlConfigurationFactory::fromXmlUnchecked).collect(Collectors.toList());
+		} catch (UncheckedConfigurationFactoryException e) {
+			throw e.getCause();
+		}
+	}
+
 	/**
 	 * Serializes a {@link Configuration} to XML in a String object.
 	 * 
@@ -179,6 +222,39 @@ public class XmlConfigurationFactory {
 		return builder.toString();
 	}
 
+	private static SAXParser getParser() throws ParserConfigurationException, SAXException {
+		SAXParser parser = PARSER.get();
+		if (parser == null) {
+			parser = SAXParserFactory.newInstance().newSAXParser();
+			PARSER.set(parser);
+		}
+		return parser;
+	}
+
+	private static Configuration fromXmlUnchecked(String xml) {
+		try {
+			return xml == null ? null : fromXml(xml);
+		} catch (ConfigurationFactoryException e) {
+			throw new UncheckedConfigurationFactoryException(e);
+		}
+	}
+
+	/*
+	 * Carries the checked exception out of the parallel stream.
+	 */
+	private static class UncheckedConfigurationFactoryException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		UncheckedConfigurationFactoryException(ConfigurationFactoryException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized ConfigurationFactoryException getCause() {
+			return (ConfigurationFactoryException) super.getCause();
+		}
+	}
+
 	private static void write(StringBuilder builder, Configuration configuration) {
 		write(builder, configuration, ELEMENT_ROOT, 0);
 	}
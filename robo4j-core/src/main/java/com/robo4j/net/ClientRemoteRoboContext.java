@@ -21,15 +21,22 @@ import com.robo4j.LifecycleState;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
 import com.robo4j.configuration.Configuration;
-import com.robo4j.configuration.ConfigurationFactory;
+import com.robo4j.configuration.ConfigurationBuilder;
 import com.robo4j.scheduler.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  *
@@ -37,12 +44,16 @@ import java.util.concurrent.Future;
  * @author Miroslav Wengner (@miragemiko)
  */
 public class ClientRemoteRoboContext implements RoboContext {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ClientRemoteRoboContext.class);
 	private final RoboContextDescriptorEntry descriptorEntry;
 	private final MessageClient client;
 
 	private class ClientRemoteRoboReference<T> implements RoboReference<T> {
 
 		private final String id;
+		// Should never change in runtime, so cached once known
+		private volatile Class<T> messageType;
+		private volatile Collection<AttributeDescriptor<?>> knownAttributes;
 
 		public ClientRemoteRoboReference(String id) {
 			this.id = id;
@@ -55,7 +66,7 @@ public class ClientRemoteRoboContext implements RoboContext {
 
 		@Override
 		public LifecycleState getState() {
-			throw new UnsupportedOperationException("Not supported yet!");
+			return await(client.getState(id), "state");
 		}
 
 		@Override
@@ -66,14 +77,17 @@ public class ClientRemoteRoboContext implements RoboContext {
 				}
 				client.sendMessage(id, message);
 			} catch (IOException e) {
-				// TODO: Error handling
-				e.printStackTrace();
+				LOGGER.error("Failed to send message to remote unit {} in {}", id, getId(), e);
 			}
 		}
 
+		@SuppressWarnings("unchecked")
 		@Override
 		public Class<T> getMessageType() {
-			throw new UnsupportedOperationException("Not supported yet!");
+			if (messageType == null) {
+				messageType = (Class<T>) await(client.getMessageType(id), "message type");
+			}
+			return messageType;
 		}
 
 		@Override
@@ -81,19 +95,41 @@ public class ClientRemoteRoboContext implements RoboContext {
 			throw new UnsupportedOperationException("Not supported yet!");
 		}
 
+		/**
+		 * Returns a {@link java.util.concurrent.CompletableFuture} for the
+		 * attribute value read from the remote unit.
+		 */
 		@Override
 		public <R> Future<R> getAttribute(AttributeDescriptor<R> attribute) {
-			throw new UnsupportedOperationException("Not supported yet!");
+			return client.getAttribute(id, attribute);
 		}
 
 		@Override
 		public Collection<AttributeDescriptor<?>> getKnownAttributes() {
-			throw new UnsupportedOperationException("Not supported yet!");
+			if (knownAttributes == null) {
+				knownAttributes = await(client.getKnownAttributes(id), "known attributes");
+			}
+			return knownAttributes;
 		}
 
+		/**
+		 * Returns a {@link java.util.concurrent.CompletableFuture} for the
+		 * attribute values read from the remote unit.
+		 */
 		@Override
 		public Future<Map<AttributeDescriptor<?>, Object>> getAttributes() {
-			throw new UnsupportedOperationException("Not supported yet!");
+			return client.getAttributes(id);
+		}
+
+		private <R> R await(Future<R> future, String what) {
+			try {
+				return future.get(client.getRequestTimeout(), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted reading " + what + " of remote unit " + id, e);
+			} catch (ExecutionException | TimeoutException e) {
+				throw new IllegalStateException("Failed to read " + what + " of remote unit " + id, e);
+			}
 		}
 
 	}
@@ -104,9 +140,33 @@ public class ClientRemoteRoboContext implements RoboContext {
 	}
 
 	private static MessageClient initializeClient(RoboContextDescriptorEntry descriptorEntry) {
-		MessageClient client = new MessageClient(URI.create(descriptorEntry.descriptor.getMetadata().get(RoboContextDescriptor.KEY_URI)),
-				descriptorEntry.descriptor.getId(), ConfigurationFactory.createEmptyConfiguration());
-		return client;
+		Map<String, String> metadata = descriptorEntry.descriptor.getMetadata();
+		Configuration configuration = new ConfigurationBuilder()
+				.addBoolean(MessageClient.KEY_SHARED_MEMORY,
+						Boolean.parseBoolean(metadata.get(RoboContextDescriptor.KEY_SHARED_MEMORY)) && isLocal(descriptorEntry.address))
+				.addBoolean(MessageClient.KEY_ACKNOWLEDGED, Boolean.parseBoolean(metadata.get(RoboContextDescriptor.KEY_ACKNOWLEDGED)))
+				.addBoolean(MessageClient.KEY_COMPRESSION, Boolean.parseBoolean(metadata.get(RoboContextDescriptor.KEY_COMPRESSION)))
+				.build();
+		return new MessageClient(URI.create(metadata.get(RoboContextDescriptor.KEY_URI)), descriptorEntry.descriptor.getId(),
+				configuration);
+	}
+
+	/**
+	 * @return true if the address belongs to this host, in which case shared
+	 *         memory can be used to talk to the context.
+	 */
+	private static boolean isLocal(InetAddress address) {
+		if (address == null) {
+			return false;
+		}
+		if (address.isLoopbackAddress() || address.isAnyLocalAddress()) {
+			return true;
+		}
+		try {
+			return NetworkInterface.getByInetAddress(address) != null;
+		} catch (SocketException e) {
+			return false;
+		}
 	}
 
 	@Override
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the compression of remote messages, used for tuning the
+ * compression threshold. The client counts the compression of the messages it
+ * sends, the server the decompression of the messages it receives.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class CompressionMetrics {
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder compressedMessages = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder transferredBytes = new LongAdder();
+    private final LongAdder cpuTimeNanos = new LongAdder();
+
+    void record(int uncompressedLength, int transferredLength, boolean compressed, long cpuTime) {
+        messages.increment();
+        uncompressedBytes.add(uncompressedLength);
+        transferredBytes.add(transferredLength);
+        if (compressed) {
+            compressedMessages.increment();
+        }
+        cpuTimeNanos.add(cpuTime);
+    }
+
+    /**
+     * @return the number of serialized messages seen.
+     */
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * @return the number of messages that were sent compressed.
+     */
+    public long getCompressedMessages() {
+        return compressedMessages.sum();
+    }
+
+    /**
+     * @return the total serialized size of the messages.
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * @return the total size of the messages as sent.
+     */
+    public long getTransferredBytes() {
+        return transferredBytes.sum();
+    }
+
+    /**
+     * @return the number of bytes saved by compression.
+     */
+    public long getBytesSaved() {
+        return getUncompressedBytes() - getTransferredBytes();
+    }
+
+    /**
+     * @return the CPU time, in ns, spent compressing or decompressing. Wall
+     * clock time is used if the JVM does not support measuring thread CPU
+     * time.
+     */
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionMetrics [messages=" + getMessages() + ", compressed=" + getCompressedMessages() + ", bytesSaved="
+                + getBytesSaved() + ", cpuTimeNanos=" + getCpuTimeNanos() + "]";
+    }
+}
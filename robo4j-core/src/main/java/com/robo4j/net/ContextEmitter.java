@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.*;
+import java.util.List;
 
 /**
  * This class is used by the {@link RoboContext} to make it discoverable. This
@@ -55,16 +56,22 @@ public final class ContextEmitter {
      */
     public static final String KEY_ENABLED = "enabled";
 
+    /**
+     * Comma separated list of host:port to send heartbeats to directly, rather
+     * than to the multicast address. Hosts without a port will use the
+     * configured {@link #KEY_PORT}. IPv6 hosts are written as [address]:port.
+     * Not set by default.
+     */
+    public static final String KEY_SEEDS = "seeds";
+
     /**
      * The default heartbeat interval.
      */
     public static final Integer DEFAULT_HEARTBEAT_INTERVAL = 1000;
 
-    private final InetAddress multicastAddress;
-    private final int port;
     private final int heartBeatInterval;
     private final DatagramSocket socket;
-    private final byte[] message;
+    private final DatagramPacket[] packets;
 
     /**
      * Constructor.
@@ -77,19 +84,32 @@ public final class ContextEmitter {
      */
     public ContextEmitter(RoboContextDescriptor entry, InetAddress multicastAddress, int port, int heartBeatInterval)
             throws SocketException {
-        this.multicastAddress = multicastAddress;
-        this.port = port;
+        this(entry, List.of(new InetSocketAddress(multicastAddress, port)), heartBeatInterval);
+    }
+
+    /**
+     * Constructor for emitting the heartbeats to a list of seeds, for networks
+     * where multicast is not available.
+     *
+     * @param entry             the information to emit.
+     * @param seeds             the addresses of the lookup services to emit to.
+     * @param heartBeatInterval the heart beat interval
+     * @throws SocketException possible exception
+     */
+    public ContextEmitter(RoboContextDescriptor entry, List<InetSocketAddress> seeds, int heartBeatInterval)
+            throws SocketException {
         this.heartBeatInterval = heartBeatInterval;
         socket = new DatagramSocket();
-        message = HearbeatMessageCodec.encode(entry);
+        byte[] message = HearbeatMessageCodec.encode(entry);
+        packets = new DatagramPacket[seeds.size()];
+        for (int i = 0; i < packets.length; i++) {
+            packets[i] = new DatagramPacket(message, message.length, seeds.get(i));
+        }
     }
 
     public ContextEmitter(RoboContextDescriptor entry, Configuration emitterConfiguration)
             throws SocketException, UnknownHostException {
-        this(entry,
-                InetAddress.getByName(emitterConfiguration.getString(KEY_MULTICAST_ADDRESS,
-                        LookupServiceProvider.DEFAULT_MULTICAST_ADDRESS)),
-                emitterConfiguration.getInteger(KEY_PORT, LookupServiceProvider.DEFAULT_PORT),
+        this(entry, getTargets(emitterConfiguration),
                 emitterConfiguration.getInteger(KEY_HEARTBEAT_INTERVAL, DEFAULT_HEARTBEAT_INTERVAL));
     }
 
@@ -110,11 +130,22 @@ public final class ContextEmitter {
      * @throws IOException exception
      */
     public void emitWithException() throws IOException {
-        DatagramPacket packet = new DatagramPacket(message, message.length, multicastAddress, port);
-        socket.send(packet);
+        for (DatagramPacket packet : packets) {
+            socket.send(packet);
+        }
     }
 
     public int getHeartBeatInterval() {
         return heartBeatInterval;
     }
+
+    private static List<InetSocketAddress> getTargets(Configuration emitterConfiguration) throws UnknownHostException {
+        int port = emitterConfiguration.getInteger(KEY_PORT, LookupServiceProvider.DEFAULT_PORT);
+        String seeds = emitterConfiguration.getString(KEY_SEEDS, null);
+        if (seeds != null) {
+            return LookupServiceProvider.parseSeeds(seeds, port);
+        }
+        return List.of(new InetSocketAddress(InetAddress.getByName(emitterConfiguration.getString(KEY_MULTICAST_ADDRESS,
+                LookupServiceProvider.DEFAULT_MULTICAST_ADDRESS)), port));
+    }
 }
@@ -19,8 +19,11 @@ package com.robo4j.net;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Builder helps to build  {@link LookupService}
@@ -34,6 +37,9 @@ public class DefaultLookupServiceBuilder {
     private Integer port;
     private Float missedHeartbeatsBeforeRemoval;
     private LocalLookupServiceImpl localContexts;
+    private List<InetSocketAddress> seeds = Collections.emptyList();
+    private boolean gossip;
+    private int gossipInterval = LookupServiceImpl.DEFAULT_GOSSIP_INTERVAL;
 
 
     private DefaultLookupServiceBuilder() {
@@ -64,9 +70,36 @@ public class DefaultLookupServiceBuilder {
         return this;
     }
 
+    /**
+     * Setting seeds makes the lookup service run in unicast mode, listening for
+     * heartbeats sent directly to it rather than on the multicast address.
+     *
+     * @param seeds the addresses of the lookup services to gossip to.
+     * @return the builder.
+     */
+    public DefaultLookupServiceBuilder setSeeds(List<InetSocketAddress> seeds) {
+        this.seeds = seeds;
+        return this;
+    }
+
+    /**
+     * @param gossip true to periodically send all known heartbeats to the seeds
+     *               and to the peers that gossip to this lookup service.
+     * @return the builder.
+     */
+    public DefaultLookupServiceBuilder setGossip(boolean gossip) {
+        this.gossip = gossip;
+        return this;
+    }
+
+    public DefaultLookupServiceBuilder setGossipInterval(int gossipInterval) {
+        this.gossipInterval = gossipInterval;
+        return this;
+    }
+
     public LookupService build() {
         try {
-            return new LookupServiceImpl(address, port, missedHeartbeatsBeforeRemoval, localContexts);
+            return new LookupServiceImpl(address, port, missedHeartbeatsBeforeRemoval, localContexts, seeds, gossip, gossipInterval);
         } catch (SocketException | UnknownHostException e) {
             LOGGER.error("Failed to set up LookupService! No multicast route? Will use null provider...", e);
             return new NullLookupService();
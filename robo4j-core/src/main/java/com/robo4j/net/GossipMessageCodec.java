@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Used to encode and decode gossip messages. Gossip messages are exchanged
+ * between lookup services running in unicast mode, and carry the heartbeats of
+ * the contexts known to the sender. Each heartbeat is kept in the format of
+ * the {@link HearbeatMessageCodec}, prefixed with the time since the context
+ * was last heard from, and the address it was heard from.
+ * <p>
+ * A gossip message without heartbeats is used to make a lookup service known
+ * to its peers.
+ *
+ * <pre>
+ * MAGIC(2) VERSION(1) COUNT(2) [AGE(4) ADDRESS_LENGTH(1) ADDRESS(n) HEARTBEAT(m)]*
+ * </pre>
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class GossipMessageCodec {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GossipMessageCodec.class);
+    private static final byte PROTOCOL_VERSION = 0;
+    private static final byte[] MAGIC = new byte[]{(byte) 0xC0, (byte) 0xFD};
+    private static final int COUNT_OFFSET = 3;
+    static final int HEADER_LENGTH = 5;
+    static final int ENTRY_HEADER_LENGTH = 5;
+
+    public static boolean isGossipMessage(byte[] message) {
+        return message[0] == MAGIC[0] && message[1] == MAGIC[1];
+    }
+
+    public static boolean isSupportedVersion(byte[] message) {
+        return message[2] == PROTOCOL_VERSION;
+    }
+
+    /**
+     * Encodes the specified entries into as many gossip messages as needed to
+     * keep each message within the maximum packet size. Will always return at
+     * least one message.
+     *
+     * @param entries       the entries to encode.
+     * @param now           the current time in ms, used to calculate the age
+     *                      of the entries.
+     * @param maxPacketSize the maximum size of a message.
+     * @return the encoded messages.
+     */
+    public static List<byte[]> encode(Collection<RoboContextDescriptorEntry> entries, long now, int maxPacketSize) {
+        List<byte[]> messages = new ArrayList<>();
+        byte[] buffer = new byte[maxPacketSize];
+        int offset = HEADER_LENGTH;
+        int count = 0;
+        for (RoboContextDescriptorEntry entry : entries) {
+            byte[] address = entry.address != null ? entry.address.getAddress() : new byte[0];
+            int entryLength = ENTRY_HEADER_LENGTH + address.length + entry.message.length;
+            if (HEADER_LENGTH + entryLength > maxPacketSize) {
+                LOGGER.warn("Heartbeat for {} too large to gossip ({} bytes). Skipping.", entry.descriptor.getId(), entryLength);
+                continue;
+            }
+            if (offset + entryLength > maxPacketSize) {
+                messages.add(finish(buffer, offset, count));
+                offset = HEADER_LENGTH;
+                count = 0;
+            }
+            HearbeatMessageCodec.encodeU4(buffer, offset, (int) Math.max(0, now - entry.lastAccess));
+            buffer[offset + 4] = (byte) address.length;
+            offset += ENTRY_HEADER_LENGTH;
+            System.arraycopy(address, 0, buffer, offset, address.length);
+            offset += address.length;
+            System.arraycopy(entry.message, 0, buffer, offset, entry.message.length);
+            offset += entry.message.length;
+            count++;
+        }
+        if (count > 0 || messages.isEmpty()) {
+            messages.add(finish(buffer, offset, count));
+        }
+        return messages;
+    }
+
+    public static int getCount(byte[] message) {
+        return HearbeatMessageCodec.decodeU2(message, COUNT_OFFSET);
+    }
+
+    /**
+     * @param message the gossip message.
+     * @param offset  the offset of the gossiped entry.
+     * @return the time in ms since the gossiped context was last heard from.
+     */
+    public static int getAge(byte[] message, int offset) {
+        return HearbeatMessageCodec.decodeS4(message, offset);
+    }
+
+    public static int getAddressLength(byte[] message, int offset) {
+        return message[offset + 4] & 0xFF;
+    }
+
+    /**
+     * @param message the gossip message.
+     * @param offset  the offset of the gossiped entry.
+     * @return the address the gossiped context was heard from, or null if not
+     * known.
+     */
+    public static InetAddress getAddress(byte[] message, int offset) {
+        int addressLength = getAddressLength(message, offset);
+        if (addressLength == 0) {
+            return null;
+        }
+        try {
+            return InetAddress.getByAddress(Arrays.copyOfRange(message, offset + ENTRY_HEADER_LENGTH,
+                    offset + ENTRY_HEADER_LENGTH + addressLength));
+        } catch (UnknownHostException e) {
+            LOGGER.debug("Gossiped address with bad length {}", addressLength);
+            return null;
+        }
+    }
+
+    private static byte[] finish(byte[] buffer, int length, int count) {
+        buffer[0] = MAGIC[0];
+        buffer[1] = MAGIC[1];
+        buffer[2] = PROTOCOL_VERSION;
+        HearbeatMessageCodec.encodeU2(buffer, COUNT_OFFSET, count);
+        return Arrays.copyOf(buffer, length);
+    }
+}
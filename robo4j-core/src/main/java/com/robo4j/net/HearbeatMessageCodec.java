@@ -39,6 +39,10 @@ class HearbeatMessageCodec {
     private static final int MAX_U2 = 65535;
     private static final int MAX_U1 = 255;
     private static final byte[] MAGIC = new byte[]{(byte) 0xC0, (byte) 0xFF};
+    private static final int MESSAGE_LENGTH_OFFSET = 3;
+    private static final int HEART_BEAT_INTERVAL_OFFSET = 7;
+    private static final int ID_LENGTH_OFFSET = 11;
+    static final int ID_OFFSET = 13;
 
     public static byte[] encode(RoboContextDescriptor entry) {
         byte[] message = new byte[calculateEncodedLength(entry)];
@@ -70,11 +74,19 @@ class HearbeatMessageCodec {
     }
 
     public static boolean isSupportedVersion(byte[] data) {
-        return data[2] == PROTOCOL_VERSION;
+        return isSupportedVersion(data, 0);
+    }
+
+    static boolean isSupportedVersion(byte[] data, int offset) {
+        return data[offset + 2] == PROTOCOL_VERSION;
     }
 
     public static boolean isHeartBeatMessage(byte[] message) {
-        return message[0] == MAGIC[0] && message[1] == MAGIC[1];
+        return isHeartBeatMessage(message, 0);
+    }
+
+    static boolean isHeartBeatMessage(byte[] message, int offset) {
+        return message[offset] == MAGIC[0] && message[offset + 1] == MAGIC[1];
     }
 
     public static String parseId(byte[] message) {
@@ -82,6 +94,40 @@ class HearbeatMessageCodec {
         return new String(message, 13, idLength);
     }
 
+    /**
+     * Reads the total length of the encoded message, without decoding it.
+     *
+     * @param message the buffer containing the encoded heartbeat message.
+     * @param offset  the offset of the heartbeat message in the buffer.
+     * @return the length of the message in bytes, as stated in the header.
+     */
+    static int getMessageLength(byte[] message, int offset) {
+        return decodeS4(message, offset + MESSAGE_LENGTH_OFFSET);
+    }
+
+    /**
+     * Reads the heart beat interval, without decoding the message.
+     *
+     * @param message the buffer containing the encoded heartbeat message.
+     * @param offset  the offset of the heartbeat message in the buffer.
+     * @return the heart beat interval in ms.
+     */
+    static int getHeartBeatInterval(byte[] message, int offset) {
+        return decodeS4(message, offset + HEART_BEAT_INTERVAL_OFFSET);
+    }
+
+    /**
+     * Reads the length of the id, without decoding it. The id starts at
+     * {@link #ID_OFFSET}, relative to the start of the message.
+     *
+     * @param message the buffer containing the encoded heartbeat message.
+     * @param offset  the offset of the heartbeat message in the buffer.
+     * @return the length of the encoded id in bytes.
+     */
+    static int getIdLength(byte[] message, int offset) {
+        return decodeU2(message, offset + ID_LENGTH_OFFSET);
+    }
+
     private static Map<String, String> decodeMetadata(byte[] message, int offset, int messageLength) {
         Map<String, String> metadata = new HashMap<>();
         while (offset < messageLength) {
@@ -97,11 +143,11 @@ class HearbeatMessageCodec {
         return metadata;
     }
 
-    private static int decodeU2(byte[] message, int offset) {
+    static int decodeU2(byte[] message, int offset) {
         return ((0xFF & message[offset]) << 8) | (0xFF & message[offset + 1]);
     }
 
-    private static int decodeS4(byte[] message, int offset) {
+    static int decodeS4(byte[] message, int offset) {
         return ((0xFF & message[offset]) << 24) | ((0xFF & message[offset + 1]) << 16) | ((0xFF & message[offset + 2]) << 8)
                 | (0xFF & message[offset + 3]);
     }
@@ -132,12 +178,12 @@ class HearbeatMessageCodec {
         return string;
     }
 
-    private static void encodeU2(byte[] buffer, int offset, int value) {
+    static void encodeU2(byte[] buffer, int offset, int value) {
         buffer[offset++] = (byte) ((value & 0x0000FF00) >> 8);
         buffer[offset] = (byte) (value & 0x000000FF);
     }
 
-    private static void encodeU4(byte[] buffer, int offset, int value) {
+    static void encodeU4(byte[] buffer, int offset, int value) {
         buffer[offset++] = (byte) ((value & 0xFF000000) >> 24);
         buffer[offset++] = (byte) ((value & 0x00FF0000) >> 16);
         buffer[offset++] = (byte) ((value & 0x0000FF00) >> 8);
@@ -21,7 +21,9 @@ import com.robo4j.RoboContext;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  *
@@ -30,6 +32,9 @@ import java.util.Map;
  */
 public class LocalLookupServiceImpl implements LookupService {
 	private final Map<String, LocalRoboContextDescriptor> contexts = Collections.synchronizedMap(new HashMap<>());
+	private final List<LookupServiceListener> listeners = new CopyOnWriteArrayList<>();
+	// Replaced, never modified, whenever a context is added
+	private volatile Map<String, RoboContextDescriptor> snapshot = Collections.emptyMap();
 
 	static class LocalRoboContextDescriptor extends RoboContextDescriptor {
 		private final RoboContext context;
@@ -44,9 +49,13 @@ public class LocalLookupServiceImpl implements LookupService {
 		}
 	}
 
+	/**
+	 * Returns an immutable snapshot of the local contexts. The same instance is
+	 * returned until the set of local contexts changes.
+	 */
 	@Override
 	public Map<String, RoboContextDescriptor> getDiscoveredContexts() {
-		return Collections.unmodifiableMap(contexts);
+		return snapshot;
 	}
 
 	@Override
@@ -71,8 +80,30 @@ public class LocalLookupServiceImpl implements LookupService {
 	public void stop() throws IOException {
 	}
 
+	@Override
+	public void addListener(LookupServiceListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(LookupServiceListener listener) {
+		listeners.remove(listener);
+	}
+
 	public void addContext(RoboContext context) {
-		contexts.put(context.getId(), new LocalRoboContextDescriptor(context));			
+		LocalRoboContextDescriptor descriptor = new LocalRoboContextDescriptor(context);
+		LocalRoboContextDescriptor oldDescriptor;
+		synchronized (contexts) {
+			oldDescriptor = contexts.put(context.getId(), descriptor);
+			snapshot = Collections.unmodifiableMap(new HashMap<>(contexts));
+		}
+		for (LookupServiceListener listener : listeners) {
+			if (oldDescriptor == null) {
+				listener.contextAdded(descriptor);
+			} else {
+				listener.contextChanged(oldDescriptor, descriptor);
+			}
+		}
 	}
 
 }
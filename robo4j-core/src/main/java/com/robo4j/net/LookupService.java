@@ -55,6 +55,23 @@ public interface LookupService {
 	 */
 	RoboContextDescriptor getDescriptor(String id);
 
+	/**
+	 * Adds a listener to be notified when contexts are added, removed or
+	 * changed.
+	 *
+	 * @param listener
+	 *            the listener to add.
+	 */
+	void addListener(LookupServiceListener listener);
+
+	/**
+	 * Removes a previously added listener.
+	 *
+	 * @param listener
+	 *            the listener to remove.
+	 */
+	void removeListener(LookupServiceListener listener);
+
 	/**
 	 * Starts listening for information.
 	 *
@@ -18,16 +18,27 @@ package com.robo4j.net;
 
 import com.robo4j.RoboContext;
 import com.robo4j.net.LocalLookupServiceImpl.LocalRoboContextDescriptor;
+import com.robo4j.scheduler.RoboThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.*;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Package local default implementation of the {@link LookupService}. Will
@@ -35,6 +46,13 @@ import java.util.concurrent.ConcurrentHashMap;
  * heartbeats. Will automatically remove entries for contexts that have missed
  * enough heartbeats. Note that the entries themselves can have individual
  * settings for the heartbeat.
+ * <p>
+ * For networks that drop multicast, the lookup service can instead run in
+ * unicast mode, where it listens on the port for heartbeats sent directly to
+ * it, for example by {@link ContextEmitter}s configured with a seed list. If
+ * gossip is enabled, the lookup service will also periodically send the
+ * heartbeats it knows about to its seeds, and to any peers that have gossiped
+ * to it, so that all lookup services eventually know about all contexts.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -44,77 +62,127 @@ class LookupServiceImpl implements LookupService {
     // FIXME(marcus/6 Nov 2017): This should be calculated, and used when
     // constructing the packet
     private final static int MAX_PACKET_SIZE = 1500;
+    private final static long EXPIRY_CHECK_INTERVAL_MILLIS = 250;
+    static final int DEFAULT_GOSSIP_INTERVAL = 1000;
+    private static final String NAME_TIMER_THREAD = "LookupService timer";
     private final String address;
     private final int port;
+    private final float missedHeartbeatsBeforeRemoval;
+    private final List<InetSocketAddress> seeds;
+    private final boolean gossip;
+    private final int gossipInterval;
+    // Peers that have gossiped to this lookup service, and when they were last
+    // heard from
+    private final Map<InetSocketAddress, Long> peers = new ConcurrentHashMap<>();
+    private final List<LookupServiceListener> listeners = new CopyOnWriteArrayList<>();
     private final Map<String, RoboContextDescriptorEntry> entries = new ConcurrentHashMap<>();
-    private MulticastSocket socket;
+    // Same entries as above, but keyed by the encoded id, so that heartbeats
+    // from known contexts can be matched without decoding them
+    private final Map<IdKey, RoboContextDescriptorEntry> encodedIdIndex = new ConcurrentHashMap<>();
+    private DatagramSocket socket;
     private Updater currentUpdater;
+    private ScheduledExecutorService timerExecutor;
+    private volatile Snapshot snapshot = new Snapshot(0, null, Collections.emptyMap());
     private final LocalLookupServiceImpl localContexts;
 
-    private class Updater implements Runnable {
-        private final byte[] buffer = new byte[MAX_PACKET_SIZE];
-        private volatile boolean isRunning;
+    /**
+     * Key wrapping a range of bytes containing an encoded id. Instances used
+     * for storing are immutable copies, whereas the probe used by the
+     * {@link Updater} is reset for every received packet.
+     */
+    static final class IdKey {
+        private byte[] data;
+        private int offset;
+        private int length;
+        private int hash;
 
-        @Override
-        public void run() {
-            while (!isRunning) {
-                try {
-                    DatagramPacket packet = new DatagramPacket(buffer, MAX_PACKET_SIZE);
-                    socket.receive(packet);
-                    process(packet);
-                } catch (IOException e) {
-                    LOGGER.error("Failed to look for lookupservice packets. Lookup service will no longer discover new remote contexts.", e);
-                    isRunning = false;
-                }
-            }
+        IdKey() {
         }
 
-        private void process(DatagramPacket packet) {
-            // First a few quick checks. We want to reject updating anything as
-            // early as possible
-            if (!HearbeatMessageCodec.isHeartBeatMessage(packet.getData())) {
-                LOGGER.debug("Non-heartbeat packet sent to LookupService! Ignoring.");
-                return;
-            }
-            if (!HearbeatMessageCodec.isSupportedVersion(packet.getData())) {
-                LOGGER.debug("Wrong protocol heartbeat packet sent to LookupService! Ignoring.");
-                return;
-            }
-            String id = parseId(packet.getData());
-            if (entries.containsKey(id)) {
-                updateEntry(entries.get(id));
-            } else {
-                addNewEntry(packet);
-            }
+        private IdKey(byte[] data, int offset, int length) {
+            set(data, offset, length);
         }
 
-        private void addNewEntry(DatagramPacket packet) {
-            RoboContextDescriptorEntry entry = parse(packet);
-            synchronized (LookupServiceImpl.this) {
-                entries.put(entry.descriptor.getId(), entry);
+        IdKey set(byte[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + data[i];
             }
+            this.hash = h;
+            return this;
         }
 
-        private RoboContextDescriptorEntry parse(DatagramPacket packet) {
-            RoboContextDescriptorEntry entry = new RoboContextDescriptorEntry();
-            SocketAddress address = packet.getSocketAddress();
-            if (address instanceof InetSocketAddress) {
-                entry.address = ((InetSocketAddress) address).getAddress();
+        IdKey copy() {
+            return new IdKey(Arrays.copyOfRange(data, offset, offset + length), 0, length);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IdKey other)) {
+                return false;
             }
-            entry.descriptor = HearbeatMessageCodec.decode(packet.getData());
-            return entry;
+            return hash == other.hash
+                    && Arrays.equals(data, offset, offset + length, other.data, other.offset, other.offset + other.length);
         }
+    }
+
+    /**
+     * Immutable snapshot of the discovered contexts. Rebuilt when the remote
+     * entries change, or when the local contexts it was built from have been
+     * replaced.
+     */
+    private static final class Snapshot {
+        private final long version;
+        private final Map<String, RoboContextDescriptor> localContexts;
+        private final Map<String, RoboContextDescriptor> contexts;
 
-        private void updateEntry(RoboContextDescriptorEntry roboContextDescriptorEntry) {
-            roboContextDescriptorEntry.lastAccess = System.currentTimeMillis();
+        Snapshot(long version, Map<String, RoboContextDescriptor> localContexts, Map<String, RoboContextDescriptor> contexts) {
+            this.version = version;
+            this.localContexts = localContexts;
+            this.contexts = contexts;
         }
+    }
 
-        private String parseId(byte[] data) {
-            return new String(data, 9, readShort(7, data));
+    private class Updater implements Runnable {
+        private final DatagramSocket socket;
+        private final byte[] buffer = new byte[MAX_PACKET_SIZE];
+        private final DatagramPacket packet = new DatagramPacket(buffer, MAX_PACKET_SIZE);
+        private final IdKey probe = new IdKey();
+        private volatile boolean isRunning = true;
+
+        Updater(DatagramSocket socket) {
+            this.socket = socket;
         }
 
-        private int readShort(int i, byte[] data) {
-            return (data[i] << 8) + (data[i + 1] & 0xFF);
+        @Override
+        public void run() {
+            while (isRunning) {
+                try {
+                    packet.setLength(MAX_PACKET_SIZE);
+                    socket.receive(packet);
+                    if (GossipMessageCodec.isGossipMessage(buffer)) {
+                        processGossip(buffer, packet.getLength(), (InetSocketAddress) packet.getSocketAddress(), probe);
+                    } else {
+                        process(buffer, packet.getLength(), packet.getAddress(), probe);
+                    }
+                } catch (IOException e) {
+                    if (isRunning) {
+                        LOGGER.error("Failed to look for lookupservice packets. Lookup service will no longer discover new remote contexts.", e);
+                    }
+                    isRunning = false;
+                }
+            }
         }
 
         public void stop() {
@@ -124,20 +192,63 @@ class LookupServiceImpl implements LookupService {
 
     public LookupServiceImpl(String address, int port, float missedHeartbeatsBeforeRemoval, LocalLookupServiceImpl localContexts)
             throws SocketException, UnknownHostException {
+        this(address, port, missedHeartbeatsBeforeRemoval, localContexts, Collections.emptyList(), false, DEFAULT_GOSSIP_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param address                        the multicast address to listen on,
+     *                                       or null to run in unicast mode.
+     * @param port                           the port to listen on.
+     * @param missedHeartbeatsBeforeRemoval  the number of heartbeats a context
+     *                                       may miss before being removed.
+     * @param localContexts                  the local contexts.
+     * @param seeds                          the seeds to gossip to. If not
+     *                                       empty, the lookup service will run
+     *                                       in unicast mode.
+     * @param gossip                         true to gossip known heartbeats to
+     *                                       seeds and peers.
+     * @param gossipInterval                 the gossip interval in ms.
+     * @throws SocketException      possible exception
+     * @throws UnknownHostException possible exception
+     */
+    public LookupServiceImpl(String address, int port, float missedHeartbeatsBeforeRemoval, LocalLookupServiceImpl localContexts,
+                             List<InetSocketAddress> seeds, boolean gossip, int gossipInterval) throws SocketException, UnknownHostException {
         this.address = address;
         this.port = port;
+        this.missedHeartbeatsBeforeRemoval = missedHeartbeatsBeforeRemoval;
         this.localContexts = localContexts;
-
+        this.seeds = List.copyOf(seeds);
+        this.gossip = gossip;
+        this.gossipInterval = gossipInterval;
     }
 
+    /**
+     * Returns the current snapshot of the discovered contexts. This does not
+     * lock or allocate, unless the snapshot needs to be rebuilt because the
+     * local contexts have changed since it was built.
+     */
     @Override
-    public synchronized Map<String, RoboContextDescriptor> getDiscoveredContexts() {
-        Map<String, RoboContextDescriptor> map = new HashMap<>(entries.size() + localContexts.getDiscoveredContexts().size());
-        map.putAll(localContexts.getDiscoveredContexts());
-        for (Entry<String, RoboContextDescriptorEntry> entry : entries.entrySet()) {
-            map.put(entry.getKey(), entry.getValue().descriptor);
+    public Map<String, RoboContextDescriptor> getDiscoveredContexts() {
+        Snapshot current = snapshot;
+        if (current.localContexts != localContexts.getDiscoveredContexts()) {
+            synchronized (this) {
+                current = snapshot;
+                if (current.localContexts != localContexts.getDiscoveredContexts()) {
+                    current = updateSnapshot();
+                }
+            }
         }
-        return Collections.unmodifiableMap(map);
+        return current.contexts;
+    }
+
+    /**
+     * @return the version of the discovered contexts snapshot, incremented
+     * every time the snapshot is rebuilt.
+     */
+    long getDiscoveredContextsVersion() {
+        return snapshot.version;
     }
 
     @Override
@@ -154,12 +265,33 @@ class LookupServiceImpl implements LookupService {
     @Override
     public synchronized void start() throws IOException {
         stop();
-        socket = new MulticastSocket(port);
-        socket.joinGroup(InetAddress.getByName(address));
-        currentUpdater = new Updater();
+        if (isUnicast()) {
+            socket = new DatagramSocket(port);
+        } else {
+            MulticastSocket multicastSocket = new MulticastSocket(port);
+            multicastSocket.joinGroup(InetAddress.getByName(address));
+            socket = multicastSocket;
+        }
+        currentUpdater = new Updater(socket);
         Thread t = new Thread(currentUpdater, "LookupService listener");
         t.setDaemon(true);
         t.start();
+        timerExecutor = Executors.newSingleThreadScheduledExecutor(
+                new RoboThreadFactory(new ThreadGroup(NAME_TIMER_THREAD), NAME_TIMER_THREAD, true));
+        timerExecutor.scheduleAtFixedRate(this::removeExpiredEntries, EXPIRY_CHECK_INTERVAL_MILLIS, EXPIRY_CHECK_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        if (gossip) {
+            final DatagramSocket gossipSocket = socket;
+            timerExecutor.scheduleAtFixedRate(() -> gossip(gossipSocket), 0, gossipInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return true if the lookup service is listening for unicast heartbeats,
+     * rather than on a multicast group.
+     */
+    boolean isUnicast() {
+        return address == null || !seeds.isEmpty();
     }
 
     @Override
@@ -168,6 +300,14 @@ class LookupServiceImpl implements LookupService {
             currentUpdater.stop();
             currentUpdater = null;
         }
+        if (socket != null) {
+            socket.close();
+            socket = null;
+        }
+        if (timerExecutor != null) {
+            timerExecutor.shutdownNow();
+            timerExecutor = null;
+        }
     }
 
     @Override
@@ -175,4 +315,236 @@ class LookupServiceImpl implements LookupService {
         RoboContextDescriptorEntry entry = entries.get(id);
         return entry != null ? entry.descriptor : localContexts.getDescriptor(id);
     }
+
+    /**
+     * Listeners will also be notified about contexts registered with the local
+     * lookup service, since these are part of the discovered contexts.
+     */
+    @Override
+    public void addListener(LookupServiceListener listener) {
+        listeners.add(listener);
+        localContexts.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(LookupServiceListener listener) {
+        listeners.remove(listener);
+        localContexts.removeListener(listener);
+    }
+
+    /**
+     * Processes a received heartbeat. Heartbeats from known contexts are matched
+     * directly on the encoded bytes, and will only be decoded if the
+     * descriptor, or the address it was sent from, has changed.
+     *
+     * @param data    the buffer containing the packet.
+     * @param length  the length of the received packet.
+     * @param address the address the packet was received from.
+     * @param probe   a reusable key used for the lookup.
+     */
+    void process(byte[] data, int length, InetAddress address, IdKey probe) {
+        int messageLength = getValidHeartbeatLength(data, 0, length);
+        if (messageLength < 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        RoboContextDescriptorEntry entry = lookup(data, 0, probe);
+        if (entry != null && isUnchanged(entry, data, 0, messageLength) && Objects.equals(entry.address, address)) {
+            entry.lastAccess = now;
+        } else {
+            addEntry(probe, data, 0, messageLength, address, now);
+        }
+    }
+
+    /**
+     * Processes a received gossip message. The gossiped heartbeats are handled
+     * like received heartbeats, except that they will never make an entry
+     * appear more recently heard from than it was by the peer, and that they
+     * will not replace an entry heard from more recently.
+     *
+     * @param data   the buffer containing the packet.
+     * @param length the length of the received packet.
+     * @param source the address of the peer that sent the gossip.
+     * @param probe  a reusable key used for the lookup.
+     */
+    void processGossip(byte[] data, int length, InetSocketAddress source, IdKey probe) {
+        if (length < GossipMessageCodec.HEADER_LENGTH || !GossipMessageCodec.isSupportedVersion(data)) {
+            LOGGER.debug("Bad gossip packet sent to LookupService! Ignoring.");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (gossip) {
+            peers.put(source, now);
+        }
+        int count = GossipMessageCodec.getCount(data);
+        int offset = GossipMessageCodec.HEADER_LENGTH;
+        for (int i = 0; i < count && offset + GossipMessageCodec.ENTRY_HEADER_LENGTH <= length; i++) {
+            int heartbeatOffset = offset + GossipMessageCodec.ENTRY_HEADER_LENGTH + GossipMessageCodec.getAddressLength(data, offset);
+            int messageLength = getValidHeartbeatLength(data, heartbeatOffset, length);
+            if (messageLength < 0) {
+                return;
+            }
+            long lastAccess = now - GossipMessageCodec.getAge(data, offset);
+            if (!isExpired(HearbeatMessageCodec.getHeartBeatInterval(data, heartbeatOffset), lastAccess, now)) {
+                RoboContextDescriptorEntry entry = lookup(data, heartbeatOffset, probe);
+                if (entry != null && isUnchanged(entry, data, heartbeatOffset, messageLength)) {
+                    entry.lastAccess = Math.max(entry.lastAccess, lastAccess);
+                } else if (entry == null || lastAccess > entry.lastAccess) {
+                    InetAddress address = GossipMessageCodec.getAddress(data, offset);
+                    addEntry(probe, data, heartbeatOffset, messageLength, address != null ? address : source.getAddress(), lastAccess);
+                }
+            }
+            offset = heartbeatOffset + messageLength;
+        }
+    }
+
+    /**
+     * Sends gossip messages with all known remote entries to the seeds and the
+     * peers that have been heard from recently.
+     *
+     * @param gossipSocket the socket to send the gossip from. Peers will use
+     *                     the address of this socket to gossip back.
+     */
+    void gossip(DatagramSocket gossipSocket) {
+        long now = System.currentTimeMillis();
+        peers.values().removeIf(lastHeard -> now - lastHeard > gossipInterval * missedHeartbeatsBeforeRemoval);
+        List<RoboContextDescriptorEntry> liveEntries = entries.values().stream().filter(entry -> !isExpired(entry, now))
+                .collect(Collectors.toList());
+        List<byte[]> messages = GossipMessageCodec.encode(liveEntries, now, MAX_PACKET_SIZE);
+        Set<InetSocketAddress> targets = new LinkedHashSet<>(seeds);
+        targets.addAll(peers.keySet());
+        for (InetSocketAddress target : targets) {
+            for (byte[] message : messages) {
+                try {
+                    gossipSocket.send(new DatagramPacket(message, message.length, target));
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to gossip to {}", target, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the buffer contains a complete heartbeat message at the
+     * specified offset.
+     *
+     * @return the length of the heartbeat message, or -1 if not valid.
+     */
+    private static int getValidHeartbeatLength(byte[] data, int offset, int length) {
+        // First a few quick checks. We want to reject updating anything as
+        // early as possible
+        if (offset + HearbeatMessageCodec.ID_OFFSET > length || !HearbeatMessageCodec.isHeartBeatMessage(data, offset)) {
+            LOGGER.debug("Non-heartbeat packet sent to LookupService! Ignoring.");
+            return -1;
+        }
+        if (!HearbeatMessageCodec.isSupportedVersion(data, offset)) {
+            LOGGER.debug("Wrong protocol heartbeat packet sent to LookupService! Ignoring.");
+            return -1;
+        }
+        int messageLength = HearbeatMessageCodec.getMessageLength(data, offset);
+        int idLength = HearbeatMessageCodec.getIdLength(data, offset);
+        if (messageLength < 0 || offset + messageLength > length || HearbeatMessageCodec.ID_OFFSET + idLength > messageLength) {
+            LOGGER.debug("Truncated heartbeat packet sent to LookupService! Ignoring.");
+            return -1;
+        }
+        return messageLength;
+    }
+
+    private RoboContextDescriptorEntry lookup(byte[] data, int offset, IdKey probe) {
+        return encodedIdIndex.get(probe.set(data, offset + HearbeatMessageCodec.ID_OFFSET, HearbeatMessageCodec.getIdLength(data, offset)));
+    }
+
+    private static boolean isUnchanged(RoboContextDescriptorEntry entry, byte[] data, int offset, int messageLength) {
+        return Arrays.equals(entry.message, 0, entry.message.length, data, offset, offset + messageLength);
+    }
+
+    /**
+     * Adds, or replaces, the entry for the heartbeat message at the specified
+     * offset. The probe must have been set to the id of the message.
+     */
+    private void addEntry(IdKey probe, byte[] data, int offset, int messageLength, InetAddress address, long lastAccess) {
+        RoboContextDescriptorEntry entry = new RoboContextDescriptorEntry();
+        entry.message = Arrays.copyOfRange(data, offset, offset + messageLength);
+        entry.descriptor = HearbeatMessageCodec.decode(entry.message);
+        entry.address = address;
+        entry.lastAccess = lastAccess;
+        RoboContextDescriptorEntry oldEntry;
+        synchronized (this) {
+            oldEntry = entries.put(entry.descriptor.getId(), entry);
+            encodedIdIndex.put(probe.copy(), entry);
+            updateSnapshot();
+        }
+        for (LookupServiceListener listener : listeners) {
+            try {
+                if (oldEntry == null) {
+                    listener.contextAdded(entry.descriptor);
+                } else {
+                    listener.contextChanged(oldEntry.descriptor, entry.descriptor);
+                }
+            } catch (Throwable t) {
+                LOGGER.error("Lookup service listener failed, listener:{}", listener, t);
+            }
+        }
+    }
+
+    /**
+     * Removes the entries that have not been heard from for longer than their
+     * advertised heartbeat interval times the allowed number of missed
+     * heartbeats.
+     */
+    void removeExpiredEntries() {
+        long now = System.currentTimeMillis();
+        for (RoboContextDescriptorEntry entry : entries.values()) {
+            if (isExpired(entry, now)) {
+                removeEntry(entry, now);
+            }
+        }
+    }
+
+    private boolean isExpired(RoboContextDescriptorEntry entry, long now) {
+        return isExpired(entry.descriptor.getHeartBeatInterval(), entry.lastAccess, now);
+    }
+
+    private boolean isExpired(int heartBeatInterval, long lastAccess, long now) {
+        if (heartBeatInterval <= 0) {
+            heartBeatInterval = ContextEmitter.DEFAULT_HEARTBEAT_INTERVAL;
+        }
+        return now - lastAccess > heartBeatInterval * missedHeartbeatsBeforeRemoval;
+    }
+
+    private void removeEntry(RoboContextDescriptorEntry entry, long now) {
+        synchronized (this) {
+            // Could have been heard from, or replaced, since checked
+            if (!isExpired(entry, now) || !entries.remove(entry.descriptor.getId(), entry)) {
+                return;
+            }
+            encodedIdIndex.remove(new IdKey().set(entry.message, HearbeatMessageCodec.ID_OFFSET,
+                    HearbeatMessageCodec.getIdLength(entry.message, 0)), entry);
+            updateSnapshot();
+        }
+        LOGGER.debug("Removing context {}, last heard from {} ms ago", entry.descriptor.getId(), now - entry.lastAccess);
+        for (LookupServiceListener listener : listeners) {
+            try {
+                listener.contextRemoved(entry.descriptor);
+            } catch (Throwable t) {
+                LOGGER.error("Lookup service listener failed, listener:{}", listener, t);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds and publishes the snapshot. Must be called holding the lock on
+     * this, so that snapshots are published in version order.
+     */
+    private Snapshot updateSnapshot() {
+        Map<String, RoboContextDescriptor> local = localContexts.getDiscoveredContexts();
+        Map<String, RoboContextDescriptor> map = new HashMap<>(entries.size() + local.size());
+        map.putAll(local);
+        for (Entry<String, RoboContextDescriptorEntry> entry : entries.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().descriptor);
+        }
+        Snapshot newSnapshot = new Snapshot(snapshot.version + 1, local, Collections.unmodifiableMap(map));
+        snapshot = newSnapshot;
+        return newSnapshot;
+    }
 }
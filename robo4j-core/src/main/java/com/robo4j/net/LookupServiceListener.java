@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+/**
+ * Listener notified by a {@link LookupService} when the set of discovered
+ * contexts changes. Callbacks are made from the thread of the lookup service
+ * detecting the change, and should not block.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public interface LookupServiceListener {
+	/**
+	 * Called when a context has been discovered.
+	 *
+	 * @param descriptor
+	 *            the descriptor of the new context.
+	 */
+	void contextAdded(RoboContextDescriptor descriptor);
+
+	/**
+	 * Called when a context has been removed, for example because it has
+	 * missed too many heartbeats.
+	 *
+	 * @param descriptor
+	 *            the last known descriptor of the removed context.
+	 */
+	void contextRemoved(RoboContextDescriptor descriptor);
+
+	/**
+	 * Called when an already known context advertises a new descriptor, or is
+	 * heard from at a new address.
+	 *
+	 * @param oldDescriptor
+	 *            the previous descriptor.
+	 * @param newDescriptor
+	 *            the new descriptor.
+	 */
+	void contextChanged(RoboContextDescriptor oldDescriptor, RoboContextDescriptor newDescriptor);
+}
@@ -17,12 +17,26 @@
 package com.robo4j.net;
 
 import com.robo4j.RoboContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Use this to get a reference to the default lookup service. It can also be
  * used for creating a new lookup service.
+ * <p>
+ * The default lookup service listens on the multicast group, unless the
+ * {@value #PROPERTY_SEEDS} system property is set to a list of seeds (see
+ * {@link #parseSeeds(String, int)}), in which case it runs in unicast mode.
+ * Set {@value #PROPERTY_GOSSIP} to true to also gossip the known contexts to
+ * the seeds.
  * 
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -30,6 +44,9 @@ import java.util.concurrent.atomic.AtomicReference;
 public final class LookupServiceProvider {
 	public static final String DEFAULT_MULTICAST_ADDRESS = "238.12.15.254";
 	public static final int DEFAULT_PORT = 0x0FFE;
+	public static final String PROPERTY_SEEDS = "robo4j.lookup.seeds";
+	public static final String PROPERTY_GOSSIP = "robo4j.lookup.gossip";
+	private static final Logger LOGGER = LoggerFactory.getLogger(LookupServiceProvider.class);
 	private static final float DEFAULT_HEARTBEATS_BEFORE_REMOVAL = 3.5f;
 	private static final LocalLookupServiceImpl LOCAL_CONTEXTS = new LocalLookupServiceImpl();
 	private static final AtomicReference<LookupService> DEFAULT_SERVICE = new AtomicReference<LookupService>(createDefaultService());
@@ -49,13 +66,82 @@ public final class LookupServiceProvider {
 		DEFAULT_SERVICE.set(lookupService);
 	}
 
+	/**
+	 * Parses a comma separated list of seeds on the form host:port. Hosts
+	 * without a port will use the default port. IPv6 addresses must be
+	 * enclosed in brackets, for example [fe80::1]:4094, since the port could
+	 * not be told apart from the address otherwise.
+	 *
+	 * @param seeds
+	 *            the seeds to parse, for example
+	 *            "192.168.1.10:4094,basestation,[fe80::1]".
+	 * @param defaultPort
+	 *            the port to use for seeds without a port.
+	 * @return the list of seed addresses.
+	 * @throws UnknownHostException
+	 *             if a host could not be resolved.
+	 * @throws IllegalArgumentException
+	 *             if a seed is malformed, for example an IPv6 address without
+	 *             brackets.
+	 */
+	public static List<InetSocketAddress> parseSeeds(String seeds, int defaultPort) throws UnknownHostException {
+		List<InetSocketAddress> addresses = new ArrayList<>();
+		for (String seed : seeds.split(",")) {
+			seed = seed.trim();
+			if (seed.isEmpty()) {
+				continue;
+			}
+			String host = seed;
+			String port = null;
+			if (seed.startsWith("[")) {
+				int endIndex = seed.indexOf(']');
+				if (endIndex < 0 || (endIndex < seed.length() - 1 && seed.charAt(endIndex + 1) != ':')) {
+					throw new IllegalArgumentException("Malformed seed: " + seed + ", expected [address]:port");
+				}
+				host = seed.substring(1, endIndex);
+				if (endIndex < seed.length() - 1) {
+					port = seed.substring(endIndex + 2);
+				}
+			} else {
+				int separatorIndex = seed.indexOf(':');
+				if (separatorIndex != seed.lastIndexOf(':')) {
+					throw new IllegalArgumentException("IPv6 seed " + seed + " must be written as [address]:port");
+				}
+				if (separatorIndex >= 0) {
+					host = seed.substring(0, separatorIndex);
+					port = seed.substring(separatorIndex + 1);
+				}
+			}
+			if (host.isEmpty()) {
+				throw new IllegalArgumentException("Malformed seed: " + seed + ", the host is missing");
+			}
+			addresses.add(new InetSocketAddress(InetAddress.getByName(host),
+					port == null ? defaultPort : Integer.parseInt(port)));
+		}
+		return addresses;
+	}
+
 	private static LookupService createDefaultService() {
+		return createDefaultService(System.getProperty(PROPERTY_SEEDS), Boolean.getBoolean(PROPERTY_GOSSIP));
+	}
+
+	static LookupService createDefaultService(String seeds, boolean gossip) {
+		List<InetSocketAddress> seedAddresses = Collections.emptyList();
+		if (seeds != null) {
+			try {
+				seedAddresses = parseSeeds(seeds, DEFAULT_PORT);
+			} catch (UnknownHostException | IllegalArgumentException e) {
+				LOGGER.error("Could not use the lookup service seeds {}, falling back to multicast", seeds, e);
+			}
+		}
 		//@formatter:off
 		return DefaultLookupServiceBuilder.Build()
 				.setAddress(DEFAULT_MULTICAST_ADDRESS)
 				.setPort(DEFAULT_PORT)
 				.setMissedHeartbeatsBeforeRemoval(DEFAULT_HEARTBEATS_BEFORE_REMOVAL)
 				.setLocalContexts(LOCAL_CONTEXTS)
+				.setSeeds(seedAddresses)
+				.setGossip(gossip)
 				.build();
 		//@formatter:on
 	}
@@ -16,6 +16,8 @@
  */
 package com.robo4j.net;
 
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.LifecycleState;
 import com.robo4j.RoboContext;
 import com.robo4j.configuration.Configuration;
 import org.slf4j.Logger;
@@ -26,9 +28,26 @@ import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 /**
  * Message client. Normally used by RemoteRoboContext to communicate with a
@@ -44,6 +63,26 @@ public class MessageClient {
     public final static String KEY_RETRIES = "retries";
     public final static int DEFAULT_SO_TIMEOUT = 2000000;
     public final static boolean DEFAULT_KEEP_ALIVE = true;
+    public final static String KEY_REQUEST_TIMEOUT = "requestTimeout";
+    public final static int DEFAULT_REQUEST_TIMEOUT = 5000;
+    public final static String KEY_SHARED_MEMORY = "sharedMemory";
+    public final static String KEY_SHARED_MEMORY_DIRECTORY = "sharedMemoryDirectory";
+    public final static String KEY_SHARED_MEMORY_CAPACITY = "sharedMemoryCapacity";
+    public final static boolean DEFAULT_SHARED_MEMORY = false;
+    public final static String DEFAULT_SHARED_MEMORY_DIRECTORY = "/dev/shm";
+    public final static int DEFAULT_SHARED_MEMORY_CAPACITY = 1 << 20;
+    public final static String KEY_ACKNOWLEDGED = "acknowledged";
+    public final static String KEY_REPLAY_BUFFER_SIZE = "replayBufferSize";
+    public final static String KEY_ACK_WINDOW = "ackWindow";
+    public final static boolean DEFAULT_ACKNOWLEDGED = false;
+    public final static int DEFAULT_REPLAY_BUFFER_SIZE = 1024;
+    public final static int DEFAULT_ACK_WINDOW = 32;
+    public final static String KEY_COMPRESSION = "compression";
+    public final static String KEY_COMPRESSION_THRESHOLD = "compressionThreshold";
+    public final static String KEY_COMPRESSION_LEVEL = "compressionLevel";
+    public final static boolean DEFAULT_COMPRESSION = false;
+    public final static int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    public final static int DEFAULT_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
 
     /*
      * Executor for incoming messages from the server
@@ -63,33 +102,44 @@ public class MessageClient {
      */
     private static class RemoteReferenceListener implements Runnable {
         private final Socket socket;
+        private final Map<Long, CompletableFuture<Object>> pendingRequests;
+        private final SharedMemoryChannel.FrameHandler frameHandler;
+        private final Runnable connectionLostHandler;
         private volatile boolean quit;
+        private volatile boolean lost;
 
-        public RemoteReferenceListener(Socket socket) {
+        public RemoteReferenceListener(Socket socket, Map<Long, CompletableFuture<Object>> pendingRequests,
+                                       SharedMemoryChannel.FrameHandler frameHandler, Runnable connectionLostHandler) {
             this.socket = socket;
+            this.pendingRequests = pendingRequests;
+            this.frameHandler = frameHandler;
+            this.connectionLostHandler = connectionLostHandler;
         }
 
         @Override
         public void run() {
             ObjectInputStream ois = getStream();
-            while (!quit) {
+            while (!quit && ois != null) {
                 try {
-                    String uuid = ois.readUTF();
-                    String id = ois.readUTF();
-                    Object message = ois.readObject();
-                    RoboContext context = LookupServiceProvider.getDefaultLookupService().getContext(uuid);
-                    if (context == null) {
-                        LOGGER.debug("Failed to find recipient context {} for message {}", uuid, message);
-                    } else {
-                        context.getReference(id).sendMessage(message);
-                    }
+                    frameHandler.handle(ois);
                 } catch (SocketTimeoutException e) {
                     // This will likely happen.
                     LOGGER.error(e.getMessage());
+                } catch (IOException e) {
+                    if (!quit) {
+                        LOGGER.debug("Connection to server lost", e);
+                    }
+                    break;
                 } catch (Exception e) {
                     LOGGER.debug("Message delivery failed for recipient", e);
                 }
             }
+            // If shut down, the owner decides what to do with the requests
+            if (!quit) {
+                lost = true;
+                failPendingRequests(pendingRequests);
+                connectionLostHandler.run();
+            }
         }
 
         private ObjectInputStream getStream() {
@@ -105,6 +155,29 @@ public class MessageClient {
             quit = true;
         }
 
+        /**
+         * @return true if the connection was lost while listening.
+         */
+        public boolean isLost() {
+            return lost;
+        }
+
+    }
+
+    /*
+     * A message sent in acknowledged mode, kept until the server has
+     * acknowledged it.
+     */
+    private static class SequencedMessage {
+        private final long sequenceNumber;
+        private final String id;
+        private final Object message;
+
+        SequencedMessage(long sequenceNumber, String id, Object message) {
+            this.sequenceNumber = sequenceNumber;
+            this.id = id;
+            this.message = message;
+        }
     }
 
     private final URI messageServerURI;
@@ -115,15 +188,38 @@ public class MessageClient {
     private int failCount;
     private final int maxFailCount;
     private RemoteReferenceListener remoteReferenceListener;
+    private SharedMemoryChannel sharedMemoryChannel;
+    private final AtomicLong correlationIdCounter = new AtomicLong();
+    private final Map<Long, CompletableFuture<Object>> pendingRequests = new ConcurrentHashMap<>();
+    private final boolean acknowledged;
+    private final String sessionId = UUID.randomUUID().toString();
+    private final int replayBufferSize;
+    private final int ackWindow;
+    // Guarded by itself, since acknowledgements must not wait for senders
+    private final Deque<SequencedMessage> replayBuffer = new ArrayDeque<>();
+    private long nextSequenceNumber = 1;
+    private final CompressionMetrics compressionMetrics = new CompressionMetrics();
+    private MessageCompressor compressor;
+
+    /*
+     * Writes the arguments of a request, after the correlation id.
+     */
+    private interface RequestArguments {
+        void write(DataOutput out) throws IOException;
+    }
 
     public MessageClient(URI messageServerURI, String sourceUUID, Configuration configuration) {
         this.messageServerURI = messageServerURI;
         this.sourceUUID = sourceUUID;
         this.configuration = configuration;
         this.maxFailCount = configuration.getInteger(KEY_RETRIES, 3);
+        this.acknowledged = configuration.getBoolean(KEY_ACKNOWLEDGED, DEFAULT_ACKNOWLEDGED);
+        this.replayBufferSize = Math.max(2, configuration.getInteger(KEY_REPLAY_BUFFER_SIZE, DEFAULT_REPLAY_BUFFER_SIZE));
+        // The server must acknowledge before the replay buffer fills up
+        this.ackWindow = Math.max(1, Math.min(configuration.getInteger(KEY_ACK_WINDOW, DEFAULT_ACK_WINDOW), replayBufferSize / 2));
     }
 
-    public void connect() throws UnknownHostException, IOException {
+    public synchronized void connect() throws UnknownHostException, IOException {
         if (socket == null || socket.isClosed() || !socket.isConnected()) {
 //			socket = new Socket(messageServerURI.getHost(), messageServerURI.getPort());
             socket = new Socket(messageServerURI.getHost(), messageServerURI.getPort());
@@ -133,58 +229,460 @@ public class MessageClient {
         objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
         objectOutputStream.writeShort(MessageProtocolConstants.MAGIC);
         objectOutputStream.writeUTF(sourceUUID);
-        remoteReferenceListener = new RemoteReferenceListener(socket);
+        remoteReferenceListener = new RemoteReferenceListener(socket, pendingRequests, this::handleServerFrame,
+                this::wakeUpReplayBufferWaiters);
         remoteReferenceCallExecutor.execute(remoteReferenceListener);
+        if (configuration.getBoolean(KEY_COMPRESSION, DEFAULT_COMPRESSION)) {
+            negotiateCompression();
+        }
+        if (acknowledged) {
+            resumeSession();
+        }
+        closeSharedMemory();
+        if (configuration.getBoolean(KEY_SHARED_MEMORY, DEFAULT_SHARED_MEMORY)) {
+            openSharedMemory();
+        }
     }
 
-    public void sendMessage(String id, Object message) throws IOException {
+    /**
+     * @return true if the messages are currently sent over shared memory.
+     */
+    public synchronized boolean isUsingSharedMemory() {
+        return sharedMemoryChannel != null;
+    }
+
+    /*
+     * Creates the ring buffers and asks the server to continue the
+     * communication over them. Called with the lock held, so nothing else is
+     * sent until the server has answered. If anything fails, the socket will
+     * continue to be used.
+     */
+    private void openSharedMemory() throws IOException {
+        Path directory = Path.of(configuration.getString(KEY_SHARED_MEMORY_DIRECTORY, DEFAULT_SHARED_MEMORY_DIRECTORY));
+        if (!Files.isDirectory(directory)) {
+            LOGGER.debug("Shared memory directory {} not available - will use the socket", directory);
+            return;
+        }
+        final SharedMemoryChannel channel;
+        try {
+            channel = SharedMemoryChannel.create(directory,
+                    configuration.getInteger(KEY_SHARED_MEMORY_CAPACITY, DEFAULT_SHARED_MEMORY_CAPACITY), getRequestTimeout());
+        } catch (IOException e) {
+            LOGGER.debug("Could not create shared memory in {} - will use the socket", directory, e);
+            return;
+        }
+        channel.startReceiving("Shared memory receiver for " + messageServerURI, this::handleServerFrame);
         try {
-            deliverMessage(id, message);
+            handshake(MessageProtocolConstants.REQUEST_SHARED_MEMORY, out -> {
+                out.writeUTF(channel.getOutboundPath().toString());
+                out.writeUTF(channel.getInboundPath().toString());
+            });
+            sharedMemoryChannel = channel;
         } catch (IOException e) {
-            if (failCount < maxFailCount) {
+            LOGGER.debug("Server {} declined shared memory - will use the socket", messageServerURI, e);
+            channel.close(true);
+        }
+    }
+
+    /*
+     * Asks the server if compressed messages can be sent. If not, objects are
+     * sent like before. The compressor is kept across reconnects.
+     */
+    private void negotiateCompression() {
+        try {
+            handshake(MessageProtocolConstants.REQUEST_COMPRESSION, out -> {
+            });
+            if (compressor == null) {
+                compressor = new MessageCompressor(configuration.getInteger(KEY_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL),
+                        configuration.getInteger(KEY_COMPRESSION_THRESHOLD, DEFAULT_COMPRESSION_THRESHOLD), compressionMetrics);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Server {} declined compression - will send uncompressed", messageServerURI, e);
+            endCompressor();
+        }
+    }
+
+    private synchronized void endCompressor() {
+        if (compressor != null) {
+            compressor.end();
+            compressor = null;
+        }
+    }
+
+    /*
+     * Tells the server which session the connection belongs to, drops the
+     * messages the server already got, and resends the rest in order. Called
+     * with the lock held, so that nothing else is sent in between.
+     */
+    private void resumeSession() throws IOException {
+        long lastReceived = (Long) handshake(MessageProtocolConstants.REQUEST_SESSION, out -> {
+            out.writeUTF(sessionId);
+            out.writeInt(ackWindow);
+        });
+        acknowledge(lastReceived);
+        final List<SequencedMessage> unacknowledged;
+        synchronized (replayBuffer) {
+            unacknowledged = new ArrayList<>(replayBuffer);
+        }
+        if (!unacknowledged.isEmpty()) {
+            LOGGER.debug("Resending {} unacknowledged messages to {}", unacknowledged.size(), messageServerURI);
+        }
+        for (SequencedMessage sequencedMessage : unacknowledged) {
+            writeSequencedMessage(objectOutputStream, sequencedMessage);
+        }
+        objectOutputStream.flush();
+    }
+
+    /*
+     * Sends a request directly on the socket and waits for the response. Only
+     * used while connecting.
+     */
+    private Object handshake(int requestType, RequestArguments arguments) throws IOException {
+        long correlationId = correlationIdCounter.incrementAndGet();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        pendingRequests.put(correlationId, future);
+        objectOutputStream.writeUTF("");
+        objectOutputStream.writeByte(requestType);
+        objectOutputStream.writeLong(correlationId);
+        arguments.write(objectOutputStream);
+        objectOutputStream.flush();
+        try {
+            return future.get(getRequestTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + messageServerURI);
+        } catch (ExecutionException e) {
+            throw new IOException("Request " + requestType + " to " + messageServerURI + " failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Request " + requestType + " to " + messageServerURI + " timed out", e);
+        } finally {
+            pendingRequests.remove(correlationId);
+        }
+    }
+
+    private synchronized void closeSharedMemory() {
+        if (sharedMemoryChannel != null) {
+            sharedMemoryChannel.close(true);
+            sharedMemoryChannel = null;
+        }
+    }
+
+    /**
+     * Sends a message to a unit in the remote context. If sending fails, the
+     * client will reconnect and try again, up to the configured number of
+     * retries.
+     * <p>
+     * In acknowledged mode, the message is also kept until acknowledged by the
+     * server, and resent after reconnecting if it may not have arrived. This
+     * method will then block while the replay buffer is full. If the server
+     * does not acknowledge within the request timeout, or the connection is
+     * lost, the client reconnects and resends the unacknowledged messages, up
+     * to the configured number of retries.
+     *
+     * @param id      the id of the unit.
+     * @param message the message.
+     * @throws IOException if the message could not be sent.
+     */
+    public synchronized void sendMessage(String id, Object message) throws IOException {
+        SequencedMessage sequencedMessage = acknowledged ? enqueue(id, message) : null;
+        while (true) {
+            try {
+                if (sequencedMessage == null) {
+                    deliverMessage(id, message);
+                } else {
+                    sendFrame(out -> writeSequencedMessage(out, sequencedMessage));
+                }
+                failCount = 0;
+                return;
+            } catch (IOException e) {
+                if (failCount >= maxFailCount) {
+                    throw e;
+                }
                 failCount++;
+                LOGGER.debug("Failed to send message to {} - reconnecting", messageServerURI, e);
+                reconnect();
+                if (sequencedMessage != null) {
+                    // Already resent with the rest of the replay buffer
+                    failCount = 0;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the metrics for the compression of the messages sent. Only
+     * updated once compression has been negotiated with the server.
+     */
+    public CompressionMetrics getCompressionMetrics() {
+        return compressionMetrics;
+    }
+
+    /**
+     * @return the number of messages sent in acknowledged mode, which have not
+     * yet been acknowledged by the server.
+     */
+    public int getUnacknowledgedCount() {
+        synchronized (replayBuffer) {
+            return replayBuffer.size();
+        }
+    }
+
+    /**
+     * Requests the value of an attribute of a unit in the remote context.
+     *
+     * @param id        the id of the unit.
+     * @param attribute the attribute to read.
+     * @param <R>       the attribute type.
+     * @return a future for the value of the attribute.
+     */
+    public <R> CompletableFuture<R> getAttribute(String id, AttributeDescriptor<R> attribute) {
+        return sendRequest(id, MessageProtocolConstants.REQUEST_ATTRIBUTE, out -> {
+            out.writeUTF(attribute.getAttributeName());
+            out.writeUTF(attribute.getAttributeType().getName());
+        }).thenApply(attribute.getAttributeType()::cast);
+    }
+
+    /**
+     * Requests the values of all attributes of a unit in the remote context.
+     *
+     * @param id the id of the unit.
+     * @return a future for the values of the attributes.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Map<AttributeDescriptor<?>, Object>> getAttributes(String id) {
+        return sendRequest(id, MessageProtocolConstants.REQUEST_ATTRIBUTES, null)
+                .thenApply(response -> (Map<AttributeDescriptor<?>, Object>) response);
+    }
+
+    /**
+     * Requests the known attributes of a unit in the remote context.
+     *
+     * @param id the id of the unit.
+     * @return a future for the known attributes.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Collection<AttributeDescriptor<?>>> getKnownAttributes(String id) {
+        return sendRequest(id, MessageProtocolConstants.REQUEST_KNOWN_ATTRIBUTES, null)
+                .thenApply(response -> (Collection<AttributeDescriptor<?>>) response);
+    }
+
+    /**
+     * Requests the life cycle state of a unit in the remote context.
+     *
+     * @param id the id of the unit.
+     * @return a future for the life cycle state.
+     */
+    public CompletableFuture<LifecycleState> getState(String id) {
+        return sendRequest(id, MessageProtocolConstants.REQUEST_STATE, null).thenApply(LifecycleState.class::cast);
+    }
+
+    /**
+     * Requests the message type of a unit in the remote context. The future
+     * will fail if the type is not available locally.
+     *
+     * @param id the id of the unit.
+     * @return a future for the message type.
+     */
+    public CompletableFuture<Class<?>> getMessageType(String id) {
+        return sendRequest(id, MessageProtocolConstants.REQUEST_MESSAGE_TYPE, null).thenApply(response -> {
+            try {
+                return Class.forName((String) response);
+            } catch (ClassNotFoundException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private CompletableFuture<Object> sendRequest(String id, int requestType, RequestArguments arguments) {
+        long correlationId = correlationIdCounter.incrementAndGet();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        pendingRequests.put(correlationId, future);
+        try {
+            if (!isConnected()) {
                 connect();
-                sendMessage(id, message);
-            } else {
-                throw e;
             }
+            sendFrame(out -> {
+                out.writeUTF(id);
+                out.writeByte(requestType);
+                out.writeLong(correlationId);
+                if (arguments != null) {
+                    arguments.write(out);
+                }
+            });
+        } catch (IOException e) {
+            pendingRequests.remove(correlationId);
+            future.completeExceptionally(e);
         }
+        return future;
     }
 
     private void deliverMessage(String id, Object message) throws IOException {
+        sendFrame(out -> writeMessage(out, id, message));
+    }
+
+    /*
+     * Sends a frame over shared memory if available, otherwise over the
+     * socket. All frames take the same way, so that they arrive in order.
+     * Objects are not compressed in shared memory, since copying them is
+     * cheaper than deflating them.
+     */
+    private synchronized void sendFrame(SharedMemoryChannel.FrameWriter writer) throws IOException {
+        if (sharedMemoryChannel != null) {
+            sharedMemoryChannel.send(writer);
+        } else {
+            writer.write(objectOutputStream);
+            objectOutputStream.flush();
+        }
+    }
+
+    /*
+     * Waits for room in the replay buffer, and adds the message to it. If
+     * nothing is acknowledged in time, or the connection is lost, reconnects,
+     * which resends the unacknowledged messages in order.
+     */
+    private SequencedMessage enqueue(String id, Object message) throws IOException {
+        IOException failure = null;
+        for (int attempt = 0; ; attempt++) {
+            synchronized (replayBuffer) {
+                if (awaitReplayBufferRoom()) {
+                    SequencedMessage sequencedMessage = new SequencedMessage(nextSequenceNumber++, id, message);
+                    replayBuffer.addLast(sequencedMessage);
+                    return sequencedMessage;
+                }
+            }
+            if (attempt >= maxFailCount) {
+                throw new IOException("Timed out waiting for acknowledgements from " + messageServerURI, failure);
+            }
+            LOGGER.debug("No acknowledgements from {} - reconnecting", messageServerURI);
+            try {
+                reconnect();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to reconnect to {}", messageServerURI, e);
+                failure = e;
+            }
+        }
+    }
+
+    /*
+     * Returns true when there is room in the replay buffer, false if the
+     * connection is lost or nothing was acknowledged within the request
+     * timeout. Called with the replay buffer lock held.
+     */
+    private boolean awaitReplayBufferRoom() throws IOException {
+        long deadline = System.currentTimeMillis() + getRequestTimeout();
+        while (replayBuffer.size() >= replayBufferSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || isConnectionLost()) {
+                return false;
+            }
+            try {
+                replayBuffer.wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for acknowledgements from " + messageServerURI);
+            }
+        }
+        return true;
+    }
+
+    private boolean isConnectionLost() {
+        return socket == null || socket.isClosed() || remoteReferenceListener == null || remoteReferenceListener.isLost();
+    }
+
+    private void wakeUpReplayBufferWaiters() {
+        synchronized (replayBuffer) {
+            replayBuffer.notifyAll();
+        }
+    }
+
+    /*
+     * Drops all messages up to, and including, the acknowledged sequence
+     * number from the replay buffer.
+     */
+    private void acknowledge(long sequenceNumber) {
+        synchronized (replayBuffer) {
+            while (!replayBuffer.isEmpty() && replayBuffer.peekFirst().sequenceNumber <= sequenceNumber) {
+                replayBuffer.removeFirst();
+            }
+            replayBuffer.notifyAll();
+        }
+    }
+
+    /*
+     * Drops the current connection and connects again. In acknowledged mode,
+     * unacknowledged messages are resent.
+     */
+    synchronized void reconnect() throws IOException {
+        closeSharedMemory();
+        if (remoteReferenceListener != null) {
+            remoteReferenceListener.shutdown();
+        }
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Do not care.
+            }
+        }
+        failPendingRequests(pendingRequests);
+        connect();
+    }
+
+    private void writeSequencedMessage(DataOutput out, SequencedMessage sequencedMessage) throws IOException {
+        out.writeUTF(sequencedMessage.id);
+        out.writeByte(MessageProtocolConstants.SEQUENCED_MESSAGE);
+        out.writeLong(sequencedMessage.sequenceNumber);
+        writeMessageData(out, sequencedMessage.message);
+    }
+
+    private void writeMessage(DataOutput out, String id, Object message) throws IOException {
+        out.writeUTF(id);
+        writeMessageData(out, message);
+    }
+
+    private void writeMessageData(DataOutput out, Object message) throws IOException {
         // TODO : replace by switch
-        objectOutputStream.writeUTF(id);
         if (message instanceof String) {
-            objectOutputStream.writeByte(MessageProtocolConstants.MOD_UTF8);
-            objectOutputStream.writeUTF((String) message);
+            out.writeByte(MessageProtocolConstants.MOD_UTF8);
+            out.writeUTF((String) message);
         } else if (message instanceof Number) {
             if (message instanceof Float) {
-                objectOutputStream.writeByte(MessageProtocolConstants.FLOAT);
-                objectOutputStream.writeFloat((Float) message);
+                out.writeByte(MessageProtocolConstants.FLOAT);
+                out.writeFloat((Float) message);
             } else if (message instanceof Integer) {
-                objectOutputStream.writeByte(MessageProtocolConstants.INT);
-                objectOutputStream.writeInt((Integer) message);
+                out.writeByte(MessageProtocolConstants.INT);
+                out.writeInt((Integer) message);
             } else if (message instanceof Double) {
-                objectOutputStream.writeByte(MessageProtocolConstants.DOUBLE);
-                objectOutputStream.writeDouble((Double) message);
+                out.writeByte(MessageProtocolConstants.DOUBLE);
+                out.writeDouble((Double) message);
             } else if (message instanceof Long) {
-                objectOutputStream.writeByte(MessageProtocolConstants.LONG);
-                objectOutputStream.writeLong((Long) message);
+                out.writeByte(MessageProtocolConstants.LONG);
+                out.writeLong((Long) message);
             } else if (message instanceof Byte) {
-                objectOutputStream.writeByte(MessageProtocolConstants.BYTE);
-                objectOutputStream.writeByte((Byte) message);
+                out.writeByte(MessageProtocolConstants.BYTE);
+                out.writeByte((Byte) message);
             } else if (message instanceof Short) {
-                objectOutputStream.writeByte(MessageProtocolConstants.SHORT);
-                objectOutputStream.writeShort((Short) message);
+                out.writeByte(MessageProtocolConstants.SHORT);
+                out.writeShort((Short) message);
             }
         } else if (message instanceof Character) {
-            objectOutputStream.writeByte(MessageProtocolConstants.CHAR);
-            objectOutputStream.writeChar((Character) message);
+            out.writeByte(MessageProtocolConstants.CHAR);
+            out.writeChar((Character) message);
+        } else if (compressor != null && sharedMemoryChannel == null) {
+            compressor.writeObject(out, message);
         } else {
-            objectOutputStream.writeByte(MessageProtocolConstants.OBJECT);
-            objectOutputStream.writeObject(message);
+            out.writeByte(MessageProtocolConstants.OBJECT);
+            SharedMemoryChannel.writeObject(out, message);
         }
-        objectOutputStream.flush();
+    }
+
+    /**
+     * @return the timeout in ms to use when blocking on the result of a
+     * request.
+     */
+    public int getRequestTimeout() {
+        return configuration.getInteger(KEY_REQUEST_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
     }
 
     public boolean isConnected() {
@@ -192,7 +690,16 @@ public class MessageClient {
     }
 
     public void shutdown() {
+        closeSharedMemory();
         try {
+            if (acknowledged) {
+                // Lets the server forget the session
+                synchronized (this) {
+                    objectOutputStream.writeUTF("");
+                    objectOutputStream.writeByte(MessageProtocolConstants.END_SESSION);
+                    objectOutputStream.writeUTF(sessionId);
+                }
+            }
             objectOutputStream.flush();
             objectOutputStream.close();
             remoteReferenceListener.shutdown();
@@ -201,5 +708,53 @@ public class MessageClient {
         } catch (IOException e) {
             // Do not care.
         }
+        failPendingRequests(pendingRequests);
+        endCompressor();
+    }
+
+    private static void failPendingRequests(Map<Long, CompletableFuture<Object>> pendingRequests) {
+        for (Long correlationId : pendingRequests.keySet()) {
+            CompletableFuture<Object> future = pendingRequests.remove(correlationId);
+            if (future != null) {
+                future.completeExceptionally(new IOException("Connection to server lost"));
+            }
+        }
+    }
+
+    private void handleServerFrame(DataInput in) throws IOException, ClassNotFoundException {
+        byte frameType = in.readByte();
+        switch (frameType) {
+            case MessageProtocolConstants.FRAME_MESSAGE -> deliverServerMessage(in);
+            case MessageProtocolConstants.FRAME_RESPONSE -> completeRequest(in, pendingRequests);
+            case MessageProtocolConstants.FRAME_ACK -> acknowledge(in.readLong());
+            default -> throw new IOException("The frame type " + frameType + " is not supported!");
+        }
+    }
+
+    private static void deliverServerMessage(DataInput in) throws IOException, ClassNotFoundException {
+        String uuid = in.readUTF();
+        String id = in.readUTF();
+        Object message = SharedMemoryChannel.readObject(in);
+        RoboContext context = LookupServiceProvider.getDefaultLookupService().getContext(uuid);
+        if (context == null) {
+            LOGGER.debug("Failed to find recipient context {} for message {}", uuid, message);
+        } else {
+            context.getReference(id).sendMessage(message);
+        }
+    }
+
+    private static void completeRequest(DataInput in, Map<Long, CompletableFuture<Object>> pendingRequests)
+            throws IOException, ClassNotFoundException {
+        long correlationId = in.readLong();
+        byte status = in.readByte();
+        Object response = SharedMemoryChannel.readObject(in);
+        CompletableFuture<Object> future = pendingRequests.remove(correlationId);
+        if (future == null) {
+            LOGGER.debug("Got response for unknown request {}", correlationId);
+        } else if (status == MessageProtocolConstants.RESPONSE_OK) {
+            future.complete(response);
+        } else {
+            future.completeExceptionally(new IOException("Remote request failed: " + response));
+        }
     }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Writes and reads {@link MessageProtocolConstants#SERIALIZED_OBJECT}
+ * messages. Objects serializing to at least the threshold are compressed with
+ * {@link Deflater}, unless compression does not make them smaller.
+ * <p>
+ * Not thread safe. The client only uses it with the send lock held.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class MessageCompressor {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final Deflater deflater;
+    private final int threshold;
+    private final CompressionMetrics metrics;
+    private final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    private byte[] compressed = new byte[4096];
+
+    /**
+     * Constructor.
+     *
+     * @param level     the {@link Deflater} compression level.
+     * @param threshold the serialized size, in bytes, from which to compress.
+     * @param metrics   the metrics to update.
+     */
+    MessageCompressor(int level, int threshold, CompressionMetrics metrics) {
+        this.deflater = new Deflater(level);
+        this.threshold = threshold;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Writes the object, including the message type.
+     */
+    void writeObject(DataOutput out, Object object) throws IOException {
+        serialized.reset();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(serialized)) {
+            objectOutputStream.writeObject(object);
+        }
+        byte[] data = serialized.toByteArray();
+        int length = data.length;
+        int compressedLength = -1;
+        long cpuTime = 0;
+        if (length >= threshold) {
+            long start = cpuTime();
+            compressedLength = deflate(data);
+            cpuTime = cpuTime() - start;
+        }
+        out.writeByte(MessageProtocolConstants.SERIALIZED_OBJECT);
+        if (compressedLength < 0) {
+            out.writeByte(MessageProtocolConstants.COMPRESSION_NONE);
+            out.writeInt(length);
+            out.writeInt(length);
+            out.write(data);
+            metrics.record(length, length, false, cpuTime);
+        } else {
+            out.writeByte(MessageProtocolConstants.COMPRESSION_DEFLATE);
+            out.writeInt(length);
+            out.writeInt(compressedLength);
+            out.write(compressed, 0, compressedLength);
+            metrics.record(length, compressedLength, true, cpuTime);
+        }
+    }
+
+    /**
+     * Frees the native memory of the {@link Deflater}. The compressor can not
+     * be used afterwards.
+     */
+    void end() {
+        deflater.end();
+    }
+
+    /**
+     * Reads an object written by {@link #writeObject(DataOutput, Object)},
+     * after the message type.
+     *
+     * @param maxLength the largest serialized length to accept, compressed or
+     *                  not.
+     * @throws IOException if a length read is negative or above maxLength.
+     */
+    static Object readObject(DataInput in, int maxLength, CompressionMetrics metrics) throws IOException, ClassNotFoundException {
+        byte codec = in.readByte();
+        int length = checkLength(in.readInt(), maxLength);
+        int transferredLength = checkLength(in.readInt(), maxLength);
+        byte[] data = new byte[transferredLength];
+        in.readFully(data);
+        long cpuTime = 0;
+        switch (codec) {
+            case MessageProtocolConstants.COMPRESSION_NONE:
+                break;
+            case MessageProtocolConstants.COMPRESSION_DEFLATE:
+                long start = cpuTime();
+                data = inflate(data, length);
+                cpuTime = cpuTime() - start;
+                break;
+            default:
+                throw new IOException("The compression " + codec + " is not supported!");
+        }
+        metrics.record(length, transferredLength, codec != MessageProtocolConstants.COMPRESSION_NONE, cpuTime);
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return objectInputStream.readObject();
+        }
+    }
+
+    private static int checkLength(int length, int maxLength) throws IOException {
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Invalid message length " + length + ", the maximum is " + maxLength);
+        }
+        return length;
+    }
+
+    /*
+     * Returns the compressed length, or -1 if compressing did not make the
+     * data smaller.
+     */
+    private int deflate(byte[] data) {
+        if (compressed.length < data.length) {
+            compressed = new byte[data.length];
+        }
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished() && length < data.length) {
+            length += deflater.deflate(compressed, length, data.length - length);
+        }
+        return deflater.finished() && length < data.length ? length : -1;
+    }
+
+    private static byte[] inflate(byte[] data, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                int inflated = inflater.inflate(result, offset, length - offset);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += inflated;
+            }
+            if (offset != length) {
+                throw new IOException("Corrupt compressed message, expected " + length + " bytes but got " + offset);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed message", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long cpuTime() {
+        if (THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+}
@@ -68,10 +68,117 @@ interface MessageProtocolConstants {
 	 */
 	int MOD_UTF8 = 32;
 
+	/**
+	 * Object serialized separately from the stream, possibly compressed. Used
+	 * once compression has been negotiated. Followed by the compression (byte),
+	 * the serialized length (int), the length of the data (int) and the data.
+	 */
+	int SERIALIZED_OBJECT = 33;
+
 	/**
 	 * This is a Robo4J reference. Serialization will be specially handled.
 	 */
 	int REFERENCE = 64;
 
+	/**
+	 * Request for the value of an attribute. Followed by the correlation id
+	 * (long), the attribute name and the attribute type name (modified UTF8).
+	 */
+	int REQUEST_ATTRIBUTE = 96;
+
+	/**
+	 * Request for the values of all attributes. Followed by the correlation id
+	 * (long).
+	 */
+	int REQUEST_ATTRIBUTES = 97;
+
+	/**
+	 * Request for the known attributes. Followed by the correlation id (long).
+	 */
+	int REQUEST_KNOWN_ATTRIBUTES = 98;
+
+	/**
+	 * Request for the life cycle state. Followed by the correlation id (long).
+	 */
+	int REQUEST_STATE = 99;
+
+	/**
+	 * Request for the message type. Followed by the correlation id (long).
+	 */
+	int REQUEST_MESSAGE_TYPE = 100;
+
+	/**
+	 * Request to continue the communication over shared memory. Followed by
+	 * the correlation id (long), the path of the client to server ring buffer
+	 * and the path of the server to client ring buffer (modified UTF8).
+	 */
+	int REQUEST_SHARED_MEMORY = 101;
+
+	/**
+	 * Request to switch the connection to acknowledged mode. Followed by the
+	 * correlation id (long), the session id (modified UTF8) and how many
+	 * messages to receive between acknowledgements (int). The response is the
+	 * last sequence number received in the session.
+	 */
+	int REQUEST_SESSION = 102;
+
+	/**
+	 * Message sent in acknowledged mode. Followed by the sequence number
+	 * (long), and then the message type and message as for other messages.
+	 */
+	int SEQUENCED_MESSAGE = 103;
+
+	/**
+	 * Request to allow {@link #SERIALIZED_OBJECT} messages on the connection.
+	 * Followed by the correlation id (long).
+	 */
+	int REQUEST_COMPRESSION = 104;
+
+	/**
+	 * Tells the server that the client is done with its acknowledged session,
+	 * so that the server can forget it. Followed by the session id (modified
+	 * UTF8).
+	 */
+	int END_SESSION = 105;
+
+	/**
+	 * Server to client frame carrying a message to a reference in the client
+	 * context. Followed by the context id, the reference id and the message.
+	 */
+	int FRAME_MESSAGE = 1;
+
+	/**
+	 * Server to client frame carrying the response to a request. Followed by
+	 * the correlation id (long), the response status (byte) and the response
+	 * (object).
+	 */
+	int FRAME_RESPONSE = 2;
+
+	/**
+	 * Server to client frame acknowledging all messages in the session up to,
+	 * and including, the sequence number (long) that follows.
+	 */
+	int FRAME_ACK = 3;
+
+	/**
+	 * The request succeeded, and the response is the result.
+	 */
+	int RESPONSE_OK = 0;
+
+	/**
+	 * The request failed, and the response is the error message.
+	 */
+	int RESPONSE_ERROR = 1;
+
+	/**
+	 * The serialized object is not compressed.
+	 */
+	int COMPRESSION_NONE = 0;
+
+	/**
+	 * The serialized object is compressed with {@link java.util.zip.Deflater}.
+	 */
+	int COMPRESSION_DEFLATE = 1;
+
 	short MAGIC = (short) 0xC0FE;
 }
@@ -16,18 +16,40 @@
  */
 package com.robo4j.net;
 
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.scheduler.RoboThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
+import java.io.DataInput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.net.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This is a server that listens on messages, and sends them off to the
- * indicated local recipient. It is associated to RoboContext.
+ * indicated local recipient. It is associated to RoboContext. It also answers
+ * attribute, state and message type requests from clients, using the units of
+ * the associated RoboContext.
  * <p>
  * TODO: Rewrite in NIO for better thread management.
  *
@@ -37,7 +59,18 @@ import java.net.*;
 public class MessageServer {
     private static final Logger LOGGER = LoggerFactory.getLogger(MessageServer.class);
     public final static String KEY_HOST_NAME = "hostname";
+    private static final String NAME_REQUEST_POOL = "Robo4J Remote Request Pool";
     public static final String KEY_PORT = "port";
+    public static final String KEY_SHARED_MEMORY = "sharedMemory";
+    public static final boolean DEFAULT_SHARED_MEMORY = true;
+    public static final String KEY_SHARED_MEMORY_DIRECTORY = "sharedMemoryDirectory";
+    public static final String DEFAULT_SHARED_MEMORY_DIRECTORY = MessageClient.DEFAULT_SHARED_MEMORY_DIRECTORY;
+    public static final String KEY_COMPRESSION = "compression";
+    public static final boolean DEFAULT_COMPRESSION = true;
+    public static final String KEY_SESSION_TIMEOUT = "sessionTimeout";
+    public static final int DEFAULT_SESSION_TIMEOUT = 600000;
+    public static final String KEY_MAX_MESSAGE_SIZE = "maxMessageSize";
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = SharedMemoryChannel.MAX_FRAME_LENGTH;
 
     private volatile int listeningPort = 0;
     private volatile String listeningHost;
@@ -45,9 +78,79 @@ public class MessageServer {
     private volatile Thread startingThread = null;
     private final MessageCallback callback;
     private final Configuration configuration;
+    private final RoboContext roboContext;
+    private final int maxMessageSize;
+    private volatile ServerSocket serverSocket;
+    private volatile ExecutorService requestExecutor;
+
+    private final Map<String, AcknowledgedSession> sessions = new ConcurrentHashMap<>();
+    private final CompressionMetrics compressionMetrics = new CompressionMetrics();
+
+    /*
+     * Keeps track of the messages received from a client in acknowledged mode.
+     * Survives reconnects, so that resent messages are only delivered once.
+     * Messages can arrive out of order when large messages bypass the shared
+     * memory, so the ones received above the contiguous watermark are tracked
+     * separately. Forgotten when the client ends the session, or when no
+     * connection has used it for the configured session timeout.
+     */
+    private static class AcknowledgedSession {
+        private final Set<Long> receivedAboveWatermark = new HashSet<>();
+        private long watermark;
+        private long lastAcknowledged;
+        private int ackWindow = 1;
+        private int connections;
+        private long detachedAt;
+
+        /**
+         * @return true if the message had not been received before.
+         */
+        synchronized boolean receive(long sequenceNumber) {
+            if (sequenceNumber <= watermark || !receivedAboveWatermark.add(sequenceNumber)) {
+                return false;
+            }
+            while (receivedAboveWatermark.remove(watermark + 1)) {
+                watermark++;
+            }
+            return true;
+        }
+
+        /**
+         * @return the sequence number to acknowledge, or -1 if it is not yet
+         *         time to acknowledge.
+         */
+        synchronized long nextAcknowledgement() {
+            if (watermark - lastAcknowledged < ackWindow) {
+                return -1;
+            }
+            lastAcknowledged = watermark;
+            return watermark;
+        }
+
+        synchronized long resume(int ackWindow) {
+            this.ackWindow = ackWindow;
+            lastAcknowledged = watermark;
+            return watermark;
+        }
+
+        synchronized void attach() {
+            connections++;
+        }
+
+        synchronized void detach() {
+            if (--connections == 0) {
+                detachedAt = System.currentTimeMillis();
+            }
+        }
+
+        synchronized boolean isExpired(long now, long timeout) {
+            return connections == 0 && now - detachedAt >= timeout;
+        }
+    }
 
     private class MessageHandler implements Runnable {
         private final Socket socket;
+        private volatile AcknowledgedSession session;
 
         public MessageHandler(Socket socket) {
             this.socket = socket;
@@ -63,10 +166,16 @@ public class MessageServer {
                     final ServerRemoteRoboContext context = new ServerRemoteRoboContext(uuid, socket.getOutputStream());
                     // Then keep reading string, byte, data triplets until dead
                     ReferenceDescriptor.setCurrentContext(context);
-                    while (running) {
-                        String id = objectInputStream.readUTF();
-                        Object message = decodeMessage(objectInputStream);
-                        callback.handleMessage(uuid, id, message);
+                    try {
+                        while (running) {
+                            handleFrame(context, uuid, objectInputStream);
+                        }
+                    } finally {
+                        context.setSharedMemoryChannel(null);
+                        AcknowledgedSession acknowledgedSession = session;
+                        if (acknowledgedSession != null) {
+                            acknowledgedSession.detach();
+                        }
                     }
                 } else {
                     LOGGER.error("Got wrong communication magic - will shutdown communication with {}", socket.getRemoteSocketAddress());
@@ -81,28 +190,192 @@ public class MessageServer {
 
         }
 
-        private Object decodeMessage(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
-            byte dataType = objectInputStream.readByte();
+        private void handleFrame(ServerRemoteRoboContext context, String uuid, DataInput in) throws IOException, ClassNotFoundException {
+            String id = in.readUTF();
+            byte dataType = in.readByte();
+            if (dataType == MessageProtocolConstants.REQUEST_SHARED_MEMORY) {
+                openSharedMemory(context, uuid, in);
+            } else if (dataType == MessageProtocolConstants.REQUEST_COMPRESSION) {
+                long correlationId = in.readLong();
+                if (configuration.getBoolean(KEY_COMPRESSION, DEFAULT_COMPRESSION)) {
+                    context.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_OK, null);
+                } else {
+                    context.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR, "Compression disabled");
+                }
+            } else if (dataType == MessageProtocolConstants.REQUEST_SESSION) {
+                resumeSession(context, in);
+            } else if (dataType == MessageProtocolConstants.END_SESSION) {
+                // Messages still in flight on this connection are checked against the session it holds
+                sessions.remove(in.readUTF());
+            } else if (dataType == MessageProtocolConstants.SEQUENCED_MESSAGE) {
+                receiveSequencedMessage(context, uuid, id, in);
+            } else if (isRequest(dataType)) {
+                handleRequest(context, id, dataType, in);
+            } else {
+                callback.handleMessage(uuid, id, decodeMessage(dataType, in));
+            }
+        }
+
+        /**
+         * Opens the ring buffers created by the client, and starts reading
+         * frames from it. Frames to the client will be sent over shared memory
+         * once the client has been told that the request succeeded. Only
+         * clients on the same host may ask for it, and only for ring buffers
+         * in the configured shared memory directory.
+         */
+        private void openSharedMemory(ServerRemoteRoboContext context, String uuid, DataInput in) throws IOException {
+            long correlationId = in.readLong();
+            Path clientToServer = Path.of(in.readUTF());
+            Path serverToClient = Path.of(in.readUTF());
+            if (!isSharedMemoryEnabled()) {
+                context.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR, "Shared memory disabled");
+                return;
+            }
+            if (!isSameHost(socket)) {
+                LOGGER.warn("Refused shared memory requested by remote client {}", socket.getRemoteSocketAddress());
+                context.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR, "Shared memory only available to local clients");
+                return;
+            }
+            if (!isInSharedMemoryDirectory(clientToServer) || !isInSharedMemoryDirectory(serverToClient)) {
+                LOGGER.warn("Refused shared memory outside of the shared memory directory requested by {}", socket.getRemoteSocketAddress());
+                context.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR, "Shared memory outside of the shared memory directory");
+                return;
+            }
+            final SharedMemoryChannel channel;
+            try {
+                channel = SharedMemoryChannel.open(serverToClient, clientToServer, SharedMemoryChannel.DEFAULT_SEND_TIMEOUT);
+            } catch (IOException e) {
+                LOGGER.debug("Could not open shared memory requested by {}", socket.getRemoteSocketAddress(), e);
+                context.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR, String.valueOf(e));
+                return;
+            }
+            channel.startReceiving("Shared memory [" + socket.getRemoteSocketAddress() + "]", frame -> {
+                ReferenceDescriptor.setCurrentContext(context);
+                handleFrame(context, uuid, frame);
+            });
+            context.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_OK, null);
+            context.setSharedMemoryChannel(channel);
+        }
+
+        private void resumeSession(ServerRemoteRoboContext context, DataInput in) throws IOException {
+            long correlationId = in.readLong();
+            String sessionId = in.readUTF();
+            int ackWindow = in.readInt();
+            expireSessions();
+            AcknowledgedSession acknowledgedSession = sessions.compute(sessionId, (key, existing) -> {
+                AcknowledgedSession resumed = existing != null ? existing : new AcknowledgedSession();
+                resumed.attach();
+                return resumed;
+            });
+            AcknowledgedSession previous = session;
+            session = acknowledgedSession;
+            if (previous != null) {
+                previous.detach();
+            }
+            context.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_OK, acknowledgedSession.resume(ackWindow));
+        }
+
+        private void receiveSequencedMessage(ServerRemoteRoboContext context, String uuid, String id, DataInput in)
+                throws IOException, ClassNotFoundException {
+            long sequenceNumber = in.readLong();
+            Object message = decodeMessage(in.readByte(), in);
+            AcknowledgedSession acknowledgedSession = session;
+            if (acknowledgedSession == null) {
+                throw new IOException("Got sequenced message without a session from " + socket.getRemoteSocketAddress());
+            }
+            if (acknowledgedSession.receive(sequenceNumber)) {
+                callback.handleMessage(uuid, id, message);
+            } else {
+                LOGGER.debug("Dropping already received message {} from {}", sequenceNumber, socket.getRemoteSocketAddress());
+            }
+            long acknowledgement = acknowledgedSession.nextAcknowledgement();
+            if (acknowledgement > 0) {
+                context.sendAcknowledgement(acknowledgement);
+            }
+        }
+
+        private boolean isRequest(byte dataType) {
+            return dataType >= MessageProtocolConstants.REQUEST_ATTRIBUTE && dataType <= MessageProtocolConstants.REQUEST_MESSAGE_TYPE;
+        }
+
+        /**
+         * Reads the request, and answers it asynchronously, so that several
+         * requests can be in flight on the same connection.
+         */
+        private void handleRequest(ServerRemoteRoboContext remoteContext, String id, byte requestType,
+                                   DataInput in) throws IOException {
+            long correlationId = in.readLong();
+            final String attributeName;
+            final String attributeTypeName;
+            if (requestType == MessageProtocolConstants.REQUEST_ATTRIBUTE) {
+                attributeName = in.readUTF();
+                attributeTypeName = in.readUTF();
+            } else {
+                attributeName = null;
+                attributeTypeName = null;
+            }
+            try {
+                requestExecutor.execute(() -> respond(remoteContext, correlationId, id, requestType, attributeName, attributeTypeName));
+            } catch (RejectedExecutionException e) {
+                remoteContext.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR, "Server stopped");
+            }
+        }
+
+        private void respond(ServerRemoteRoboContext remoteContext, long correlationId, String id, byte requestType,
+                             String attributeName, String attributeTypeName) {
+            RoboReference<?> reference = roboContext != null ? roboContext.getReference(id) : null;
+            if (reference == null) {
+                remoteContext.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR, "No unit with id " + id);
+                return;
+            }
+            try {
+                Object response = switch (requestType) {
+                    case MessageProtocolConstants.REQUEST_ATTRIBUTE ->
+                            reference.getAttribute(findAttribute(reference, attributeName, attributeTypeName)).get();
+                    case MessageProtocolConstants.REQUEST_ATTRIBUTES -> toSerializableAttributes(reference.getAttributes().get());
+                    case MessageProtocolConstants.REQUEST_KNOWN_ATTRIBUTES -> toSerializableDescriptors(reference.getKnownAttributes());
+                    case MessageProtocolConstants.REQUEST_STATE -> reference.getState();
+                    case MessageProtocolConstants.REQUEST_MESSAGE_TYPE -> reference.getMessageType().getName();
+                    default -> throw new IllegalArgumentException("The request type " + requestType + " is not supported!");
+                };
+                if (response == null || response instanceof Serializable) {
+                    remoteContext.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_OK, response);
+                } else {
+                    remoteContext.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR,
+                            "The response of type " + response.getClass().getName() + " is not serializable");
+                }
+            } catch (ExecutionException e) {
+                LOGGER.debug("Failed to answer request {} for {}", requestType, id, e);
+                remoteContext.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR, String.valueOf(e.getCause()));
+            } catch (Exception e) {
+                LOGGER.debug("Failed to answer request {} for {}", requestType, id, e);
+                remoteContext.sendResponse(correlationId, MessageProtocolConstants.RESPONSE_ERROR, String.valueOf(e));
+            }
+        }
+
+        private Object decodeMessage(byte dataType, DataInput in) throws IOException, ClassNotFoundException {
             // TODO: replace by better switch
             switch (dataType) {
                 case MessageProtocolConstants.OBJECT:
-                    return objectInputStream.readObject();
+                    return SharedMemoryChannel.readObject(in);
+                case MessageProtocolConstants.SERIALIZED_OBJECT:
+                    return MessageCompressor.readObject(in, maxMessageSize, compressionMetrics);
                 case MessageProtocolConstants.MOD_UTF8:
-                    return objectInputStream.readUTF();
+                    return in.readUTF();
                 case MessageProtocolConstants.BYTE:
-                    return objectInputStream.readByte();
+                    return in.readByte();
                 case MessageProtocolConstants.SHORT:
-                    return objectInputStream.readShort();
+                    return in.readShort();
                 case MessageProtocolConstants.FLOAT:
-                    return objectInputStream.readFloat();
+                    return in.readFloat();
                 case MessageProtocolConstants.INT:
-                    return objectInputStream.readInt();
+                    return in.readInt();
                 case MessageProtocolConstants.DOUBLE:
-                    return objectInputStream.readDouble();
+                    return in.readDouble();
                 case MessageProtocolConstants.LONG:
-                    return objectInputStream.readLong();
+                    return in.readLong();
                 case MessageProtocolConstants.CHAR:
-                    return objectInputStream.readChar();
+                    return in.readChar();
                 default:
                     throw new IOException("The type with id " + dataType + " is not supported!");
             }
@@ -120,8 +393,23 @@ public class MessageServer {
      * @param configuration configuration
      */
     public MessageServer(MessageCallback callback, Configuration configuration) {
+        this(callback, configuration, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param callback      message callback
+     * @param configuration configuration
+     * @param roboContext   the context whose units will answer attribute and
+     *                      state requests from clients. May be null, in which
+     *                      case all requests will fail.
+     */
+    public MessageServer(MessageCallback callback, Configuration configuration, RoboContext roboContext) {
         this.callback = callback;
         this.configuration = configuration;
+        this.roboContext = roboContext;
+        this.maxMessageSize = configuration.getInteger(KEY_MAX_MESSAGE_SIZE, DEFAULT_MAX_MESSAGE_SIZE);
     }
 
     /**
@@ -140,12 +428,25 @@ public class MessageServer {
 
         try (ServerSocket serverSocket = new ServerSocket(configuration.getInteger(KEY_PORT, 0),
                 configuration.getInteger("backlog", 20), bindAddress)) {
+            this.serverSocket = serverSocket;
+            requestExecutor = Executors.newCachedThreadPool(
+                    new RoboThreadFactory(new ThreadGroup(NAME_REQUEST_POOL), NAME_REQUEST_POOL, true));
             listeningHost = serverSocket.getInetAddress().getHostAddress();
             listeningPort = serverSocket.getLocalPort();
             ThreadGroup g = new ThreadGroup("Robo4J communication threads");
             running = true;
             while (running) {
-                MessageHandler handler = new MessageHandler(serverSocket.accept());
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    if (running) {
+                        throw e;
+                    }
+                    // Closed by stop
+                    break;
+                }
+                MessageHandler handler = new MessageHandler(socket);
                 Thread t = new Thread(g, handler, "Communication [" + handler.socket.getRemoteSocketAddress() + "]");
                 t.setDaemon(true);
                 t.start();
@@ -153,15 +454,54 @@ public class MessageServer {
         } finally {
             running = false;
             startingThread = null;
+            this.serverSocket = null;
         }
     }
 
+    /**
+     * Stops accepting connections, and shuts down the pool answering requests.
+     * The server can be started again afterwards.
+     */
     public void stop() {
         running = false;
         Thread startingThread = this.startingThread;
         if (startingThread != null) {
             startingThread.interrupt();
         }
+        ServerSocket serverSocket = this.serverSocket;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close the server socket", e);
+            }
+        }
+        ExecutorService requestExecutor = this.requestExecutor;
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
+    }
+
+    /**
+     * @return true if clients on the same host may continue the communication
+     * over shared memory.
+     */
+    public boolean isSharedMemoryEnabled() {
+        return configuration.getBoolean(KEY_SHARED_MEMORY, DEFAULT_SHARED_MEMORY);
+    }
+
+    /**
+     * @return the number of acknowledged sessions currently remembered.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the metrics for the decompression of received messages.
+     */
+    public CompressionMetrics getCompressionMetrics() {
+        return compressionMetrics;
     }
 
     public int getListeningPort() {
@@ -190,4 +530,79 @@ public class MessageServer {
             return null;
         }
     }
+
+    private static boolean isSameHost(Socket socket) {
+        InetAddress address = socket.getInetAddress();
+        return address.isLoopbackAddress() || address.equals(socket.getLocalAddress());
+    }
+
+    /*
+     * Links are resolved, so that a ring buffer can not point elsewhere.
+     */
+    private boolean isInSharedMemoryDirectory(Path path) {
+        try {
+            Path directory = Path.of(configuration.getString(KEY_SHARED_MEMORY_DIRECTORY, DEFAULT_SHARED_MEMORY_DIRECTORY)).toRealPath();
+            Path ringBuffer = path.toRealPath();
+            return directory.equals(ringBuffer.getParent()) && Files.isRegularFile(ringBuffer);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Forgets the sessions no connection has used for the session timeout.
+     * Done whenever a session is resumed, since that is the only way the
+     * sessions can grow.
+     */
+    private void expireSessions() {
+        long now = System.currentTimeMillis();
+        long timeout = configuration.getInteger(KEY_SESSION_TIMEOUT, DEFAULT_SESSION_TIMEOUT);
+        for (String sessionId : sessions.keySet()) {
+            sessions.computeIfPresent(sessionId, (key, existing) -> existing.isExpired(now, timeout) ? null : existing);
+        }
+    }
+
+    private static AttributeDescriptor<?> findAttribute(RoboReference<?> reference, String attributeName, String attributeTypeName)
+            throws ClassNotFoundException {
+        Collection<AttributeDescriptor<?>> knownAttributes = reference.getKnownAttributes();
+        if (knownAttributes != null) {
+            for (AttributeDescriptor<?> attribute : knownAttributes) {
+                if (attribute.getAttributeName().equals(attributeName) && attribute.getAttributeType().getName().equals(attributeTypeName)) {
+                    return attribute;
+                }
+            }
+        }
+        return DefaultAttributeDescriptor.create(Class.forName(attributeTypeName), attributeName);
+    }
+
+    private static ArrayList<AttributeDescriptor<?>> toSerializableDescriptors(Collection<AttributeDescriptor<?>> descriptors) {
+        ArrayList<AttributeDescriptor<?>> result = new ArrayList<>();
+        if (descriptors != null) {
+            for (AttributeDescriptor<?> descriptor : descriptors) {
+                result.add(toSerializableDescriptor(descriptor));
+            }
+        }
+        return result;
+    }
+
+    private static HashMap<AttributeDescriptor<?>, Object> toSerializableAttributes(Map<AttributeDescriptor<?>, Object> attributes) {
+        HashMap<AttributeDescriptor<?>, Object> result = new HashMap<>();
+        if (attributes != null) {
+            for (Map.Entry<AttributeDescriptor<?>, Object> entry : attributes.entrySet()) {
+                if (entry.getValue() == null || entry.getValue() instanceof Serializable) {
+                    result.put(toSerializableDescriptor(entry.getKey()), entry.getValue());
+                } else {
+                    LOGGER.debug("Skipping non serializable attribute {}", entry.getKey());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static AttributeDescriptor<?> toSerializableDescriptor(AttributeDescriptor<?> descriptor) {
+        if (descriptor instanceof Serializable) {
+            return descriptor;
+        }
+        return DefaultAttributeDescriptor.create(descriptor.getAttributeType(), descriptor.getAttributeName());
+    }
 }
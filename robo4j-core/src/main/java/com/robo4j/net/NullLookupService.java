@@ -54,4 +54,12 @@ final class NullLookupService implements LookupService {
 	public RoboContextDescriptor getDescriptor(String id) {
 		return null;
 	}
+
+	@Override
+	public void addListener(LookupServiceListener listener) {
+	}
+
+	@Override
+	public void removeListener(LookupServiceListener listener) {
+	}
 }
@@ -26,6 +26,21 @@ import java.util.Map;
  */
 public class RoboContextDescriptor {
 	public static final String KEY_URI = "uri";
+	/**
+	 * Set to true if the message server accepts shared memory connections from
+	 * clients on the same host.
+	 */
+	public static final String KEY_SHARED_MEMORY = "sharedMemory";
+	/**
+	 * Set to true in the emitter metadata to make clients send messages to the
+	 * context in acknowledged mode, resending messages lost when reconnecting.
+	 */
+	public static final String KEY_ACKNOWLEDGED = "acknowledged";
+	/**
+	 * Set to true in the emitter metadata to make clients compress large
+	 * messages sent to the context.
+	 */
+	public static final String KEY_COMPRESSION = "compression";
 
 	private final String id;
 	private final int heartBeatInterval;
@@ -26,6 +26,11 @@ import java.net.InetAddress;
  */
 class RoboContextDescriptorEntry {
 	public RoboContextDescriptor descriptor;
-	public long lastAccess;
+	public volatile long lastAccess;
 	public InetAddress address;
+	/**
+	 * The raw heartbeat last received for this entry. Used to detect changes
+	 * without decoding incoming heartbeats.
+	 */
+	public byte[] message;
 }
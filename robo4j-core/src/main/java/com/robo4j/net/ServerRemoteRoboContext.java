@@ -42,6 +42,7 @@ public class ServerRemoteRoboContext implements RoboContext {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerRemoteRoboContext.class);
     private final String uuid;
     private final ObjectOutputStream outputStream;
+    private SharedMemoryChannel sharedMemoryChannel;
 
     @SuppressWarnings("rawtypes")
     private class ServerRemoteRoboReference implements RoboReference {
@@ -102,9 +103,12 @@ public class ServerRemoteRoboContext implements RoboContext {
             try {
                 // FIXME: Change the serialization to be the same as for the
                 // client to server
-                outputStream.writeUTF(getTargetContextId());
-                outputStream.writeUTF(getId());
-                outputStream.writeObject(message);
+                sendFrame(out -> {
+                    out.writeByte(MessageProtocolConstants.FRAME_MESSAGE);
+                    out.writeUTF(getTargetContextId());
+                    out.writeUTF(getId());
+                    SharedMemoryChannel.writeObject(out, message);
+                });
             } catch (IOException e) {
                 LOGGER.error("send message:{}", message, e);
             }
@@ -188,6 +192,70 @@ public class ServerRemoteRoboContext implements RoboContext {
         return null;
     }
 
+    /**
+     * Sends the response to a request made by the client.
+     *
+     * @param correlationId the correlation id of the request.
+     * @param status        {@link MessageProtocolConstants#RESPONSE_OK} or
+     *                      {@link MessageProtocolConstants#RESPONSE_ERROR}.
+     * @param response      the result, or the error message.
+     */
+    void sendResponse(long correlationId, int status, Object response) {
+        try {
+            sendFrame(out -> {
+                out.writeByte(MessageProtocolConstants.FRAME_RESPONSE);
+                out.writeLong(correlationId);
+                out.writeByte(status);
+                SharedMemoryChannel.writeObject(out, response);
+            });
+        } catch (IOException e) {
+            LOGGER.error("send response:{}", correlationId, e);
+        }
+    }
+
+    /**
+     * Acknowledges the messages received in acknowledged mode.
+     *
+     * @param sequenceNumber all messages up to, and including, this sequence
+     *                       number have been received.
+     */
+    void sendAcknowledgement(long sequenceNumber) {
+        try {
+            sendFrame(out -> {
+                out.writeByte(MessageProtocolConstants.FRAME_ACK);
+                out.writeLong(sequenceNumber);
+            });
+        } catch (IOException e) {
+            LOGGER.error("send acknowledgement:{}", sequenceNumber, e);
+        }
+    }
+
+    /**
+     * Continues sending frames to the client over the shared memory channel.
+     *
+     * @param channel the channel, or null to go back to only using the socket.
+     */
+    void setSharedMemoryChannel(SharedMemoryChannel channel) {
+        synchronized (outputStream) {
+            SharedMemoryChannel oldChannel = sharedMemoryChannel;
+            sharedMemoryChannel = channel;
+            if (oldChannel != null) {
+                oldChannel.close(false);
+            }
+        }
+    }
+
+    private void sendFrame(SharedMemoryChannel.FrameWriter writer) throws IOException {
+        synchronized (outputStream) {
+            if (sharedMemoryChannel != null) {
+                sharedMemoryChannel.send(writer);
+            } else {
+                writer.write(outputStream);
+                outputStream.flush();
+            }
+        }
+    }
+
     public RoboReference<?> getRoboReference(String ctxId, String id, String fqn) {
         // FIXME: Cache these?
         return new ServerRemoteRoboReference(ctxId, id, fqn);
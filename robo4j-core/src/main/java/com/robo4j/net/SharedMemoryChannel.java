@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bidirectional channel between a {@link MessageClient} and a
+ * {@link MessageServer} on the same host, using one
+ * {@link SharedMemoryRingBuffer} per direction. The frames are the same as the
+ * ones sent over the socket, but written with plain {@link DataOutput}, and
+ * with objects serialized into length prefixed blobs.
+ * <p>
+ * The client creates the ring buffer files, and tells the server where to find
+ * them over the socket. Once the channel is used, all frames must be sent over
+ * it, so that they arrive in order. Each record starts with a byte telling if
+ * more records follow, so frames too large for one record are split over
+ * several.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class SharedMemoryChannel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedMemoryChannel.class);
+    static final int DEFAULT_SEND_TIMEOUT = 5000;
+    private static final AtomicInteger CHANNEL_COUNTER = new AtomicInteger();
+    private static final int SPIN_LIMIT = 1000;
+    private static final int YIELD_LIMIT = SPIN_LIMIT + 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    // An idle channel wakes up a few hundred times a second at most
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final byte LAST_RECORD = 0;
+    private static final byte MORE_RECORDS = 1;
+    /**
+     * The largest frame accepted by the receiver.
+     */
+    static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    private final SharedMemoryRingBuffer outbound;
+    private final SharedMemoryRingBuffer inbound;
+    private final long sendTimeoutNanos;
+    private final FrameBuffer frameBuffer = new FrameBuffer();
+    private final DataOutputStream frameOutput = new DataOutputStream(frameBuffer);
+    private byte[] record;
+    private volatile boolean closed;
+
+    /**
+     * Writes a frame.
+     */
+    interface FrameWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * Handles a received frame.
+     */
+    interface FrameHandler {
+        void handle(DataInput in) throws Exception;
+    }
+
+    /*
+     * Allows the frame to be offered without copying it.
+     */
+    private static class FrameBuffer extends ByteArrayOutputStream {
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private SharedMemoryChannel(SharedMemoryRingBuffer outbound, SharedMemoryRingBuffer inbound, int sendTimeout) {
+        this.outbound = outbound;
+        this.inbound = inbound;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeout);
+    }
+
+    /**
+     * Creates the ring buffers for a new channel. Used by the client.
+     *
+     * @param directory   the directory in which to create the files, normally
+     *                    /dev/shm.
+     * @param capacity    the capacity of each ring buffer.
+     * @param sendTimeout the time in ms to wait for room in the outbound ring
+     *                    buffer.
+     * @return the new channel.
+     * @throws IOException if the ring buffers could not be created.
+     */
+    static SharedMemoryChannel create(Path directory, int capacity, int sendTimeout) throws IOException {
+        String prefix = "robo4j-" + ProcessHandle.current().pid() + "-" + CHANNEL_COUNTER.incrementAndGet();
+        SharedMemoryRingBuffer outbound = SharedMemoryRingBuffer.create(directory.resolve(prefix + ".c2s"), capacity);
+        try {
+            SharedMemoryRingBuffer inbound = SharedMemoryRingBuffer.create(directory.resolve(prefix + ".s2c"), capacity);
+            return new SharedMemoryChannel(outbound, inbound, sendTimeout);
+        } catch (IOException e) {
+            Files.deleteIfExists(outbound.getPath());
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the ring buffers created by the other side. Used by the server.
+     *
+     * @param outboundPath the ring buffer to write to.
+     * @param inboundPath  the ring buffer to read from.
+     * @param sendTimeout  the time in ms to wait for room in the outbound ring
+     *                     buffer.
+     * @return the channel.
+     * @throws IOException if the ring buffers could not be opened.
+     */
+    static SharedMemoryChannel open(Path outboundPath, Path inboundPath, int sendTimeout) throws IOException {
+        return new SharedMemoryChannel(SharedMemoryRingBuffer.open(outboundPath), SharedMemoryRingBuffer.open(inboundPath), sendTimeout);
+    }
+
+    Path getOutboundPath() {
+        return outbound.getPath();
+    }
+
+    Path getInboundPath() {
+        return inbound.getPath();
+    }
+
+    /**
+     * Sends a frame. Callers must make sure that only one thread at a time
+     * sends on the channel, and that frames are not interleaved with frames
+     * sent on the socket.
+     *
+     * @param writer writes the frame.
+     * @throws IOException if the channel is closed, the frame is larger than
+     *                     {@link #MAX_FRAME_LENGTH}, or the receiver did not
+     *                     make room for the frame in time.
+     */
+    void send(FrameWriter writer) throws IOException {
+        frameBuffer.reset();
+        frameOutput.writeByte(LAST_RECORD);
+        writer.write(frameOutput);
+        int frameLength = frameBuffer.size() - 1;
+        if (frameLength > MAX_FRAME_LENGTH) {
+            throw new IOException("Frame too large: " + frameLength + " > " + MAX_FRAME_LENGTH);
+        }
+        if (frameBuffer.size() <= outbound.getMaxRecordLength()) {
+            offer(frameBuffer.array(), frameBuffer.size());
+            return;
+        }
+        int chunkLength = outbound.getMaxRecordLength() - 1;
+        if (record == null) {
+            record = new byte[outbound.getMaxRecordLength()];
+        }
+        for (int offset = 1; offset < frameBuffer.size(); offset += chunkLength) {
+            int length = Math.min(chunkLength, frameBuffer.size() - offset);
+            record[0] = offset + length < frameBuffer.size() ? MORE_RECORDS : LAST_RECORD;
+            System.arraycopy(frameBuffer.array(), offset, record, 1, length);
+            offer(record, length + 1);
+        }
+    }
+
+    private void offer(byte[] data, int length) throws IOException {
+        long deadline = 0;
+        int idleCount = 0;
+        while (!outbound.offer(data, length)) {
+            if (closed) {
+                throw new IOException("Shared memory channel closed");
+            }
+            if (idleCount == YIELD_LIMIT) {
+                deadline = System.nanoTime() + sendTimeoutNanos;
+            } else if (idleCount > YIELD_LIMIT && System.nanoTime() - deadline > 0) {
+                throw new IOException("Timed out waiting for the receiver of " + outbound.getPath());
+            }
+            idle(idleCount++);
+        }
+    }
+
+    /**
+     * Starts a daemon thread delivering the received frames to the handler,
+     * until the channel is closed.
+     *
+     * @param name    the name of the thread.
+     * @param handler the handler for the frames.
+     */
+    void startReceiving(String name, FrameHandler handler) {
+        Thread t = new Thread(() -> receive(handler), name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Closes the channel.
+     *
+     * @param delete true to also delete the ring buffer files. Normally done by
+     *               the side that created them.
+     */
+    void close(boolean delete) {
+        closed = true;
+        if (delete) {
+            try {
+                Files.deleteIfExists(outbound.getPath());
+                Files.deleteIfExists(inbound.getPath());
+            } catch (IOException e) {
+                LOGGER.debug("Failed to delete shared memory files", e);
+            }
+        }
+    }
+
+    private void receive(FrameHandler handler) {
+        byte[] record = new byte[inbound.getMaxRecordLength()];
+        // The records of a frame split over several records
+        FrameBuffer frame = new FrameBuffer();
+        boolean dropping = false;
+        int idleCount = 0;
+        while (!closed) {
+            int length = inbound.poll(record);
+            if (length < 0) {
+                idle(idleCount++);
+                continue;
+            }
+            idleCount = 0;
+            if (!dropping && frame.size() + length - 1 > MAX_FRAME_LENGTH) {
+                LOGGER.error("Dropping frame larger than {} bytes from {}", MAX_FRAME_LENGTH, inbound.getPath());
+                dropping = true;
+                frame = new FrameBuffer();
+            }
+            if (record[0] == MORE_RECORDS) {
+                if (!dropping) {
+                    frame.write(record, 1, length - 1);
+                }
+                continue;
+            }
+            if (dropping) {
+                dropping = false;
+                continue;
+            }
+            DataInputStream in;
+            if (frame.size() == 0) {
+                in = new DataInputStream(new ByteArrayInputStream(record, 1, length - 1));
+            } else {
+                frame.write(record, 1, length - 1);
+                in = new DataInputStream(new ByteArrayInputStream(frame.array(), 0, frame.size()));
+                frame = new FrameBuffer();
+            }
+            try {
+                handler.handle(in);
+            } catch (Exception e) {
+                LOGGER.error("Failed to handle frame from {}", inbound.getPath(), e);
+            }
+        }
+    }
+
+    /*
+     * Spins, then yields, then parks for twice as long every time, up to the
+     * maximum park time.
+     */
+    private static void idle(int idleCount) {
+        if (idleCount < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else if (idleCount < YIELD_LIMIT) {
+            Thread.yield();
+        } else {
+            int doublings = Math.min(idleCount - YIELD_LIMIT, Long.numberOfLeadingZeros(PARK_NANOS) - 1);
+            LockSupport.parkNanos(Math.min(PARK_NANOS << doublings, MAX_PARK_NANOS));
+        }
+    }
+
+    /**
+     * Writes an object. Uses the object stream directly when writing to the
+     * socket, otherwise writes a length prefixed serialized blob.
+     */
+    static void writeObject(DataOutput out, Object object) throws IOException {
+        if (out instanceof ObjectOutput objectOutput) {
+            objectOutput.writeObject(object);
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+                objectOutputStream.writeObject(object);
+            }
+            out.writeInt(bytes.size());
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Reads an object written by {@link #writeObject(DataOutput, Object)}.
+     *
+     * @throws IOException if the serialized length read is negative or larger
+     *                     than {@link #MAX_FRAME_LENGTH}.
+     */
+    static Object readObject(DataInput in) throws IOException, ClassNotFoundException {
+        if (in instanceof ObjectInput objectInput) {
+            return objectInput.readObject();
+        }
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid object length " + length + ", the maximum is " + MAX_FRAME_LENGTH);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return objectInputStream.readObject();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Single producer, single consumer ring buffer in a memory mapped file. Used
+ * for passing frames between two processes on the same host, normally with
+ * the file located in /dev/shm.
+ * <p>
+ * The producer and consumer positions are ever increasing byte counts, kept in
+ * separate cache lines of the header, and published with release semantics.
+ * Each record is a length followed by the data, aligned to four bytes. A
+ * record that does not fit before the end of the buffer is preceded by a
+ * padding marker, and written from the start of the buffer.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class SharedMemoryRingBuffer {
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int MAGIC = 0xC0FE0001;
+    private static final int HEAD_OFFSET = 0;
+    private static final int TAIL_OFFSET = 64;
+    private static final int MAGIC_OFFSET = 128;
+    private static final int CAPACITY_OFFSET = 132;
+    private static final int HEADER_SIZE = 192;
+    private static final int RECORD_HEADER_SIZE = 4;
+    private static final int PADDING = -1;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+
+    private SharedMemoryRingBuffer(Path path, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Creates a new ring buffer, replacing any existing file.
+     *
+     * @param path     the file to map.
+     * @param capacity the capacity in bytes. Must be a power of two.
+     * @return the ring buffer.
+     * @throws IOException if the file could not be mapped.
+     */
+    static SharedMemoryRingBuffer create(Path path, int capacity) throws IOException {
+        if (capacity < 64 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, and at least 64. Was " + capacity);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            return new SharedMemoryRingBuffer(path, buffer, capacity);
+        }
+    }
+
+    /**
+     * Opens a ring buffer created by another process.
+     *
+     * @param path the file to map.
+     * @return the ring buffer.
+     * @throws IOException if the file could not be mapped, or is not a ring
+     *                     buffer.
+     */
+    static SharedMemoryRingBuffer open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a ring buffer: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC || channel.size() != HEADER_SIZE + (long) capacity) {
+                throw new IOException("Not a ring buffer: " + path);
+            }
+            return new SharedMemoryRingBuffer(path, buffer, capacity);
+        }
+    }
+
+    /**
+     * @return the largest record that can be offered.
+     */
+    int getMaxRecordLength() {
+        return capacity / 2 - RECORD_HEADER_SIZE;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Offers a record. Must only be called by the single producer.
+     *
+     * @param data   the data to copy into the buffer.
+     * @param length the length of the data.
+     * @return false if there was not enough room in the buffer.
+     */
+    boolean offer(byte[] data, int length) {
+        if (length > getMaxRecordLength()) {
+            throw new IllegalArgumentException("Record too large: " + length + " > " + getMaxRecordLength());
+        }
+        int recordLength = align(RECORD_HEADER_SIZE + length);
+        long head = (long) LONG_VIEW.get(buffer, HEAD_OFFSET);
+        long tail = (long) LONG_VIEW.getAcquire(buffer, TAIL_OFFSET);
+        int index = (int) (head & mask);
+        int contiguous = capacity - index;
+        int padding = contiguous < recordLength ? contiguous : 0;
+        if (head + padding + recordLength - tail > capacity) {
+            return false;
+        }
+        if (padding > 0) {
+            buffer.putInt(HEADER_SIZE + index, PADDING);
+            head += padding;
+            index = 0;
+        }
+        buffer.put(HEADER_SIZE + index + RECORD_HEADER_SIZE, data, 0, length);
+        buffer.putInt(HEADER_SIZE + index, length);
+        LONG_VIEW.setRelease(buffer, HEAD_OFFSET, head + recordLength);
+        return true;
+    }
+
+    /**
+     * Polls for a record. Must only be called by the single consumer.
+     *
+     * @param target the array to copy the record into. Must be at least
+     *               {@link #getMaxRecordLength()} long.
+     * @return the length of the record, or -1 if the buffer was empty.
+     */
+    int poll(byte[] target) {
+        long tail = (long) LONG_VIEW.get(buffer, TAIL_OFFSET);
+        long head = (long) LONG_VIEW.getAcquire(buffer, HEAD_OFFSET);
+        if (tail == head) {
+            return -1;
+        }
+        int index = (int) (tail & mask);
+        int length = buffer.getInt(HEADER_SIZE + index);
+        if (length == PADDING) {
+            tail += capacity - index;
+            index = 0;
+            length = buffer.getInt(HEADER_SIZE);
+        }
+        buffer.get(HEADER_SIZE + index + RECORD_HEADER_SIZE, target, 0, length);
+        LONG_VIEW.setRelease(buffer, TAIL_OFFSET, tail + align(RECORD_HEADER_SIZE + length));
+        return length;
+    }
+
+    private static int align(int length) {
+        return (length + 3) & ~3;
+    }
+}
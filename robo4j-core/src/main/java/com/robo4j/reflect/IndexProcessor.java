@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.reflect;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor writing the index of the classes annotated with
+ * {@link Indexed} annotations. There is one index resource per annotation,
+ * named {@link ReflectionScan#INDEX_LOCATION} followed by the name of the
+ * annotation, listing the binary names of the annotated classes one per line.
+ * <p>
+ * The processor also generates an {@link InstanceFactory} per package, which
+ * can create the indexed classes and the robo units in the package without
+ * reflection. The generated factories are listed in the index under the name
+ * of the {@link InstanceFactory} interface.
+ * <p>
+ * The processor is registered as a service, so it will run whenever
+ * robo4j-core is on the annotation processor path.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@SupportedAnnotationTypes("*")
+public final class IndexProcessor extends AbstractProcessor {
+    private static final String ROBO_UNIT = "com.robo4j.RoboUnit";
+    private static final String ROBO_CONTEXT = "com.robo4j.RoboContext";
+
+    private final Map<String, Set<String>> index = new TreeMap<>();
+    private final Set<String> generatedFactories = new HashSet<>();
+    // Package name -> binary name -> canonical name, to be generated
+    private final Map<String, Map<String, String>> pendingInstances = new TreeMap<>();
+    private final Map<String, Map<String, String>> pendingUnits = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            if (annotation.getAnnotation(Indexed.class) == null) {
+                continue;
+            }
+            Set<String> classes = index.computeIfAbsent(annotation.getQualifiedName().toString(), name -> new TreeSet<>());
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind().isClass()) {
+                    TypeElement type = (TypeElement) element;
+                    classes.add(getBinaryName(type));
+                    if (isInstantiable(type) && hasConstructor(type)) {
+                        addPending(pendingInstances, type);
+                    }
+                }
+            }
+        }
+        TypeElement roboUnit = processingEnv.getElementUtils().getTypeElement(ROBO_UNIT);
+        if (roboUnit != null) {
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+                findUnits(type, roboUnit);
+            }
+        }
+        generateFactories();
+        if (roundEnv.processingOver()) {
+            if (!generatedFactories.isEmpty()) {
+                index.put(InstanceFactory.class.getName(), new TreeSet<>(generatedFactories));
+            }
+            writeIndex();
+        }
+        // Never claim the annotations, other processors may want them too
+        return false;
+    }
+
+    private void findUnits(TypeElement type, TypeElement roboUnit) {
+        Types types = processingEnv.getTypeUtils();
+        if (isInstantiable(type) && types.isSubtype(types.erasure(type.asType()), types.erasure(roboUnit.asType()))
+                && hasConstructor(type, ROBO_CONTEXT, String.class.getName())) {
+            addPending(pendingUnits, type);
+        }
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            findUnits(nested, roboUnit);
+        }
+    }
+
+    /*
+     * Concrete classes which the generated factory, in the same package, can
+     * create.
+     */
+    private static boolean isInstantiable(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        for (Element element = type; element.getKind().isClass(); element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (element.getEnclosingElement().getKind().isClass() && !element.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasConstructor(TypeElement type, String... parameterTypes) {
+        Types types = processingEnv.getTypeUtils();
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PRIVATE) || constructor.getParameters().size() != parameterTypes.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                TypeMirror parameterType = types.erasure(constructor.getParameters().get(i).asType());
+                if (!parameterType.toString().equals(parameterTypes[i])) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addPending(Map<String, Map<String, String>> pending, TypeElement type) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        pending.computeIfAbsent(packageName, name -> new TreeMap<>()).put(getBinaryName(type), type.getQualifiedName().toString());
+    }
+
+    private String getBinaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void generateFactories() {
+        if (processingEnv.getElementUtils().getTypeElement(InstanceFactory.class.getName()) == null) {
+            // Not compiling against robo4j-core
+            pendingInstances.clear();
+            pendingUnits.clear();
+            return;
+        }
+        Set<String> packages = new TreeSet<>(pendingInstances.keySet());
+        packages.addAll(pendingUnits.keySet());
+        for (String packageName : packages) {
+            generateFactory(packageName, pendingInstances.getOrDefault(packageName, Map.of()),
+                    pendingUnits.getOrDefault(packageName, Map.of()));
+        }
+        pendingInstances.clear();
+        pendingUnits.clear();
+    }
+
+    private void generateFactory(String packageName, Map<String, String> instances, Map<String, String> units) {
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        String simpleName = InstanceFactories.FACTORY_CLASS_NAME;
+        // Types found in later rounds get a factory of their own
+        for (int i = 2; generatedFactories.contains(prefix + simpleName); i++) {
+            simpleName = InstanceFactories.FACTORY_CLASS_NAME + i;
+        }
+        String className = prefix + simpleName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(className).openWriter()) {
+            if (!packageName.isEmpty()) {
+                writer.write("package " + packageName + ";\n\n");
+            }
+            writer.write("/**\n * Generated by " + IndexProcessor.class.getName() + ". Do not edit.\n */\n");
+            writer.write("public final class " + simpleName + " implements " + InstanceFactory.class.getCanonicalName() + " {\n");
+            writer.write("    @Override\n    public Object newInstance(String className) {\n");
+            writeSwitch(writer, instances, "()");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n    @SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+            writer.write("    public " + ROBO_UNIT + "<?> newUnit(String className, " + ROBO_CONTEXT + " context, String id) {\n");
+            writeSwitch(writer, units, "(context, id)");
+            writer.write("    }\n}\n");
+            generatedFactories.add(className);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not generate the instance factory " + className + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeSwitch(Writer writer, Map<String, String> classes, String arguments) throws IOException {
+        if (!classes.isEmpty()) {
+            writer.write("        switch (className) {\n");
+            for (Map.Entry<String, String> entry : classes.entrySet()) {
+                writer.write("            case \"" + entry.getKey() + "\":\n");
+                writer.write("                return new " + entry.getValue() + arguments + ";\n");
+            }
+            writer.write("            default:\n                return null;\n        }\n");
+        } else {
+            writer.write("        return null;\n");
+        }
+    }
+
+    private void writeIndex() {
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            try {
+                FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                        ReflectionScan.INDEX_LOCATION + entry.getKey());
+                try (Writer writer = resource.openWriter()) {
+                    for (String className : entry.getValue()) {
+                        writer.write(className);
+                        writer.write('\n');
+                    }
+                }
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Could not write the index for " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.reflect;
+
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The generated {@link InstanceFactory} instances available from a class
+ * loader. The factories are listed in the index written by the
+ * {@link IndexProcessor}, and are only created once per class loader.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class InstanceFactories {
+    /**
+     * The simple name of the generated factory classes. If a package needs
+     * more than one factory, a number is appended.
+     */
+    public static final String FACTORY_CLASS_NAME = "Robo4jInstanceFactory";
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstanceFactories.class);
+    private static final Map<ClassLoader, InstanceFactories> FACTORIES = new WeakHashMap<>();
+
+    private final List<InstanceFactory> factories;
+
+    private InstanceFactories(List<InstanceFactory> factories) {
+        this.factories = Collections.unmodifiableList(factories);
+    }
+
+    /**
+     * Returns the factories available from a class loader.
+     *
+     * @param loader the class loader.
+     * @return the factories.
+     */
+    public static InstanceFactories get(ClassLoader loader) {
+        synchronized (FACTORIES) {
+            return FACTORIES.computeIfAbsent(loader, InstanceFactories::load);
+        }
+    }
+
+    /**
+     * Creates an instance of an indexed class without reflection.
+     *
+     * @param className the binary name of the class.
+     * @return the new instance, or null if there is no generated factory for
+     * the class, in which case reflection will have to be used.
+     * @see InstanceFactory#newInstance(String)
+     */
+    public Object newInstance(String className) {
+        for (InstanceFactory factory : factories) {
+            Object instance = factory.newInstance(className);
+            if (instance != null) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a unit without reflection.
+     *
+     * @param className the binary name of the unit class.
+     * @param context   the context of the unit.
+     * @param id        the id of the unit.
+     * @return the new unit, or null if there is no generated factory for the
+     * class, in which case reflection will have to be used.
+     * @see InstanceFactory#newUnit(String, RoboContext, String)
+     */
+    public RoboUnit<?> newUnit(String className, RoboContext context, String id) {
+        for (InstanceFactory factory : factories) {
+            RoboUnit<?> unit = factory.newUnit(className, context, id);
+            if (unit != null) {
+                return unit;
+            }
+        }
+        return null;
+    }
+
+    private static InstanceFactories load(ClassLoader loader) {
+        List<InstanceFactory> factories = new ArrayList<>();
+        for (String className : new ReflectionScan(loader).readIndex(InstanceFactory.class.getName())) {
+            try {
+                factories.add((InstanceFactory) loader.loadClass(className).getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                LOGGER.warn("Could not create the generated factory {}", className, e);
+            }
+        }
+        return new InstanceFactories(factories);
+    }
+}
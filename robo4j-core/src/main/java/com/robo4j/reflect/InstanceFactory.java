@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.reflect;
+
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+/**
+ * Creates instances without reflection. Implementations are generated at
+ * compile time by the {@link IndexProcessor}, one per package, and found at
+ * runtime through {@link InstanceFactories}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public interface InstanceFactory {
+    /**
+     * Creates an instance of a class annotated with an {@link Indexed}
+     * annotation, using the public no-argument constructor.
+     *
+     * @param className the binary name of the class.
+     * @return the new instance, or null if the class is not known by this
+     * factory.
+     */
+    Object newInstance(String className);
+
+    /**
+     * Creates a unit using the public (RoboContext, String) constructor.
+     *
+     * @param className the binary name of the unit class.
+     * @param context   the context of the unit.
+     * @param id        the id of the unit.
+     * @return the new unit, or null if the class is not known by this factory.
+     */
+    RoboUnit<?> newUnit(String className, RoboContext context, String id);
+}
@@ -21,11 +21,15 @@ import com.robo4j.util.StringConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -39,6 +43,11 @@ import java.util.zip.ZipInputStream;
  * @author Miro Wengner (@miragemiko)
  */
 public final class ReflectionScan {
+    /**
+     * Location of the index resources written by the {@link IndexProcessor}.
+     * The name of the annotation is appended to get the resource name.
+     */
+    public static final String INDEX_LOCATION = "META-INF/robo4j/index/";
     private static final Logger LOGGER = LoggerFactory.getLogger(ReflectionScan.class);
     private static final String FILE = "file:";
     private static final String SUFFIX = ".class";
@@ -75,8 +84,94 @@ public final class ReflectionScan {
         return result;
     }
 
+    /**
+     * Finds the classes annotated with an {@link Indexed} annotation in the
+     * given packages, or their sub packages. The index written at compile time
+     * is used for every class path root that has one, so that no classes need
+     * to be loaded from it. Roots without an index fall back to scanning, which
+     * returns all the classes of the package in that root, so the caller still
+     * needs to check for the annotation.
+     *
+     * @param annotation     the indexed annotation.
+     * @param entityPackages the packages to look in.
+     * @return the names of the classes found.
+     */
+    public List<String> scanForAnnotated(Class<? extends Annotation> annotation, String... entityPackages) {
+        final Map<String, List<String>> indexByRoot = readIndexByRoot(annotation.getName());
+        final List<String> result = new ArrayList<>();
+        for (String packageName : entityPackages) {
+            packageName = packageName.trim();
+            final String packagePrefix = packageName + DOT;
+            final String slashifyPackage = slashify(packageName);
+            try {
+                Enumeration<URL> locations = loader.getResources(slashifyPackage);
+                while (locations.hasMoreElements()) {
+                    URL location = locations.nextElement();
+                    List<String> indexedClasses = indexByRoot.get(rootOf(location, slashifyPackage));
+                    if (indexedClasses == null) {
+                        LOGGER.debug("No index for {} in {}, scanning", annotation.getName(), location);
+                        result.addAll(scanLocation(location, packageName));
+                    } else {
+                        indexedClasses.stream().filter(className -> className.startsWith(packagePrefix)).forEach(result::add);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+
     //Private Methods
 
+    List<String> readIndex(String indexName) {
+        return readIndexByRoot(indexName).values().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    /**
+     * Reads the index resources, keyed by the class path root they were found
+     * in.
+     */
+    private Map<String, List<String>> readIndexByRoot(String indexName) {
+        final String resourceName = INDEX_LOCATION + indexName;
+        final Map<String, List<String>> result = new LinkedHashMap<>();
+        try {
+            Enumeration<URL> resources = loader.getResources(resourceName);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                List<String> classNames = result.computeIfAbsent(rootOf(url, resourceName), root -> new ArrayList<>());
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    reader.lines().map(String::trim).filter(line -> !line.isEmpty()).forEach(classNames::add);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not read the index for {}", indexName, e);
+        }
+        return result;
+    }
+
+    /**
+     * The class path root a resource was loaded from, i.e. the location of the
+     * resource with the resource name removed.
+     */
+    private static String rootOf(URL url, String resourceName) {
+        String location = url.toString();
+        if (location.endsWith(String.valueOf(SLASH))) {
+            location = location.substring(0, location.length() - 1);
+        }
+        return location.endsWith(resourceName) ? location.substring(0, location.length() - resourceName.length()) : location;
+    }
+
+    private List<String> scanLocation(URL location, String packageName) throws IOException {
+        String jarFile = location.getFile().split(EXCLAMATION)[0].replace(FILE, StringConstants.EMPTY);
+        if (new File(jarFile).isDirectory()) {
+            return findClasses(new File(location.getFile()), packageName);
+        }
+        try (ZipInputStream zip = new ZipInputStream(new FileInputStream(jarFile))) {
+            return readJarEntries(zip, slashify(packageName));
+        }
+    }
+
     private List<String> scanJarPackage(ClassLoader loader, String packageName) throws IOException {
         List<String> classes = new ArrayList<>();
         String slashifyPackage = slashify(packageName);
@@ -94,14 +189,7 @@ public final class ReflectionScan {
             }
         }).filter(Objects::nonNull).forEach(e -> {
             try {
-                for (ZipEntry entry = e.getNextEntry(); entry != null; entry = e.getNextEntry()) {
-                    if (!entry.isDirectory() && entry.getName().contains(slashifyPackage)
-                            && entry.getName().endsWith(SUFFIX)) {
-
-                        String cName = entry.getName().replace(SLASH, DOT).replace(SUFFIX, StringConstants.EMPTY);
-                        classes.add(cName);
-                    }
-                }
+                classes.addAll(readJarEntries(e, slashifyPackage));
             } catch (IOException e1) {
                 throw new ReflectionScanException("Error reading jar", e1);
             }
@@ -109,6 +197,19 @@ public final class ReflectionScan {
         return classes;
     }
 
+    private List<String> readJarEntries(ZipInputStream jar, String slashifyPackage) throws IOException {
+        List<String> classes = new ArrayList<>();
+        for (ZipEntry entry = jar.getNextEntry(); entry != null; entry = jar.getNextEntry()) {
+            if (!entry.isDirectory() && entry.getName().contains(slashifyPackage)
+                    && entry.getName().endsWith(SUFFIX)) {
+
+                String cName = entry.getName().replace(SLASH, DOT).replace(SUFFIX, StringConstants.EMPTY);
+                classes.add(cName);
+            }
+        }
+        return classes;
+    }
+
     private List<String> scanPackageOnDisk(ClassLoader loader, String packageName) throws IOException {
         final var packagePathStr = slashify(packageName);
         // TODO: improve reflection, review usage
@@ -18,8 +18,6 @@ package com.robo4j.units;
 
 import com.robo4j.*;
 import com.robo4j.configuration.Configuration;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -33,7 +31,6 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author Miro Wengner (@miragemiko)
  */
 public class CounterUnit extends RoboUnit<CounterCommand> {
-    private static final Logger LOGGER = LoggerFactory.getLogger(CounterUnit.class);
     private final AtomicInteger counter = new AtomicInteger(0);
 
     private int interval;
@@ -61,24 +58,14 @@ public class CounterUnit extends RoboUnit<CounterCommand> {
     private ScheduledFuture<?> scheduledFuture;
 
     /*
-     * The id of the target.
+     * The target, resolved when the system is built.
      */
-    private String targetId;
+    private RoboTarget<Integer> target;
 
     private final class CounterUnitAction implements Runnable {
-        private final RoboReference<Integer> target;
-
-        public CounterUnitAction(RoboReference<Integer> target) {
-            this.target = target;
-        }
-
         @Override
         public void run() {
-            if (target != null) {
-                target.sendMessage(counter.getAndIncrement());
-            } else {
-                LOGGER.error("The target {} for the CounterUnit does not exist! Could not send count!", targetId);
-            }
+            target.sendMessage(counter.getAndIncrement());
         }
     }
 
@@ -95,10 +82,11 @@ public class CounterUnit extends RoboUnit<CounterCommand> {
     @Override
     protected void onInitialization(Configuration configuration) throws ConfigurationException {
         interval = configuration.getInteger(KEY_INTERVAL, DEFAULT_INTERVAL);
-        targetId = configuration.getString(KEY_TARGET, null);
+        String targetId = configuration.getString(KEY_TARGET, null);
         if (targetId == null) {
             throw ConfigurationException.createMissingConfigNameException(KEY_TARGET);
         }
+        target = declareTarget(targetId, Integer.class);
     }
 
     @Override
@@ -108,7 +96,7 @@ public class CounterUnit extends RoboUnit<CounterCommand> {
             switch (message) {
                 case START:
                     scheduledFuture = getContext().getScheduler().scheduleAtFixedRate(
-                            new CounterUnitAction(getContext().getReference(targetId)), 0, interval, TimeUnit.MILLISECONDS);
+                            new CounterUnitAction(), 0, interval, TimeUnit.MILLISECONDS);
                     break;
                 case STOP:
                     scheduledFuture.cancel(false);
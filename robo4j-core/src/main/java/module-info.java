@@ -19,7 +19,9 @@
  * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
  */
 module robo4j.core {
+    requires static java.compiler;
     requires java.logging;
+    requires java.management;
     requires java.xml;
     requires org.slf4j;
 
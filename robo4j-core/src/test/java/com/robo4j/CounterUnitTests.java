@@ -21,6 +21,7 @@ import com.robo4j.configuration.ConfigurationBuilder;
 import com.robo4j.units.CounterCommand;
 import com.robo4j.units.CounterUnit;
 import com.robo4j.units.IntegerConsumer;
+import com.robo4j.units.StringConsumer;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
@@ -75,6 +76,25 @@ class CounterUnitTests {
         assertEquals(0, (int) counter.getAttribute(COUNTER).get());
     }
 
+    @Test
+    void missingTargetFailsWhenBuilding() throws RoboBuilderException {
+        RoboBuilder builder = new RoboBuilder();
+        builder.add(CounterUnit.class, getCounterConfiguration("missing", 1000), ID_COUNTER);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, builder::build);
+        assertTrue(exception.getMessage().contains("missing"));
+    }
+
+    @Test
+    void targetNotAcceptingMessageTypeFailsWhenBuilding() throws RoboBuilderException {
+        RoboBuilder builder = new RoboBuilder();
+        builder.add(StringConsumer.class, ID_CONSUMER);
+        builder.add(CounterUnit.class, getCounterConfiguration(ID_CONSUMER, 1000), ID_COUNTER);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, builder::build);
+        assertTrue(exception.getMessage().contains(Integer.class.getName()));
+    }
+
     private Configuration getCounterConfiguration(String target, int interval) {
         Configuration configuration = new ConfigurationBuilder().addString(CounterUnit.KEY_TARGET, target)
                 .addInteger(CounterUnit.KEY_INTERVAL, interval).build();
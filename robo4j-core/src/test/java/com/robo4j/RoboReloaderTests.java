@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationDiff;
+import com.robo4j.units.StringConsumer;
+import com.robo4j.units.StringScheduledEmitter;
+import com.robo4j.util.SystemUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reloading the configuration of running units.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboReloaderTests {
+    private static final String CONFIG_FILE = "testsubconfig.xml";
+    private static final String CONSUMER_UNIT_NAME = "consumer";
+    private static final String SCHEDULER_CONFIG_FILE = "testschedulerconfig.xml";
+    private static final String SCHEDULER_PERIOD = "<value name=\"schedulerPeriod\" type=\"long\">60000</value>";
+    private static final int TIMEOUT_SECONDS = 5;
+
+    private String xml;
+    private RoboContext system;
+
+    @BeforeEach
+    void setUp() throws IOException, RoboBuilderException {
+        xml = readXml(CONFIG_FILE);
+        system = buildSystem(xml);
+    }
+
+    @AfterEach
+    void tearDown() {
+        system.shutdown();
+    }
+
+    @Test
+    void testReloadChangedSubtree() throws RoboBuilderException {
+        Configuration before = system.getReference(CONSUMER_UNIT_NAME).getConfiguration();
+
+        Map<String, Boolean> result = RoboReloader.reload(system,
+                toStream(xml.replace("<value name=\"y\" type=\"float\">0.917431</value>", "<value name=\"y\" type=\"float\">1.5</value>")));
+
+        Configuration after = system.getReference(CONSUMER_UNIT_NAME).getConfiguration();
+        assertEquals(Map.of(CONSUMER_UNIT_NAME, true), result);
+        assertEquals(1.5f, after.getChildConfiguration("multipliers").getFloat("y", 0f));
+        assertEquals(before.getChildConfiguration("offsets"), after.getChildConfiguration("offsets"));
+    }
+
+    @Test
+    void testReloadRefusedKeepsConfiguration() throws RoboBuilderException {
+        Configuration before = system.getReference(CONSUMER_UNIT_NAME).getConfiguration();
+
+        Map<String, Boolean> result = RoboReloader.reload(system,
+                toStream(xml.replace("<value name=\"target\" type=\"String\">consumer</value>",
+                        "<value name=\"target\" type=\"String\">other</value>")));
+
+        assertEquals(Map.of(CONSUMER_UNIT_NAME, false), result);
+        assertSame(before, system.getReference(CONSUMER_UNIT_NAME).getConfiguration());
+    }
+
+    @Test
+    void testReloadUnchanged() throws RoboBuilderException {
+        assertTrue(RoboReloader.reload(system, toStream(xml)).isEmpty());
+    }
+
+    @Test
+    void testReloadUnknownUnit() {
+        assertThrows(RoboBuilderException.class,
+                () -> RoboReloader.reload(system, toStream(xml.replace("id=\"consumer\"", "id=\"newUnit\""))));
+    }
+
+    @Test
+    void testDiff() throws RoboBuilderException {
+        Configuration current = system.getReference(CONSUMER_UNIT_NAME).getConfiguration();
+        Configuration changed = RoboSnapshot.fromXml(null,
+                toStream(xml.replace("<value name=\"x\" type=\"float\">0.064</value>", "")
+                        .replace("<value name=\"target\" type=\"String\">consumer</value>",
+                                "<value name=\"step\" type=\"int\">2</value>")))
+                .getUnitDefinitions().get(0).getConfiguration();
+
+        ConfigurationDiff diff = ConfigurationDiff.between(current, changed);
+
+        assertEquals(2, diff.getChanges().getInteger("step", 0));
+        assertEquals(Set.of("step"), diff.getChanges().getValueNames());
+        assertEquals(Set.of("offsets"), diff.getChanges().getChildNames());
+        assertEquals(Set.of("target"), diff.getRemovedValueNames());
+        assertTrue(diff.isChanged("offsets"));
+        assertFalse(diff.isChanged("multipliers"));
+        assertTrue(diff.isChangedExcept("offsets"));
+        assertFalse(diff.isChangedExcept("offsets", "step", "target"));
+        assertTrue(ConfigurationDiff.between(current, current).isEmpty());
+    }
+
+    @Test
+    void testReloadReschedules() throws Exception {
+        String schedulerXml = readXml(SCHEDULER_CONFIG_FILE);
+        RoboContext schedulerSystem = buildSystem(schedulerXml);
+        try {
+            RoboReference<String> consumer = schedulerSystem.getReference(StringConsumer.DEFAULT_UNIT_NAME);
+            CountDownLatch latch = consumer.getAttribute(StringConsumer.DESCRIPTOR_COUNT_DOWN_LATCH).get();
+
+            Map<String, Boolean> result = RoboReloader.reload(schedulerSystem,
+                    toStream(schedulerXml.replace(SCHEDULER_PERIOD, SCHEDULER_PERIOD.replace("60000", "10"))));
+
+            assertEquals(Map.of(StringScheduledEmitter.DEFAULT_UNIT_NAME, true), result);
+            assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            schedulerSystem.shutdown();
+        }
+    }
+
+    @Test
+    void testReloadInvalidPeriodKeepsSchedule() throws Exception {
+        String schedulerXml = readXml(SCHEDULER_CONFIG_FILE).replace(SCHEDULER_PERIOD,
+                SCHEDULER_PERIOD.replace("60000", "10"));
+        RoboContext schedulerSystem = buildSystem(schedulerXml);
+        try {
+            RoboReference<String> emitter = schedulerSystem.getReference(StringScheduledEmitter.DEFAULT_UNIT_NAME);
+            RoboReference<String> consumer = schedulerSystem.getReference(StringConsumer.DEFAULT_UNIT_NAME);
+            Configuration before = emitter.getConfiguration();
+
+            Map<String, Boolean> result = RoboReloader.reload(schedulerSystem,
+                    toStream(schedulerXml.replace(">10<", ">0<")));
+            int received = consumer.getAttribute(StringConsumer.DESCRIPTOR_TOTAL_MESSAGES).get();
+            TimeUnit.MILLISECONDS.sleep(200);
+
+            assertEquals(Map.of(StringScheduledEmitter.DEFAULT_UNIT_NAME, false), result);
+            assertSame(before, emitter.getConfiguration());
+            assertTrue(consumer.getAttribute(StringConsumer.DESCRIPTOR_TOTAL_MESSAGES).get() > received + 1);
+        } finally {
+            schedulerSystem.shutdown();
+        }
+    }
+
+    private static String readXml(String resourceName) throws IOException {
+        try (InputStream in = SystemUtil.getInputStreamByResourceName(resourceName)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static RoboContext buildSystem(String xml) throws RoboBuilderException {
+        RoboBuilder builder = new RoboBuilder();
+        builder.add(toStream(xml));
+        RoboContext result = builder.build();
+        result.start();
+        return result;
+    }
+
+    private static InputStream toStream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
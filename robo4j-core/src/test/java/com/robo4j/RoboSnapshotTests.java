@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.BinaryConfigurationFactory;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.configuration.ConfigurationFactoryException;
+import com.robo4j.units.StringConsumer;
+import com.robo4j.units.StringProducer;
+import com.robo4j.util.SystemUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.robo4j.RoboUnitTestUtils.getAttributeOrTimeout;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the binary snapshot of the system and unit definitions.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboSnapshotTests {
+    private static final int MESSAGES = 10;
+    private static final int TIMEOUT = 100;
+    private static final int PRODUCERS = 40;
+
+    @Test
+    void testConfigurationRoundTrip() throws IOException, ConfigurationFactoryException {
+        Configuration config = new ConfigurationBuilder().addString("string", "S1").addInteger("int", 42)
+                .addLong("long", Long.MAX_VALUE).addFloat("float", 1.5f).addDouble("double", -2.25)
+                .addBoolean("boolean", true).addCharacter("char", 'x')
+                .addBuilder("child", new ConfigurationBuilder().addInteger("int", 2)
+                        .addBuilder("grandChild", new ConfigurationBuilder().addString("string", "S2")))
+                .build();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryConfigurationFactory.write(new DataOutputStream(bytes), config);
+        Configuration read = BinaryConfigurationFactory.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(config, read);
+    }
+
+    @Test
+    void testSnapshotBuildsSameSystem() throws Exception {
+        RoboSnapshot snapshot = RoboSnapshot.read(new ByteArrayInputStream(toBytes(
+                RoboSnapshot.fromXml(SystemUtil.getInputStreamByResourceName("testsystem.xml")))));
+
+        assertEquals("mySystem", snapshot.getSystemId());
+        assertEquals(2, snapshot.getUnitDefinitions().size());
+
+        RoboContext system = new RoboBuilder(snapshot).build();
+        system.start();
+        RoboReference<String> producer = system.getReference("producer");
+        for (int i = 0; i < MESSAGES; i++) {
+            producer.sendMessage("sendRandomMessage");
+        }
+        RoboReference<String> consumer = system.getReference("consumer");
+        CountDownLatch consumerLatch = getAttributeOrTimeout(consumer, StringConsumer.DESCRIPTOR_COUNT_DOWN_LATCH);
+        var messagesReceived = consumerLatch.await(TIMEOUT, TimeUnit.MINUTES);
+        var totalProducedMessages = getAttributeOrTimeout(producer, StringProducer.DESCRIPTOR_TOTAL_MESSAGES);
+        system.shutdown();
+
+        assertEquals("mySystem", system.getId());
+        assertEquals(11, system.getConfiguration().getInteger(RoboBuilder.KEY_SCHEDULER_POOL_SIZE, null));
+        assertTrue(messagesReceived);
+        assertEquals(MESSAGES, totalProducedMessages);
+    }
+
+    @Test
+    void testSnapshotWithoutSystem() throws Exception {
+        RoboSnapshot snapshot = RoboSnapshot.read(new ByteArrayInputStream(toBytes(
+                RoboSnapshot.fromXml(null, SystemUtil.getInputStreamByResourceName("testsubconfig.xml")))));
+
+        RoboContext system = new RoboBuilder(snapshot).build();
+
+        assertNull(snapshot.getSystemId());
+        assertNotNull(system.getId());
+        Configuration config = system.getReference("consumer").getConfiguration();
+        assertEquals(0.917431f, config.getChildConfiguration("multipliers").getFloat("y", null));
+        system.shutdown();
+    }
+
+    @Test
+    void testSnapshotValidatesUniqueIds() {
+        assertThrows(RoboBuilderException.class,
+                () -> RoboSnapshot.fromXml(null, SystemUtil.getInputStreamByResourceName("double.xml")));
+    }
+
+    @Test
+    void testSnapshotValidatesUnitClasses() {
+        String xml = "<robo4j><roboUnit id=\"missing\"><class>com.robo4j.units.NoSuchUnit</class></roboUnit></robo4j>";
+
+        assertThrows(RoboBuilderException.class,
+                () -> RoboSnapshot.fromXml(null, new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void testReadRejectsOtherData() {
+        byte[] notASnapshot = "<robo4j/>".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(RoboBuilderException.class, () -> RoboSnapshot.read(new ByteArrayInputStream(notASnapshot)));
+    }
+
+    @Test
+    void testLargeDefinitionFromSnapshot() throws Exception {
+        byte[] xml = createLargeDefinition(PRODUCERS).getBytes(StandardCharsets.UTF_8);
+        RoboContext fromXml = buildFromXml(xml);
+        RoboContext fromSnapshot = buildFromSnapshot(toBytes(RoboSnapshot.fromXml(new ByteArrayInputStream(xml))));
+
+        assertEquals(PRODUCERS + 1, fromSnapshot.getUnits().size());
+        assertEquals(unitIds(fromXml), unitIds(fromSnapshot));
+    }
+
+    private static RoboContext buildFromXml(byte[] xml) throws RoboBuilderException {
+        RoboBuilder builder = new RoboBuilder(new ByteArrayInputStream(xml));
+        builder.add(new ByteArrayInputStream(xml));
+        return shutdown(builder.build());
+    }
+
+    private static RoboContext buildFromSnapshot(byte[] snapshot) throws RoboBuilderException {
+        return shutdown(new RoboBuilder(RoboSnapshot.read(new ByteArrayInputStream(snapshot))).build());
+    }
+
+    private static RoboContext shutdown(RoboContext context) {
+        context.shutdown();
+        return context;
+    }
+
+    private static Set<String> unitIds(RoboContext context) {
+        return context.getUnits().stream().map(RoboReference::getId).collect(Collectors.toSet());
+    }
+
+    private static byte[] toBytes(RoboSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.write(out);
+        return out.toByteArray();
+    }
+
+    private static String createLargeDefinition(int producers) {
+        StringBuilder builder = new StringBuilder("<robo4j><roboSystem id=\"large\"><config name=\"com.robo4j.root\">")
+                .append("<value name=\"poolSizeWorker\" type=\"int\">2</value></config></roboSystem>")
+                .append("<roboUnit id=\"consumer\"><class>com.robo4j.units.StringConsumer</class>")
+                .append("<config name=\"com.robo4j.root\"><value name=\"totalNumberMessages\" type=\"int\">1</value></config></roboUnit>");
+        for (int i = 0; i < producers; i++) {
+            builder.append("<roboUnit id=\"producer").append(i).append("\"><class>com.robo4j.units.StringProducer</class>")
+                    .append("<config name=\"com.robo4j.root\"><value name=\"target\" type=\"String\">consumer</value>")
+                    .append("<value name=\"totalMessages\" type=\"int\">1</value>")
+                    .append("<config name=\"offsets\"><value name=\"x\" type=\"float\">0.064</value>")
+                    .append("<value name=\"y\" type=\"float\">0.001</value></config></config></roboUnit>");
+        }
+        return builder.append("</robo4j>").toString();
+    }
+}
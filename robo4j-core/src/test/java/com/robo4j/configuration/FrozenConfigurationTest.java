@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.configuration;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the immutable configuration created by
+ * {@link ConfigurationFactory#freeze(Configuration)}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class FrozenConfigurationTest {
+    @Test
+    void testFrozenValues() {
+        Configuration config = ConfigurationFactory.freeze(createConfiguration());
+
+        assertEquals(1, config.getInteger("MyInt", -1));
+        assertEquals(Integer.valueOf(1), config.getInteger("MyInt", null));
+        assertEquals(2L, config.getLong("MyLong", -1L));
+        assertEquals(1.5f, config.getFloat("MyFloat", -1f));
+        assertEquals(-2.25, config.getDouble("MyDouble", -1.0));
+        assertEquals("toodiloo", config.getString("MyString", "nope"));
+        assertEquals('C', config.getCharacter("MyCharacter", 'A'));
+        assertTrue(config.getBoolean("MyBoolean", false));
+        assertEquals(-1, config.getInteger("missing", -1));
+        assertNull(config.getInteger("missing", null));
+        assertEquals("child", config.getChildConfiguration("sub").getString("c", null));
+        assertNull(config.getChildConfiguration("missing"));
+    }
+
+    @Test
+    void testFrozenEqualsSource() {
+        Configuration source = createConfiguration();
+        Configuration config = ConfigurationFactory.freeze(source);
+
+        assertEquals(source.getValueNames(), config.getValueNames());
+        assertEquals(source.getChildNames(), config.getChildNames());
+        assertEquals(source.hashCode(), config.hashCode());
+        assertEquals(config, ConfigurationFactory.freeze(createConfiguration()));
+        assertSame(config, ConfigurationFactory.freeze(config));
+        assertThrows(UnsupportedOperationException.class, () -> config.getValueNames().clear());
+    }
+
+    @Test
+    void testWrongPrimitiveType() {
+        Configuration config = ConfigurationFactory.freeze(createConfiguration());
+
+        assertThrows(ClassCastException.class, () -> config.getInteger("MyLong", 0));
+        assertThrows(ClassCastException.class, () -> config.getFloat("MyString", 0f));
+    }
+
+    @Test
+    void testManyValues() {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.addInteger("value" + i, i);
+        }
+        Configuration config = ConfigurationFactory.freeze(builder.build());
+
+        for (int i = 0; i < 1000; i++) {
+            // New, non-interned, strings must also be found
+            assertEquals(i, config.getInteger(new String("value" + i), -1));
+        }
+        assertEquals(1000, config.getValueNames().size());
+    }
+
+    @Test
+    void testSerialization() throws IOException, ClassNotFoundException {
+        Configuration config = ConfigurationFactory.freeze(createConfiguration());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(config);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Configuration read = (Configuration) in.readObject();
+            assertEquals(config, read);
+            assertEquals(1, read.getInteger("MyInt", -1));
+        }
+    }
+
+    @Test
+    void testConcurrentReads() throws Exception {
+        Configuration config = ConfigurationFactory.freeze(createConfiguration());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> readAll(config, 100_000)));
+            }
+            for (Future<Long> result : results) {
+                assertEquals(readAll(config, 100_000), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long readAll(Configuration config, int iterations) {
+        long result = 0;
+        for (int i = 0; i < iterations; i++) {
+            result += config.getInteger("MyInt", 0);
+            result += config.getLong("MyLong", 0L);
+            result += (long) config.getFloat("MyFloat", 0f);
+            result += config.getBoolean("MyBoolean", false) ? 1 : 0;
+        }
+        return result;
+    }
+
+    private static Configuration createConfiguration() {
+        return new ConfigurationBuilder().addInteger("MyInt", 1).addLong("MyLong", 2L).addFloat("MyFloat", 1.5f)
+                .addDouble("MyDouble", -2.25).addString("MyString", "toodiloo").addCharacter("MyCharacter", 'C')
+                .addBoolean("MyBoolean", true).addBuilder("sub", new ConfigurationBuilder().addString("c", "child")).build();
+    }
+}
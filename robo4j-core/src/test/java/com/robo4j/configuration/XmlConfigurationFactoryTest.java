@@ -22,9 +22,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 
 /**
@@ -58,4 +65,60 @@ class XmlConfigurationFactoryTest {
         assertNotNull(config.getChildConfiguration("multipliers"));
         assertNotNull(config.getChildConfiguration("offsets"));
     }
+
+    @Test
+    void testConcurrentParsing() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Configuration>> results = new ArrayList<>();
+            List<Configuration> expected = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Configuration config = createNestedConfiguration(i);
+                String xml = XmlConfigurationFactory.toXml(config);
+                expected.add(config);
+                results.add(executor.submit(() -> XmlConfigurationFactory.fromXml(xml)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expected.get(i), results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testBulkParsingKeepsOrder() throws ConfigurationFactoryException {
+        List<Configuration> expected = new ArrayList<>();
+        List<String> xmls = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Configuration config = createNestedConfiguration(i);
+            expected.add(config);
+            xmls.add(XmlConfigurationFactory.toXml(config));
+        }
+        xmls.add(null);
+
+        List<Configuration> configurations = XmlConfigurationFactory.fromXml(xmls);
+
+        assertEquals(expected, configurations.subList(0, expected.size()));
+        assertNull(configurations.get(expected.size()));
+    }
+
+    @Test
+    void testBulkParsingFailure() {
+        List<String> xmls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            xmls.add(XmlConfigurationFactory.toXml(createNestedConfiguration(i)));
+        }
+        xmls.add("<config name=\"broken\">");
+
+        assertThrows(ConfigurationFactoryException.class, () -> XmlConfigurationFactory.fromXml(xmls));
+    }
+
+    private static Configuration createNestedConfiguration(int i) {
+        return new ConfigurationBuilder().addInteger("index", i).addString("name", "config" + i)
+                .addBuilder("child", new ConfigurationBuilder().addLong("long", i * 1000L)
+                        .addBuilder("grandChild", new ConfigurationBuilder().addFloat("float", i / 2f)))
+                .build();
+    }
 }
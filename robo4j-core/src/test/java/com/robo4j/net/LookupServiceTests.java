@@ -22,14 +22,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 import static com.robo4j.net.LookupServiceProvider.DEFAULT_MULTICAST_ADDRESS;
 import static com.robo4j.net.LookupServiceProvider.DEFAULT_PORT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /**
@@ -94,6 +106,171 @@ class LookupServiceTests {
         assertEquals(1, discoveredContexts.size());
     }
 
+    @Test
+    void testHeartbeatOnlyDecodedWhenChanged() throws IOException {
+        LookupServiceImpl service = new LookupServiceImpl(DEFAULT_MULTICAST_ADDRESS, DEFAULT_PORT, ALLOWED_HEARTBEAT_MISSES,
+                new LocalLookupServiceImpl());
+        LookupServiceImpl.IdKey probe = new LookupServiceImpl.IdKey();
+        InetAddress address = InetAddress.getLoopbackAddress();
+        RoboContextDescriptor descriptor = createRoboContextDescriptor();
+        byte[] buffer = new byte[1500];
+        byte[] message = HearbeatMessageCodec.encode(descriptor);
+        System.arraycopy(message, 0, buffer, 0, message.length);
+
+        service.process(buffer, message.length, address, probe);
+        RoboContextDescriptor firstDecoded = service.getDescriptor(descriptor.getId());
+        service.process(buffer, message.length, address, probe);
+        RoboContextDescriptor secondDecoded = service.getDescriptor(descriptor.getId());
+
+        Map<String, String> changedMetadata = new HashMap<>(descriptor.getMetadata());
+        changedMetadata.put("name", "Renamed");
+        byte[] changedMessage = HearbeatMessageCodec.encode(new RoboContextDescriptor(descriptor.getId(),
+                descriptor.getHeartBeatInterval(), changedMetadata));
+        System.arraycopy(changedMessage, 0, buffer, 0, changedMessage.length);
+        service.process(buffer, changedMessage.length, address, probe);
+        RoboContextDescriptor changedDecoded = service.getDescriptor(descriptor.getId());
+
+        assertNotNull(firstDecoded);
+        assertSame(firstDecoded, secondDecoded);
+        assertNotSame(firstDecoded, changedDecoded);
+        assertEquals("Renamed", changedDecoded.getMetadata().get("name"));
+        assertEquals(1, service.getDiscoveredContexts().size());
+    }
+
+    @Test
+    void testExpiryAndListenerNotifications() throws IOException, InterruptedException {
+        LookupServiceImpl service = new LookupServiceImpl(DEFAULT_MULTICAST_ADDRESS, DEFAULT_PORT, 2f, new LocalLookupServiceImpl());
+        List<String> events = new ArrayList<>();
+        service.addListener(new LookupServiceListener() {
+            @Override
+            public void contextAdded(RoboContextDescriptor descriptor) {
+                events.add("added:" + descriptor.getId());
+            }
+
+            @Override
+            public void contextRemoved(RoboContextDescriptor descriptor) {
+                events.add("removed:" + descriptor.getId());
+            }
+
+            @Override
+            public void contextChanged(RoboContextDescriptor oldDescriptor, RoboContextDescriptor newDescriptor) {
+                events.add("changed:" + newDescriptor.getId());
+            }
+        });
+        LookupServiceImpl.IdKey probe = new LookupServiceImpl.IdKey();
+        byte[] message = HearbeatMessageCodec.encode(new RoboContextDescriptor("ShortLived", 50, new HashMap<>()));
+
+        service.process(message, message.length, InetAddress.getLoopbackAddress(), probe);
+        service.removeExpiredEntries();
+        assertEquals(1, service.getDiscoveredContexts().size());
+
+        service.process(message, message.length, InetAddress.getByAddress(new byte[]{127, 0, 0, 2}), probe);
+        Thread.sleep(300);
+        service.removeExpiredEntries();
+
+        assertTrue(service.getDiscoveredContexts().isEmpty());
+        assertNull(service.getDescriptor("ShortLived"));
+        assertEquals(List.of("added:ShortLived", "changed:ShortLived", "removed:ShortLived"), events);
+    }
+
+    @Test
+    void testDiscoveredContextsSnapshotOnlyRebuiltOnChange() throws IOException {
+        LocalLookupServiceImpl localLookupService = new LocalLookupServiceImpl();
+        LookupServiceImpl service = new LookupServiceImpl(DEFAULT_MULTICAST_ADDRESS, DEFAULT_PORT, ALLOWED_HEARTBEAT_MISSES,
+                localLookupService);
+        LookupServiceImpl.IdKey probe = new LookupServiceImpl.IdKey();
+        byte[] message = HearbeatMessageCodec.encode(createRoboContextDescriptor());
+
+        service.process(message, message.length, InetAddress.getLoopbackAddress(), probe);
+        Map<String, RoboContextDescriptor> first = service.getDiscoveredContexts();
+        long version = service.getDiscoveredContextsVersion();
+        service.process(message, message.length, InetAddress.getLoopbackAddress(), probe);
+        Map<String, RoboContextDescriptor> second = service.getDiscoveredContexts();
+
+        assertSame(first, second);
+        assertEquals(version, service.getDiscoveredContextsVersion());
+
+        localLookupService.addContext(new RoboTestContext("LocalContext", null));
+        Map<String, RoboContextDescriptor> third = service.getDiscoveredContexts();
+
+        assertNotSame(second, third);
+        assertEquals(2, third.size());
+        assertEquals(version + 1, service.getDiscoveredContextsVersion());
+    }
+
+    @Test
+    void testParseSeeds() throws Exception {
+        List<InetSocketAddress> seeds = LookupServiceProvider.parseSeeds(" 127.0.0.1:4094, localhost,[::1]:4095,[::1]", DEFAULT_PORT);
+
+        assertEquals(List.of(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 4094),
+                new InetSocketAddress(InetAddress.getByName("localhost"), DEFAULT_PORT),
+                new InetSocketAddress(InetAddress.getByName("::1"), 4095),
+                new InetSocketAddress(InetAddress.getByName("::1"), DEFAULT_PORT)), seeds);
+        assertThrows(IllegalArgumentException.class, () -> LookupServiceProvider.parseSeeds("fe80::1", DEFAULT_PORT));
+        assertThrows(IllegalArgumentException.class, () -> LookupServiceProvider.parseSeeds("::1:4094", DEFAULT_PORT));
+        assertThrows(IllegalArgumentException.class, () -> LookupServiceProvider.parseSeeds("[::1", DEFAULT_PORT));
+        assertThrows(IllegalArgumentException.class, () -> LookupServiceProvider.parseSeeds("[::1]4094", DEFAULT_PORT));
+    }
+
+    @Test
+    void testDefaultServiceSeeds() {
+        LookupServiceImpl unicastService = (LookupServiceImpl) LookupServiceProvider.createDefaultService("127.0.0.1:4094", true);
+        LookupServiceImpl multicastService = (LookupServiceImpl) LookupServiceProvider.createDefaultService(null, false);
+        LookupServiceImpl malformedService = (LookupServiceImpl) LookupServiceProvider.createDefaultService("fe80::1", false);
+
+        assertTrue(unicastService.isUnicast());
+        assertFalse(multicastService.isUnicast());
+        assertFalse(malformedService.isUnicast());
+    }
+
+    @Test
+    void testUnicastDiscoveryConvergesThroughGossip() throws Exception {
+        int seedPort = findFreeUdpPort();
+        int peerPort = findFreeUdpPort();
+        InetSocketAddress seedAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), seedPort);
+        LookupService seedService = DefaultLookupServiceBuilder.Build().setPort(seedPort).setMissedHeartbeatsBeforeRemoval(3f)
+                .setLocalContexts(new LocalLookupServiceImpl()).setGossip(true).setGossipInterval(100).build();
+        LookupService peerService = DefaultLookupServiceBuilder.Build().setPort(peerPort).setMissedHeartbeatsBeforeRemoval(3f)
+                .setLocalContexts(new LocalLookupServiceImpl()).setSeeds(List.of(seedAddress)).setGossip(true)
+                .setGossipInterval(100).build();
+        RoboContextDescriptor descriptor = new RoboContextDescriptor("UnicastRobot", 100,
+                Map.of(RoboContextDescriptor.KEY_URI, "robo4j://localhost:12345"));
+        ContextEmitter emitter = new ContextEmitter(descriptor,
+                LookupServiceProvider.parseSeeds("127.0.0.1:" + seedPort, DEFAULT_PORT), 100);
+        seedService.start();
+        peerService.start();
+        try {
+            assertTrue(waitFor(() -> {
+                emitter.emit();
+                return peerService.getDescriptor("UnicastRobot") != null;
+            }, 5000), "peer should discover the context through the seed");
+            assertNotNull(seedService.getDescriptor("UnicastRobot"));
+
+            assertTrue(waitFor(() -> peerService.getDescriptor("UnicastRobot") == null
+                    && seedService.getDescriptor("UnicastRobot") == null, 5000), "gossip should not keep a silent context alive");
+        } finally {
+            seedService.stop();
+            peerService.stop();
+        }
+    }
+
+    private static boolean waitFor(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return condition.getAsBoolean();
+    }
+
+    private static int findFreeUdpPort() throws SocketException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
     private static RoboContextDescriptor createRoboContextDescriptor() {
         Map<String, String> metadata = new HashMap<>();
         String id = "MyID";
@@ -16,19 +16,42 @@
  */
 package com.robo4j.net;
 
+import com.robo4j.LifecycleState;
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboContext;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.configuration.ConfigurationBuilder;
 import com.robo4j.configuration.ConfigurationFactory;
+import com.robo4j.units.StringConsumer;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -199,6 +222,572 @@ public class MessageServerTest {
         }
     }
 
+    @Test
+    void testRemoteAttributeAndStateRequests() throws Exception {
+        RoboBuilder builder = new RoboBuilder();
+        StringConsumer consumer = new StringConsumer(builder.getContext(), "consumer");
+        builder.add(consumer);
+        RoboContext context = builder.build();
+        context.start();
+
+        Configuration serverConfig = new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build();
+        MessageServer server = new MessageServer((uuid, id, message) -> context.getReference(id).sendMessage(message),
+                serverConfig, context);
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        t.setDaemon(true);
+        t.start();
+        for (int i = 0; i < 10 && server.getListeningPort() == 0; i++) {
+            Thread.sleep(250);
+        }
+
+        MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID,
+                ConfigurationFactory.createEmptyConfiguration());
+        client.connect();
+        for (int i = 0; i < 3; i++) {
+            client.sendMessage("consumer", "message " + i);
+        }
+        for (int i = 0; i < 10 && consumer.getReceivedMessages().size() < 3; i++) {
+            Thread.sleep(100);
+        }
+
+        List<CompletableFuture<Integer>> inFlight = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            inFlight.add(client.getAttribute("consumer", StringConsumer.DESCRIPTOR_TOTAL_MESSAGES));
+        }
+        for (CompletableFuture<Integer> future : inFlight) {
+            assertEquals(3, future.get(2, TimeUnit.SECONDS));
+        }
+        assertEquals(LifecycleState.STARTED, client.getState("consumer").get(2, TimeUnit.SECONDS));
+        assertEquals(String.class, client.getMessageType("consumer").get(2, TimeUnit.SECONDS));
+        assertNotNull(client.getKnownAttributes("consumer").get(2, TimeUnit.SECONDS));
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> client.getState("missing").get(2, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, failure.getCause());
+
+        client.shutdown();
+        server.stop();
+        context.shutdown();
+    }
+
+    @Test
+    void testRequestsAnsweredAfterRestart() throws Exception {
+        RoboBuilder builder = new RoboBuilder();
+        builder.add(new StringConsumer(builder.getContext(), "consumer"));
+        RoboContext context = builder.build();
+        context.start();
+
+        Configuration serverConfig = new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build();
+        MessageServer server = new MessageServer((uuid, id, message) -> context.getReference(id).sendMessage(message),
+                serverConfig, context);
+        for (int run = 0; run < 2; run++) {
+            int previousPort = server.getListeningPort();
+            Thread t = new Thread(() -> {
+                try {
+                    server.start();
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }, "Server Listener");
+            t.setDaemon(true);
+            t.start();
+            for (int i = 0; i < 10 && server.getListeningPort() == previousPort; i++) {
+                Thread.sleep(250);
+            }
+
+            MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID,
+                    ConfigurationFactory.createEmptyConfiguration());
+            client.connect();
+            assertEquals(LifecycleState.STARTED, client.getState("consumer").get(2, TimeUnit.SECONDS));
+            client.shutdown();
+
+            server.stop();
+            t.join(2000);
+            assertFalse(t.isAlive(), "the server should stop listening");
+        }
+        assertNull(exception);
+        context.shutdown();
+    }
+
+    @Test
+    void testSharedMemoryMessagePassing(@TempDir Path sharedMemoryDirectory) throws Exception {
+        final int messagesNumber = 500;
+        final List<Object> messages = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch messageLatch = new CountDownLatch(messagesNumber + 1);
+
+        RoboBuilder builder = new RoboBuilder();
+        StringConsumer consumer = new StringConsumer(builder.getContext(), "consumer");
+        builder.add(consumer);
+        RoboContext context = builder.build();
+        context.start();
+
+        Configuration serverConfig = new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+                .addString(MessageServer.KEY_SHARED_MEMORY_DIRECTORY, sharedMemoryDirectory.toString()).build();
+        MessageServer server = new MessageServer((uuid, id, message) -> {
+            messages.add(message);
+            messageLatch.countDown();
+        }, serverConfig, context);
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        t.setDaemon(true);
+        t.start();
+        for (int i = 0; i < 10 && server.getListeningPort() == 0; i++) {
+            Thread.sleep(250);
+        }
+
+        // Small enough for the ring buffers to wrap many times
+        Configuration clientConfig = new ConfigurationBuilder().addBoolean(MessageClient.KEY_SHARED_MEMORY, true)
+                .addString(MessageClient.KEY_SHARED_MEMORY_DIRECTORY, sharedMemoryDirectory.toString())
+                .addInteger(MessageClient.KEY_SHARED_MEMORY_CAPACITY, 4096).build();
+        MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, clientConfig);
+        client.connect();
+        assertTrue(client.isUsingSharedMemory());
+
+        // Some too large for one record, which must still arrive in order
+        List<Object> testMessages = new ArrayList<>();
+        for (int i = 0; i < messagesNumber; i++) {
+            Object message = i % 50 == 25 ? "x".repeat(8192 + i) : i % 2 == 0 ? Integer.valueOf(i)
+                    : new TestMessageType(i, "message " + i, null);
+            testMessages.add(message);
+            client.sendMessage("test", message);
+        }
+        // Many times the ring buffer capacity
+        String largeText = "y".repeat(100_000);
+        client.sendMessage("test", new TestMessageType(messagesNumber, largeText, null));
+
+        assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < messagesNumber; i++) {
+            Object expected = testMessages.get(i);
+            Object actual = messages.get(i);
+            if (expected instanceof TestMessageType expectedMessage) {
+                TestMessageType actualMessage = assertInstanceOf(TestMessageType.class, actual);
+                assertEquals(expectedMessage.getNumber(), actualMessage.getNumber());
+                assertEquals(expectedMessage.getText(), actualMessage.getText());
+            } else {
+                assertEquals(expected, actual);
+            }
+        }
+        assertEquals(largeText, assertInstanceOf(TestMessageType.class, messages.get(messagesNumber)).getText());
+
+        // Responses come back over shared memory too
+        assertEquals(LifecycleState.STARTED, client.getState("consumer").get(2, TimeUnit.SECONDS));
+
+        client.shutdown();
+        server.stop();
+        context.shutdown();
+        try (Stream<Path> files = Files.list(sharedMemoryDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testSharedMemoryOutsideDirectoryRefused(@TempDir Path directory) throws Exception {
+        final CountDownLatch messageLatch = new CountDownLatch(1);
+        Path serverDirectory = Files.createDirectory(directory.resolve("server"));
+        Path clientDirectory = Files.createDirectory(directory.resolve("client"));
+
+        Configuration serverConfig = new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+                .addString(MessageServer.KEY_SHARED_MEMORY_DIRECTORY, serverDirectory.toString()).build();
+        MessageServer server = new MessageServer((uuid, id, message) -> messageLatch.countDown(), serverConfig);
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        t.setDaemon(true);
+        t.start();
+        for (int i = 0; i < 10 && server.getListeningPort() == 0; i++) {
+            Thread.sleep(250);
+        }
+
+        Configuration clientConfig = new ConfigurationBuilder().addBoolean(MessageClient.KEY_SHARED_MEMORY, true)
+                .addString(MessageClient.KEY_SHARED_MEMORY_DIRECTORY, clientDirectory.toString()).build();
+        MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, clientConfig);
+        client.connect();
+        // Falls back to the socket
+        assertFalse(client.isUsingSharedMemory());
+        client.sendMessage("test", 1);
+        assertTrue(messageLatch.await(2, TimeUnit.SECONDS));
+
+        client.shutdown();
+        server.stop();
+        try (Stream<Path> files = Files.list(clientDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testAcknowledgedMessagesResentOnceAfterReconnect() throws Exception {
+        final int messagesNumber = 100;
+        final List<Object> messages = Collections.synchronizedList(new ArrayList<>());
+
+        Configuration serverConfig = new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build();
+        MessageServer server = new MessageServer((uuid, id, message) -> messages.add(message), serverConfig);
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        t.setDaemon(true);
+        t.start();
+        for (int i = 0; i < 10 && server.getListeningPort() == 0; i++) {
+            Thread.sleep(250);
+        }
+
+        Configuration clientConfig = new ConfigurationBuilder().addBoolean(MessageClient.KEY_ACKNOWLEDGED, true)
+                .addInteger(MessageClient.KEY_REPLAY_BUFFER_SIZE, 16).addInteger(MessageClient.KEY_ACK_WINDOW, 8).build();
+        MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, clientConfig);
+        client.connect();
+        // More messages than the replay buffer holds, so acknowledgements must flow
+        for (int i = 0; i < messagesNumber; i++) {
+            client.sendMessage("test", i);
+            if (i == messagesNumber / 2) {
+                client.reconnect();
+            }
+        }
+        assertTrue(client.getUnacknowledgedCount() < 16);
+        // The unacknowledged tail is resent, but must not be delivered twice
+        client.reconnect();
+        for (int i = 0; i < 20 && messages.size() < messagesNumber; i++) {
+            Thread.sleep(100);
+        }
+        Thread.sleep(200);
+
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < messagesNumber; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, messages);
+
+        client.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void testAcknowledgedMessagesResentWhenAcknowledgementsStop() throws Exception {
+        final int messagesNumber = 20;
+        final List<Object> messages = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch messageLatch = new CountDownLatch(messagesNumber);
+        Configuration serverConfig = new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build();
+        MessageServer server = new MessageServer((uuid, id, message) -> {
+            messages.add(message);
+            messageLatch.countDown();
+        }, serverConfig);
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        t.setDaemon(true);
+        t.start();
+        for (int i = 0; i < 10 && server.getListeningPort() == 0; i++) {
+            Thread.sleep(250);
+        }
+
+        try (ResponseDroppingProxy proxy = new ResponseDroppingProxy(server.getListeningPort())) {
+            Configuration clientConfig = new ConfigurationBuilder().addBoolean(MessageClient.KEY_ACKNOWLEDGED, true)
+                    .addInteger(MessageClient.KEY_REPLAY_BUFFER_SIZE, 4).addInteger(MessageClient.KEY_ACK_WINDOW, 2)
+                    .addInteger(MessageClient.KEY_REQUEST_TIMEOUT, 500).build();
+            MessageClient client = new MessageClient(proxy.getURI(), CONST_MYUUID, clientConfig);
+            client.connect();
+            // The client does not notice that the acknowledgements stop coming
+            proxy.dropResponses();
+            for (int i = 0; i < messagesNumber; i++) {
+                client.sendMessage("test", i);
+            }
+
+            assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            List<Object> expected = new ArrayList<>();
+            for (int i = 0; i < messagesNumber; i++) {
+                expected.add(i);
+            }
+            assertEquals(expected, messages);
+            client.shutdown();
+        }
+        server.stop();
+    }
+
+    @Test
+    void testCompressionAboveThreshold() throws Exception {
+        final List<Object> messages = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch messageLatch = new CountDownLatch(3);
+
+        Configuration serverConfig = new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build();
+        MessageServer server = new MessageServer((uuid, id, message) -> {
+            messages.add(message);
+            messageLatch.countDown();
+        }, serverConfig);
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        t.setDaemon(true);
+        t.start();
+        for (int i = 0; i < 10 && server.getListeningPort() == 0; i++) {
+            Thread.sleep(250);
+        }
+
+        Configuration clientConfig = new ConfigurationBuilder().addBoolean(MessageClient.KEY_COMPRESSION, true)
+                .addInteger(MessageClient.KEY_COMPRESSION_THRESHOLD, 1024).build();
+        MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, clientConfig);
+        client.connect();
+        String largeText = "scan ".repeat(4000);
+        client.sendMessage("test", new TestMessageType(1, "small", null));
+        client.sendMessage("test", new TestMessageType(2, largeText, null));
+        client.sendMessage("test", 3);
+
+        assertTrue(messageLatch.await(2, TimeUnit.SECONDS));
+        assertEquals("small", ((TestMessageType) messages.get(0)).getText());
+        assertEquals(largeText, ((TestMessageType) messages.get(1)).getText());
+        assertEquals(3, messages.get(2));
+
+        CompressionMetrics clientMetrics = client.getCompressionMetrics();
+        assertEquals(2, clientMetrics.getMessages());
+        assertEquals(1, clientMetrics.getCompressedMessages());
+        assertTrue(clientMetrics.getBytesSaved() > largeText.length() / 2);
+        assertEquals(clientMetrics.getBytesSaved(), server.getCompressionMetrics().getBytesSaved());
+        assertEquals(1, server.getCompressionMetrics().getCompressedMessages());
+
+        client.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void testCompressionAfterReconnect() throws Exception {
+        final CountDownLatch messageLatch = new CountDownLatch(2);
+        MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build(),
+                messageLatch);
+
+        Configuration clientConfig = new ConfigurationBuilder().addBoolean(MessageClient.KEY_COMPRESSION, true)
+                .addInteger(MessageClient.KEY_COMPRESSION_THRESHOLD, 1024).build();
+        MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, clientConfig);
+        client.connect();
+        String largeText = "scan ".repeat(4000);
+        client.sendMessage("test", new TestMessageType(1, largeText, null));
+        client.reconnect();
+        client.sendMessage("test", new TestMessageType(2, largeText, null));
+
+        assertTrue(messageLatch.await(2, TimeUnit.SECONDS));
+        assertEquals(2, client.getCompressionMetrics().getCompressedMessages());
+        assertEquals(2, server.getCompressionMetrics().getCompressedMessages());
+
+        client.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void testNoCompressionOverSharedMemory(@TempDir Path sharedMemoryDirectory) throws Exception {
+        final CountDownLatch messageLatch = new CountDownLatch(1);
+        MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+                .addString(MessageServer.KEY_SHARED_MEMORY_DIRECTORY, sharedMemoryDirectory.toString()).build(), messageLatch);
+
+        Configuration clientConfig = new ConfigurationBuilder().addBoolean(MessageClient.KEY_COMPRESSION, true)
+                .addInteger(MessageClient.KEY_COMPRESSION_THRESHOLD, 1024).addBoolean(MessageClient.KEY_SHARED_MEMORY, true)
+                .addString(MessageClient.KEY_SHARED_MEMORY_DIRECTORY, sharedMemoryDirectory.toString()).build();
+        MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, clientConfig);
+        client.connect();
+        assertTrue(client.isUsingSharedMemory());
+        client.sendMessage("test", new TestMessageType(1, "scan ".repeat(1000), null));
+
+        assertTrue(messageLatch.await(2, TimeUnit.SECONDS));
+        assertEquals(0, client.getCompressionMetrics().getMessages());
+        assertEquals(0, server.getCompressionMetrics().getMessages());
+
+        client.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void testInvalidMessageLengthsRejected() throws Exception {
+        assertThrows(IOException.class, () -> readCompressed(-1, 16, 1024));
+        assertThrows(IOException.class, () -> readCompressed(16, -1, 1024));
+        assertThrows(IOException.class, () -> readCompressed(4096, 16, 1024));
+        assertThrows(IOException.class, () -> readCompressed(16, Integer.MAX_VALUE, 1024));
+        assertThrows(IOException.class, () -> readObjectWithLength(-1));
+        assertThrows(IOException.class, () -> readObjectWithLength(SharedMemoryChannel.MAX_FRAME_LENGTH + 1));
+    }
+
+    private static Object readObjectWithLength(int length) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeInt(length);
+        return SharedMemoryChannel.readObject(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static Object readCompressed(int length, int transferredLength, int maxLength) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(MessageProtocolConstants.COMPRESSION_DEFLATE);
+        out.writeInt(length);
+        out.writeInt(transferredLength);
+        return MessageCompressor.readObject(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), maxLength,
+                new CompressionMetrics());
+    }
+
+    private MessageServer startServer(Configuration serverConfig, CountDownLatch messageLatch) throws InterruptedException {
+        MessageServer server = new MessageServer((uuid, id, message) -> messageLatch.countDown(), serverConfig);
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        t.setDaemon(true);
+        t.start();
+        for (int i = 0; i < 10 && server.getListeningPort() == 0; i++) {
+            Thread.sleep(250);
+        }
+        return server;
+    }
+
+    @Test
+    void testSessionsForgottenWhenEndedOrExpired() throws Exception {
+        Configuration serverConfig = new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+                .addInteger(MessageServer.KEY_SESSION_TIMEOUT, 200).build();
+        MessageServer server = new MessageServer((uuid, id, message) -> {
+        }, serverConfig);
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        t.setDaemon(true);
+        t.start();
+        for (int i = 0; i < 10 && server.getListeningPort() == 0; i++) {
+            Thread.sleep(250);
+        }
+        Configuration clientConfig = new ConfigurationBuilder().addBoolean(MessageClient.KEY_ACKNOWLEDGED, true).build();
+
+        // Ended by the client
+        MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, clientConfig);
+        client.connect();
+        client.sendMessage("test", 1);
+        assertEquals(1, server.getSessionCount());
+        client.shutdown();
+        for (int i = 0; i < 20 && server.getSessionCount() > 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, server.getSessionCount());
+
+        // Abandoned without ending the session
+        try (Socket socket = new Socket("localhost", server.getListeningPort());
+             ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            out.writeShort(MessageProtocolConstants.MAGIC);
+            out.writeUTF(CONST_MYUUID);
+            out.writeUTF("");
+            out.writeByte(MessageProtocolConstants.REQUEST_SESSION);
+            out.writeLong(1);
+            out.writeUTF("abandoned");
+            out.writeInt(1);
+            out.flush();
+            for (int i = 0; i < 20 && server.getSessionCount() == 0; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, server.getSessionCount());
+        }
+        Thread.sleep(400);
+
+        // Resuming another session sweeps the expired one
+        MessageClient nextClient = new MessageClient(server.getListeningURI(), CONST_MYUUID, clientConfig);
+        nextClient.connect();
+        assertEquals(1, server.getSessionCount());
+
+        nextClient.shutdown();
+        server.stop();
+    }
+
+    /*
+     * Forwards connections to a local port. Once dropping, whatever the
+     * server sends on the connections open at that time is discarded, like
+     * on a connection that is broken without the client noticing.
+     */
+    private static final class ResponseDroppingProxy implements AutoCloseable {
+        private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        private final int targetPort;
+        private final List<AtomicBoolean> dropFlags = new CopyOnWriteArrayList<>();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+        private ResponseDroppingProxy(int targetPort) throws IOException {
+            this.targetPort = targetPort;
+            Thread acceptThread = new Thread(this::accept, "Proxy Acceptor");
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
+
+        private URI getURI() throws URISyntaxException {
+            return new URI("robo4j", "", "localhost", serverSocket.getLocalPort(), "", "", "");
+        }
+
+        private void dropResponses() {
+            dropFlags.forEach(drop -> drop.set(true));
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket client = serverSocket.accept();
+                    Socket server = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                    sockets.add(client);
+                    sockets.add(server);
+                    AtomicBoolean drop = new AtomicBoolean();
+                    dropFlags.add(drop);
+                    forward(client, server, new AtomicBoolean());
+                    forward(server, client, drop);
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        private static void forward(Socket from, Socket to, AtomicBoolean drop) {
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[8192];
+                try {
+                    int read;
+                    while ((read = from.getInputStream().read(buffer)) >= 0) {
+                        if (!drop.get()) {
+                            to.getOutputStream().write(buffer, 0, read);
+                        }
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }, "Proxy Forwarder");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
     private static void printInfo(String uuid, String id, Object message) {
         LOGGER.info("Got uuid: {} got id:{} message:{}", uuid, id, message);
     }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class SharedMemoryRingBufferTest {
+
+    @Test
+    void testWrapAround(@TempDir Path directory) throws IOException {
+        SharedMemoryRingBuffer producer = SharedMemoryRingBuffer.create(directory.resolve("ring"), 256);
+        SharedMemoryRingBuffer consumer = SharedMemoryRingBuffer.open(directory.resolve("ring"));
+        byte[] target = new byte[consumer.getMaxRecordLength()];
+
+        // Odd record lengths, so that records end up straddling the end of the buffer
+        for (int i = 0; i < 1000; i++) {
+            byte[] record = ("record " + i + "-".repeat(i % 37)).getBytes(StandardCharsets.UTF_8);
+            assertTrue(producer.offer(record, record.length));
+            int length = consumer.poll(target);
+            assertEquals(record.length, length);
+            assertEquals(new String(record, StandardCharsets.UTF_8), new String(target, 0, length, StandardCharsets.UTF_8));
+        }
+        assertEquals(-1, consumer.poll(target));
+    }
+
+    @Test
+    void testFull(@TempDir Path directory) throws IOException {
+        SharedMemoryRingBuffer producer = SharedMemoryRingBuffer.create(directory.resolve("ring"), 64);
+        SharedMemoryRingBuffer consumer = SharedMemoryRingBuffer.open(directory.resolve("ring"));
+        byte[] record = new byte[12];
+        byte[] target = new byte[consumer.getMaxRecordLength()];
+
+        for (int i = 0; i < 4; i++) {
+            record[0] = (byte) i;
+            assertTrue(producer.offer(record, record.length));
+        }
+        assertFalse(producer.offer(record, record.length));
+        assertEquals(record.length, consumer.poll(target));
+        assertEquals(0, target[0]);
+        assertTrue(producer.offer(record, record.length));
+        assertThrows(IllegalArgumentException.class, () -> producer.offer(new byte[64], 64));
+    }
+
+    @Test
+    void testOpenRejectsOtherFiles(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("other");
+        Files.write(file, new byte[1024]);
+        assertThrows(IOException.class, () -> SharedMemoryRingBuffer.open(file));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.reflect;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link ReflectionScan}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class ReflectionScanTest {
+    private static final String PACKAGE = "test.scan";
+
+    @Test
+    void testAnnotatedScansRootsWithoutIndex(@TempDir Path tempDir) throws IOException {
+        Path indexedRoot = tempDir.resolve("indexed");
+        createClassFile(indexedRoot, "Indexed");
+        createClassFile(indexedRoot, "NotInIndex");
+        Path indexFile = indexedRoot.resolve(ReflectionScan.INDEX_LOCATION + Indexed.class.getName());
+        Files.createDirectories(indexFile.getParent());
+        Files.writeString(indexFile, PACKAGE + ".Indexed\n");
+        Path plainRoot = tempDir.resolve("plain");
+        createClassFile(plainRoot, "Plain");
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{indexedRoot.toUri().toURL(), plainRoot.toUri().toURL()}, null)) {
+            List<String> classes = new ReflectionScan(loader).scanForAnnotated(Indexed.class, PACKAGE);
+
+            assertTrue(classes.contains(PACKAGE + ".Indexed"), classes.toString());
+            assertTrue(classes.contains(PACKAGE + ".Plain"), classes.toString());
+            assertFalse(classes.contains(PACKAGE + ".NotInIndex"), classes.toString());
+        }
+    }
+
+    private static void createClassFile(Path root, String simpleName) throws IOException {
+        Path packageDir = root.resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(packageDir);
+        Files.createFile(packageDir.resolve(simpleName + ".class"));
+    }
+}
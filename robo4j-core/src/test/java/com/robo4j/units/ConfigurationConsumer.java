@@ -21,6 +21,7 @@ import com.robo4j.ConfigurationException;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboUnit;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationDiff;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +63,16 @@ public class ConfigurationConsumer extends RoboUnit<String> {
         LOGGER.info("configuration:{}", configuration);
     }
 
+    /**
+     * The offsets and multipliers can be changed while running, anything else
+     * requires recreating the unit.
+     */
+    @Override
+    protected boolean onReconfigure(ConfigurationDiff diff) {
+        LOGGER.info("reconfigure:{}", diff);
+        return !diff.isChangedExcept("offsets", "multipliers");
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public synchronized <R> R onGetAttribute(AttributeDescriptor<R> attribute) {
@@ -18,6 +18,7 @@ package com.robo4j.units;
 
 import com.robo4j.*;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationDiff;
 import com.robo4j.util.StringConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -52,6 +54,7 @@ public class StringScheduledEmitter extends RoboUnit<String> {
     private String target;
     private Long initSchedulerDelayMillis;
     private Long schedulerPeriodMillis;
+    private ScheduledFuture<?> emission;
     private final Map<String, String> messages = new ConcurrentHashMap<>(10);
 
 
@@ -75,14 +78,41 @@ public class StringScheduledEmitter extends RoboUnit<String> {
         messages.put(target, StringConstants.EMPTY);
     }
 
+    /**
+     * The scheduler period can be changed while running, anything else
+     * requires recreating the unit.
+     */
+    @Override
+    protected boolean onReconfigure(ConfigurationDiff diff) throws ConfigurationException {
+        if (diff.isChangedExcept(PROP_PERIOD)) {
+            return false;
+        }
+        long newPeriodMillis = diff.getConfiguration().getLong(PROP_PERIOD, DEFAULT_INIT_DELAY_MILLS);
+        if (newPeriodMillis <= 0) {
+            throw new ConfigurationException(String.format("%s must be positive, was %d", PROP_PERIOD, newPeriodMillis));
+        }
+        synchronized (this) {
+            schedulerPeriodMillis = newPeriodMillis;
+            if (emission != null) {
+                emission.cancel(false);
+                emission = schedule(0);
+            }
+        }
+        return true;
+    }
+
     @Override
-    public void start() {
+    public synchronized void start() {
         LOGGER.info("start scheduler");
-        getContext().getScheduler().scheduleAtFixedRate(() -> {
+        emission = schedule(initSchedulerDelayMillis);
+    }
+
+    private ScheduledFuture<?> schedule(long initDelayMillis) {
+        return getContext().getScheduler().scheduleAtFixedRate(() -> {
             var messageForTarget = messages.get(target);
             LOGGER.info("scheduler message: {}, target: {}", messageForTarget, target);
             getContext().getReference(target).sendMessage(messageForTarget);
-        }, initSchedulerDelayMillis, schedulerPeriodMillis, TimeUnit.MILLISECONDS);
+        }, initDelayMillis, schedulerPeriodMillis, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -36,6 +36,8 @@ public final class HttpHeaderFieldNames {
 
 	public static final String CACHE_CONTROL = "cache-control";
 
+	public static final String KEEP_ALIVE = "keep-alive";
+
 	public static final String CONTENT_LENGTH = "content-length";
 
 	public static final String CONTENT_DISPOSITION = "content-disposition";
@@ -46,14 +48,28 @@ public final class HttpHeaderFieldNames {
 
 	public static final String DATE = "date";
 
+	public static final String ETAG = "etag";
+
 	public static final String HOST = "host";
 
+	public static final String IF_NONE_MATCH = "if-none-match";
+
 	public static final String ORIGIN = "origin";
 
 	public static final String USER_AGENT = "user-agent";
 
 	public static final String SERVER = "server";
 
+	public static final String TRANSFER_ENCODING = "transfer-encoding";
+
+	public static final String UPGRADE = "upgrade";
+
+	public static final String SEC_WEBSOCKET_KEY = "sec-websocket-key";
+
+	public static final String SEC_WEBSOCKET_ACCEPT = "sec-websocket-accept";
+
+	public static final String SEC_WEBSOCKET_VERSION = "sec-websocket-version";
+
 	public static final String ROBO_UNIT_UID = "uid";
 
 }
@@ -24,7 +24,7 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 
 /**
- * Handle OP_ACCEPT
+ * Handle OP_ACCEPT, hands the accepted connection over to a selector loop
  *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
@@ -33,10 +33,12 @@ public class AcceptSelectionKeyHandler implements SelectionKeyHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(AcceptSelectionKeyHandler.class);
     private final SelectionKey key;
     private final int bufferCapacity;
+    private final HttpSelectorLoop selectorLoop;
 
-    public AcceptSelectionKeyHandler(SelectionKey key, int bufferCapacity) {
+    AcceptSelectionKeyHandler(SelectionKey key, int bufferCapacity, HttpSelectorLoop selectorLoop) {
         this.key = key;
         this.bufferCapacity = bufferCapacity;
+        this.selectorLoop = selectorLoop;
     }
 
     @Override
@@ -44,9 +46,12 @@ public class AcceptSelectionKeyHandler implements SelectionKeyHandler {
         try {
             ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
             SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return key;
+            }
             serverChannel.socket().setReceiveBufferSize(bufferCapacity);
             channel.configureBlocking(false);
-            channel.register(key.selector(), SelectionKey.OP_READ);
+            selectorLoop.register(channel);
         } catch (Exception e) {
             LOGGER.error("handle accept:{}", e.getMessage(), e);
         }
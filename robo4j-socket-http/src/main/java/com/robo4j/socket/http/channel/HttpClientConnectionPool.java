@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import com.robo4j.socket.http.util.ChannelResponseBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of keep-alive client connections, keyed by the address of the server.
+ * Each connection keeps its own response buffer, so sending repeatedly to the
+ * same server reuses both the socket and the buffer.
+ * <p>
+ * The number of open connections is limited by max connections, and the number
+ * of idle connections kept for reuse by max idle. Idle connections older than
+ * the idle timeout, or closed by the server, are not reused.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public final class HttpClientConnectionPool implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientConnectionPool.class);
+	private static final long ACQUIRE_TIMEOUT_MILLIS = 10000;
+
+	/**
+	 * A connection borrowed from the pool. Must be given back with
+	 * {@link HttpClientConnectionPool#release(PooledConnection, boolean)}.
+	 */
+	public static final class PooledConnection {
+		private final InetSocketAddress address;
+		private final SocketChannel channel;
+		private final ChannelResponseBuffer responseBuffer = new ChannelResponseBuffer();
+		private int useCount;
+		private long idleSince;
+
+		private PooledConnection(InetSocketAddress address, SocketChannel channel) {
+			this.address = address;
+			this.channel = channel;
+		}
+
+		public SocketChannel getChannel() {
+			return channel;
+		}
+
+		public ChannelResponseBuffer getResponseBuffer() {
+			return responseBuffer;
+		}
+
+		/**
+		 * @return true if the connection has been used for a previous request.
+		 */
+		public boolean isReused() {
+			return useCount > 1;
+		}
+
+		private boolean isExpired(long now, long idleTimeoutNanos) {
+			return now - idleSince > idleTimeoutNanos;
+		}
+
+		/**
+		 * The server may have closed the connection while it was idle. There
+		 * must be nothing to read on an idle connection, so either end of
+		 * stream or unexpected data means it can not be used.
+		 */
+		private boolean isStale() {
+			try {
+				channel.configureBlocking(false);
+				int read = channel.read(ByteBuffer.allocate(1));
+				channel.configureBlocking(true);
+				return read != 0;
+			} catch (IOException e) {
+				return true;
+			}
+		}
+
+		private void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				LOGGER.debug("closing connection: {}", address, e);
+			}
+		}
+	}
+
+	private final int maxIdle;
+	private final long idleTimeoutNanos;
+	private final Integer sendBufferSize;
+	private final Semaphore permits;
+	private final Map<InetSocketAddress, Deque<PooledConnection>> idleConnections = new HashMap<>();
+	private int idleCount;
+	private boolean closed;
+
+	/**
+	 * @param maxConnections
+	 *            the maximum number of open connections, idle or in use
+	 * @param maxIdle
+	 *            the maximum number of idle connections kept for reuse, 0
+	 *            closes every connection after use
+	 * @param idleTimeoutMillis
+	 *            idle connections older than this are not reused. Should be
+	 *            shorter than the keep-alive timeout of the server
+	 * @param sendBufferSize
+	 *            the send buffer size of new connections, or null for the
+	 *            default
+	 */
+	public HttpClientConnectionPool(int maxConnections, int maxIdle, long idleTimeoutMillis, Integer sendBufferSize) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("maxConnections must be positive: " + maxConnections);
+		}
+		this.maxIdle = Math.max(0, maxIdle);
+		this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+		this.sendBufferSize = sendBufferSize;
+		this.permits = new Semaphore(maxConnections);
+	}
+
+	/**
+	 * @return true if connections are kept for reuse, i.e. the requests should
+	 *         ask for keep-alive.
+	 */
+	public boolean isKeepAlive() {
+		return maxIdle > 0;
+	}
+
+	/**
+	 * Borrows an idle connection to the address, or opens a new one.
+	 *
+	 * @param address
+	 *            the address of the server
+	 * @return the connection
+	 * @throws IOException
+	 *             if no connection could be opened, or max connections are in
+	 *             use for too long
+	 */
+	public PooledConnection acquire(InetSocketAddress address) throws IOException {
+		return acquire(address, true);
+	}
+
+	/**
+	 * Opens a new connection to the address, without reusing an idle one. The
+	 * connection counts against max connections, and is given back with
+	 * {@link #release(PooledConnection, boolean)} like any other.
+	 *
+	 * @param address
+	 *            the address of the server
+	 * @return the new connection
+	 * @throws IOException
+	 *             if the connection could not be opened, or max connections
+	 *             are in use for too long
+	 */
+	public PooledConnection acquireNew(InetSocketAddress address) throws IOException {
+		return acquire(address, false);
+	}
+
+	/**
+	 * Gives back a borrowed connection.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param reusable
+	 *            true if the connection can be used for another request, i.e.
+	 *            the server agreed to keep it alive and the response was read
+	 *            completely. Otherwise the connection is closed.
+	 */
+	public void release(PooledConnection connection, boolean reusable) {
+		try {
+			PooledConnection evicted = null;
+			synchronized (idleConnections) {
+				if (reusable && !closed && maxIdle > 0 && connection.channel.isOpen()) {
+					connection.idleSince = System.nanoTime();
+					idleConnections.computeIfAbsent(connection.address, a -> new ArrayDeque<>()).addFirst(connection);
+					idleCount++;
+					if (idleCount > maxIdle) {
+						evicted = removeOldestIdle();
+					}
+				} else {
+					evicted = connection;
+				}
+			}
+			if (evicted != null) {
+				evicted.close();
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Closes all idle connections. Connections in use are closed when they
+	 * are released, and connections opened later are not kept.
+	 */
+	@Override
+	public void close() {
+		synchronized (idleConnections) {
+			closed = true;
+			idleConnections.values().forEach(connections -> connections.forEach(PooledConnection::close));
+			idleConnections.clear();
+			idleCount = 0;
+		}
+	}
+
+	int getIdleCount() {
+		synchronized (idleConnections) {
+			return idleCount;
+		}
+	}
+
+	private PooledConnection acquire(InetSocketAddress address, boolean reuseIdle) throws IOException {
+		try {
+			if (!permits.tryAcquire(ACQUIRE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				throw new IOException("no free connection to: " + address);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted waiting for connection to: " + address, e);
+		}
+		try {
+			PooledConnection connection = reuseIdle ? pollIdle(address) : null;
+			if (connection == null) {
+				connection = open(address);
+			}
+			connection.useCount++;
+			return connection;
+		} catch (IOException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private PooledConnection pollIdle(InetSocketAddress address) {
+		long now = System.nanoTime();
+		while (true) {
+			PooledConnection connection;
+			synchronized (idleConnections) {
+				Deque<PooledConnection> connections = idleConnections.get(address);
+				connection = connections == null ? null : connections.pollFirst();
+				if (connection == null) {
+					return null;
+				}
+				idleCount--;
+			}
+			if (connection.isExpired(now, idleTimeoutNanos) || connection.isStale()) {
+				connection.close();
+			} else {
+				return connection;
+			}
+		}
+	}
+
+	private PooledConnection removeOldestIdle() {
+		PooledConnection oldest = null;
+		Deque<PooledConnection> oldestConnections = null;
+		for (Iterator<Deque<PooledConnection>> it = idleConnections.values().iterator(); it.hasNext();) {
+			Deque<PooledConnection> connections = it.next();
+			if (connections.isEmpty()) {
+				it.remove();
+			} else if (oldest == null || connections.peekLast().idleSince < oldest.idleSince) {
+				oldest = connections.peekLast();
+				oldestConnections = connections;
+			}
+		}
+		if (oldestConnections != null) {
+			oldestConnections.pollLast();
+			idleCount--;
+		}
+		return oldest;
+	}
+
+	private PooledConnection open(InetSocketAddress address) throws IOException {
+		SocketChannel channel = SocketChannel.open(address);
+		try {
+			if (sendBufferSize != null) {
+				channel.socket().setSendBufferSize(sendBufferSize);
+			}
+			channel.socket().setTcpNoDelay(true);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return new PooledConnection(address, channel);
+	}
+}
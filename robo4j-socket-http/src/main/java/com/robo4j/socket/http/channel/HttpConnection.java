@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.SocketException;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.util.ByteBufferPool;
+import com.robo4j.socket.http.util.ChannelBufferUtils;
+import com.robo4j.socket.http.util.HttpMessageParser;
+import com.robo4j.socket.http.util.HttpResponseWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Queue;
+
+/**
+ * State of a client connection to the HTTP server, attached to the selection
+ * key of the connection. Only used by the selector thread.
+ * <p>
+ * The bytes read are parsed into requests as they arrive, so that several
+ * requests sent without waiting for the responses (pipelining) are processed
+ * one at a time, and answered in order. Once a few requests are waiting,
+ * the connection is not read until they have been answered, so a client
+ * sending requests without reading the responses is held back by the
+ * socket instead of filling the server memory.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+final class HttpConnection {
+    static final int MAX_REQUEST_SIZE = 1 << 20;
+    static final int MAX_QUEUED_REQUESTS = 8;
+
+    private final Queue<HttpDecoratedRequest> requests = new ArrayDeque<>();
+    private final HttpMessageParser parser = HttpMessageParser.forRequests(MAX_REQUEST_SIZE);
+    private long lastActive = System.nanoTime();
+    private int requestCount;
+    private boolean busy;
+    private boolean keepAlive;
+    private boolean keepAliveRequested;
+    private HttpStream stream;
+    private HttpResponseWriter.PendingResponse response;
+
+    /**
+     * Reads what is available from the channel, and parses it into requests,
+     * until {@link #MAX_QUEUED_REQUESTS} requests are waiting. The parser
+     * keeps any incomplete request, so the buffer read into is only borrowed
+     * from the {@link ByteBufferPool} while reading.
+     *
+     * @param channel the channel of the connection.
+     * @return false if the client has closed the connection.
+     * @throws IOException if the reading failed.
+     */
+    boolean read(SocketChannel channel) throws IOException {
+        lastActive = System.nanoTime();
+        if (requests.size() >= MAX_QUEUED_REQUESTS) {
+            // Read again once the waiting requests have been answered
+            return true;
+        }
+        final ByteBuffer input = ByteBufferPool.getDefault().acquire(ChannelBufferUtils.INIT_BUFFER_CAPACITY);
+        try {
+            int read;
+            do {
+                read = channel.read(input);
+                input.flip();
+                parseRequests(input);
+                input.clear();
+            } while (read > 0 && requests.size() < MAX_QUEUED_REQUESTS);
+            return read >= 0;
+        } finally {
+            ByteBufferPool.getDefault().release(input);
+        }
+    }
+
+    boolean hasRequest() {
+        return !requests.isEmpty();
+    }
+
+    /**
+     * Starts processing the next request.
+     *
+     * @param maxRequests the maximum number of requests served on a connection.
+     * @return the request.
+     */
+    HttpDecoratedRequest nextRequest(int maxRequests) {
+        HttpDecoratedRequest request = requests.poll();
+        requestCount++;
+        busy = true;
+        keepAliveRequested = isKeepAliveRequested(request);
+        keepAlive = keepAliveRequested && requestCount < maxRequests;
+        return request;
+    }
+
+    /**
+     * Starts writing the response to the current request.
+     *
+     * @param response the response.
+     */
+    void startResponse(HttpResponseWriter.PendingResponse response) {
+        this.response = response;
+    }
+
+    /**
+     * Writes what the socket takes of the response.
+     *
+     * @param channel the channel of the connection.
+     * @return true if the response has been written completely, false if the
+     * rest is to be written when the socket takes more.
+     * @throws IOException if writing fails.
+     */
+    boolean writeResponse(SocketChannel channel) throws IOException {
+        lastActive = System.nanoTime();
+        if (!response.writeTo(channel)) {
+            return false;
+        }
+        releaseResponse();
+        return true;
+    }
+
+    /**
+     * @return true if the response has been started, but not completely
+     * written.
+     */
+    boolean isWritingResponse() {
+        return response != null;
+    }
+
+    /**
+     * Releases the response being written, if any. Called when the connection
+     * is closed.
+     *
+     * @throws IOException if closing the file of the response fails.
+     */
+    void releaseResponse() throws IOException {
+        final HttpResponseWriter.PendingResponse released = response;
+        response = null;
+        if (released != null) {
+            released.release();
+        }
+    }
+
+    /**
+     * The response to the current request has been written.
+     */
+    void responseWritten() {
+        busy = false;
+        lastActive = System.nanoTime();
+    }
+
+    /**
+     * @return true if the connection is to be kept open after the response
+     * to the current request.
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @return true if the client asked to keep the connection open after the
+     * current request.
+     */
+    boolean isKeepAliveRequested() {
+        return keepAliveRequested;
+    }
+
+    int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * The response to the current request is a stream, which is written until
+     * the client closes the connection, or the connection has been upgraded
+     * to a WebSocket. The connection is never idle.
+     *
+     * @param stream the stream.
+     */
+    void startStream(HttpStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * @return the stream written to the connection, or null.
+     */
+    HttpStream getStream() {
+        return stream;
+    }
+
+    /**
+     * @return true if the connection waits for the next request, or for the
+     * client to take more of the response, for longer than the timeout.
+     */
+    boolean isIdle(long now, long timeoutNanos) {
+        return (!busy || response != null) && now - lastActive > timeoutNanos;
+    }
+
+    private static boolean isKeepAliveRequested(HttpDecoratedRequest request) {
+        String connection = request.getHeaderValue(HttpHeaderFieldNames.CONNECTION);
+        return connection != null
+                && connection.toLowerCase(Locale.ROOT).contains(HttpHeaderFieldValues.CONNECTION_KEEP_ALIVE);
+    }
+
+    private void parseRequests(ByteBuffer input) {
+        try {
+            while (parser.parse(input)) {
+                requests.add(parser.getRequest());
+                parser.reset();
+            }
+        } catch (RuntimeException e) {
+            throw new SocketException("invalid request", e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.enums.StatusCode;
+import com.robo4j.socket.http.util.LatestFrameBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.robo4j.socket.http.util.HttpConstant.HTTP_NEW_LINE;
+import static com.robo4j.socket.http.util.HttpMessageUtils.COLON;
+import static com.robo4j.socket.http.util.HttpMessageUtils.SPACE;
+
+/**
+ * Streams the frames of a {@link LatestFrameBuffer} to one viewer as a
+ * {@code multipart/x-mixed-replace} response, one part per frame.
+ * <p>
+ * The stream listens to the frame buffer. A new frame adds the key to the
+ * ready keys of the selector loop, which switches it to writing. Each write
+ * sends as much of the latest frame as the socket takes. Frames published
+ * while a frame is still being sent are skipped, except the latest. Between
+ * frames the key waits for reading, to see when the viewer closes the
+ * connection.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+final class HttpFrameStream implements HttpStream, LatestFrameBuffer.Listener {
+    static final String BOUNDARY = "robo4jframe";
+    private static final byte[] RESPONSE_HEADER = (HttpVersion.HTTP_1_1.getValue() + SPACE + StatusCode.OK.getCode()
+            + SPACE + StatusCode.OK.getReasonPhrase() + HTTP_NEW_LINE
+            + HttpHeaderFieldNames.CONTENT_TYPE + COLON + SPACE + "multipart/x-mixed-replace; boundary=" + BOUNDARY
+            + HTTP_NEW_LINE
+            + HttpHeaderFieldNames.CACHE_CONTROL + COLON + SPACE + HttpHeaderFieldValues.NO_CACHE + HTTP_NEW_LINE
+            + HttpHeaderFieldNames.CONNECTION + COLON + SPACE + HttpHeaderFieldValues.CONNECTION_CLOSE + HTTP_NEW_LINE
+            + HTTP_NEW_LINE).getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PART_END = HTTP_NEW_LINE.getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_NUMBER_LENGTH = 20;
+
+    private final SelectionKey key;
+    private final LatestFrameBuffer frameBuffer;
+    private final Queue<SelectionKey> readyKeys;
+    private final byte[] partHeaderStart;
+    private final ByteBuffer partHeader;
+    private final ByteBuffer input = ByteBuffer.allocate(64);
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private ByteBuffer[] part;
+    private long sentSequence;
+
+    HttpFrameStream(SelectionKey key, LatestFrameBuffer frameBuffer, Queue<SelectionKey> readyKeys) {
+        this.key = key;
+        this.frameBuffer = frameBuffer;
+        this.readyKeys = readyKeys;
+        this.partHeaderStart = ("--" + BOUNDARY + HTTP_NEW_LINE + HttpHeaderFieldNames.CONTENT_TYPE + COLON + SPACE
+                + frameBuffer.getContentType() + HTTP_NEW_LINE + HttpHeaderFieldNames.CONTENT_LENGTH + COLON + SPACE)
+                .getBytes(StandardCharsets.US_ASCII);
+        this.partHeader = ByteBuffer.allocate(partHeaderStart.length + MAX_NUMBER_LENGTH + 2 * PART_END.length);
+    }
+
+    /**
+     * Writes the response header, and starts listening to the frame buffer.
+     *
+     * @param channel the channel of the viewer.
+     * @throws IOException if writing fails.
+     */
+    void start(SocketChannel channel) throws IOException {
+        // Written like a part, so that the rest is sent when the socket takes more
+        part = new ByteBuffer[] { ByteBuffer.wrap(RESPONSE_HEADER) };
+        frameBuffer.addListener(this);
+        // Send the current frame right away
+        write(channel);
+    }
+
+    /**
+     * Writes what the socket takes of the latest frame.
+     *
+     * @param channel the channel of the viewer.
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void write(SocketChannel channel) throws IOException {
+        scheduled.set(false);
+        while (true) {
+            if (part == null && !preparePart()) {
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+            channel.write(part);
+            if (part[part.length - 1].hasRemaining()) {
+                // Continue when the socket takes more
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            part = null;
+        }
+    }
+
+    /**
+     * Reads and ignores anything the viewer sends.
+     *
+     * @param channel the channel of the viewer.
+     * @return false if the viewer has closed the connection.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public boolean read(SocketChannel channel) throws IOException {
+        int read;
+        do {
+            input.clear();
+            read = channel.read(input);
+        } while (read > 0);
+        return read == 0;
+    }
+
+    /**
+     * Stops listening to the frame buffer.
+     */
+    @Override
+    public void close() {
+        frameBuffer.removeListener(this);
+    }
+
+    @Override
+    public void frameAvailable() {
+        if (!key.isValid()) {
+            close();
+        } else if (scheduled.compareAndSet(false, true)) {
+            readyKeys.add(key);
+            key.selector().wakeup();
+        }
+    }
+
+    private boolean preparePart() {
+        final LatestFrameBuffer.Frame frame = frameBuffer.getFrame();
+        if (frame == null || frame.sequence() == sentSequence) {
+            return false;
+        }
+        sentSequence = frame.sequence();
+        partHeader.clear();
+        partHeader.put(partHeaderStart)
+                .put(String.valueOf(frame.data().length).getBytes(StandardCharsets.US_ASCII))
+                .put(PART_END).put(PART_END).flip();
+        part = new ByteBuffer[] { partHeader, ByteBuffer.wrap(frame.data()), ByteBuffer.wrap(PART_END) };
+        return true;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.RoboReference;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.enums.SystemPath;
+import com.robo4j.socket.http.units.PathHttpMethod;
+import com.robo4j.socket.http.units.ServerContext;
+import com.robo4j.socket.http.units.ServerPathConfig;
+import com.robo4j.socket.http.util.HttpPathUtils;
+import com.robo4j.socket.http.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pushes the changed values of the subscribed unit attributes to the
+ * WebSockets, see {@link HttpWebSocket}. Runs periodically on a thread of its
+ * own.
+ * <p>
+ * Each subscribed attribute is read once per period, however many clients
+ * have subscribed to it. The value is encoded once, and when the message
+ * differs from the last one pushed, the same frame is added to the queue of
+ * every subscriber. Comparing the messages rather than the values also catches
+ * values that the unit changes in place. A new subscriber is sent the latest
+ * value right away. The selector threads change the subscriptions through a
+ * queue of commands, so the state of the publisher is only used by its own
+ * thread.
+ * <p>
+ * A period waits at most the push period for the values. An attribute whose
+ * value is late is skipped, and its pending read is used in a later period,
+ * so one slow unit does not hold back the other pushes.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+final class HttpPushPublisher implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpPushPublisher.class);
+    private static final String KEY_ID = "id";
+    private static final String KEY_ATTRIBUTE = "attribute";
+    private static final String KEY_VALUE = "value";
+    private static final String KEY_ERROR = "error";
+
+    private final ServerContext serverContext;
+    private final long pushPeriodNanos;
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final Map<AttributeKey, PushedAttribute> attributes = new LinkedHashMap<>();
+
+    private record AttributeKey(String unitId, String attributeName) {
+    }
+
+    private static final class PushedAttribute {
+        private final RoboReference<?> unit;
+        private final AttributeDescriptor<?> descriptor;
+        private final Set<HttpWebSocket> subscribers = new LinkedHashSet<>();
+        private String message;
+        private byte[] frame;
+        private Future<?> pending;
+
+        private PushedAttribute(RoboReference<?> unit, AttributeDescriptor<?> descriptor) {
+            this.unit = unit;
+            this.descriptor = descriptor;
+        }
+    }
+
+    HttpPushPublisher(ServerContext serverContext, long pushPeriodMillis) {
+        this.serverContext = serverContext;
+        this.pushPeriodNanos = TimeUnit.MILLISECONDS.toNanos(pushPeriodMillis);
+    }
+
+    /**
+     * @param unitId the id of the unit, or null.
+     * @param error  the description of the error.
+     * @return the message telling the client about an error.
+     */
+    static String errorMessage(String unitId, String error) {
+        final Map<String, String> message = new LinkedHashMap<>();
+        if (unitId != null) {
+            message.put(KEY_ID, unitId);
+        }
+        message.put(KEY_ERROR, error);
+        return JsonUtil.toJsonMap(message);
+    }
+
+    /**
+     * Subscribes a WebSocket to attributes of a unit. May be called from any
+     * thread.
+     *
+     * @param webSocket      the subscriber.
+     * @param unitId         the id of the unit.
+     * @param attributeNames the names of the attributes, all known attributes
+     *                       of the unit if empty.
+     */
+    void subscribe(HttpWebSocket webSocket, String unitId, Set<String> attributeNames) {
+        commands.add(() -> addSubscriber(webSocket, unitId, attributeNames));
+    }
+
+    /**
+     * Stops the subscriptions of a WebSocket to a unit. May be called from
+     * any thread.
+     *
+     * @param webSocket the subscriber.
+     * @param unitId    the id of the unit.
+     */
+    void unsubscribe(HttpWebSocket webSocket, String unitId) {
+        commands.add(() -> removeSubscriber(webSocket, unitId));
+    }
+
+    /**
+     * Stops all subscriptions of a WebSocket. May be called from any thread.
+     *
+     * @param webSocket the subscriber.
+     */
+    void unsubscribeAll(HttpWebSocket webSocket) {
+        commands.add(() -> removeSubscriber(webSocket, null));
+    }
+
+    @Override
+    public void run() {
+        try {
+            Runnable command;
+            while ((command = commands.poll()) != null) {
+                command.run();
+            }
+            pushChanges();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Keep pushing in the next period
+            LOGGER.error("push: {}", e.getMessage(), e);
+        }
+    }
+
+    private void pushChanges() throws InterruptedException {
+        if (attributes.isEmpty()) {
+            return;
+        }
+        final long deadline = System.nanoTime() + pushPeriodNanos;
+        // All attributes are read at the same time, unless still read from an earlier period
+        for (PushedAttribute attribute : attributes.values()) {
+            if (attribute.pending == null) {
+                attribute.pending = attribute.unit.getAttribute(attribute.descriptor);
+            }
+        }
+        for (PushedAttribute attribute : attributes.values()) {
+            final Object value;
+            try {
+                value = attribute.pending.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                LOGGER.debug("attribute {} of {} late, skipped", attribute.descriptor.getAttributeName(),
+                        attribute.unit.getId());
+                continue;
+            } catch (ExecutionException e) {
+                attribute.pending = null;
+                LOGGER.warn("attribute {} of {}: {}", attribute.descriptor.getAttributeName(), attribute.unit.getId(),
+                        e.getMessage());
+                continue;
+            }
+            attribute.pending = null;
+            final String message = valueMessage(attribute, value);
+            if (!message.equals(attribute.message)) {
+                attribute.message = message;
+                attribute.frame = HttpWebSocket.textFrame(message);
+                for (HttpWebSocket subscriber : attribute.subscribers) {
+                    subscriber.push(attribute.frame);
+                }
+            }
+        }
+    }
+
+    private void addSubscriber(HttpWebSocket webSocket, String unitId, Set<String> attributeNames) {
+        final ServerPathConfig pathConfig = serverContext.getPathConfig(
+                new PathHttpMethod(HttpPathUtils.toPath(SystemPath.UNITS.getPath(), unitId), HttpMethod.GET));
+        if (pathConfig == null || pathConfig.getRoboUnit() == null) {
+            webSocket.push(HttpWebSocket.textFrame(errorMessage(unitId, "unknown unit")));
+            return;
+        }
+        final RoboReference<?> unit = pathConfig.getRoboUnit();
+        boolean subscribed = false;
+        for (AttributeDescriptor<?> descriptor : unit.getKnownAttributes()) {
+            if (attributeNames.isEmpty() || attributeNames.contains(descriptor.getAttributeName())) {
+                subscribed = true;
+                final PushedAttribute attribute = attributes.computeIfAbsent(
+                        new AttributeKey(unitId, descriptor.getAttributeName()), k -> new PushedAttribute(unit, descriptor));
+                if (attribute.subscribers.add(webSocket) && attribute.frame != null) {
+                    webSocket.push(attribute.frame);
+                }
+            }
+        }
+        if (!subscribed) {
+            webSocket.push(HttpWebSocket.textFrame(errorMessage(unitId, "unknown attributes")));
+        }
+    }
+
+    private void removeSubscriber(HttpWebSocket webSocket, String unitId) {
+        final Iterator<Map.Entry<AttributeKey, PushedAttribute>> iterator = attributes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<AttributeKey, PushedAttribute> entry = iterator.next();
+            if (unitId == null || unitId.equals(entry.getKey().unitId())) {
+                entry.getValue().subscribers.remove(webSocket);
+                if (entry.getValue().subscribers.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static String valueMessage(PushedAttribute attribute, Object value) {
+        final Map<String, String> message = new LinkedHashMap<>();
+        message.put(KEY_ID, attribute.unit.getId());
+        message.put(KEY_ATTRIBUTE, attribute.descriptor.getAttributeName());
+        message.put(KEY_VALUE, String.valueOf(value));
+        return JsonUtil.toJsonMap(message);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import com.robo4j.RoboContext;
+import com.robo4j.socket.http.SocketException;
+import com.robo4j.socket.http.request.HttpResponseProcess;
+import com.robo4j.socket.http.units.CodecRegistry;
+import com.robo4j.socket.http.units.ServerContext;
+import com.robo4j.socket.http.util.HttpResponseWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static com.robo4j.socket.http.util.ChannelUtils.handleSelectorHandler;
+
+/**
+ * Selector loop of one worker thread of the server. Reads the requests of the
+ * connections handed over by the acceptor, and writes the responses and the
+ * streams, see {@link HttpStream}.
+ * <p>
+ * A connection stays with the loop it was registered with, so its requests
+ * and responses are handled by one thread. The loop blocks in select until a
+ * connection is ready, a response is ready, or it is time to close the idle
+ * connections.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+final class HttpSelectorLoop implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpSelectorLoop.class);
+    private static final long IDLE_CHECK_MILLIS = 1000;
+
+    private final RoboContext context;
+    private final ServerContext serverContext;
+    private final CodecRegistry codecRegistry;
+    private final HttpResponseWriter responseWriter;
+    private final Executor requestExecutor;
+    private final HttpPushPublisher pushPublisher;
+    private final long idleTimeoutNanos;
+    private final Selector selector;
+    private final Map<SelectionKey, HttpResponseProcess> outBuffers = new ConcurrentHashMap<>();
+    private final Queue<SelectionKey> readyKeys = new ConcurrentLinkedQueue<>();
+    private final Queue<SocketChannel> acceptedChannels = new ConcurrentLinkedQueue<>();
+    private volatile boolean active = true;
+
+    HttpSelectorLoop(RoboContext context, ServerContext serverContext, CodecRegistry codecRegistry,
+                     HttpResponseWriter responseWriter, Executor requestExecutor, HttpPushPublisher pushPublisher,
+                     long idleTimeoutNanos) {
+        this.context = context;
+        this.serverContext = serverContext;
+        this.codecRegistry = codecRegistry;
+        this.responseWriter = responseWriter;
+        this.requestExecutor = requestExecutor;
+        this.pushPublisher = pushPublisher;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new SocketException("open selector", e);
+        }
+    }
+
+    /**
+     * Hands an accepted connection over to the loop. May be called from any
+     * thread.
+     *
+     * @param channel the non-blocking channel of the connection.
+     */
+    void register(SocketChannel channel) {
+        acceptedChannels.add(channel);
+        if (active) {
+            selector.wakeup();
+        } else {
+            closeAcceptedChannels();
+        }
+    }
+
+    /**
+     * Stops the loop. The loop closes its connections when it sees the flag.
+     */
+    void stop() {
+        active = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        final long idleCheckMillis = Math.max(1, Math.min(TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos), IDLE_CHECK_MILLIS));
+        long lastIdleCheck = System.nanoTime();
+        try {
+            while (active) {
+                int channelReady = selector.select(idleCheckMillis);
+                registerAcceptedChannels();
+                registerReadyKeys();
+                long now = System.nanoTime();
+                if (now - lastIdleCheck >= TimeUnit.MILLISECONDS.toNanos(idleCheckMillis)) {
+                    closeIdleConnections(now);
+                    lastIdleCheck = now;
+                }
+                if (channelReady == 0) {
+                    continue;
+                }
+
+                Iterator<SelectionKey> selectedIterator = selector.selectedKeys().iterator();
+                while (selectedIterator.hasNext()) {
+                    final SelectionKey selectedKey = selectedIterator.next();
+                    selectedIterator.remove();
+                    handleKey(selectedKey);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("selector loop: {}", e.getMessage(), e);
+        } finally {
+            closeSelector();
+        }
+    }
+
+    private void handleKey(SelectionKey selectedKey) {
+        final HttpConnection connection = (HttpConnection) selectedKey.attachment();
+        if (connection.getStream() != null) {
+            handleStream(selectedKey, connection.getStream());
+            return;
+        }
+        try {
+            if (selectedKey.isReadable()) {
+                handleSelectorHandler(new ReadSelectionKeyHandler(context, serverContext, codecRegistry, outBuffers,
+                        requestExecutor, readyKeys, pushPublisher, selectedKey));
+            } else if (selectedKey.isWritable()) {
+                handleSelectorHandler(new WriteSelectionKeyHandler(serverContext, responseWriter, outBuffers, readyKeys,
+                        selectedKey));
+                if (selectedKey.isValid() && connection.getStream() == null && !connection.isWritingResponse()) {
+                    // Kept alive, continue with any pipelined request
+                    handleSelectorHandler(new ReadSelectionKeyHandler(context, serverContext, codecRegistry, outBuffers,
+                            requestExecutor, readyKeys, pushPublisher, selectedKey));
+                }
+            }
+        } catch (RuntimeException e) {
+            // One failing client must not stop the loop, which serves the
+            // other connections too
+            LOGGER.error("client problem: {}", e.getMessage(), e);
+            closeKey(selectedKey);
+        }
+    }
+
+    private void handleStream(SelectionKey selectedKey, HttpStream stream) {
+        final SocketChannel channel = (SocketChannel) selectedKey.channel();
+        try {
+            if (selectedKey.isReadable() && !stream.read(channel)) {
+                closeKey(selectedKey);
+            } else if (selectedKey.isWritable()) {
+                stream.write(channel);
+            }
+        } catch (IOException e) {
+            // The viewer has gone away
+            LOGGER.debug("stream closed: {}", e.getMessage());
+            closeKey(selectedKey);
+        } catch (RuntimeException e) {
+            LOGGER.error("stream problem: {}", e.getMessage(), e);
+            closeKey(selectedKey);
+        }
+    }
+
+    private void registerAcceptedChannels() {
+        SocketChannel channel;
+        while ((channel = acceptedChannels.poll()) != null) {
+            try {
+                channel.register(selector, SelectionKey.OP_READ, new HttpConnection());
+            } catch (ClosedChannelException e) {
+                LOGGER.debug("connection closed before registration: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Switches the keys with processed requests to writing.
+     */
+    private void registerReadyKeys() {
+        SelectionKey readyKey;
+        while ((readyKey = readyKeys.poll()) != null) {
+            if (readyKey.isValid()) {
+                readyKey.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                outBuffers.remove(readyKey);
+            }
+        }
+    }
+
+    /**
+     * Closes the kept alive connections which have not been used for a while.
+     */
+    private void closeIdleConnections(long now) {
+        for (SelectionKey selectionKey : selector.keys()) {
+            if (selectionKey.isValid() && selectionKey.attachment() instanceof HttpConnection connection
+                    && connection.isIdle(now, idleTimeoutNanos)) {
+                closeKey(selectionKey);
+            }
+        }
+    }
+
+    private void closeSelector() {
+        closeAcceptedChannels();
+        for (SelectionKey selectionKey : selector.keys()) {
+            closeKey(selectionKey);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.error("close selector: {}", e.getMessage(), e);
+        }
+    }
+
+    private void closeAcceptedChannels() {
+        SocketChannel channel;
+        while ((channel = acceptedChannels.poll()) != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.error("close channel: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void closeKey(SelectionKey selectionKey) {
+        outBuffers.remove(selectionKey);
+        if (selectionKey.attachment() instanceof HttpConnection connection) {
+            if (connection.getStream() != null) {
+                connection.getStream().close();
+            }
+            try {
+                connection.releaseResponse();
+            } catch (IOException e) {
+                LOGGER.error("release response: {}", e.getMessage(), e);
+            }
+        }
+        selectionKey.cancel();
+        try {
+            selectionKey.channel().close();
+        } catch (IOException e) {
+            LOGGER.error("close channel: {}", e.getMessage(), e);
+        }
+    }
+}
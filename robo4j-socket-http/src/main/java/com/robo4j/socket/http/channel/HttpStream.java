@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A connection which no longer carries requests and responses, but is written
+ * to and read from by the selector loop until it is closed, see
+ * {@link HttpFrameStream} and {@link HttpWebSocket}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+interface HttpStream {
+
+    /**
+     * Writes what the socket takes of the pending data.
+     *
+     * @param channel the channel of the connection.
+     * @throws IOException if writing fails.
+     */
+    void write(SocketChannel channel) throws IOException;
+
+    /**
+     * Reads what the client has sent.
+     *
+     * @param channel the channel of the connection.
+     * @return false if the connection is to be closed.
+     * @throws IOException if reading fails.
+     */
+    boolean read(SocketChannel channel) throws IOException;
+
+    /**
+     * Releases what the stream holds on to. Called when the connection is
+     * closed.
+     */
+    void close();
+}
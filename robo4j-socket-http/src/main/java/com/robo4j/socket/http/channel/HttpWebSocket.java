@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.enums.StatusCode;
+import com.robo4j.socket.http.enums.SystemPath;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.util.SubscriberQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.robo4j.socket.http.util.HttpConstant.HTTP_NEW_LINE;
+import static com.robo4j.socket.http.util.HttpMessageUtils.COLON;
+import static com.robo4j.socket.http.util.HttpMessageUtils.SPACE;
+import static com.robo4j.util.Utf8Constant.UTF8_SOLIDUS;
+
+/**
+ * Server side of a WebSocket connection (RFC 6455), to which the
+ * {@link HttpPushPublisher} pushes the changed attribute values of the units
+ * the client has subscribed to.
+ * <p>
+ * A GET request of {@value #PATH} asking for the upgrade is answered with
+ * {@code 101 Switching Protocols}. The client then subscribes with text
+ * messages:
+ * <pre>
+ * subscribe controller number,text
+ * unsubscribe controller
+ * </pre>
+ * Without attribute names, all known attributes of the unit are subscribed.
+ * Only units with a configured GET path can be subscribed to. Each change is
+ * pushed as a text message, e.g.
+ * {@code {"id":"controller","attribute":"number","value":"42"}}.
+ * <p>
+ * The messages waiting to be sent are kept in a {@link SubscriberQueue}, so a
+ * client which does not keep up loses the oldest messages. Pings are
+ * answered. Fragmented and binary messages are not supported, and close the
+ * connection.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+final class HttpWebSocket implements HttpStream {
+    static final String PATH = UTF8_SOLIDUS + SystemPath.WEBSOCKET.getPath();
+    static final String COMMAND_SUBSCRIBE = "subscribe";
+    static final String COMMAND_UNSUBSCRIBE = "unsubscribe";
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpWebSocket.class);
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+    private static final int FLAG_FIN = 0x80;
+    private static final int FLAG_MASK = 0x80;
+    private static final int MASK_LENGTH = 4;
+    private static final int STATUS_NORMAL = 1000;
+    private static final int STATUS_PROTOCOL_ERROR = 1002;
+    private static final int STATUS_UNSUPPORTED = 1003;
+    private static final int STATUS_TOO_BIG = 1009;
+    private static final int INPUT_CAPACITY = 4096;
+    // Room for the largest header of a message fitting the input buffer
+    private static final int MAX_PAYLOAD = INPUT_CAPACITY - 8;
+
+    private final SelectionKey key;
+    private final HttpPushPublisher publisher;
+    private final Queue<SelectionKey> readyKeys;
+    private final SubscriberQueue<byte[]> messages;
+    private final Queue<byte[]> controlFrames = new ArrayDeque<>();
+    private final ByteBuffer input = ByteBuffer.allocate(INPUT_CAPACITY);
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private ByteBuffer frame;
+
+    HttpWebSocket(SelectionKey key, HttpPushPublisher publisher, Queue<SelectionKey> readyKeys, int queueSize) {
+        this.key = key;
+        this.publisher = publisher;
+        this.readyKeys = readyKeys;
+        this.messages = new SubscriberQueue<>(queueSize);
+    }
+
+    /**
+     * @param request the request.
+     * @return true if the request asks for the upgrade of the connection to a
+     * WebSocket.
+     */
+    static boolean isUpgradeRequest(HttpDecoratedRequest request) {
+        final String upgrade = request.getHeaderValue(HttpHeaderFieldNames.UPGRADE);
+        return request.getPathMethod() != null && request.getPathMethod().getMethod() == HttpMethod.GET
+                && PATH.equals(request.getPathMethod().getPath()) && upgrade != null
+                && upgrade.toLowerCase(Locale.ROOT).contains(HttpHeaderFieldValues.UPGRADE_WEBSOCKET)
+                && HttpHeaderFieldValues.WEBSOCKET_VERSION.equals(request.getHeaderValue(HttpHeaderFieldNames.SEC_WEBSOCKET_VERSION))
+                && request.getHeaderValue(HttpHeaderFieldNames.SEC_WEBSOCKET_KEY) != null;
+    }
+
+    /**
+     * Encodes a text message into a frame, which can be pushed to any number
+     * of WebSockets.
+     *
+     * @param text the text.
+     * @return the frame.
+     */
+    static byte[] textFrame(String text) {
+        return frame(OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param webSocketKey the key sent by the client.
+     * @return the value of the {@code Sec-WebSocket-Accept} header.
+     */
+    static String acceptKey(String webSocketKey) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            final byte[] hash = digest.digest((webSocketKey.trim() + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    /**
+     * Writes the response to the upgrade request. From then on the connection
+     * carries WebSocket frames.
+     *
+     * @param channel      the channel of the client.
+     * @param webSocketKey the key sent by the client.
+     * @throws IOException if writing fails.
+     */
+    void start(SocketChannel channel, String webSocketKey) throws IOException {
+        final String header = HttpVersion.HTTP_1_1.getValue() + SPACE + StatusCode.SWITCHING_PROTOCOLS.getCode() + SPACE
+                + StatusCode.SWITCHING_PROTOCOLS.getReasonPhrase() + HTTP_NEW_LINE
+                + HttpHeaderFieldNames.UPGRADE + COLON + SPACE + HttpHeaderFieldValues.UPGRADE_WEBSOCKET + HTTP_NEW_LINE
+                + HttpHeaderFieldNames.CONNECTION + COLON + SPACE + HttpHeaderFieldValues.CONNECTION_UPGRADE
+                + HTTP_NEW_LINE
+                + HttpHeaderFieldNames.SEC_WEBSOCKET_ACCEPT + COLON + SPACE + acceptKey(webSocketKey) + HTTP_NEW_LINE
+                + HTTP_NEW_LINE;
+        // Sent before any frame, and the rest when the socket takes more
+        controlFrames.add(header.getBytes(StandardCharsets.US_ASCII));
+        write(channel);
+    }
+
+    /**
+     * Adds a message to the queue of the client, dropping the oldest message
+     * if the client does not keep up. May be called from any thread.
+     *
+     * @param message the frame of the message, see {@link #textFrame(String)}.
+     */
+    void push(byte[] message) {
+        if (!messages.offer(message)) {
+            LOGGER.debug("slow client, messages dropped: {}", messages.getDropped());
+        }
+        if (key.isValid() && scheduled.compareAndSet(false, true)) {
+            readyKeys.add(key);
+            key.selector().wakeup();
+        }
+    }
+
+    /**
+     * Writes what the socket takes of the queued messages.
+     *
+     * @param channel the channel of the client.
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void write(SocketChannel channel) throws IOException {
+        scheduled.set(false);
+        while (true) {
+            if (frame == null) {
+                byte[] next = controlFrames.poll();
+                if (next == null) {
+                    next = messages.poll();
+                }
+                if (next == null) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                frame = ByteBuffer.wrap(next);
+            }
+            channel.write(frame);
+            if (frame.hasRemaining()) {
+                // Continue when the socket takes more, still watching for the close
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            frame = null;
+        }
+    }
+
+    /**
+     * Reads and handles the messages of the client.
+     *
+     * @param channel the channel of the client.
+     * @return false if the client has closed the connection, or sent something
+     * not supported.
+     * @throws IOException if reading fails.
+     */
+    @Override
+    public boolean read(SocketChannel channel) throws IOException {
+        int read;
+        do {
+            read = channel.read(input);
+            input.flip();
+            final boolean open = readFrames(channel);
+            input.compact();
+            if (!open) {
+                return false;
+            }
+        } while (read > 0);
+        return read == 0;
+    }
+
+    /**
+     * Stops the subscriptions of the client.
+     */
+    @Override
+    public void close() {
+        publisher.unsubscribeAll(this);
+    }
+
+    private boolean readFrames(SocketChannel channel) throws IOException {
+        while (input.remaining() >= 2) {
+            final int start = input.position();
+            final int first = input.get(start) & 0xFF;
+            final int second = input.get(start + 1) & 0xFF;
+            if ((second & FLAG_MASK) == 0) {
+                // Frames of clients are always masked
+                return sendClose(channel, STATUS_PROTOCOL_ERROR);
+            }
+            int length = second & 0x7F;
+            int headerLength = 2;
+            if (length == 126) {
+                if (input.remaining() < 4) {
+                    return true;
+                }
+                length = input.getShort(start + 2) & 0xFFFF;
+                headerLength = 4;
+            } else if (length == 127) {
+                return sendClose(channel, STATUS_TOO_BIG);
+            }
+            if (length > MAX_PAYLOAD) {
+                return sendClose(channel, STATUS_TOO_BIG);
+            }
+            if (input.remaining() < headerLength + MASK_LENGTH + length) {
+                // Wait for the rest of the frame
+                return true;
+            }
+            final int maskStart = start + headerLength;
+            final byte[] payload = new byte[length];
+            for (int i = 0; i < length; i++) {
+                payload[i] = (byte) (input.get(maskStart + MASK_LENGTH + i) ^ input.get(maskStart + (i & 3)));
+            }
+            input.position(maskStart + MASK_LENGTH + length);
+            if (!handleFrame(channel, first, payload)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean handleFrame(SocketChannel channel, int first, byte[] payload) throws IOException {
+        final int opcode = first & 0x0F;
+        switch (opcode) {
+            case OPCODE_TEXT:
+                if ((first & FLAG_FIN) == 0) {
+                    return sendClose(channel, STATUS_UNSUPPORTED);
+                }
+                handleCommand(new String(payload, StandardCharsets.UTF_8));
+                return true;
+            case OPCODE_PING:
+                controlFrames.add(frame(OPCODE_PONG, payload));
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return true;
+            case OPCODE_PONG:
+                return true;
+            case OPCODE_CLOSE:
+                return sendClose(channel, STATUS_NORMAL);
+            default:
+                return sendClose(channel, STATUS_UNSUPPORTED);
+        }
+    }
+
+    private void handleCommand(String command) {
+        final String[] parts = command.trim().split("\\s+");
+        if (parts.length >= 2 && parts.length <= 3 && COMMAND_SUBSCRIBE.equals(parts[0])) {
+            final Set<String> attributeNames = parts.length == 3 ? new HashSet<>(Arrays.asList(parts[2].split(",")))
+                    : Set.of();
+            publisher.subscribe(this, parts[1], attributeNames);
+        } else if (parts.length == 2 && COMMAND_UNSUBSCRIBE.equals(parts[0])) {
+            publisher.unsubscribe(this, parts[1]);
+        } else {
+            push(textFrame(HttpPushPublisher.errorMessage(null, "unknown command")));
+        }
+    }
+
+    /**
+     * Sends the close frame, unless a message is half written, and tells the
+     * caller to close the connection.
+     */
+    private boolean sendClose(SocketChannel channel, int status) throws IOException {
+        if (frame == null) {
+            final byte[] payload = { (byte) (status >> 8), (byte) status };
+            channel.write(ByteBuffer.wrap(frame(OPCODE_CLOSE, payload)));
+        }
+        return false;
+    }
+
+    private static byte[] frame(int opcode, byte[] payload) {
+        final int headerLength = payload.length < 126 ? 2 : payload.length <= 0xFFFF ? 4 : 10;
+        final ByteBuffer result = ByteBuffer.allocate(headerLength + payload.length);
+        result.put((byte) (FLAG_FIN | opcode));
+        if (payload.length < 126) {
+            result.put((byte) payload.length);
+        } else if (payload.length <= 0xFFFF) {
+            result.put((byte) 126).putShort((short) payload.length);
+        } else {
+            result.put((byte) 127).putLong(payload.length);
+        }
+        return result.put(payload).array();
+    }
+}
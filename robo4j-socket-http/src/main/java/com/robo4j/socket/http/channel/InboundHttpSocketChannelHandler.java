@@ -17,39 +17,78 @@
 package com.robo4j.socket.http.channel;
 
 import com.robo4j.RoboContext;
-import com.robo4j.socket.http.request.HttpResponseProcess;
+import com.robo4j.scheduler.RoboThreadFactory;
 import com.robo4j.socket.http.units.CodecRegistry;
 import com.robo4j.socket.http.units.ServerContext;
 import com.robo4j.socket.http.util.ChannelUtils;
+import com.robo4j.socket.http.util.HttpResponseWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static com.robo4j.socket.http.util.ChannelUtils.handleSelectorHandler;
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_KEEP_ALIVE_TIMEOUT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_PUSH_PERIOD;
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_REQUEST_WORKERS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_SELECTOR_THREADS;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_BUFFER_CAPACITY;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_REGISTRY;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_KEEP_ALIVE_TIMEOUT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_PUSH_PERIOD;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_REQUEST_WORKERS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SELECTOR_THREADS;
 
 /**
  * Inbound context co
+ * <p>
+ * One acceptor, running on the scheduler of the context, accepts the
+ * connections and hands them over to a number of selector loops in turn, see
+ * {@link HttpSelectorLoop}. The loops read the requests and write the
+ * responses, each on a thread of its own, so the server uses more than one
+ * core. The requests are processed by a pool of request workers, as
+ * processing may wait for attributes from units running on the scheduler of
+ * the context.
+ * <p>
+ * Connections are kept open when the client asks for it with a
+ * {@code Connection: keep-alive} header, until they have been idle for the
+ * keep alive timeout, or have served the maximum number of requests.
+ * <p>
+ * Clients may upgrade a connection to a WebSocket, and subscribe to unit
+ * attributes. The changes are pushed by one publisher, which reads the
+ * attributes periodically on a thread of its own, see
+ * {@link HttpPushPublisher}.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
  */
 public class InboundHttpSocketChannelHandler implements ChannelHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(InboundHttpSocketChannelHandler.class);
+    private static final String NAME_REQUEST_POOL = "Robo4J HTTP Request Pool";
+    private static final String NAME_SELECTOR_POOL = "Robo4J HTTP Selector Pool";
+    private static final String NAME_PUSH_PUBLISHER = "Robo4J HTTP Push Publisher";
 
     private final RoboContext context;
     private final ServerContext serverContext;
-    private final Map<SelectionKey, HttpResponseProcess> outBuffers = new ConcurrentHashMap<>();
-    private ServerSocketChannel socketChannel;
-    private boolean active;
+    private volatile ServerSocketChannel socketChannel;
+    private volatile Selector selector;
+    private ExecutorService requestExecutor;
+    private ExecutorService selectorExecutor;
+    private ScheduledExecutorService pushExecutor;
+    private HttpPushPublisher pushPublisher;
+    private List<HttpSelectorLoop> selectorLoops;
+    private volatile boolean active;
 
     public InboundHttpSocketChannelHandler(RoboContext context, ServerContext serverContext) {
         this.context = context;
@@ -60,55 +99,113 @@ public class InboundHttpSocketChannelHandler implements ChannelHandler {
     public void start() {
         if (!active) {
             active = true;
+            Integer requestWorkers = serverContext.getProperty(Integer.class, PROPERTY_REQUEST_WORKERS);
+            requestExecutor = Executors.newFixedThreadPool(requestWorkers == null ? DEFAULT_REQUEST_WORKERS : requestWorkers,
+                    new RoboThreadFactory(new ThreadGroup(NAME_REQUEST_POOL), NAME_REQUEST_POOL, true));
+            startPushPublisher();
+            selectorLoops = createSelectorLoops();
+            selectorExecutor = Executors.newFixedThreadPool(selectorLoops.size(),
+                    new RoboThreadFactory(new ThreadGroup(NAME_SELECTOR_POOL), NAME_SELECTOR_POOL, true));
+            selectorLoops.forEach(selectorExecutor::execute);
             context.getScheduler().execute(() -> initSocketChannel(serverContext));
         }
     }
 
     @Override
     public void stop() {
+        // The acceptor and the selector loops close the connections when they see the flag
+        active = false;
+        Selector currentSelector = selector;
+        if (currentSelector != null) {
+            currentSelector.wakeup();
+        }
         try {
             if (socketChannel != null && socketChannel.isOpen()) {
-                active = false;
                 socketChannel.close();
             }
         } catch (IOException e) {
             LOGGER.error("server stop problem: {}", e.getMessage(), e);
         }
+        if (selectorLoops != null) {
+            selectorLoops.forEach(HttpSelectorLoop::stop);
+            selectorExecutor.shutdown();
+        }
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
+        if (pushExecutor != null) {
+            pushExecutor.shutdown();
+        }
+    }
+
+    private void startPushPublisher() {
+        final Integer pushPeriod = serverContext.getProperty(Integer.class, PROPERTY_PUSH_PERIOD);
+        final long period = Math.max(1, pushPeriod == null ? DEFAULT_PUSH_PERIOD : pushPeriod);
+        pushPublisher = new HttpPushPublisher(serverContext, period);
+        pushExecutor = Executors.newSingleThreadScheduledExecutor(
+                new RoboThreadFactory(new ThreadGroup(NAME_PUSH_PUBLISHER), NAME_PUSH_PUBLISHER, true));
+        pushExecutor.scheduleWithFixedDelay(pushPublisher, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private List<HttpSelectorLoop> createSelectorLoops() {
+        final CodecRegistry codecRegistry = serverContext.getPropertySafe(CodecRegistry.class, PROPERTY_CODEC_REGISTRY);
+        final Integer keepAliveTimeout = serverContext.getProperty(Integer.class, PROPERTY_KEEP_ALIVE_TIMEOUT);
+        final long idleTimeoutNanos = TimeUnit.MILLISECONDS
+                .toNanos(keepAliveTimeout == null ? DEFAULT_KEEP_ALIVE_TIMEOUT : keepAliveTimeout);
+        final HttpResponseWriter responseWriter = new HttpResponseWriter(context.getId(),
+                TimeUnit.NANOSECONDS.toSeconds(idleTimeoutNanos));
+        final Integer selectorThreads = serverContext.getProperty(Integer.class, PROPERTY_SELECTOR_THREADS);
+        final int loopCount = Math.max(1, selectorThreads == null ? DEFAULT_SELECTOR_THREADS : selectorThreads);
+        final List<HttpSelectorLoop> result = new ArrayList<>(loopCount);
+        for (int i = 0; i < loopCount; i++) {
+            result.add(new HttpSelectorLoop(context, serverContext, codecRegistry, responseWriter, requestExecutor,
+                    pushPublisher, idleTimeoutNanos));
+        }
+        return result;
     }
 
     private void initSocketChannel(ServerContext serverContext) {
         socketChannel = ChannelUtils.initServerSocketChannel(serverContext);
         final SelectionKey key = ChannelUtils.registerSelectionKey(socketChannel);
-
-        final CodecRegistry codecRegistry = serverContext.getPropertySafe(CodecRegistry.class, PROPERTY_CODEC_REGISTRY);
+        selector = key.selector();
         final int bufferCapacity = serverContext.getPropertySafe(Integer.class, PROPERTY_BUFFER_CAPACITY);
+        int nextLoop = 0;
 
-        while (active) {
-            int channelReady = ChannelUtils.getReadyChannelBySelectionKey(key);
-            if (channelReady == 0) {
-                continue;
-            }
+        try {
+            while (active) {
+                // Blocks until a connection is accepted, or the server is stopped
+                int channelReady = ChannelUtils.getReadyChannelBySelectionKey(key);
+                if (channelReady == 0) {
+                    continue;
+                }
 
-            Set<SelectionKey> selectedKeys = key.selector().selectedKeys();
-            Iterator<SelectionKey> selectedIterator = selectedKeys.iterator();
+                Set<SelectionKey> selectedKeys = selector.selectedKeys();
+                Iterator<SelectionKey> selectedIterator = selectedKeys.iterator();
 
-            while (selectedIterator.hasNext()) {
-                final SelectionKey selectedKey = selectedIterator.next();
+                while (selectedIterator.hasNext()) {
+                    final SelectionKey selectedKey = selectedIterator.next();
 
-                selectedIterator.remove();
+                    selectedIterator.remove();
 
-                if (selectedKey.isAcceptable()) {
-                    handleSelectorHandler(new AcceptSelectionKeyHandler(selectedKey, bufferCapacity));
-                } else if (selectedKey.isConnectable()) {
-                    handleSelectorHandler(new ConnectSelectionKeyHandler(selectedKey));
-                } else if (selectedKey.isReadable()) {
-                    handleSelectorHandler(new ReadSelectionKeyHandler(context, serverContext, codecRegistry, outBuffers, selectedKey));
-                } else if (selectedKey.isWritable()) {
-                    handleSelectorHandler(new WriteSelectionKeyHandler(context, serverContext, outBuffers, selectedKey));
+                    if (selectedKey.isAcceptable()) {
+                        handleSelectorHandler(new AcceptSelectionKeyHandler(selectedKey, bufferCapacity,
+                                selectorLoops.get(nextLoop)));
+                        nextLoop = (nextLoop + 1) % selectorLoops.size();
+                    }
                 }
             }
+        } finally {
+            closeSelector();
         }
     }
 
-
+    private void closeSelector() {
+        try {
+            selector.close();
+            // Stopped before the acceptor has started
+            socketChannel.close();
+        } catch (IOException e) {
+            LOGGER.error("close selector: {}", e.getMessage(), e);
+        }
+    }
 }
@@ -19,7 +19,7 @@ package com.robo4j.socket.http.channel;
 import com.robo4j.RoboContext;
 import com.robo4j.socket.http.units.ClientContext;
 import com.robo4j.socket.http.units.DatagramClientUnit;
-import com.robo4j.socket.http.util.ChannelBufferUtils;
+import com.robo4j.socket.http.util.ByteBufferPool;
 import com.robo4j.socket.http.util.ChannelUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,16 +74,17 @@ public class OutboundDatagramSocketChannelHandler implements ChannelHandler {
 
     private void initDatagramSocket(ClientContext clientContext) {
         channel = ChannelUtils.initDatagramChannel(DatagramConnectionType.CLIENT, clientContext);
-        final ByteBuffer buffer = ByteBuffer.allocateDirect(ChannelBufferUtils.INIT_BUFFER_CAPACITY);
+        final ByteBuffer buffer = ByteBufferPool.getDefault().acquire(payload.length);
         final SocketAddress address = ChannelUtils.getSocketAddressByContext(clientContext);
         // while (active.get()){
         try {
-            buffer.clear();
             buffer.put(payload);
             buffer.flip();
             channel.send(buffer, address);
         } catch (Exception e) {
             LOGGER.error("datagram problem:{}", e.getMessage(), e);
+        } finally {
+            ByteBufferPool.getDefault().release(buffer);
         }
 
     }
@@ -16,18 +16,19 @@
  */
 package com.robo4j.socket.http.channel;
 
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
 import com.robo4j.socket.http.SocketException;
 import com.robo4j.socket.http.dto.HttpPathMethodDTO;
 import com.robo4j.socket.http.message.HttpDecoratedRequest;
 import com.robo4j.socket.http.message.HttpDecoratedResponse;
-import com.robo4j.socket.http.util.ChannelBufferUtils;
 import com.robo4j.socket.http.util.ChannelResponseBuffer;
 import com.robo4j.socket.http.util.ChannelUtils;
 import com.robo4j.socket.http.util.HttpMessageBuilder;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -41,13 +42,48 @@ public class OutboundHttpSocketChannelHandler implements ChannelHandler, AutoClo
 
 	private final ByteChannel byteChannel;
 	private final HttpDecoratedRequest message;
-	private final ChannelResponseBuffer channelResponseBuffer = new ChannelResponseBuffer();
+	private final ChannelResponseBuffer channelResponseBuffer;
+	private final boolean keepAlive;
 	private final Lock lock = new ReentrantLock();
 	private HttpDecoratedResponse decoratedResponse;
+	private boolean requestStarted;
 
 	public OutboundHttpSocketChannelHandler(ByteChannel byteChannel, HttpDecoratedRequest message) {
+		this(byteChannel, message, new ChannelResponseBuffer());
+	}
+
+	/**
+	 * @param byteChannel
+	 *            the channel to send the request over
+	 * @param message
+	 *            the request
+	 * @param channelResponseBuffer
+	 *            buffer to read the response with, reused for the requests
+	 *            over a kept alive connection
+	 */
+	public OutboundHttpSocketChannelHandler(ByteChannel byteChannel, HttpDecoratedRequest message,
+			ChannelResponseBuffer channelResponseBuffer) {
+		this(byteChannel, message, channelResponseBuffer, false);
+	}
+
+	/**
+	 * @param byteChannel
+	 *            the channel to send the request over
+	 * @param message
+	 *            the request, not modified
+	 * @param channelResponseBuffer
+	 *            buffer to read the response with, reused for the requests
+	 *            over a kept alive connection
+	 * @param keepAlive
+	 *            true to ask the server to keep the connection alive, unless
+	 *            the request has its own connection header
+	 */
+	public OutboundHttpSocketChannelHandler(ByteChannel byteChannel, HttpDecoratedRequest message,
+			ChannelResponseBuffer channelResponseBuffer, boolean keepAlive) {
 		this.byteChannel = byteChannel;
 		this.message = message;
+		this.channelResponseBuffer = channelResponseBuffer;
+		this.keepAlive = keepAlive;
 	}
 
 	@Override
@@ -56,15 +92,20 @@ public class OutboundHttpSocketChannelHandler implements ChannelHandler, AutoClo
 		final HttpPathMethodDTO pathMethod = new HttpPathMethodDTO(message.getPathMethod().getPath(), message.getPathMethod().getMethod(),
 				message.getCallbacks());
 
+		final Map<String, String> header = message.getHeader();
+		if (keepAlive && header.keySet().stream().noneMatch(HttpHeaderFieldNames.CONNECTION::equalsIgnoreCase)) {
+			header.put(HttpHeaderFieldNames.CONNECTION, HttpHeaderFieldValues.CONNECTION_KEEP_ALIVE);
+		}
 		//@formatter:off
-		final String resultMessage = HttpMessageBuilder.Build()
+		final HttpMessageBuilder messageBuilder = HttpMessageBuilder.Build()
 				.setDenominator(message.getDenominator())
-				.addHeaderElements(message.getHeader())
-				.build(message.getMessage());
+				.addHeaderElements(header);
 		//@formatter:on
+		// a request without a body must end with the header, the connection may be reused
+		final String resultMessage = message.getMessage() == null ? messageBuilder.build()
+				: messageBuilder.build(message.getMessage());
 
-		final ByteBuffer buffer = ChannelBufferUtils.getByteBufferByString(resultMessage);
-		ChannelUtils.handleWriteChannelAndBuffer("client send message", byteChannel, buffer);
+		writeRequest(resultMessage);
 		decoratedResponse = getDecoratedResponse(byteChannel, pathMethod);
 	}
 
@@ -86,6 +127,19 @@ public class OutboundHttpSocketChannelHandler implements ChannelHandler, AutoClo
 		return decoratedResponse;
 	}
 
+	/**
+	 * @return true if any byte of the request has been written. A request of
+	 *         which nothing was written can not have reached the server.
+	 */
+	public boolean isRequestStarted() {
+		return requestStarted;
+	}
+
+	private void writeRequest(String request) {
+		ChannelUtils.handleWriteChannelAndContent("client send message", byteChannel, request,
+				written -> requestStarted = written > 0);
+	}
+
 	private HttpDecoratedResponse getDecoratedResponse(ByteChannel byteChannel, HttpPathMethodDTO pathMethod) {
 		lock.lock();
 		try {
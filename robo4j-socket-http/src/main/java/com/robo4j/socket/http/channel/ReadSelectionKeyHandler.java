@@ -17,83 +17,138 @@
 package com.robo4j.socket.http.channel;
 
 import com.robo4j.RoboContext;
+import com.robo4j.socket.http.HttpHeaderFieldNames;
 import com.robo4j.socket.http.SocketException;
+import com.robo4j.socket.http.enums.StatusCode;
 import com.robo4j.socket.http.message.HttpDecoratedRequest;
 import com.robo4j.socket.http.request.HttpResponseProcess;
+import com.robo4j.socket.http.request.HttpResponseProcessBuilder;
 import com.robo4j.socket.http.request.RoboRequestCallable;
 import com.robo4j.socket.http.request.RoboRequestFactory;
 import com.robo4j.socket.http.units.CodecRegistry;
 import com.robo4j.socket.http.units.ServerContext;
-import com.robo4j.socket.http.util.ChannelRequestBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.Map;
-import java.util.concurrent.Future;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_KEEP_ALIVE_MAX_REQUESTS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_PUSH_QUEUE_SIZE;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_KEEP_ALIVE_MAX_REQUESTS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_PUSH_QUEUE_SIZE;
 
 /**
  * Reading TPC/IP Socket protocol handler
- *
+ * <p>
+ * Reads the available bytes into the {@link HttpConnection}, and hands the
+ * next complete request over to the request executor, so the selector thread
+ * never waits for a request to be processed. The key is not interested in
+ * anything until the response is ready. Then the key is added to the ready
+ * keys, and the selector is woken up to switch the key to
+ * {@link SelectionKey#OP_WRITE}.
+ * <p>
+ * A request asking for the upgrade to a WebSocket is answered right away,
+ * see {@link HttpWebSocket}.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
  */
 public class ReadSelectionKeyHandler implements SelectionKeyHandler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReadSelectionKeyHandler.class);
 
 	private final RoboContext context;
 	private final ServerContext serverContext;
 	@Deprecated  // FIXME: 2/18/18 codecRegistry are in context
 	private final CodecRegistry codecRegistry;
 	private final Map<SelectionKey, HttpResponseProcess> outBuffers;
+	private final Executor requestExecutor;
+	private final Queue<SelectionKey> readyKeys;
+	private final HttpPushPublisher pushPublisher;
 	private final SelectionKey key;
-	private final Lock lock = new ReentrantLock();
-	private final ChannelRequestBuffer channelRequestBuffer = new ChannelRequestBuffer();
 
 	public ReadSelectionKeyHandler(RoboContext context, ServerContext serverContext, CodecRegistry codecRegistry,
-								   Map<SelectionKey, HttpResponseProcess> outBuffers, SelectionKey key) {
+								   Map<SelectionKey, HttpResponseProcess> outBuffers, Executor requestExecutor,
+								   Queue<SelectionKey> readyKeys, HttpPushPublisher pushPublisher, SelectionKey key) {
 		this.context = context;
 		this.serverContext = serverContext;
 		this.codecRegistry = codecRegistry;
 		this.outBuffers = outBuffers;
+		this.requestExecutor = requestExecutor;
+		this.readyKeys = readyKeys;
+		this.pushPublisher = pushPublisher;
 		this.key = key;
 	}
 
 	@Override
 	public SelectionKey handle() {
 		SocketChannel channel = (SocketChannel) key.channel();
-		lock.lock();
+		HttpConnection connection = (HttpConnection) key.attachment();
+		boolean open;
 		try {
-			final HttpDecoratedRequest decoratedRequest = channelRequestBuffer.getHttpDecoratedRequestByChannel(channel);
-			final RoboRequestFactory factory = new RoboRequestFactory(codecRegistry);
-			final RoboRequestCallable callable = new RoboRequestCallable(context, serverContext, decoratedRequest, factory);
-			final Future<HttpResponseProcess> futureResult = context.getScheduler().submit(callable);
-			final HttpResponseProcess result = extractRoboResponseProcess(futureResult);
-			outBuffers.put(key, result);
-			registerSelectionKey(channel);
-			return key;
-		} catch (IOException e){
+			open = connection.read(channel);
+		} catch (IOException e) {
 			throw new SocketException(e.getMessage());
-		}finally {
-			lock.unlock();
 		}
+		if (connection.hasRequest()) {
+			Integer maxRequests = serverContext.getProperty(Integer.class, PROPERTY_KEEP_ALIVE_MAX_REQUESTS);
+			final HttpDecoratedRequest request = connection
+					.nextRequest(maxRequests == null ? DEFAULT_KEEP_ALIVE_MAX_REQUESTS : maxRequests);
+			if (HttpWebSocket.isUpgradeRequest(request)) {
+				upgrade(channel, connection, request);
+			} else {
+				process(request);
+			}
+		} else if (!open) {
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				throw new SocketException(e.getMessage());
+			}
+		}
+		return key;
 	}
 
-	private HttpResponseProcess extractRoboResponseProcess(Future<HttpResponseProcess> future) {
+	private void upgrade(SocketChannel channel, HttpConnection connection, HttpDecoratedRequest request) {
+		final Integer queueSize = serverContext.getProperty(Integer.class, PROPERTY_PUSH_QUEUE_SIZE);
+		final HttpWebSocket webSocket = new HttpWebSocket(key, pushPublisher, readyKeys,
+				queueSize == null ? DEFAULT_PUSH_QUEUE_SIZE : queueSize);
+		connection.startStream(webSocket);
 		try {
-			return future.get();
-		} catch (Exception e) {
-			throw new SocketException("extract robo response", e);
+			webSocket.start(channel, request.getHeaderValue(HttpHeaderFieldNames.SEC_WEBSOCKET_KEY));
+		} catch (IOException e) {
+			throw new SocketException("websocket handshake", e);
+		}
+	}
+
+	private void process(HttpDecoratedRequest decoratedRequest) {
+		// Nothing more to read until the response has been written
+		key.interestOps(0);
+		final RoboRequestFactory factory = new RoboRequestFactory(codecRegistry);
+		final RoboRequestCallable callable = new RoboRequestCallable(context, serverContext, decoratedRequest, factory);
+		try {
+			requestExecutor.execute(() -> respond(callable));
+		} catch (RejectedExecutionException e) {
+			throw new SocketException("server stopped", e);
 		}
 	}
 
-	private void registerSelectionKey(SocketChannel channel) {
+	private void respond(RoboRequestCallable callable) {
+		HttpResponseProcess result;
 		try {
-			channel.register(key.selector(), SelectionKey.OP_WRITE);
+			result = callable.call();
 		} catch (Exception e) {
-			throw new SocketException("register selection key", e);
+			LOGGER.error("request processing:{}", e.getMessage(), e);
+			result = HttpResponseProcessBuilder.Builder().setCode(StatusCode.BAD_REQUEST).build();
 		}
+		outBuffers.put(key, result);
+		readyKeys.add(key);
+		key.selector().wakeup();
 	}
 }
@@ -16,113 +16,166 @@
  */
 package com.robo4j.socket.http.channel;
 
-import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
-import com.robo4j.socket.http.HttpHeaderFieldNames;
-import com.robo4j.socket.http.HttpVersion;
 import com.robo4j.socket.http.SocketException;
 import com.robo4j.socket.http.enums.StatusCode;
-import com.robo4j.socket.http.message.HttpDenominator;
-import com.robo4j.socket.http.message.HttpResponseDenominator;
 import com.robo4j.socket.http.request.HttpResponseProcess;
 import com.robo4j.socket.http.units.PathHttpMethod;
 import com.robo4j.socket.http.units.ServerContext;
 import com.robo4j.socket.http.units.ServerPathConfig;
-import com.robo4j.socket.http.util.ChannelBufferUtils;
-import com.robo4j.socket.http.util.ChannelUtils;
-import com.robo4j.socket.http.util.HttpMessageBuilder;
+import com.robo4j.socket.http.util.HttpResponseCache;
+import com.robo4j.socket.http.util.HttpResponseWriter;
+import com.robo4j.socket.http.util.LatestFrameBuffer;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.Queue;
+
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_KEEP_ALIVE_MAX_REQUESTS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_KEEP_ALIVE_MAX_REQUESTS;
 
 /**
+ * Writes the response. The connection is kept open for the next request if
+ * the client asked for it, see {@link HttpConnection}, and closed otherwise.
+ * <p>
+ * The result of a GET request is written as the body. It may be a
+ * {@link ByteBuffer}, or a {@link Path} of a file, which is streamed from the
+ * file, see {@link HttpResponseWriter}. The response is kept on the
+ * {@link HttpConnection} and written as far as the socket takes it, the rest
+ * when the key is writable again. A cached response is written with its
+ * entity tag, see {@link HttpResponseCache}. A {@link LatestFrameBuffer} is
+ * streamed until the client closes the connection, see
+ * {@link HttpFrameStream}. Other results are sent as text.
+ *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
  */
 public class WriteSelectionKeyHandler implements SelectionKeyHandler {
-
-	private final RoboContext context;
 	private final ServerContext serverContext;
+	private final HttpResponseWriter responseWriter;
 	private final Map<SelectionKey, HttpResponseProcess> outBuffers;
+	private final Queue<SelectionKey> readyKeys;
 	private final SelectionKey key;
 
-	public WriteSelectionKeyHandler(RoboContext context, ServerContext serverContext,
-                                    Map<SelectionKey, HttpResponseProcess> outBuffers, SelectionKey key) {
-		this.context = context;
+	public WriteSelectionKeyHandler(ServerContext serverContext, HttpResponseWriter responseWriter,
+                                    Map<SelectionKey, HttpResponseProcess> outBuffers, Queue<SelectionKey> readyKeys,
+                                    SelectionKey key) {
 		this.serverContext = serverContext;
+		this.responseWriter = responseWriter;
 		this.outBuffers = outBuffers;
+		this.readyKeys = readyKeys;
 		this.key = key;
 	}
 
-
-
 	@Override
 	public SelectionKey handle() {
-		SocketChannel channel = (SocketChannel) key.channel();
+		final SocketChannel channel = (SocketChannel) key.channel();
+		final HttpConnection connection = (HttpConnection) key.attachment();
+		if (!connection.isWritingResponse() && !startResponse(channel, connection)) {
+			return key;
+		}
+		try {
+			if (!connection.writeResponse(channel)) {
+				// Continue when the socket takes more
+				key.interestOps(SelectionKey.OP_WRITE);
+				return key;
+			}
+		} catch (IOException e) {
+			throw new SocketException("response write", e);
+		}
+
+		if (connection.isKeepAlive()) {
+			// Wait for the next request on the same connection
+			connection.responseWritten();
+			key.interestOps(SelectionKey.OP_READ);
+			return key;
+		}
+		try {
+			key.cancel();
+			key.channel().close();
+		} catch (IOException e) {
+			throw new SocketException(e.getMessage());
+		}
+		return key;
+	}
 
-		final HttpResponseProcess responseProcess = outBuffers.get(key);
+	/**
+	 * Prepares the response to the processed request.
+	 *
+	 * @return false if the response is a stream, which writes itself.
+	 */
+	private boolean startResponse(SocketChannel channel, HttpConnection connection) {
+		final HttpResponseProcess responseProcess = outBuffers.remove(key);
+		final int connectionHeader = getConnectionHeader(connection);
 
-		ByteBuffer buffer;
 		if (responseProcess.getMethod() != null) {
 			switch (responseProcess.getMethod()) {
 			case GET:
-				String getResponse;
-				if (responseProcess.getResult() != null && responseProcess.getCode().equals(StatusCode.OK)) {
-					// FIXME: 2/18/18 (miro) put abstraction
-					String responseMessage = responseProcess.getResult().toString();
-					HttpDenominator denominator = new HttpResponseDenominator(responseProcess.getCode(),
-							HttpVersion.HTTP_1_1);
-					getResponse = HttpMessageBuilder.Build().setDenominator(denominator)
-							.addHeaderElement(HttpHeaderFieldNames.ROBO_UNIT_UID, context.getId())
-							.addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH,
-									String.valueOf(responseMessage.length()))
-							.build(responseMessage);
+				if (responseProcess.getResult() instanceof LatestFrameBuffer frameBuffer
+						&& responseProcess.getCode().equals(StatusCode.OK)) {
+					startStream(channel, connection, frameBuffer);
+					return false;
+				}
+				if (responseProcess.getResult() instanceof HttpResponseCache.Entry entry) {
+					connection.startResponse(responseWriter.prepare(responseProcess.getCode(), connectionHeader,
+							entry.etag(), responseProcess.getCode().equals(StatusCode.OK) ? entry.body().duplicate() : null));
+				} else if (responseProcess.getResult() != null && responseProcess.getCode().equals(StatusCode.OK)) {
+					connection.startResponse(prepareResult(connectionHeader, responseProcess.getResult()));
 				} else {
-					HttpDenominator denominator = new HttpResponseDenominator(responseProcess.getCode(),
-							HttpVersion.HTTP_1_1);
-					getResponse = HttpMessageBuilder.Build().setDenominator(denominator).build();
+					connection.startResponse(responseWriter.prepare(responseProcess.getCode(), connectionHeader, null, null));
 				}
-				buffer = ChannelBufferUtils.getByteBufferByString(getResponse);
-				ChannelUtils.handleWriteChannelAndBuffer("get write", channel, buffer);
 				break;
 			case POST:
-				HttpDenominator denominator = new HttpResponseDenominator(responseProcess.getCode(),
-						HttpVersion.HTTP_1_1);
-				String postResponse = HttpMessageBuilder.Build().setDenominator(denominator)
-						.build();
+				connection.startResponse(responseWriter.prepare(responseProcess.getCode(), connectionHeader, null, null));
 				if (responseProcess.getResult() != null && responseProcess.getCode().equals(StatusCode.ACCEPTED)) {
-					buffer = ChannelBufferUtils.getByteBufferByString(postResponse);
-					ChannelUtils.handleWriteChannelAndBuffer("post write", channel, buffer);
 					sendMessageToTargetRoboReference(responseProcess);
-				} else {
-					buffer = ChannelBufferUtils.getByteBufferByString(postResponse);
-					ChannelUtils.handleWriteChannelAndBuffer("post write", channel, buffer);
 				}
+				break;
 			default:
+				connection.startResponse(responseWriter.prepare(responseProcess.getCode(), connectionHeader, null, null));
 				break;
 			}
 		} else {
-			HttpDenominator denominator = new HttpResponseDenominator(StatusCode.BAD_REQUEST, HttpVersion.HTTP_1_1);
-			String badResponse = HttpMessageBuilder.Build().setDenominator(denominator).build();
-			buffer = ChannelBufferUtils.getByteBufferByString(badResponse);
-			try {
-				ChannelUtils.writeBuffer(channel, buffer);
-			} catch (Exception e) {
-				throw new SocketException("post write", e);
-			}
-			buffer.clear();
+			connection.startResponse(responseWriter.prepare(StatusCode.BAD_REQUEST, connectionHeader, null, null));
 		}
+		return true;
+	}
 
+	private void startStream(SocketChannel channel, HttpConnection connection, LatestFrameBuffer frameBuffer) {
+		final HttpFrameStream stream = new HttpFrameStream(key, frameBuffer, readyKeys);
+		connection.startStream(stream);
 		try {
-			key.cancel();
-			key.channel().close();
+			stream.start(channel);
 		} catch (IOException e) {
-			throw new SocketException(e.getMessage());
+			throw new SocketException("stream write", e);
 		}
-		return key;
+	}
+
+	private HttpResponseWriter.PendingResponse prepareResult(int connectionHeader, Object result) {
+		if (result instanceof ByteBuffer buffer) {
+			return responseWriter.prepare(StatusCode.OK, connectionHeader, null, buffer.duplicate());
+		} else if (result instanceof Path path) {
+			try {
+				return responseWriter.prepare(StatusCode.OK, connectionHeader, path);
+			} catch (IOException e) {
+				throw new SocketException("get file", e);
+			}
+		} else {
+			return responseWriter.prepare(StatusCode.OK, connectionHeader, result.toString());
+		}
+	}
+
+	private int getConnectionHeader(HttpConnection connection) {
+		if (connection.isKeepAlive()) {
+			Integer maxRequests = serverContext.getProperty(Integer.class, PROPERTY_KEEP_ALIVE_MAX_REQUESTS);
+			return (maxRequests == null ? DEFAULT_KEEP_ALIVE_MAX_REQUESTS : maxRequests) - connection.getRequestCount();
+		}
+		return connection.isKeepAliveRequested() ? HttpResponseWriter.CONNECTION_CLOSE
+				: HttpResponseWriter.CONNECTION_DEFAULT;
 	}
 
 	private void sendMessageToTargetRoboReference(HttpResponseProcess process) {
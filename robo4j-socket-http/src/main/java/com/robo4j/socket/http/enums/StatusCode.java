@@ -27,8 +27,11 @@ import java.util.stream.Collectors;
 public enum StatusCode {
 
     //@formatter:off
+    SWITCHING_PROTOCOLS (101, "Switching Protocols"),
     OK                  (200, "OK"),
     ACCEPTED            (202, "Accepted"),
+    NO_CONTENT          (204, "No Content"),
+    NOT_MODIFIED        (304, "Not Modified"),
     BAD_REQUEST         (400, "Bad Request"),
     NOT_FOUND           (404, "Not Found"),
     NOT_ACCEPTABLE      (406, "Not Acceptable"),
@@ -29,6 +29,7 @@ public enum SystemPath {
 	//@formatter:off
     NONE                   (""),
     UNITS                  ("units"),
+    WEBSOCKET              ("ws"),
     ;
     //@formatter:on
 
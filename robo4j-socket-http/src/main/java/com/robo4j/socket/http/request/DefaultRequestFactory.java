@@ -30,6 +30,16 @@ public interface DefaultRequestFactory<ResponseType> {
 
 	ResponseType processGet(ServerPathConfig pathConfig);
 
+	/**
+	 * @param pathConfig
+	 *            the path of a unit
+	 * @return true if {@link #processGet(ServerPathConfig)} only depends on the
+	 *         configuration, so that the response may be cached
+	 */
+	default boolean isStaticGet(ServerPathConfig pathConfig) {
+		return false;
+	}
+
 	ResponseType processServerGet(ServerPathConfig pathConfig);
 
 	ResponseType processPost(RoboReference<?> unitReference, String message);
@@ -19,16 +19,20 @@ package com.robo4j.socket.http.request;
 import com.robo4j.AttributeDescriptor;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
+import com.robo4j.socket.http.HttpHeaderFieldNames;
 import com.robo4j.socket.http.dto.ClassGetSetDTO;
 import com.robo4j.socket.http.dto.PathAttributeDTO;
 import com.robo4j.socket.http.dto.PathAttributeListDTO;
 import com.robo4j.socket.http.enums.StatusCode;
 import com.robo4j.socket.http.message.HttpDecoratedRequest;
 import com.robo4j.socket.http.message.HttpRequestDenominator;
+import com.robo4j.socket.http.units.ImageStreamUnit;
 import com.robo4j.socket.http.units.ServerContext;
 import com.robo4j.socket.http.units.ServerPathConfig;
 import com.robo4j.socket.http.util.HttpPathUtils;
+import com.robo4j.socket.http.util.HttpResponseCache;
 import com.robo4j.socket.http.util.JsonUtil;
+import com.robo4j.socket.http.util.LatestFrameBuffer;
 import com.robo4j.socket.http.util.ReflectUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,10 +43,17 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_RESPONSE_CACHE;
 import static com.robo4j.util.Utf8Constant.UTF8_SOLIDUS;
 
 /**
+ * Processes a request. The listing of the units, and the descriptors of the
+ * units with a codec, are taken from the {@link HttpResponseCache} of the
+ * server if there is one, and answered with {@link StatusCode#NOT_MODIFIED}
+ * when the client already has them.
+ *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
  */
@@ -76,9 +87,13 @@ public class RoboRequestCallable implements Callable<HttpResponseProcess> {
 
             switch (pathConfig.getMethod()) {
                 case GET:
+                    final HttpResponseCache responseCache = serverContext.getProperty(HttpResponseCache.class,
+                            PROPERTY_RESPONSE_CACHE);
                     if (pathConfig.getPath().equals(UTF8_SOLIDUS)) {
-                        resultBuilder.setCode(StatusCode.OK);
-                        resultBuilder.setResult(factory.processGet(context));
+                        final Object listing = responseCache == null ? null
+                                : responseCache.getListing(context, () -> factory.processGet(context));
+                        resultBuilder.setCode(getCode(listing));
+                        resultBuilder.setResult(listing == null ? factory.processGet(context) : listing);
                     } else {
 
                         resultBuilder.setTarget(pathConfig.getRoboUnit().getId());
@@ -89,7 +104,19 @@ public class RoboRequestCallable implements Callable<HttpResponseProcess> {
                         final Set<String> requestAttributes = denominator.getAttributes()
                                 .get(HttpPathUtils.ATTRIBUTES_PATH_VALUE);
                         if (requestAttributes == null) {
-                            unitDescription = factory.processGet(pathConfig);
+                            // a frame buffer is streamed by the server, see ImageStreamUnit
+                            final LatestFrameBuffer frameBuffer = responseCache == null
+                                    ? getFrameBuffer(pathConfig.getRoboUnit())
+                                    : responseCache.getFrameBuffer(pathConfig.getPath(),
+                                            () -> getFrameBuffer(pathConfig.getRoboUnit()));
+                            if (frameBuffer != null) {
+                                unitDescription = frameBuffer;
+                            } else if (responseCache != null && factory.isStaticGet(pathConfig)) {
+                                unitDescription = responseCache.getDescriptor(pathConfig.getPath(),
+                                        () -> factory.processGet(pathConfig));
+                            } else {
+                                unitDescription = factory.processGet(pathConfig);
+                            }
                         } else if (requestAttributes.isEmpty()) {
                             RoboReference<?> unit = context.getReference(pathConfig.getRoboUnit().getId());
 
@@ -123,7 +150,7 @@ public class RoboRequestCallable implements Callable<HttpResponseProcess> {
                             }
                         }
 
-                        resultBuilder.setCode(StatusCode.OK);
+                        resultBuilder.setCode(getCode(unitDescription));
                         resultBuilder.setResult(unitDescription);
                     }
                     break;
@@ -151,6 +178,24 @@ public class RoboRequestCallable implements Callable<HttpResponseProcess> {
         return resultBuilder.build();
     }
 
+    private StatusCode getCode(Object result) {
+        if (result instanceof HttpResponseCache.Entry entry
+                && entry.matches(decoratedRequest.getHeaderValue(HttpHeaderFieldNames.IF_NONE_MATCH))) {
+            return StatusCode.NOT_MODIFIED;
+        }
+        return StatusCode.OK;
+    }
+
+    private static LatestFrameBuffer getFrameBuffer(RoboReference<?> unit) throws InterruptedException, ExecutionException {
+        for (AttributeDescriptor<?> attribute : unit.getKnownAttributes()) {
+            if (attribute.getAttributeName().equals(ImageStreamUnit.ATTR_FRAME_BUFFER)
+                    && attribute.getAttributeType() == LatestFrameBuffer.class) {
+                return unit.getAttribute(ImageStreamUnit.DESCRIPTOR_FRAME_BUFFER).get();
+            }
+        }
+        return null;
+    }
+
     private boolean isValidPath(ServerPathConfig pathConfig) {
         return pathConfig != null && decoratedRequest.getPathMethod() != null
                 && decoratedRequest.getPathMethod().getMethod().equals(pathConfig.getMethod());
@@ -115,6 +115,15 @@ public class RoboRequestFactory implements DefaultRequestFactory<Object> {
 
     }
 
+    /**
+     * The descriptor of a unit with a codec only depends on the codec.
+     */
+    @Override
+    public boolean isStaticGet(ServerPathConfig pathConfig) {
+        final RoboReference<?> unitRef = pathConfig.getRoboUnit();
+        return !unitRef.getMessageType().equals(Object.class) && codecRegistry.getDecoder(unitRef.getMessageType()) != null;
+    }
+
     @Override
     public Object processServerGet(ServerPathConfig pathConfig) {
         final ResponseDecoderUnitDTO result = new ResponseDecoderUnitDTO();
@@ -16,6 +16,7 @@
  */
 package com.robo4j.socket.http.units;
 
+import com.robo4j.reflect.InstanceFactories;
 import com.robo4j.reflect.ReflectionScan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,7 +53,7 @@ public final class CodecRegistry {
 
     private void scan(ClassLoader loader, String... packages) {
         ReflectionScan scan = new ReflectionScan(loader);
-        processClasses(loader, scan.scanForEntities(packages));
+        processClasses(loader, scan.scanForAnnotated(HttpProducer.class, packages));
     }
 
     public boolean containsEncoder(Class<?> clazz) {
@@ -82,12 +83,18 @@ public final class CodecRegistry {
     }
 
     private void processClasses(ClassLoader loader, List<String> allClasses) {
-
+        InstanceFactories factories = InstanceFactories.get(loader);
         for (String className : allClasses) {
+            // The generated factories only know the indexed producers
+            Object instance = factories.newInstance(className);
+            if (instance != null) {
+                addInstance(instance);
+                continue;
+            }
             try {
                 Class<?> loadedClass = loader.loadClass(className);
                 if (loadedClass.isAnnotationPresent(HttpProducer.class)) {
-                    addInstance(loadedClass);
+                    addInstance(loadedClass.getDeclaredConstructor().newInstance());
                 }
             } catch (InstantiationException | ClassNotFoundException | IllegalAccessException | NoSuchMethodException |
                      InvocationTargetException e) {
@@ -96,8 +103,7 @@ public final class CodecRegistry {
         }
     }
 
-    private void addInstance(Class<?> loadedClass) throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
-        Object instance = loadedClass.getDeclaredConstructor().newInstance();
+    private void addInstance(Object instance) {
         if (instance instanceof SocketEncoder) {
             SocketEncoder<?, ?> encoder = (SocketEncoder<?, ?>) instance;
             encoders.put(encoder.getEncodedClass(), encoder);
@@ -21,7 +21,12 @@ import com.robo4j.CriticalSectionTrait;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboUnit;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpMethod;
 import com.robo4j.socket.http.ProtocolType;
+import com.robo4j.socket.http.SocketException;
+import com.robo4j.socket.http.channel.HttpClientConnectionPool;
 import com.robo4j.socket.http.channel.OutboundHttpSocketChannelHandler;
 import com.robo4j.socket.http.enums.StatusCode;
 import com.robo4j.socket.http.message.HttpDecoratedRequest;
@@ -29,21 +34,41 @@ import com.robo4j.socket.http.message.HttpDecoratedResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.channels.SocketChannel;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_CLIENT_KEEP_ALIVE_TIMEOUT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_MAX_CONNECTIONS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.DEFAULT_MAX_IDLE_CONNECTIONS;
 import static com.robo4j.socket.http.util.RoboHttpUtils.HTTP_PROPERTY_PROTOCOL;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_BUFFER_CAPACITY;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_HOST;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_KEEP_ALIVE_TIMEOUT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_CONNECTIONS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_IDLE_CONNECTIONS;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
 
 /**
  * Http NIO Client for communication with external Robo4J units. Unit accepts
+ * <p>
+ * Connections are kept alive and reused for the following requests to the
+ * same host and port. Optional configuration: maxConnections (default 4),
+ * maxIdleConnections kept for reuse (default 2, 0 opens a new connection for
+ * every request) and keepAliveTimeout in milliseconds after which an idle
+ * connection is not reused (default 2000, shorter than the server default).
+ * <p>
+ * A request sent over a reused connection which turns out to be closed by the
+ * server is sent again over a new connection, if it is idempotent or nothing
+ * of it was written. Other requests, like a POST of a command, may already
+ * have been processed, and are not sent twice. The request is sent again only
+ * once, over a new connection, and dropped with an error if that fails too.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
@@ -56,11 +81,17 @@ public class HttpClientUnit extends RoboUnit<HttpDecoratedRequest> {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientUnit.class);
     private static final EnumSet<StatusCode> PROCESS_RESPONSES_STATUSES = EnumSet.of(StatusCode.OK,
             StatusCode.ACCEPTED);
+    private static final EnumSet<HttpMethod> IDEMPOTENT_METHODS = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD,
+            HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.OPTIONS, HttpMethod.TRACE);
     private volatile String host;
     private volatile Integer port;
     private Integer bufferCapacity;
     private ProtocolType protocol;
     private Lock lock = new ReentrantLock();
+    private int maxConnections;
+    private int maxIdleConnections;
+    private int keepAliveTimeout;
+    private volatile HttpClientConnectionPool connectionPool;
 
     public HttpClientUnit(RoboContext context, String id) {
         super(HttpDecoratedRequest.class, context, id);
@@ -76,6 +107,10 @@ public class HttpClientUnit extends RoboUnit<HttpDecoratedRequest> {
         if (port == null) {
             port = protocol.getPort();
         }
+        maxConnections = configuration.getInteger(PROPERTY_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+        maxIdleConnections = configuration.getInteger(PROPERTY_MAX_IDLE_CONNECTIONS, DEFAULT_MAX_IDLE_CONNECTIONS);
+        keepAliveTimeout = configuration.getInteger(PROPERTY_KEEP_ALIVE_TIMEOUT, DEFAULT_CLIENT_KEEP_ALIVE_TIMEOUT);
+        connectionPool = createConnectionPool();
     }
 
     @Override
@@ -86,12 +121,8 @@ public class HttpClientUnit extends RoboUnit<HttpDecoratedRequest> {
             return;
         }
         final InetSocketAddress address = new InetSocketAddress(request.getHost(), request.getPort());
-        try (SocketChannel channel = SocketChannel.open(address)) {
-            if (bufferCapacity != null) {
-                channel.socket().setSendBufferSize(bufferCapacity);
-            }
-
-            final HttpDecoratedResponse decoratedResponse = processRequestByChannel(channel, request);
+        try {
+            final HttpDecoratedResponse decoratedResponse = processRequest(address, request);
 
             if (decoratedResponse != null && PROCESS_RESPONSES_STATUSES.contains(decoratedResponse.getCode())) {
                 if (!decoratedResponse.getCallbacks().isEmpty()) {
@@ -106,14 +137,101 @@ public class HttpClientUnit extends RoboUnit<HttpDecoratedRequest> {
         }
     }
 
-    private HttpDecoratedResponse processRequestByChannel(SocketChannel byteChannel,
-                                                          HttpDecoratedRequest message) {
-        try (OutboundHttpSocketChannelHandler handler = new OutboundHttpSocketChannelHandler(byteChannel, message)) {
+    @Override
+    public void start() {
+        super.start();
+        if (connectionPool == null) {
+            connectionPool = createConnectionPool();
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        final HttpClientConnectionPool pool = connectionPool;
+        connectionPool = null;
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private HttpClientConnectionPool createConnectionPool() {
+        return new HttpClientConnectionPool(maxConnections, maxIdleConnections, keepAliveTimeout, bufferCapacity);
+    }
+
+    private HttpDecoratedResponse processRequest(InetSocketAddress address, HttpDecoratedRequest request)
+            throws IOException {
+        final HttpClientConnectionPool pool = connectionPool;
+        if (pool == null) {
+            throw new SocketException("client stopped, not sending: " + request.getPathMethod());
+        }
+        HttpDecoratedResponse response = processRequestByConnection(pool, pool.acquire(address), request);
+        if (response == null) {
+            // The server closed the kept alive connection, and sending the
+            // request again is safe
+            response = processRequestByConnection(pool, pool.acquireNew(address), request);
+            if (response == null) {
+                throw new SocketException("connection closed by the server, not sending again: "
+                        + request.getPathMethod());
+            }
+        }
+        return response;
+    }
+
+    /**
+     * @return the response, or null if the request was sent over a reused
+     * connection that turned out to be closed by the server, and can be sent
+     * again.
+     */
+    private HttpDecoratedResponse processRequestByConnection(HttpClientConnectionPool pool,
+                                                             HttpClientConnectionPool.PooledConnection connection,
+                                                             HttpDecoratedRequest message) {
+        final OutboundHttpSocketChannelHandler handler = new OutboundHttpSocketChannelHandler(
+                connection.getChannel(), message, connection.getResponseBuffer(), pool.isKeepAlive());
+        boolean reusable = false;
+        try {
             handler.start();
-            return handler.getDecoratedResponse();
+            final HttpDecoratedResponse response = handler.getDecoratedResponse();
+            if (connection.isReused() && response.getHeader().isEmpty()) {
+                if (isSafeToSendAgain(handler, message)) {
+                    return null;
+                }
+                throw new SocketException("reused connection closed, not sending again: " + message.getPathMethod());
+            }
+            reusable = isKeepAlive(response);
+            return response;
+        } catch (SocketException e) {
+            if (connection.isReused() && isSafeToSendAgain(handler, message)) {
+                LOGGER.debug("reused connection closed: {}", e.getMessage());
+                return null;
+            }
+            throw e;
+        } finally {
+            pool.release(connection, reusable);
         }
     }
 
+    /**
+     * The server may have processed a request it did not answer, so only
+     * requests which do no harm when processed twice are sent again, or the
+     * ones which did not leave the client.
+     */
+    private static boolean isSafeToSendAgain(OutboundHttpSocketChannelHandler handler, HttpDecoratedRequest message) {
+        return !handler.isRequestStarted() || IDEMPOTENT_METHODS.contains(message.getPathMethod().getMethod());
+    }
+
+    /**
+     * The connection can only be reused if the server agreed to keep it alive,
+     * and the end of the response is known from the content length.
+     */
+    private static boolean isKeepAlive(HttpDecoratedResponse response) {
+        final Map<String, String> header = response.getHeader();
+        final String connection = header.get(HttpHeaderFieldNames.CONNECTION);
+        return connection != null
+                && connection.toLowerCase(Locale.ROOT).contains(HttpHeaderFieldValues.CONNECTION_KEEP_ALIVE)
+                && header.containsKey(HttpHeaderFieldNames.CONTENT_LENGTH);
+    }
+
     private HttpDecoratedRequest adjustRequest(HttpDecoratedRequest request) {
         lock.lock();
         try {
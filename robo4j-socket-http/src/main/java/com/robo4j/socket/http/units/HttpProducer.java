@@ -16,15 +16,19 @@
  */
 package com.robo4j.socket.http.units;
 
+import com.robo4j.reflect.Indexed;
+
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
 /**
- * Marker annotation marking the class as of interest for the HttpUnit.
+ * Marker annotation marking the class as of interest for the HttpUnit. The
+ * annotated classes are indexed at compile time, see {@link Indexed}.
  * 
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
  */
+@Indexed
 @Retention(RetentionPolicy.RUNTIME)
 public @interface HttpProducer {
 
@@ -28,6 +28,7 @@ import com.robo4j.socket.http.channel.InboundHttpSocketChannelHandler;
 import com.robo4j.socket.http.dto.HttpPathMethodDTO;
 import com.robo4j.socket.http.util.CodeRegistryUtils;
 import com.robo4j.socket.http.util.HttpPathUtils;
+import com.robo4j.socket.http.util.HttpResponseCache;
 import com.robo4j.socket.http.util.JsonUtil;
 import com.robo4j.socket.http.util.RoboHttpUtils;
 
@@ -39,12 +40,47 @@ import static com.robo4j.socket.http.util.ChannelBufferUtils.INIT_BUFFER_CAPACIT
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_BUFFER_CAPACITY;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_PACKAGES;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_REGISTRY;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_KEEP_ALIVE_MAX_REQUESTS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_KEEP_ALIVE_TIMEOUT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_PUSH_PERIOD;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_PUSH_QUEUE_SIZE;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_REQUEST_WORKERS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_RESPONSE_CACHE;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SELECTOR_THREADS;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_UNIT_PATHS_CONFIG;
 
 /**
  * Http NIO unit allows to configure format of the requests currently is only
  * GET method available. Server currently support IP v4 address
+ * <p>
+ * The requests are processed concurrently. The number of request workers is
+ * configured by the {@value RoboHttpUtils#PROPERTY_REQUEST_WORKERS} property,
+ * default {@value RoboHttpUtils#DEFAULT_REQUEST_WORKERS}. The connections are
+ * served by {@value RoboHttpUtils#PROPERTY_SELECTOR_THREADS} selector threads,
+ * by default as many as there are available processors.
+ * <p>
+ * Connections are kept open when the client sends {@code Connection: keep-alive},
+ * until idle for {@value RoboHttpUtils#PROPERTY_KEEP_ALIVE_TIMEOUT} milliseconds
+ * (default {@value RoboHttpUtils#DEFAULT_KEEP_ALIVE_TIMEOUT}), or until
+ * {@value RoboHttpUtils#PROPERTY_KEEP_ALIVE_MAX_REQUESTS} requests (default
+ * {@value RoboHttpUtils#DEFAULT_KEEP_ALIVE_MAX_REQUESTS}) have been served.
+ * Pipelined requests are answered in order.
+ * <p>
+ * The listing of the units and the descriptors of the units with a codec are
+ * cached, and sent with an ETag. A request with a matching
+ * {@code If-None-Match} header is answered with {@code 304 Not Modified}, see
+ * {@link HttpResponseCache}.
+ * <p>
+ * Instead of polling, clients can open a WebSocket on {@code /ws}, and
+ * subscribe to the attributes of the units with a GET path, e.g. with the
+ * text message {@code subscribe controller number,text}. The subscribed
+ * attributes are read every {@value RoboHttpUtils#PROPERTY_PUSH_PERIOD}
+ * milliseconds (default {@value RoboHttpUtils#DEFAULT_PUSH_PERIOD}), and the
+ * changed values are pushed to the subscribers. At most
+ * {@value RoboHttpUtils#PROPERTY_PUSH_QUEUE_SIZE} messages (default
+ * {@value RoboHttpUtils#DEFAULT_PUSH_QUEUE_SIZE}) wait for a subscriber, the
+ * oldest are dropped for a subscriber which does not keep up.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
@@ -80,15 +116,29 @@ public class HttpServerUnit extends RoboUnit<Object> {
 		serverPort = configuration.getInteger(PROPERTY_SOCKET_PORT, RoboHttpUtils.DEFAULT_PORT);
 		serverAddress = configuration.getString(ATTR_ADDRESS, "127.0.0.1");
 		int bufferCapacity = configuration.getInteger(PROPERTY_BUFFER_CAPACITY, INIT_BUFFER_CAPACITY);
+		int requestWorkers = configuration.getInteger(PROPERTY_REQUEST_WORKERS, RoboHttpUtils.DEFAULT_REQUEST_WORKERS);
+		int selectorThreads = configuration.getInteger(PROPERTY_SELECTOR_THREADS, RoboHttpUtils.DEFAULT_SELECTOR_THREADS);
+		int keepAliveTimeout = configuration.getInteger(PROPERTY_KEEP_ALIVE_TIMEOUT, RoboHttpUtils.DEFAULT_KEEP_ALIVE_TIMEOUT);
+		int keepAliveMaxRequests = configuration.getInteger(PROPERTY_KEEP_ALIVE_MAX_REQUESTS,
+				RoboHttpUtils.DEFAULT_KEEP_ALIVE_MAX_REQUESTS);
+		int pushPeriod = configuration.getInteger(PROPERTY_PUSH_PERIOD, RoboHttpUtils.DEFAULT_PUSH_PERIOD);
+		int pushQueueSize = configuration.getInteger(PROPERTY_PUSH_QUEUE_SIZE, RoboHttpUtils.DEFAULT_PUSH_QUEUE_SIZE);
 
 		paths = JsonUtil.readPathConfig(HttpPathMethodDTO.class, configuration.getString(PROPERTY_UNIT_PATHS_CONFIG, null));
 
 		serverContext.putProperty(PROPERTY_BUFFER_CAPACITY, bufferCapacity);
 		serverContext.putProperty(PROPERTY_SOCKET_PORT, serverPort);
+		serverContext.putProperty(PROPERTY_REQUEST_WORKERS, requestWorkers);
+		serverContext.putProperty(PROPERTY_SELECTOR_THREADS, selectorThreads);
+		serverContext.putProperty(PROPERTY_KEEP_ALIVE_TIMEOUT, keepAliveTimeout);
+		serverContext.putProperty(PROPERTY_KEEP_ALIVE_MAX_REQUESTS, keepAliveMaxRequests);
+		serverContext.putProperty(PROPERTY_PUSH_PERIOD, pushPeriod);
+		serverContext.putProperty(PROPERTY_PUSH_QUEUE_SIZE, pushQueueSize);
 
 		String packages = configuration.getString(PROPERTY_CODEC_PACKAGES, null);
 		// TODO: improve codecs registry handling, provide feedback about invalid packages
 		serverContext.putProperty(PROPERTY_CODEC_REGISTRY, CodeRegistryUtils.getCodecRegistry(packages));
+		serverContext.putProperty(PROPERTY_RESPONSE_CACHE, new HttpResponseCache());
 
 	}
 
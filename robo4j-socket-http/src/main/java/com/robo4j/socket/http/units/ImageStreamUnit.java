@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.ConfigurationException;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.socket.http.util.LatestFrameBuffer;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Streams the frames it receives, e.g. the raw JPEG images of a camera, to the
+ * viewers connected to the {@link HttpServerUnit}. A GET request to the path
+ * of the unit gets a {@code multipart/x-mixed-replace} response, which browsers
+ * show as a video. Every viewer gets the latest frame, a slow viewer skips
+ * frames.
+ * <p>
+ * Unlike posting a {@link com.robo4j.socket.http.codec.CameraMessage} for
+ * every frame, the frames are neither Base64 encoded nor wrapped in JSON.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class ImageStreamUnit extends RoboUnit<byte[]> {
+	public static final String PROPERTY_CONTENT_TYPE = "contentType";
+	public static final String DEFAULT_CONTENT_TYPE = "image/jpeg";
+	public static final String ATTR_FRAME_BUFFER = "frameBuffer";
+	public static final String ATTR_VIEWERS = "viewers";
+	public static final AttributeDescriptor<LatestFrameBuffer> DESCRIPTOR_FRAME_BUFFER = DefaultAttributeDescriptor
+			.create(LatestFrameBuffer.class, ATTR_FRAME_BUFFER);
+	public static final AttributeDescriptor<Integer> DESCRIPTOR_VIEWERS = DefaultAttributeDescriptor.create(Integer.class,
+			ATTR_VIEWERS);
+	public static final Collection<AttributeDescriptor<?>> KNOWN_ATTRIBUTES = Arrays.asList(DESCRIPTOR_FRAME_BUFFER,
+			DESCRIPTOR_VIEWERS);
+
+	private volatile LatestFrameBuffer frameBuffer = new LatestFrameBuffer(DEFAULT_CONTENT_TYPE);
+
+	public ImageStreamUnit(RoboContext context, String id) {
+		super(byte[].class, context, id);
+	}
+
+	@Override
+	protected void onInitialization(Configuration configuration) throws ConfigurationException {
+		frameBuffer = new LatestFrameBuffer(configuration.getString(PROPERTY_CONTENT_TYPE, DEFAULT_CONTENT_TYPE));
+	}
+
+	@Override
+	public void onMessage(byte[] frame) {
+		frameBuffer.publish(frame);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+		if (descriptor.getAttributeName().equals(ATTR_FRAME_BUFFER)
+				&& descriptor.getAttributeType() == LatestFrameBuffer.class) {
+			return (R) frameBuffer;
+		}
+		if (descriptor.getAttributeName().equals(ATTR_VIEWERS) && descriptor.getAttributeType() == Integer.class) {
+			return (R) Integer.valueOf(frameBuffer.getListenerCount());
+		}
+		return null;
+	}
+
+	@Override
+	public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+		return KNOWN_ATTRIBUTES;
+	}
+}
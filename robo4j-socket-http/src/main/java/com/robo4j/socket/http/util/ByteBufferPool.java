@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of direct byte buffers, shared by the channel handlers.
+ * Allocating direct buffers is expensive, so the buffers used for reading and
+ * writing are borrowed from the pool and given back when done, typically in a
+ * finally block.
+ * <p>
+ * The buffers come in a few size classes, and at most max pooled buffers of
+ * each class are kept. Larger buffers are allocated on the heap and not kept.
+ * <p>
+ * Leaks are found by comparing the number of buffers acquired with the number
+ * released, see {@link #getOutstanding()}. With the system property
+ * {@value #PROPERTY_TRACK_LEAKS} set to true, the default pool also remembers
+ * where each outstanding buffer was acquired, and refuses buffers released
+ * twice. The tests run with it enabled.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class ByteBufferPool {
+	public static final String PROPERTY_TRACK_LEAKS = "robo4j.http.bufferPool.trackLeaks";
+	public static final int DEFAULT_MAX_POOLED = 32;
+	private static final int[] SIZE_CLASSES = { 4096, ChannelBufferUtils.INIT_BUFFER_CAPACITY, 65536 };
+	private static final ByteBufferPool DEFAULT = new ByteBufferPool(DEFAULT_MAX_POOLED,
+			Boolean.getBoolean(PROPERTY_TRACK_LEAKS));
+
+	private final int maxPooled;
+	private final List<ConcurrentLinkedQueue<ByteBuffer>> freeBuffers = new ArrayList<>(SIZE_CLASSES.length);
+	private final AtomicInteger[] freeCounts = new AtomicInteger[SIZE_CLASSES.length];
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final Map<ByteBuffer, Throwable> acquisitions;
+
+	/**
+	 * @param maxPooled
+	 *            the maximum number of free buffers kept per size class
+	 * @param trackLeaks
+	 *            true to remember where the outstanding buffers were acquired
+	 */
+	public ByteBufferPool(int maxPooled, boolean trackLeaks) {
+		this.maxPooled = maxPooled;
+		this.acquisitions = trackLeaks ? new IdentityHashMap<>() : null;
+		for (int i = 0; i < SIZE_CLASSES.length; i++) {
+			freeBuffers.add(new ConcurrentLinkedQueue<>());
+			freeCounts[i] = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * @return the pool shared by the channel handlers
+	 */
+	public static ByteBufferPool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Borrows a buffer, which must be given back with
+	 * {@link #release(ByteBuffer)}.
+	 *
+	 * @param capacity
+	 *            the minimum capacity
+	 * @return a cleared buffer of at least the capacity
+	 */
+	public ByteBuffer acquire(int capacity) {
+		final int sizeClass = sizeClassOf(capacity);
+		ByteBuffer result;
+		if (sizeClass < 0) {
+			result = ByteBuffer.allocate(capacity);
+		} else {
+			result = freeBuffers.get(sizeClass).poll();
+			if (result == null) {
+				result = ByteBuffer.allocateDirect(SIZE_CLASSES[sizeClass]);
+			} else {
+				freeCounts[sizeClass].decrementAndGet();
+			}
+		}
+		outstanding.incrementAndGet();
+		if (acquisitions != null) {
+			synchronized (acquisitions) {
+				acquisitions.put(result, new Throwable("buffer acquired, capacity: " + capacity));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gives back a borrowed buffer. The buffer must not be used afterwards.
+	 *
+	 * @param buffer
+	 *            the buffer, null is ignored
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null) {
+			return;
+		}
+		if (acquisitions != null) {
+			synchronized (acquisitions) {
+				if (acquisitions.remove(buffer) == null) {
+					throw new IllegalStateException("buffer not acquired, or released twice: " + buffer);
+				}
+			}
+		}
+		outstanding.decrementAndGet();
+		final int sizeClass = sizeClassOf(buffer.capacity());
+		if (!buffer.isDirect() || sizeClass < 0 || SIZE_CLASSES[sizeClass] != buffer.capacity()) {
+			return;
+		}
+		if (freeCounts[sizeClass].incrementAndGet() <= maxPooled) {
+			buffer.clear();
+			freeBuffers.get(sizeClass).offer(buffer);
+		} else {
+			freeCounts[sizeClass].decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of buffers acquired and not yet released
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * @return where the outstanding buffers were acquired, empty unless leaks
+	 *         are tracked
+	 */
+	public List<Throwable> getOutstandingAcquisitions() {
+		if (acquisitions == null) {
+			return List.of();
+		}
+		synchronized (acquisitions) {
+			return new ArrayList<>(acquisitions.values());
+		}
+	}
+
+	/**
+	 * @return the number of free buffers kept by the pool
+	 */
+	public int getPooled() {
+		int result = 0;
+		for (AtomicInteger count : freeCounts) {
+			result += count.get();
+		}
+		return result;
+	}
+
+	private static int sizeClassOf(int capacity) {
+		for (int i = 0; i < SIZE_CLASSES.length; i++) {
+			if (capacity <= SIZE_CLASSES[i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
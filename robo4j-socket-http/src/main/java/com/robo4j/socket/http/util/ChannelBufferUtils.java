@@ -19,13 +19,10 @@ package com.robo4j.socket.http.util;
 import com.robo4j.socket.http.HttpHeaderFieldNames;
 import com.robo4j.socket.http.HttpMethod;
 import com.robo4j.socket.http.HttpVersion;
-import com.robo4j.socket.http.message.AbstractHttpDecoratedMessage;
 import com.robo4j.socket.http.message.HttpDecoratedRequest;
 import com.robo4j.socket.http.message.HttpRequestDenominator;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.ByteChannel;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -150,7 +147,7 @@ public final class ChannelBufferUtils {
 		}
 		HttpDecoratedRequest result = new HttpDecoratedRequest(headerParams, denominator);
 
-		if (headerParams.containsKey(HttpHeaderFieldNames.CONTENT_LENGTH)) {
+		if (headerParams.containsKey(HttpHeaderFieldNames.CONTENT_LENGTH) && headerAndBody.length > POSITION_BODY) {
 			result.setLength(calculateMessageSize(headerAndBody[POSITION_HEADER].length(), headerParams));
 			result.addMessage(headerAndBody[POSITION_BODY]);
 		}
@@ -174,38 +171,6 @@ public final class ChannelBufferUtils {
 		return sb.toString();
 	}
 
-	/**
-	 *
-	 * @param result
-	 *            result message
-	 * @param channel
-	 *            byte channel
-	 * @param buffer
-	 *            buffer
-	 * @param readBytes
-	 *            read bytes
-	 * @throws IOException
-	 *             exception
-	 */
-	static void readChannelBuffer(AbstractHttpDecoratedMessage result, ByteChannel channel, ByteBuffer buffer,
-			int readBytes) throws IOException {
-		final StringBuilder sbAdditional = new StringBuilder();
-		int totalReadBytes = readBytes;
-		if (result.getLength() != 0) {
-			while (totalReadBytes < result.getLength()) {
-				readBytes = channel.read(buffer);
-				buffer.flip();
-				ChannelBufferUtils.addToStringBuilder(sbAdditional, buffer, readBytes);
-
-				totalReadBytes += readBytes;
-				buffer.clear();
-			}
-			if (sbAdditional.length() > 0) {
-				result.addMessage(sbAdditional.toString());
-			}
-		}
-	}
-
 	/**
 	 *
 	 * @param paramArray
@@ -229,24 +194,6 @@ public final class ChannelBufferUtils {
 				+ Integer.valueOf(headerParams.get(HttpHeaderFieldNames.CONTENT_LENGTH));
 	}
 
-	/**
-	 *
-	 * @param sb
-	 *            string builder
-	 * @param buffer
-	 *            buffer
-	 * @param size
-	 *            size
-	 */
-	static void addToStringBuilder(StringBuilder sb, ByteBuffer buffer, int size) {
-		byte[] array = new byte[size];
-		for (int i = 0; i < size; i++) {
-			array[i] = buffer.get(i);
-		}
-		final String message = new String(array);
-		sb.append(message);
-	}
-
 	/**
 	 *
 	 * @param array
@@ -34,26 +34,34 @@ import java.util.HashMap;
  */
 public class ChannelRequestBuffer {
 
-	private ByteBuffer requestBuffer;
+	private final HttpMessageParser parser = HttpMessageParser.forRequests(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
 
-	public ChannelRequestBuffer() {
-		requestBuffer = ByteBuffer.allocateDirect(ChannelBufferUtils.INIT_BUFFER_CAPACITY);
+	public HttpDecoratedRequest getHttpDecoratedRequestByChannel(ByteChannel channel) throws IOException {
+		parser.reset();
+		final ByteBuffer requestBuffer = ByteBufferPool.getDefault().acquire(ChannelBufferUtils.INIT_BUFFER_CAPACITY);
+		try {
+			return readRequest(channel, requestBuffer);
+		} finally {
+			ByteBufferPool.getDefault().release(requestBuffer);
+		}
 	}
 
-	public HttpDecoratedRequest getHttpDecoratedRequestByChannel(ByteChannel channel) throws IOException {
-		final StringBuilder sbBasic = new StringBuilder();
-		int readBytes = channel.read(requestBuffer);
-		if (readBytes != ChannelBufferUtils.BUFFER_MARK_END) {
+	private HttpDecoratedRequest readRequest(ByteChannel channel, ByteBuffer requestBuffer) throws IOException {
+		while (true) {
+			final int readBytes = channel.read(requestBuffer);
+			if (readBytes == ChannelBufferUtils.BUFFER_MARK_END) {
+				if (parser.isStarted()) {
+					throw new IOException("connection closed before the end of the request");
+				}
+				return new HttpDecoratedRequest(new HashMap<>(),
+						new HttpRequestDenominator(HttpMethod.GET, HttpVersion.HTTP_1_1));
+			}
 			requestBuffer.flip();
-			ChannelBufferUtils.addToStringBuilder(sbBasic, requestBuffer, readBytes);
-			final HttpDecoratedRequest result = ChannelBufferUtils
-					.extractDecoratedRequestByStringMessage(sbBasic.toString());
-			ChannelBufferUtils.readChannelBuffer(result, channel, requestBuffer, readBytes);
-			requestBuffer.clear();
-			return result;
-		} else {
-			return new HttpDecoratedRequest(new HashMap<>(),
-					new HttpRequestDenominator(HttpMethod.GET, HttpVersion.HTTP_1_1));
+			final boolean complete = parser.parse(requestBuffer);
+			requestBuffer.compact();
+			if (complete) {
+				return parser.getRequest();
+			}
 		}
 	}
 }
@@ -16,7 +16,6 @@
  */
 package com.robo4j.socket.http.util;
 
-import com.robo4j.socket.http.HttpHeaderFieldNames;
 import com.robo4j.socket.http.HttpVersion;
 import com.robo4j.socket.http.enums.StatusCode;
 import com.robo4j.socket.http.message.HttpDecoratedResponse;
@@ -25,17 +24,10 @@ import com.robo4j.socket.http.message.HttpResponseDenominator;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
 
 import static com.robo4j.socket.http.util.ChannelBufferUtils.BUFFER_MARK_END;
 import static com.robo4j.socket.http.util.ChannelBufferUtils.INIT_BUFFER_CAPACITY;
-import static com.robo4j.socket.http.util.HttpConstant.HTTP_NEW_LINE;
-import static com.robo4j.socket.http.util.HttpMessageUtils.HTTP_HEADER_BODY_DELIMITER;
-import static com.robo4j.socket.http.util.HttpMessageUtils.POSITION_BODY;
-import static com.robo4j.socket.http.util.HttpMessageUtils.POSITION_HEADER;
 
 /**
  * ChannelResponseBuffer
@@ -45,58 +37,48 @@ import static com.robo4j.socket.http.util.HttpMessageUtils.POSITION_HEADER;
  */
 public class ChannelResponseBuffer {
 
-	private ByteBuffer responseBuffer;
-
-	public ChannelResponseBuffer() {
-		responseBuffer = ByteBuffer.allocateDirect(INIT_BUFFER_CAPACITY);
-	}
+	private final HttpMessageParser parser = HttpMessageParser.forResponses(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
 
+	/**
+	 * Reads one response from the channel.
+	 *
+	 * @param channel
+	 *            blocking channel
+	 * @return the response, or a response without header with status
+	 *         {@link StatusCode#BAD_REQUEST} if the channel was closed before
+	 *         any response
+	 * @throws IOException
+	 *             if reading failed, or the channel was closed in the middle of
+	 *             the response
+	 */
 	public HttpDecoratedResponse getHttpDecoratedResponseByChannel(ByteChannel channel) throws IOException {
-		final StringBuilder sbBasic = new StringBuilder();
-		int readBytes = channel.read(responseBuffer);
-		if (readBytes != BUFFER_MARK_END) {
-			responseBuffer.flip();
-			ChannelBufferUtils.addToStringBuilder(sbBasic, responseBuffer, readBytes);
-			final HttpDecoratedResponse result = extractDecoratedResponseByStringMessage(sbBasic.toString());
-			ChannelBufferUtils.readChannelBuffer(result, channel, responseBuffer, readBytes);
-			responseBuffer.clear();
-			return result;
-
-		} else {
-
-			return new HttpDecoratedResponse(new HashMap<>(),
-					new HttpResponseDenominator(StatusCode.BAD_REQUEST, HttpVersion.HTTP_1_1));
+		parser.reset();
+		final ByteBuffer responseBuffer = ByteBufferPool.getDefault().acquire(INIT_BUFFER_CAPACITY);
+		try {
+			return readResponse(channel, responseBuffer);
+		} finally {
+			ByteBufferPool.getDefault().release(responseBuffer);
 		}
 	}
 
-	// TODO: 3/5/18 (miro) investigate spring responseBody
-	private HttpDecoratedResponse extractDecoratedResponseByStringMessage(String message) {
-		final String[] headerAndBody = message.split(HTTP_HEADER_BODY_DELIMITER);
-		final String[] header = headerAndBody[POSITION_HEADER].split("[" + HTTP_NEW_LINE + "]+");
-		final String firstLine = RoboHttpUtils.correctLine(header[0]);
-		final String[] tokens = firstLine.split(HttpConstant.HTTP_EMPTY_SEP);
-		final String[] paramArray = Arrays.copyOfRange(header, 1, header.length);
-
-		final String version = tokens[0];
-		final StatusCode statusCode = StatusCode.getByCode(Integer.valueOf(tokens[1]));
-		final Map<String, String> headerParams = ChannelBufferUtils.getHeaderParametersByArray(paramArray);
-
-		HttpResponseDenominator denominator = new HttpResponseDenominator(statusCode, HttpVersion.getByValue(version));
-		HttpDecoratedResponse result = new HttpDecoratedResponse(headerParams, denominator);
-		if (headerAndBody.length > 1) {
-			if (headerParams.containsKey(HttpHeaderFieldNames.CONTENT_LENGTH)) {
-				result.setLength(
-						ChannelBufferUtils.calculateMessageSize(headerAndBody[POSITION_HEADER].length(), headerParams));
-			} else {
-				result.setLength(headerAndBody[POSITION_BODY].length());
+	private HttpDecoratedResponse readResponse(ByteChannel channel, ByteBuffer responseBuffer) throws IOException {
+		while (true) {
+			final int readBytes = channel.read(responseBuffer);
+			if (readBytes == BUFFER_MARK_END) {
+				if (parser.finish()) {
+					return parser.getResponse();
+				} else if (parser.isStarted()) {
+					throw new IOException("connection closed before the end of the response");
+				}
+				return new HttpDecoratedResponse(new HashMap<>(),
+						new HttpResponseDenominator(StatusCode.BAD_REQUEST, HttpVersion.HTTP_1_1));
 			}
-			Matcher matcher = ChannelBufferUtils.RESPONSE_SPRING_PATTERN.matcher(headerAndBody[POSITION_BODY]);
-			if (matcher.find()) {
-				// result.addMessage(headerAndBody[POSITION_BODY]);
-				result.addMessage(matcher.group(ChannelBufferUtils.RESPONSE_JSON_GROUP));
+			responseBuffer.flip();
+			final boolean complete = parser.parse(responseBuffer);
+			responseBuffer.compact();
+			if (complete) {
+				return parser.getResponse();
 			}
 		}
-
-		return result;
 	}
 }
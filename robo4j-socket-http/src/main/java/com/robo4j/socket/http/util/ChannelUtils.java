@@ -36,6 +36,8 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.spi.AbstractSelectableChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntConsumer;
 
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_HOST;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
@@ -180,6 +182,42 @@ public final class ChannelUtils {
         }
     }
 
+    /**
+     * Writes the content through a buffer borrowed from the {@link ByteBufferPool}.
+     *
+     * @param message description of the write, used in the exception
+     * @param channel channel to write to
+     * @param content the content, encoded as UTF-8
+     */
+    public static void handleWriteChannelAndContent(String message, ByteChannel channel, String content) {
+        handleWriteChannelAndContent(message, channel, content, written -> {
+        });
+    }
+
+    /**
+     * Writes the content through a buffer borrowed from the {@link ByteBufferPool}.
+     *
+     * @param message description of the write, used in the exception
+     * @param channel channel to write to
+     * @param content the content, encoded as UTF-8
+     * @param written told the number of bytes written when the write has
+     *                ended, also if it failed
+     */
+    public static void handleWriteChannelAndContent(String message, ByteChannel channel, String content,
+                                                    IntConsumer written) {
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBufferPool.getDefault().acquire(bytes.length);
+        try {
+            buffer.put(bytes).flip();
+            ChannelUtils.writeBuffer(channel, buffer);
+        } catch (Exception e) {
+            throw new SocketException(message, e);
+        } finally {
+            written.accept(buffer.position());
+            ByteBufferPool.getDefault().release(buffer);
+        }
+    }
+
     public static void handleSelectorHandler(SelectionKeyHandler handler) {
         handler.handle();
     }
@@ -0,0 +1,539 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.util;
+
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.SocketException;
+import com.robo4j.socket.http.enums.StatusCode;
+import com.robo4j.socket.http.message.AbstractHttpDecoratedMessage;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.message.HttpDecoratedResponse;
+import com.robo4j.socket.http.message.HttpRequestDenominator;
+import com.robo4j.socket.http.message.HttpResponseDenominator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Incremental HTTP/1.x parser working directly on the bytes read from a
+ * channel. A message may arrive split over any number of reads: each call to
+ * {@link #parse(ByteBuffer)} consumes the available bytes, up to the end of
+ * the current message, and tells if the message is complete. Bytes following
+ * the message, e.g. pipelined requests, are left in the buffer.
+ * <p>
+ * Header names are lower case, and the names known from
+ * {@link HttpHeaderFieldNames} are the constants themselves. Bodies are
+ * delimited by the content length or chunked transfer encoding, or, for
+ * responses without either, by the end of the stream (see {@link #finish()}).
+ * <p>
+ * A parser is not thread safe, and is reused for the following messages after
+ * a {@link #reset()}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class HttpMessageParser {
+	public static final int DEFAULT_MAX_MESSAGE_SIZE = 1 << 20;
+
+	private static final byte CR = '\r';
+	private static final byte LF = '\n';
+	private static final byte SP = ' ';
+	private static final byte COLON = ':';
+	private static final int NO_LENGTH = -1;
+	private static final int INIT_LINE_CAPACITY = 256;
+	private static final byte[] EMPTY = new byte[0];
+	private static final String CHUNKED = HttpHeaderFieldValues.TRANSFER_ENCODING_CHUNKED;
+	private static final String[][] KNOWN_NAMES = knownNamesByLength(HttpHeaderFieldNames.ACCEPT,
+			HttpHeaderFieldNames.ACCEPT_CHARSET, HttpHeaderFieldNames.ACCEPT_ENCODING,
+			HttpHeaderFieldNames.ACCEPT_LANGUAGE, HttpHeaderFieldNames.CONNECTION, HttpHeaderFieldNames.CACHE_CONTROL,
+			HttpHeaderFieldNames.KEEP_ALIVE, HttpHeaderFieldNames.CONTENT_LENGTH,
+			HttpHeaderFieldNames.CONTENT_DISPOSITION, HttpHeaderFieldNames.CONTENT_ENCODING,
+			HttpHeaderFieldNames.CONTENT_TYPE, HttpHeaderFieldNames.DATE, HttpHeaderFieldNames.HOST,
+			HttpHeaderFieldNames.ORIGIN, HttpHeaderFieldNames.USER_AGENT, HttpHeaderFieldNames.SERVER,
+			HttpHeaderFieldNames.ROBO_UNIT_UID, HttpHeaderFieldNames.TRANSFER_ENCODING);
+	private static final HttpMethod[] METHODS = HttpMethod.values();
+	private static final HttpVersion[] VERSIONS = HttpVersion.values();
+
+	private enum State {
+		START_LINE, HEADER, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, TRAILER, BODY_UNTIL_CLOSE, COMPLETE
+	}
+
+	private final boolean request;
+	private final int maxMessageSize;
+	private State state = State.START_LINE;
+	private byte[] line = new byte[INIT_LINE_CAPACITY];
+	private int lineLength;
+	private byte[] body = EMPTY;
+	private int bodyLength;
+	private int remaining;
+	private int messageSize;
+	private int contentLength;
+	private boolean chunked;
+	private final Map<String, String> header = new HashMap<>();
+	private HttpMethod method;
+	private String path;
+	private HttpVersion version;
+	private StatusCode statusCode;
+
+	private HttpMessageParser(boolean request, int maxMessageSize) {
+		this.request = request;
+		this.maxMessageSize = maxMessageSize;
+		reset();
+	}
+
+	/**
+	 * @param maxMessageSize
+	 *            the maximum size of a request, in bytes
+	 * @return a parser for requests
+	 */
+	public static HttpMessageParser forRequests(int maxMessageSize) {
+		return new HttpMessageParser(true, maxMessageSize);
+	}
+
+	/**
+	 * @param maxMessageSize
+	 *            the maximum size of a response, in bytes
+	 * @return a parser for responses
+	 */
+	public static HttpMessageParser forResponses(int maxMessageSize) {
+		return new HttpMessageParser(false, maxMessageSize);
+	}
+
+	/**
+	 * Consumes the bytes of the buffer, from the position to the limit, until
+	 * the end of the current message.
+	 *
+	 * @param buffer
+	 *            buffer ready for reading
+	 * @return true if the message is complete
+	 * @throws SocketException
+	 *             if the message is invalid or too large
+	 */
+	public boolean parse(ByteBuffer buffer) {
+		while (state != State.COMPLETE && buffer.hasRemaining()) {
+			switch (state) {
+			case START_LINE:
+			case HEADER:
+			case CHUNK_SIZE:
+			case CHUNK_DATA_END:
+			case TRAILER:
+				if (readLine(buffer)) {
+					processLine();
+				}
+				break;
+			case BODY:
+			case CHUNK_DATA:
+				readBody(buffer, remaining);
+				if (remaining == 0) {
+					state = state == State.BODY ? State.COMPLETE : State.CHUNK_DATA_END;
+				}
+				break;
+			case BODY_UNTIL_CLOSE:
+				readBody(buffer, buffer.remaining());
+				break;
+			default:
+				throw new IllegalStateException("state: " + state);
+			}
+		}
+		return state == State.COMPLETE;
+	}
+
+	/**
+	 * Signals the end of the stream. Completes a response whose body is
+	 * delimited by the end of the stream.
+	 *
+	 * @return true if the message is complete
+	 */
+	public boolean finish() {
+		if (state == State.BODY_UNTIL_CLOSE) {
+			state = State.COMPLETE;
+		}
+		return state == State.COMPLETE;
+	}
+
+	/**
+	 * @return true if any part of a message, other than empty lines, has been
+	 *         parsed since the last reset
+	 */
+	public boolean isStarted() {
+		return state != State.START_LINE || lineLength > 0;
+	}
+
+	/**
+	 * @return the parsed request, valid once the message is complete
+	 */
+	public HttpDecoratedRequest getRequest() {
+		checkComplete();
+		final HttpRequestDenominator denominator;
+		final int attributesStart = path.indexOf(HttpPathUtils.DELIMITER_PATH_ATTRIBUTES);
+		if (attributesStart >= 0) {
+			denominator = new HttpRequestDenominator(method, path.substring(0, attributesStart), version,
+					HttpPathUtils.extractAttributesByPath(path));
+		} else {
+			denominator = new HttpRequestDenominator(method, path, version);
+		}
+		final HttpDecoratedRequest result = new HttpDecoratedRequest(header, denominator);
+		addBody(result);
+		return result;
+	}
+
+	/**
+	 * @return the parsed response, valid once the message is complete
+	 */
+	public HttpDecoratedResponse getResponse() {
+		checkComplete();
+		final HttpDecoratedResponse result = new HttpDecoratedResponse(header,
+				new HttpResponseDenominator(statusCode, version));
+		addBody(result);
+		return result;
+	}
+
+	/**
+	 * Prepares the parser for the next message. The buffers are kept, the
+	 * messages already returned copy what they need.
+	 */
+	public void reset() {
+		state = State.START_LINE;
+		lineLength = 0;
+		bodyLength = 0;
+		remaining = 0;
+		messageSize = 0;
+		contentLength = NO_LENGTH;
+		chunked = false;
+		header.clear();
+		method = null;
+		path = null;
+		version = null;
+		statusCode = null;
+	}
+
+	private void addBody(AbstractHttpDecoratedMessage message) {
+		if (bodyLength > 0) {
+			message.addMessage(new String(body, 0, bodyLength, StandardCharsets.UTF_8));
+		}
+		message.setLength(messageSize);
+	}
+
+	private void checkComplete() {
+		if (state != State.COMPLETE) {
+			throw new IllegalStateException("message not complete: " + state);
+		}
+	}
+
+	private boolean readLine(ByteBuffer buffer) {
+		final int start = buffer.position();
+		final int limit = buffer.limit();
+		int end = start;
+		while (end < limit && buffer.get(end) != LF) {
+			end++;
+		}
+		final boolean found = end < limit;
+		final int length = end - start;
+		countBytes(found ? length + 1 : length);
+		ensureLineCapacity(lineLength + length);
+		buffer.get(line, lineLength, length);
+		lineLength += length;
+		if (found) {
+			buffer.get();
+			if (lineLength > 0 && line[lineLength - 1] == CR) {
+				lineLength--;
+			}
+		}
+		return found;
+	}
+
+	private void readBody(ByteBuffer buffer, int max) {
+		final int length = Math.min(max, buffer.remaining());
+		countBytes(length);
+		if (body.length < bodyLength + length) {
+			body = Arrays.copyOf(body, Math.max(bodyLength + length, body.length * 2));
+		}
+		buffer.get(body, bodyLength, length);
+		bodyLength += length;
+		remaining -= length;
+	}
+
+	private void processLine() {
+		switch (state) {
+		case START_LINE:
+			// empty lines before a message are ignored
+			if (lineLength > 0) {
+				if (request) {
+					processRequestLine();
+				} else {
+					processStatusLine();
+				}
+				state = State.HEADER;
+			}
+			break;
+		case HEADER:
+			if (lineLength == 0) {
+				startBody();
+			} else {
+				processHeaderLine();
+			}
+			break;
+		case CHUNK_SIZE:
+			remaining = parseChunkSize();
+			state = remaining == 0 ? State.TRAILER : State.CHUNK_DATA;
+			break;
+		case CHUNK_DATA_END:
+			if (lineLength != 0) {
+				throw invalid("chunk not terminated");
+			}
+			state = State.CHUNK_SIZE;
+			break;
+		case TRAILER:
+			if (lineLength == 0) {
+				state = State.COMPLETE;
+			}
+			break;
+		default:
+			throw new IllegalStateException("state: " + state);
+		}
+		lineLength = 0;
+	}
+
+	private void processRequestLine() {
+		final int methodEnd = indexOf(SP, 0);
+		final int pathEnd = methodEnd < 0 ? -1 : indexOf(SP, methodEnd + 1);
+		if (pathEnd < 0) {
+			throw invalid("request line");
+		}
+		method = matchMethod(methodEnd);
+		path = new String(line, methodEnd + 1, pathEnd - methodEnd - 1, StandardCharsets.ISO_8859_1);
+		version = matchVersion(pathEnd + 1, lineLength);
+		if (method == null || version == null) {
+			throw invalid("request line");
+		}
+	}
+
+	private void processStatusLine() {
+		final int versionEnd = indexOf(SP, 0);
+		if (versionEnd < 0) {
+			throw invalid("status line");
+		}
+		int codeEnd = indexOf(SP, versionEnd + 1);
+		if (codeEnd < 0) {
+			codeEnd = lineLength;
+		}
+		version = matchVersion(0, versionEnd);
+		statusCode = StatusCode.getByCode(parseDecimal(versionEnd + 1, codeEnd));
+		if (version == null || statusCode == null) {
+			throw invalid("status line");
+		}
+	}
+
+	private void processHeaderLine() {
+		final int colon = indexOf(COLON, 0);
+		if (colon <= 0) {
+			throw invalid("header line");
+		}
+		int nameEnd = colon;
+		while (nameEnd > 0 && isWhitespace(line[nameEnd - 1])) {
+			nameEnd--;
+		}
+		int valueStart = colon + 1;
+		int valueEnd = lineLength;
+		while (valueStart < valueEnd && isWhitespace(line[valueStart])) {
+			valueStart++;
+		}
+		while (valueEnd > valueStart && isWhitespace(line[valueEnd - 1])) {
+			valueEnd--;
+		}
+		final String name = headerName(nameEnd);
+		if (name == HttpHeaderFieldNames.CONTENT_LENGTH) {
+			contentLength = parseDecimal(valueStart, valueEnd);
+		} else if (name == HttpHeaderFieldNames.TRANSFER_ENCODING) {
+			chunked = containsChunked(valueStart, valueEnd);
+		}
+		header.put(name, new String(line, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1));
+	}
+
+	private void startBody() {
+		if (chunked) {
+			state = State.CHUNK_SIZE;
+		} else if (contentLength > 0) {
+			remaining = contentLength;
+			state = State.BODY;
+		} else if (contentLength == NO_LENGTH && !request && hasResponseBody()) {
+			state = State.BODY_UNTIL_CLOSE;
+		} else {
+			state = State.COMPLETE;
+		}
+	}
+
+	private boolean hasResponseBody() {
+		// informational, no content and not modified responses have no body
+		return statusCode.getCode() >= 200 && statusCode != StatusCode.NO_CONTENT
+				&& statusCode != StatusCode.NOT_MODIFIED;
+	}
+
+	private int parseChunkSize() {
+		int end = indexOf((byte) ';', 0);
+		if (end < 0) {
+			end = lineLength;
+		}
+		while (end > 0 && isWhitespace(line[end - 1])) {
+			end--;
+		}
+		if (end == 0 || end > 7) {
+			throw invalid("chunk size");
+		}
+		int result = 0;
+		for (int i = 0; i < end; i++) {
+			final int digit = Character.digit(line[i], 16);
+			if (digit < 0) {
+				throw invalid("chunk size");
+			}
+			result = result * 16 + digit;
+		}
+		return result;
+	}
+
+	private int parseDecimal(int start, int end) {
+		if (start == end || end - start > 9) {
+			throw invalid("number");
+		}
+		int result = 0;
+		for (int i = start; i < end; i++) {
+			final int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw invalid("number");
+			}
+			result = result * 10 + digit;
+		}
+		return result;
+	}
+
+	private boolean containsChunked(int start, int end) {
+		for (int i = start; i <= end - CHUNKED.length(); i++) {
+			if (equalsIgnoreCase(i, CHUNKED)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private HttpMethod matchMethod(int end) {
+		for (HttpMethod candidate : METHODS) {
+			final String name = candidate.getName();
+			if (name.length() == end && regionMatches(0, name)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	private HttpVersion matchVersion(int start, int end) {
+		for (HttpVersion candidate : VERSIONS) {
+			final String value = candidate.getValue();
+			if (value.length() == end - start && regionMatches(start, value)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	private String headerName(int length) {
+		if (length < KNOWN_NAMES.length) {
+			for (String known : KNOWN_NAMES[length]) {
+				if (equalsIgnoreCase(0, known)) {
+					return known;
+				}
+			}
+		}
+		final char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = toLowerCase(line[i]);
+		}
+		return new String(chars);
+	}
+
+	private boolean regionMatches(int start, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (line[start + i] != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean equalsIgnoreCase(int start, String lowerCase) {
+		for (int i = 0; i < lowerCase.length(); i++) {
+			if (toLowerCase(line[start + i]) != lowerCase.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int indexOf(byte value, int start) {
+		for (int i = start; i < lineLength; i++) {
+			if (line[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void ensureLineCapacity(int capacity) {
+		if (line.length < capacity) {
+			line = Arrays.copyOf(line, Math.max(capacity, line.length * 2));
+		}
+	}
+
+	private void countBytes(int count) {
+		messageSize += count;
+		if (messageSize > maxMessageSize) {
+			throw new SocketException("message too large, max: " + maxMessageSize);
+		}
+	}
+
+	private SocketException invalid(String part) {
+		return new SocketException("invalid " + part + ": "
+				+ new String(line, 0, Math.min(lineLength, INIT_LINE_CAPACITY), StandardCharsets.ISO_8859_1));
+	}
+
+	private static boolean isWhitespace(byte value) {
+		return value == SP || value == '\t';
+	}
+
+	private static char toLowerCase(byte value) {
+		return (char) (value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value & 0xff);
+	}
+
+	private static String[][] knownNamesByLength(String... names) {
+		int maxLength = 0;
+		for (String name : names) {
+			maxLength = Math.max(maxLength, name.length());
+		}
+		final String[][] result = new String[maxLength + 1][0];
+		for (String name : names) {
+			final String[] sameLength = Arrays.copyOf(result[name.length()], result[name.length()].length + 1);
+			sameLength[sameLength.length - 1] = name;
+			result[name.length()] = sameLength;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.util;
+
+import com.robo4j.LifecycleState;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Caches the GET responses which only change with the state of the system:
+ * the listing of the units, and the descriptors of the units with a codec.
+ * Building them creates a DTO per unit and encodes JSON by reflection, which
+ * repeated discovery polls should not pay for. Each response is tagged with
+ * an entity tag, and a client sending the tag back in {@code If-None-Match}
+ * is answered with {@code 304 Not Modified} without a body, see
+ * {@link Entry#matches(String)}.
+ * <p>
+ * The listing is rebuilt when the units, or the lifecycle state of the system
+ * or of any unit, have changed since it was built. The check only compares
+ * references and states. The descriptors are built once per path, as they
+ * only depend on the codecs. The {@link LatestFrameBuffer} streamed for a path,
+ * if any, is likewise looked up once, since asking the unit for it blocks the
+ * request.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class HttpResponseCache {
+	private static final String WEAK_PREFIX = "W/";
+	private static final String ANY_TAG = "*";
+
+	/**
+	 * A cached response.
+	 *
+	 * @param etag
+	 *            the entity tag, quoted
+	 * @param body
+	 *            the UTF-8 encoded body, read only, to be written through a
+	 *            duplicate
+	 */
+	public record Entry(String etag, ByteBuffer body) {
+
+		/**
+		 * @param ifNoneMatch
+		 *            the value of the If-None-Match header, or null
+		 * @return true if the client already has this response
+		 */
+		public boolean matches(String ifNoneMatch) {
+			if (ifNoneMatch == null) {
+				return false;
+			}
+			for (String tag : ifNoneMatch.split(",")) {
+				String trimmed = tag.trim();
+				if (trimmed.startsWith(WEAK_PREFIX)) {
+					trimmed = trimmed.substring(WEAK_PREFIX.length());
+				}
+				if (trimmed.equals(etag) || trimmed.equals(ANY_TAG)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private record Listing(LifecycleState systemState, RoboReference<?>[] units, LifecycleState[] states,
+			Entry entry) {
+	}
+
+	private final Map<String, Entry> descriptors = new ConcurrentHashMap<>();
+	private final Map<String, Optional<LatestFrameBuffer>> frameBuffers = new ConcurrentHashMap<>();
+	private volatile Listing listing;
+
+	/**
+	 * @param context
+	 *            the context listed
+	 * @param builder
+	 *            builds the listing when the cached one is out of date
+	 * @return the listing, or null if the builder returned null
+	 */
+	public Entry getListing(RoboContext context, Supplier<?> builder) {
+		final Listing current = listing;
+		if (current != null && isCurrent(current, context)) {
+			return current.entry();
+		}
+		// Taken before building, so that a change while building is seen by the next request
+		final LifecycleState systemState = context.getState();
+		final RoboReference<?>[] units = context.getUnits().toArray(new RoboReference<?>[0]);
+		final LifecycleState[] states = new LifecycleState[units.length];
+		for (int i = 0; i < units.length; i++) {
+			states[i] = units[i].getState();
+		}
+		final Object body = builder.get();
+		if (body == null) {
+			return null;
+		}
+		final Entry entry = createEntry(body.toString());
+		listing = new Listing(systemState, units, states, entry);
+		return entry;
+	}
+
+	/**
+	 * @param path
+	 *            the path of the unit
+	 * @param builder
+	 *            builds the descriptor, the first time it is asked for
+	 * @return the descriptor, or null if the builder returned null
+	 */
+	public Entry getDescriptor(String path, Supplier<?> builder) {
+		Entry entry = descriptors.get(path);
+		if (entry == null) {
+			final Object body = builder.get();
+			if (body == null) {
+				return null;
+			}
+			entry = createEntry(body.toString());
+			descriptors.putIfAbsent(path, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * @param path
+	 *            the path of the unit
+	 * @param lookup
+	 *            looks the frame buffer up, the first time it is asked for.
+	 *            Returns null if the unit has no frame buffer.
+	 * @return the frame buffer, or null if the unit has none
+	 * @throws Exception
+	 *             if the lookup failed
+	 */
+	public LatestFrameBuffer getFrameBuffer(String path, Callable<LatestFrameBuffer> lookup) throws Exception {
+		Optional<LatestFrameBuffer> frameBuffer = frameBuffers.get(path);
+		if (frameBuffer == null) {
+			frameBuffer = Optional.ofNullable(lookup.call());
+			frameBuffers.putIfAbsent(path, frameBuffer);
+		}
+		return frameBuffer.orElse(null);
+	}
+
+	private static boolean isCurrent(Listing listing, RoboContext context) {
+		final Collection<RoboReference<?>> units = context.getUnits();
+		if (listing.systemState() != context.getState() || listing.units().length != units.size()) {
+			return false;
+		}
+		int i = 0;
+		for (RoboReference<?> unit : units) {
+			if (listing.units()[i] != unit || listing.states()[i] != unit.getState()) {
+				return false;
+			}
+			i++;
+		}
+		return true;
+	}
+
+	private static Entry createEntry(String body) {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		final String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length) + "\"";
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+		return new Entry(etag, buffer.asReadOnlyBuffer());
+	}
+}
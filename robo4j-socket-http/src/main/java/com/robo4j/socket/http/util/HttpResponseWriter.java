@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.util;
+
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.enums.StatusCode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static com.robo4j.socket.http.util.HttpConstant.HTTP_NEW_LINE;
+import static com.robo4j.socket.http.util.HttpMessageUtils.COLON;
+import static com.robo4j.socket.http.util.HttpMessageUtils.SPACE;
+
+/**
+ * Writes server responses without building them as strings. The header is
+ * encoded into a pooled buffer and written together with the body by a single
+ * gathering write. The selector threads prepare a {@link PendingResponse},
+ * and write it as far as the socket takes it, continuing when the socket
+ * takes more. A body read from a file is sent with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * which lets the operating system copy it to the socket.
+ * <p>
+ * The status lines and the header fields which do not change between
+ * responses are encoded once. Cached responses are written with their entity
+ * tag, see {@link HttpResponseCache}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class HttpResponseWriter {
+	/**
+	 * No connection header, the client did not ask to keep the connection.
+	 */
+	public static final int CONNECTION_DEFAULT = -1;
+	/**
+	 * Connection close header, the client asked to keep the connection but it
+	 * is closed. Positive values keep the connection, and give the number of
+	 * requests still served on it.
+	 */
+	public static final int CONNECTION_CLOSE = 0;
+	private static final Map<StatusCode, byte[]> STATUS_LINES = new EnumMap<>(StatusCode.class);
+	private static final byte[] NEW_LINE = encode(HTTP_NEW_LINE);
+	private static final byte[] CONTENT_LENGTH = encode(HttpHeaderFieldNames.CONTENT_LENGTH + COLON + SPACE);
+	private static final byte[] ETAG = encode(HttpHeaderFieldNames.ETAG + COLON + SPACE);
+	private static final byte[] CONNECTION_CLOSE_HEADER = encode(HttpHeaderFieldNames.CONNECTION + COLON + SPACE
+			+ HttpHeaderFieldValues.CONNECTION_CLOSE + HTTP_NEW_LINE);
+	private static final int MAX_NUMBER_LENGTH = 20;
+
+	static {
+		for (StatusCode code : StatusCode.values()) {
+			STATUS_LINES.put(code, encode(HttpVersion.HTTP_1_1.getValue() + SPACE + code.getCode() + SPACE
+					+ code.getReasonPhrase() + HTTP_NEW_LINE));
+		}
+	}
+
+	private final ByteBufferPool bufferPool;
+	private final byte[] unitUidHeader;
+	private final byte[] keepAliveHeader;
+	private final int maxHeaderLength;
+
+	/**
+	 * @param unitUid
+	 *            the id sent with every response with a body
+	 * @param keepAliveTimeoutSeconds
+	 *            the keep alive timeout announced to the clients
+	 */
+	public HttpResponseWriter(String unitUid, long keepAliveTimeoutSeconds) {
+		this(ByteBufferPool.getDefault(), unitUid, keepAliveTimeoutSeconds);
+	}
+
+	/**
+	 * @param bufferPool
+	 *            the pool of the buffers the responses are encoded into
+	 * @param unitUid
+	 *            the id sent with every response with a body
+	 * @param keepAliveTimeoutSeconds
+	 *            the keep alive timeout announced to the clients
+	 */
+	public HttpResponseWriter(ByteBufferPool bufferPool, String unitUid, long keepAliveTimeoutSeconds) {
+		this.bufferPool = bufferPool;
+		this.unitUidHeader = encode(HttpHeaderFieldNames.ROBO_UNIT_UID + COLON + SPACE + unitUid + HTTP_NEW_LINE);
+		this.keepAliveHeader = encode(HttpHeaderFieldNames.CONNECTION + COLON + SPACE
+				+ HttpHeaderFieldValues.CONNECTION_KEEP_ALIVE + HTTP_NEW_LINE + HttpHeaderFieldNames.KEEP_ALIVE + COLON
+				+ SPACE + "timeout=" + keepAliveTimeoutSeconds + ", max=");
+		int maxStatusLine = STATUS_LINES.values().stream().mapToInt(line -> line.length).max().orElse(0);
+		this.maxHeaderLength = maxStatusLine + keepAliveHeader.length + MAX_NUMBER_LENGTH + unitUidHeader.length
+				+ CONTENT_LENGTH.length + MAX_NUMBER_LENGTH + 3 * NEW_LINE.length;
+	}
+
+	/**
+	 * Writes a response without a body.
+	 *
+	 * @param channel
+	 *            the channel to write to
+	 * @param code
+	 *            the status code
+	 * @param connection
+	 *            {@link #CONNECTION_DEFAULT}, {@link #CONNECTION_CLOSE}, or the
+	 *            number of requests still served on a kept alive connection
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(GatheringByteChannel channel, StatusCode code, int connection) throws IOException {
+		writeFully(channel, prepare(code, connection, null, (ByteBuffer) null));
+	}
+
+	/**
+	 * Writes a response with the body encoded as UTF-8.
+	 *
+	 * @param channel
+	 *            the channel to write to
+	 * @param code
+	 *            the status code
+	 * @param connection
+	 *            see {@link #write(GatheringByteChannel, StatusCode, int)}
+	 * @param body
+	 *            the body
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(GatheringByteChannel channel, StatusCode code, int connection, String body) throws IOException {
+		writeFully(channel, prepare(code, connection, body));
+	}
+
+	/**
+	 * Writes a response with the remaining bytes of the buffer as body.
+	 *
+	 * @param channel
+	 *            the channel to write to
+	 * @param code
+	 *            the status code
+	 * @param connection
+	 *            see {@link #write(GatheringByteChannel, StatusCode, int)}
+	 * @param body
+	 *            the body, or null for none
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(GatheringByteChannel channel, StatusCode code, int connection, ByteBuffer body)
+			throws IOException {
+		writeFully(channel, prepare(code, connection, null, body));
+	}
+
+	/**
+	 * Writes a response with an entity tag, see {@link HttpResponseCache}. A
+	 * {@link StatusCode#NOT_MODIFIED} response is written without a body and
+	 * without a content length.
+	 *
+	 * @param channel
+	 *            the channel to write to
+	 * @param code
+	 *            the status code
+	 * @param connection
+	 *            see {@link #write(GatheringByteChannel, StatusCode, int)}
+	 * @param etag
+	 *            the quoted entity tag, or null for none
+	 * @param body
+	 *            the body, or null for none
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(GatheringByteChannel channel, StatusCode code, int connection, String etag, ByteBuffer body)
+			throws IOException {
+		writeFully(channel, prepare(code, connection, etag, body));
+	}
+
+	/**
+	 * Writes a response with the content of the file as body. The file is
+	 * transferred to the channel without copying it through a buffer, as far
+	 * as the operating system supports it.
+	 *
+	 * @param channel
+	 *            the channel to write to
+	 * @param code
+	 *            the status code
+	 * @param connection
+	 *            see {@link #write(GatheringByteChannel, StatusCode, int)}
+	 * @param file
+	 *            the file, from the current position to the end
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	public void write(GatheringByteChannel channel, StatusCode code, int connection, FileChannel file)
+			throws IOException {
+		writeFully(channel, prepare(code, connection, file, false));
+	}
+
+	/**
+	 * Prepares a response with an entity tag, to be written as far as a
+	 * non-blocking channel takes it, see {@link PendingResponse}.
+	 *
+	 * @param code
+	 *            the status code
+	 * @param connection
+	 *            see {@link #write(GatheringByteChannel, StatusCode, int)}
+	 * @param etag
+	 *            the quoted entity tag, or null for none
+	 * @param body
+	 *            the body, or null for none
+	 * @return the response
+	 */
+	public PendingResponse prepare(StatusCode code, int connection, String etag, ByteBuffer body) {
+		final byte[] etagValue = etag == null ? null : etag.getBytes(StandardCharsets.US_ASCII);
+		final ByteBuffer header = bufferPool.acquire(
+				etagValue == null ? maxHeaderLength : maxHeaderLength + ETAG.length + etagValue.length + NEW_LINE.length);
+		putHeader(header, code, connection, etagValue, body == null ? -1 : body.remaining());
+		return new PendingResponse(header, body, false, null, false, 0, 0);
+	}
+
+	/**
+	 * Prepares a response with the body encoded as UTF-8, see
+	 * {@link #prepare(StatusCode, int, String, ByteBuffer)}.
+	 *
+	 * @param code
+	 *            the status code
+	 * @param connection
+	 *            see {@link #write(GatheringByteChannel, StatusCode, int)}
+	 * @param body
+	 *            the body
+	 * @return the response
+	 */
+	public PendingResponse prepare(StatusCode code, int connection, String body) {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer buffer = bufferPool.acquire(bytes.length);
+		buffer.put(bytes).flip();
+		final ByteBuffer header = bufferPool.acquire(maxHeaderLength);
+		putHeader(header, code, connection, null, bytes.length);
+		return new PendingResponse(header, buffer, true, null, false, 0, 0);
+	}
+
+	/**
+	 * Prepares a response with the content of the file as body, see
+	 * {@link #prepare(StatusCode, int, String, ByteBuffer)}. The file is
+	 * closed when the response is released.
+	 *
+	 * @param code
+	 *            the status code
+	 * @param connection
+	 *            see {@link #write(GatheringByteChannel, StatusCode, int)}
+	 * @param file
+	 *            the path of the file
+	 * @return the response
+	 * @throws IOException
+	 *             if the file can not be opened
+	 */
+	public PendingResponse prepare(StatusCode code, int connection, Path file) throws IOException {
+		return prepare(code, connection, FileChannel.open(file, StandardOpenOption.READ), true);
+	}
+
+	private PendingResponse prepare(StatusCode code, int connection, FileChannel file, boolean ownsFile)
+			throws IOException {
+		final long position;
+		final long end;
+		try {
+			position = file.position();
+			end = file.size();
+		} catch (IOException e) {
+			if (ownsFile) {
+				file.close();
+			}
+			throw e;
+		}
+		final ByteBuffer header = bufferPool.acquire(maxHeaderLength);
+		putHeader(header, code, connection, null, end - position);
+		return new PendingResponse(header, null, false, file, ownsFile, position, end);
+	}
+
+	/**
+	 * A response which is written as far as the channel takes it, so that a
+	 * selector thread never waits for a slow client. Holds on to pooled
+	 * buffers, and possibly a file, until released.
+	 */
+	public final class PendingResponse {
+		private final ByteBuffer header;
+		private final ByteBuffer body;
+		private final boolean pooledBody;
+		private final FileChannel file;
+		private final boolean ownsFile;
+		private final ByteBuffer[] buffers;
+		private long position;
+		private final long end;
+		private boolean released;
+
+		private PendingResponse(ByteBuffer header, ByteBuffer body, boolean pooledBody, FileChannel file,
+				boolean ownsFile, long position, long end) {
+			this.header = header;
+			this.body = body;
+			this.pooledBody = pooledBody;
+			this.file = file;
+			this.ownsFile = ownsFile;
+			this.buffers = body == null ? null : new ByteBuffer[] { header, body };
+			this.position = position;
+			this.end = end;
+		}
+
+		/**
+		 * Writes what the channel takes of the rest of the response.
+		 *
+		 * @param channel
+		 *            the channel to write to
+		 * @return true if the response has been written completely, false if
+		 *         the rest is to be written when the channel takes more
+		 * @throws IOException
+		 *             if reading or writing fails
+		 */
+		public boolean writeTo(GatheringByteChannel channel) throws IOException {
+			if (buffers == null) {
+				if (header.hasRemaining()) {
+					channel.write(header);
+				}
+			} else if (header.hasRemaining() || body.hasRemaining()) {
+				channel.write(buffers);
+			}
+			if (header.hasRemaining() || (body != null && body.hasRemaining())) {
+				return false;
+			}
+			while (position < end) {
+				final long transferred = file.transferTo(position, end - position, channel);
+				if (transferred == 0) {
+					return false;
+				}
+				position += transferred;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the buffers to the pool, and closes the file if it was
+		 * opened for the response. May be called more than once.
+		 *
+		 * @throws IOException
+		 *             if closing the file fails
+		 */
+		public void release() throws IOException {
+			if (released) {
+				return;
+			}
+			released = true;
+			bufferPool.release(header);
+			if (pooledBody) {
+				bufferPool.release(body);
+			}
+			if (file != null) {
+				if (ownsFile) {
+					file.close();
+				} else {
+					file.position(position);
+				}
+			}
+		}
+	}
+
+	private void putHeader(ByteBuffer header, StatusCode code, int connection, byte[] etag, long contentLength) {
+		header.put(STATUS_LINES.get(code));
+		if (connection > 0) {
+			header.put(keepAliveHeader);
+			putNumber(header, connection);
+			header.put(NEW_LINE);
+		} else if (connection == CONNECTION_CLOSE) {
+			header.put(CONNECTION_CLOSE_HEADER);
+		}
+		if (contentLength >= 0) {
+			header.put(unitUidHeader);
+		}
+		if (etag != null) {
+			header.put(ETAG).put(etag).put(NEW_LINE);
+		}
+		// The content length of a 304 would have to be the one of the unsent body
+		if (code != StatusCode.NOT_MODIFIED) {
+			header.put(CONTENT_LENGTH);
+			putNumber(header, Math.max(0, contentLength));
+			header.put(NEW_LINE);
+		}
+		header.put(NEW_LINE);
+		header.flip();
+	}
+
+	private static void putNumber(ByteBuffer buffer, long value) {
+		if (value >= 10) {
+			putNumber(buffer, value / 10);
+		}
+		buffer.put((byte) ('0' + value % 10));
+	}
+
+	/*
+	 * Only for blocking channels, which take everything.
+	 */
+	private static void writeFully(GatheringByteChannel channel, PendingResponse response) throws IOException {
+		try {
+			while (!response.writeTo(channel)) {
+				// Blocking channels write at least one byte per call
+			}
+		} finally {
+			response.release();
+		}
+	}
+
+	private static byte[] encode(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
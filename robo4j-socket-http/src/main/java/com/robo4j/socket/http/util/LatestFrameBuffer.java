@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the latest frame of a stream, e.g. the latest JPEG image of a camera,
+ * and tells the listeners when a new frame is published. A listener which is
+ * slower than the stream skips frames, as only the latest is kept.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class LatestFrameBuffer {
+
+	/**
+	 * Told about new frames. Called on the thread publishing the frame, so
+	 * must not block.
+	 */
+	public interface Listener {
+		void frameAvailable();
+	}
+
+	/**
+	 * A published frame.
+	 *
+	 * @param sequence
+	 *            the number of the frame, increasing with every frame
+	 * @param data
+	 *            the content of the frame, must not be modified
+	 */
+	public record Frame(long sequence, byte[] data) {
+	}
+
+	private final String contentType;
+	private final AtomicLong sequence = new AtomicLong();
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	private volatile Frame frame;
+
+	/**
+	 * @param contentType
+	 *            the content type of the frames, e.g. image/jpeg
+	 */
+	public LatestFrameBuffer(String contentType) {
+		this.contentType = contentType;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Replaces the latest frame, and tells the listeners.
+	 *
+	 * @param data
+	 *            the content of the frame, which is not copied and must not be
+	 *            modified afterwards
+	 */
+	public void publish(byte[] data) {
+		synchronized (sequence) {
+			frame = new Frame(sequence.incrementAndGet(), data);
+		}
+		for (Listener listener : listeners) {
+			listener.frameAvailable();
+		}
+	}
+
+	/**
+	 * @return the latest frame, or null if none has been published yet
+	 */
+	public Frame getFrame() {
+		return frame;
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the number of listeners, i.e. the connected viewers
+	 */
+	public int getListenerCount() {
+		return listeners.size();
+	}
+}
@@ -37,16 +37,34 @@ public final class RoboHttpUtils {
 
     public static final int DEFAULT_PORT = 8042;
     public static final int DEFAULT_UDP_PORT = 9042;
+    public static final int DEFAULT_REQUEST_WORKERS = 4;
+    public static final int DEFAULT_SELECTOR_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_KEEP_ALIVE_TIMEOUT = 5000;
+    public static final int DEFAULT_KEEP_ALIVE_MAX_REQUESTS = 100;
+    public static final int DEFAULT_CLIENT_KEEP_ALIVE_TIMEOUT = 2000;
+    public static final int DEFAULT_MAX_CONNECTIONS = 4;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 2;
+    public static final int DEFAULT_PUSH_PERIOD = 100;
+    public static final int DEFAULT_PUSH_QUEUE_SIZE = 64;
     public static final String HTTP_PROPERTY_PROTOCOL = "protocol";
     public static final String PROPERTY_TARGET = "target";
     public static final String PROPERTY_HOST = "host";
     public static final String PROPERTY_SOCKET_PORT = "port";
     public static final String PROPERTY_CODEC_REGISTRY = "codecRegistry";
+    public static final String PROPERTY_RESPONSE_CACHE = "responseCache";
     public static final String PROPERTY_CODEC_PACKAGES = "packages";
     public static final String PROPERTY_UNIT_PATHS_CONFIG = "unitPathsConfig";
     public static final String PROPERTY_BUFFER_CAPACITY = "bufferCapacity";
     public static final String PROPERTY_BYTE_BUFFER = "byteBuffer";
     public static final String PROPERTY_TIMEOUT = "timeout";
+    public static final String PROPERTY_REQUEST_WORKERS = "requestWorkers";
+    public static final String PROPERTY_SELECTOR_THREADS = "selectorThreads";
+    public static final String PROPERTY_KEEP_ALIVE_TIMEOUT = "keepAliveTimeout";
+    public static final String PROPERTY_KEEP_ALIVE_MAX_REQUESTS = "keepAliveMaxRequests";
+    public static final String PROPERTY_MAX_CONNECTIONS = "maxConnections";
+    public static final String PROPERTY_MAX_IDLE_CONNECTIONS = "maxIdleConnections";
+    public static final String PROPERTY_PUSH_PERIOD = "pushPeriod";
+    public static final String PROPERTY_PUSH_QUEUE_SIZE = "pushQueueSize";
 
     public static void decorateByNewLine(StringBuilder sb) {
         sb.append(NEW_LINE_MAC).append(NEW_LINE_UNIX);
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.util;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded queue of the messages waiting to be sent to one subscriber. When a
+ * subscriber is slower than the producer and the queue is full, the oldest
+ * message is dropped to make room, so the producer never waits, and the
+ * subscriber gets the latest messages once it catches up.
+ *
+ * @param <T>
+ *            the type of the messages
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class SubscriberQueue<T> {
+	private final int capacity;
+	private final ArrayDeque<T> messages;
+	private long dropped;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of messages waiting
+	 */
+	public SubscriberQueue(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity: " + capacity);
+		}
+		this.capacity = capacity;
+		this.messages = new ArrayDeque<>(capacity);
+	}
+
+	/**
+	 * Adds a message, dropping the oldest message if the queue is full.
+	 *
+	 * @param message
+	 *            the message
+	 * @return false if a message was dropped
+	 */
+	public synchronized boolean offer(T message) {
+		final boolean full = messages.size() == capacity;
+		if (full) {
+			messages.poll();
+			dropped++;
+		}
+		messages.add(message);
+		return !full;
+	}
+
+	/**
+	 * @return the oldest message, or null if there is none
+	 */
+	public synchronized T poll() {
+		return messages.poll();
+	}
+
+	public synchronized int size() {
+		return messages.size();
+	}
+
+	/**
+	 * @return the number of messages dropped so far
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.message.HttpRequestDenominator;
+import com.robo4j.socket.http.test.utils.ByteBufferPoolTests;
+import com.robo4j.socket.http.units.HttpClientUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_HOST;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_CONNECTIONS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_IDLE_CONNECTIONS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Connection reuse by the {@link HttpClientUnit}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class HttpClientKeepAliveTests {
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = 8073;
+    private static final int TIMEOUT_SECONDS = 10;
+    private static final String ID_HTTP_CLIENT = "http_client";
+    private static final String ID_CONTROLLER = "controller";
+    private static final int MESSAGES = 10;
+    private static final long RESEND_WAIT_MILLIS = 500;
+
+    private RoboContext system;
+    private TestServer server;
+
+    @AfterEach
+    void tearDown() throws IOException, InterruptedException {
+        if (system != null) {
+            system.shutdown();
+        }
+        if (server != null) {
+            server.close();
+        }
+        ByteBufferPoolTests.assertNoBufferLeaks();
+    }
+
+    @Test
+    void connectionReusedTest() throws Exception {
+        server = new TestServer(MESSAGES, null, false);
+        RoboReference<HttpDecoratedRequest> client = startClient(1, null);
+
+        sendRequests(client, MESSAGES);
+
+        assertTrue(server.requestsLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, server.connections.get());
+        assertTrue(server.connectionHeaders.stream().allMatch("keep-alive"::equals), server.connectionHeaders.toString());
+    }
+
+    @Test
+    void restartedClientKeepsConnectionsAliveTest() throws Exception {
+        server = new TestServer(MESSAGES, null, false);
+        RoboReference<HttpDecoratedRequest> client = startClient(1, null);
+        HttpDecoratedRequest request = new HttpDecoratedRequest(
+                new HttpRequestDenominator(HttpMethod.GET, "/units/" + ID_CONTROLLER, HttpVersion.HTTP_1_1));
+
+        client.sendMessage(request);
+        sendRequests(client, HttpMethod.GET, MESSAGES / 2 - 1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (server.requestsLatch.getCount() > MESSAGES / 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        system.stop();
+        system.start();
+        sendRequests(client, HttpMethod.GET, MESSAGES / 2);
+
+        assertTrue(server.requestsLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(2, server.connections.get());
+        assertTrue(server.connectionHeaders.stream().allMatch("keep-alive"::equals), server.connectionHeaders.toString());
+        assertTrue(request.getHeader().keySet().stream().noneMatch("connection"::equalsIgnoreCase),
+                request.getHeader().toString());
+    }
+
+    @Test
+    void noIdleConnectionsTest() throws Exception {
+        server = new TestServer(MESSAGES, null, false);
+        RoboReference<HttpDecoratedRequest> client = startClient(null, 0);
+
+        sendRequests(client, MESSAGES);
+
+        assertTrue(server.requestsLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(MESSAGES, server.connections.get());
+        assertTrue(server.connectionHeaders.stream().allMatch(String::isEmpty), server.connectionHeaders.toString());
+    }
+
+    @Test
+    void connectionClosedByServerTest() throws Exception {
+        server = new TestServer(MESSAGES, "close", true);
+        RoboReference<HttpDecoratedRequest> client = startClient(null, null);
+
+        sendRequests(client, MESSAGES);
+
+        assertTrue(server.requestsLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(MESSAGES, server.connections.get());
+    }
+
+    @Test
+    void staleConnectionNotReusedTest() throws Exception {
+        server = new TestServer(MESSAGES, "keep-alive", true);
+        RoboReference<HttpDecoratedRequest> client = startClient(null, null);
+
+        // only idempotent requests are sent again if the server closed the
+        // connection before the client noticed
+        sendRequests(client, HttpMethod.GET, MESSAGES);
+
+        assertTrue(server.requestsLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(MESSAGES, server.connections.get());
+    }
+
+    @Test
+    void unansweredPostNotSentAgainTest() throws Exception {
+        server = new TestServer(1, null, false, 1);
+        RoboReference<HttpDecoratedRequest> client = startClient(1, null);
+
+        sendRequests(client, HttpMethod.POST, 2);
+
+        assertTrue(server.requestsLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // a resent request would arrive right after the connection is closed
+        Thread.sleep(RESEND_WAIT_MILLIS);
+        assertEquals(2, server.received.get());
+        assertEquals(1, server.connections.get());
+    }
+
+    @Test
+    void unansweredGetSentAgainTest() throws Exception {
+        server = new TestServer(2, null, false, 1);
+        RoboReference<HttpDecoratedRequest> client = startClient(1, null);
+
+        sendRequests(client, HttpMethod.GET, 2);
+
+        assertTrue(server.requestsLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(3, server.received.get());
+        assertEquals(2, server.connections.get());
+    }
+
+    private RoboReference<HttpDecoratedRequest> startClient(Integer maxConnections, Integer maxIdleConnections)
+            throws Exception {
+        ConfigurationBuilder configBuilder = new ConfigurationBuilder().addString(PROPERTY_HOST, HOST)
+                .addInteger(PROPERTY_SOCKET_PORT, PORT);
+        if (maxConnections != null) {
+            configBuilder.addInteger(PROPERTY_MAX_CONNECTIONS, maxConnections);
+        }
+        if (maxIdleConnections != null) {
+            configBuilder.addInteger(PROPERTY_MAX_IDLE_CONNECTIONS, maxIdleConnections);
+        }
+        RoboBuilder builder = new RoboBuilder();
+        builder.add(HttpClientUnit.class, configBuilder.build(), ID_HTTP_CLIENT);
+        system = builder.build();
+        system.start();
+        return system.getReference(ID_HTTP_CLIENT);
+    }
+
+    private static void sendRequests(RoboReference<HttpDecoratedRequest> client, int number) {
+        sendRequests(client, HttpMethod.POST, number);
+    }
+
+    private static void sendRequests(RoboReference<HttpDecoratedRequest> client, HttpMethod method, int number) {
+        for (int i = 0; i < number; i++) {
+            HttpDecoratedRequest request = new HttpDecoratedRequest(
+                    new HttpRequestDenominator(method, "/units/" + ID_CONTROLLER, HttpVersion.HTTP_1_1));
+            if (method == HttpMethod.POST) {
+                request.addMessage(RoboHttpDynamicTests.JSON_STRING);
+            }
+            client.sendMessage(request);
+        }
+    }
+
+    /**
+     * Minimal blocking HTTP server counting the connections, which answers
+     * every request with an empty response. The connection header of the
+     * response repeats the request, unless given. A connection which has
+     * answered the given number of requests reads the next one, and is closed
+     * without answering it, like a server failing after processing it.
+     */
+    private static final class TestServer implements AutoCloseable {
+        private final ServerSocket serverSocket = new ServerSocket();
+        private final Thread acceptThread = new Thread(this::accept, "test server");
+        private final CountDownLatch requestsLatch;
+        private final String responseConnection;
+        private final boolean closeConnections;
+        private final int answeredPerConnection;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger received = new AtomicInteger();
+        private final List<String> connectionHeaders = new CopyOnWriteArrayList<>();
+
+        private TestServer(int requests, String responseConnection, boolean closeConnections) throws IOException {
+            this(requests, responseConnection, closeConnections, Integer.MAX_VALUE);
+        }
+
+        private TestServer(int requests, String responseConnection, boolean closeConnections,
+                           int answeredPerConnection) throws IOException {
+            this.requestsLatch = new CountDownLatch(requests);
+            this.responseConnection = responseConnection;
+            this.closeConnections = closeConnections;
+            this.answeredPerConnection = answeredPerConnection;
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(PORT));
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    Thread connectionThread = new Thread(() -> serve(socket), "test connection");
+                    connectionThread.setDaemon(true);
+                    connectionThread.start();
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (socket) {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                OutputStream out = socket.getOutputStream();
+                String line;
+                int answered = 0;
+                while ((line = reader.readLine()) != null) {
+                    int contentLength = 0;
+                    String connectionHeader = "";
+                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                        String lowerLine = line.toLowerCase(Locale.ROOT);
+                        if (lowerLine.startsWith("content-length:")) {
+                            contentLength = Integer.parseInt(lowerLine.substring(15).trim());
+                        } else if (lowerLine.startsWith("connection:")) {
+                            connectionHeader = lowerLine.substring(11).trim();
+                        }
+                    }
+                    reader.skip(contentLength);
+                    received.incrementAndGet();
+                    if (answered++ == answeredPerConnection) {
+                        return;
+                    }
+                    connectionHeaders.add(connectionHeader);
+                    String connection = responseConnection == null ? connectionHeader : responseConnection;
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: " + connection + "\r\n\r\n")
+                            .getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                    requestsLatch.countDown();
+                    if (closeConnections) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // connection closed by the client
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            // the port is released once the accepting thread has left accept
+            try {
+                acceptThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
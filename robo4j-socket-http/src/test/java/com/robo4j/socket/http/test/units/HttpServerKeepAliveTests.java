@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.LifecycleState;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.test.units.config.LifecycleStateUnit;
+import com.robo4j.socket.http.test.units.config.SlowAttributeUnit;
+import com.robo4j.socket.http.test.utils.ByteBufferPoolTests;
+import com.robo4j.socket.http.units.HttpServerUnit;
+import com.robo4j.socket.http.util.HttpPathConfigJsonBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.robo4j.socket.http.test.units.HttpUnitTests.CODECS_UNITS_TEST_PACKAGE;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_PACKAGES;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_KEEP_ALIVE_MAX_REQUESTS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_KEEP_ALIVE_TIMEOUT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_UNIT_PATHS_CONFIG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Persistent connections and pipelining in the {@link HttpServerUnit}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class HttpServerKeepAliveTests {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerKeepAliveTests.class);
+    private static final int PORT = 8072;
+    private static final String ID_HTTP_SERVER = "http_server";
+    private static final String ID_SLOW_UNIT = "slow";
+    private static final String ID_STATE_UNIT = "state";
+    private static final String SLOW_PATH = "/units/" + ID_SLOW_UNIT + "?attributes=" + SlowAttributeUnit.ATTR_NUMBER;
+    private static final String ROOT_PATH = "/";
+    private static final int FLOOD_REQUESTS = 10000;
+    private static final int FLOOD_SLOW_REQUESTS = 3;
+
+    private RoboContext system;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (system != null) {
+            system.shutdown();
+        }
+        ByteBufferPoolTests.assertNoBufferLeaks();
+    }
+
+    @Test
+    void keepAliveTest() throws Exception {
+        startServer(1000, 100);
+        try (Socket socket = connect()) {
+            for (int i = 0; i < 3; i++) {
+                write(socket, request(ROOT_PATH, true));
+                String response = readResponse(socket.getInputStream());
+                assertTrue(response.startsWith("HTTP/1.1 200"), response);
+                assertTrue(response.toLowerCase(Locale.ROOT).contains("connection: keep-alive"), response);
+                assertTrue(response.contains(ID_HTTP_SERVER), response);
+            }
+        }
+    }
+
+    @Test
+    void pipelinedRequestsAnsweredInOrderTest() throws Exception {
+        startServer(1000, 100);
+        try (Socket socket = connect()) {
+            write(socket, request(SLOW_PATH, true) + request(ROOT_PATH, true) + request(SLOW_PATH, true));
+            InputStream in = socket.getInputStream();
+
+            String first = readResponse(in);
+            String second = readResponse(in);
+            String third = readResponse(in);
+            assertTrue(first.contains("42") && !first.contains(ID_HTTP_SERVER), first);
+            assertTrue(second.contains(ID_HTTP_SERVER), second);
+            assertTrue(third.contains("42") && !third.contains(ID_HTTP_SERVER), third);
+        }
+    }
+
+    @Test
+    void pipelinedFloodHeldBackTest() throws Exception {
+        startServer(5000, FLOOD_SLOW_REQUESTS + FLOOD_REQUESTS + 1);
+        try (Socket socket = connect()) {
+            byte[] slowRequest = request(SLOW_PATH, true).getBytes(StandardCharsets.US_ASCII);
+            byte[] request = request(ROOT_PATH, true, "X-Padding: " + "x".repeat(2000) + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            AtomicLong written = new AtomicLong();
+            Thread writer = new Thread(() -> {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    // Keeps the server busy while the flood arrives
+                    for (int i = 0; i < FLOOD_SLOW_REQUESTS; i++) {
+                        out.write(slowRequest);
+                    }
+                    for (int i = 0; i < FLOOD_REQUESTS; i++) {
+                        out.write(request);
+                        written.addAndGet(request.length);
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    LOGGER.error("flood: {}", e.getMessage(), e);
+                }
+            }, "Pipeline Flood");
+            writer.setDaemon(true);
+            writer.start();
+
+            // Only the requests waiting to be answered may be read
+            writer.join(SlowAttributeUnit.DELAY_MILLIS * FLOOD_SLOW_REQUESTS);
+            long total = (long) FLOOD_REQUESTS * request.length;
+            LOGGER.info("flood of {} bytes held back after {} bytes", total, written.get());
+            assertTrue(writer.isAlive() && written.get() < total / 2, "written: " + written.get());
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            for (int i = 0; i < FLOOD_SLOW_REQUESTS; i++) {
+                assertTrue(readResponse(in).contains("42"));
+            }
+            for (int i = 0; i < FLOOD_REQUESTS; i++) {
+                String response = readResponse(in);
+                assertTrue(response.startsWith("HTTP/1.1 200"), response);
+            }
+            writer.join(5000);
+            assertEquals(total, written.get());
+        }
+    }
+
+    @Test
+    void maxRequestsTest() throws Exception {
+        startServer(1000, 2);
+        try (Socket socket = connect()) {
+            write(socket, request(ROOT_PATH, true));
+            assertTrue(readResponse(socket.getInputStream()).toLowerCase(Locale.ROOT).contains("connection: keep-alive"));
+            write(socket, request(ROOT_PATH, true));
+            String last = readResponse(socket.getInputStream());
+            assertTrue(last.toLowerCase(Locale.ROOT).contains("connection: close"), last);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    void idleTimeoutTest() throws Exception {
+        startServer(200, 100);
+        try (Socket socket = connect()) {
+            write(socket, request(ROOT_PATH, true));
+            readResponse(socket.getInputStream());
+            socket.setSoTimeout(5000);
+            long start = System.nanoTime();
+            assertEquals(-1, socket.getInputStream().read());
+            LOGGER.info("idle connection closed after {} ms", (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    @Test
+    void notModifiedTest() throws Exception {
+        startServer(1000, 100);
+        try (Socket socket = connect()) {
+            write(socket, request(ROOT_PATH, true));
+            String response = readResponse(socket.getInputStream());
+            String etag = headerValue(response, "etag");
+            assertTrue(etag.startsWith("\""), response);
+
+            write(socket, request(ROOT_PATH, true, "If-None-Match: " + etag + "\r\n"));
+            String notModified = readResponse(socket.getInputStream());
+            assertTrue(notModified.startsWith("HTTP/1.1 304"), notModified);
+            assertEquals(etag, headerValue(notModified, "etag"));
+            assertTrue(notModified.endsWith("\r\n\r\n"), notModified);
+
+            write(socket, request(ROOT_PATH, true, "If-None-Match: \"outdated\"\r\n"));
+            String modified = readResponse(socket.getInputStream());
+            assertTrue(modified.startsWith("HTTP/1.1 200") && modified.contains(ID_HTTP_SERVER), modified);
+        }
+    }
+
+    @Test
+    void listingChangedWithUnitStateTest() throws Exception {
+        startServer(1000, 100);
+        try (Socket socket = connect()) {
+            write(socket, request(ROOT_PATH, true));
+            String response = readResponse(socket.getInputStream());
+            String etag = headerValue(response, "etag");
+            assertTrue(response.contains(stateEntry(LifecycleState.STARTED)), response);
+
+            RoboReference<LifecycleState> stateUnit = system.getReference(ID_STATE_UNIT);
+            stateUnit.sendMessage(LifecycleState.STOPPED);
+            for (int i = 0; i < 50 && stateUnit.getState() != LifecycleState.STOPPED; i++) {
+                Thread.sleep(20);
+            }
+
+            write(socket, request(ROOT_PATH, true, "If-None-Match: " + etag + "\r\n"));
+            String changed = readResponse(socket.getInputStream());
+            assertTrue(changed.startsWith("HTTP/1.1 200"), changed);
+            assertNotEquals(etag, headerValue(changed, "etag"));
+            assertTrue(changed.contains(stateEntry(LifecycleState.STOPPED)), changed);
+        }
+    }
+
+    private void startServer(int keepAliveTimeout, int keepAliveMaxRequests) throws Exception {
+        RoboBuilder builder = new RoboBuilder();
+        Configuration config = new ConfigurationBuilder().addInteger(PROPERTY_SOCKET_PORT, PORT)
+                .addInteger(PROPERTY_KEEP_ALIVE_TIMEOUT, keepAliveTimeout)
+                .addInteger(PROPERTY_KEEP_ALIVE_MAX_REQUESTS, keepAliveMaxRequests)
+                .addString(PROPERTY_CODEC_PACKAGES, CODECS_UNITS_TEST_PACKAGE)
+                .addString(PROPERTY_UNIT_PATHS_CONFIG, HttpPathConfigJsonBuilder.Builder().addPath(ID_SLOW_UNIT, HttpMethod.GET).build())
+                .build();
+        builder.add(HttpServerUnit.class, config, ID_HTTP_SERVER);
+        builder.add(SlowAttributeUnit.class, ID_SLOW_UNIT);
+        builder.add(LifecycleStateUnit.class, ID_STATE_UNIT);
+        system = builder.build();
+        system.start();
+        for (int i = 0; i < 50; i++) {
+            try (Socket socket = new Socket("localhost", PORT)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private static Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", PORT);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    private static String request(String path, boolean keepAlive) {
+        return request(path, keepAlive, "");
+    }
+
+    private static String request(String path, boolean keepAlive, String headers) {
+        return "GET " + path + " HTTP/1.1\r\nHost: localhost:" + PORT + "\r\n"
+                + (keepAlive ? "Connection: keep-alive\r\n" : "") + headers + "\r\n";
+    }
+
+    private static String stateEntry(LifecycleState state) {
+        return "{\"id\":\"" + ID_STATE_UNIT + "\",\"state\":\"" + state.name() + "\"}";
+    }
+
+    private static String headerValue(String response, String name) {
+        for (String line : response.split("\r\n")) {
+            if (line.toLowerCase(Locale.ROOT).startsWith(name + ":")) {
+                return line.substring(line.indexOf(':') + 1).trim();
+            }
+        }
+        throw new AssertionError("no " + name + " in: " + response);
+    }
+
+    private static void write(Socket socket, String message) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(message.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Reads one response, delimited by its content length.
+     */
+    private static String readResponse(InputStream in) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("connection closed, read: " + header);
+            }
+            header.write(b);
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        String headerText = header.toString(StandardCharsets.ISO_8859_1);
+        int contentLength = 0;
+        for (String line : headerText.split("\r\n")) {
+            if (line.toLowerCase(Locale.ROOT).startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+        try {
+            return headerText + new String(in.readNBytes(contentLength), StandardCharsets.UTF_8);
+        } catch (SocketTimeoutException e) {
+            throw new IOException("timed out reading the body of: " + headerText, e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboContext;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.test.units.config.NumberConsumerUnit;
+import com.robo4j.socket.http.test.units.config.SlowAttributeUnit;
+import com.robo4j.socket.http.units.HttpServerUnit;
+import com.robo4j.socket.http.util.HttpPathConfigJsonBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.robo4j.socket.http.test.units.HttpUnitTests.CODECS_UNITS_TEST_PACKAGE;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_PACKAGES;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_REQUEST_WORKERS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SELECTOR_THREADS;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_UNIT_PATHS_CONFIG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent clients against the {@link HttpServerUnit}, checking that a slow
+ * request does not stall the other clients, and that the connections are
+ * served by the selector threads.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class HttpServerLoadTests {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerLoadTests.class);
+    private static final int PORT = 8071;
+    private static final int REQUEST_WORKERS = 8;
+    private static final int CLIENTS = 8;
+    private static final String ID_SLOW_UNIT = "slow";
+    private static final String ID_NUMBER_UNIT = "number";
+    private static final int TIMEOUT_MILLIS = 5000;
+    private static final String SLOW_REQUEST = "GET /units/" + ID_SLOW_UNIT + "?attributes=" + SlowAttributeUnit.ATTR_NUMBER;
+    private static final String FAST_REQUEST = "GET /";
+    private static final String NAME_SELECTOR_POOL = "Robo4J HTTP Selector Pool";
+    private static final int SELECTOR_THREADS = 3;
+    private static final int REQUESTS_PER_CONNECTION = 20;
+
+    private RoboContext system;
+
+    @AfterEach
+    void tearDown() {
+        if (system != null) {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentSlowRequestsTest() throws Exception {
+        startServer(null);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Callable<String>> requests = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                requests.add(() -> request(SLOW_REQUEST));
+            }
+            long start = System.nanoTime();
+            List<Future<String>> responses = clients.invokeAll(requests);
+            for (Future<String> response : responses) {
+                String message = response.get();
+                assertTrue(message.startsWith("HTTP/1.1 200"), message);
+                assertTrue(message.contains("42"), message);
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LOGGER.info("{} concurrent slow requests took {} ms, serially at least {} ms", CLIENTS, elapsedMillis,
+                    CLIENTS * SlowAttributeUnit.DELAY_MILLIS);
+            assertTrue(elapsedMillis < CLIENTS * SlowAttributeUnit.DELAY_MILLIS / 2, "elapsed " + elapsedMillis + " ms");
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void slowRequestDoesNotStallOtherClientsTest() throws Exception {
+        startServer(null);
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> slowResponse = clients.submit(() -> request(SLOW_REQUEST));
+            // Let the slow request reach the unit
+            Thread.sleep(SlowAttributeUnit.DELAY_MILLIS / 3);
+
+            long start = System.nanoTime();
+            String fastResponse = clients.submit(() -> request(FAST_REQUEST)).get();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(fastResponse.startsWith("HTTP/1.1 200"), fastResponse);
+            assertTrue(!slowResponse.isDone(), "the fast request waited for the slow one");
+            LOGGER.info("fast request took {} ms while a slow request was processed", elapsedMillis);
+            assertTrue(slowResponse.get().startsWith("HTTP/1.1 200"));
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void selectorThreadsTest() throws Exception {
+        startServer(SELECTOR_THREADS);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Callable<Integer>> connections = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                connections.add(() -> keepAliveRequests(REQUESTS_PER_CONNECTION));
+            }
+            for (Future<Integer> served : clients.invokeAll(connections)) {
+                assertEquals(REQUESTS_PER_CONNECTION, served.get());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        long selectorThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith(NAME_SELECTOR_POOL)).count();
+        assertEquals(SELECTOR_THREADS, selectorThreads);
+    }
+
+    @Test
+    void failingRequestDoesNotStopSelectorTest() throws Exception {
+        startServer(1);
+
+        // The decoded Integer is not the Number the unit takes, which fails
+        // on the selector thread
+        request("POST /units/" + ID_NUMBER_UNIT, "42");
+        String response = request(FAST_REQUEST);
+
+        assertTrue(response.startsWith("HTTP/1.1 200"), response);
+    }
+
+    /**
+     * Sends the requests one after the other on one kept alive connection.
+     *
+     * @return the number of successful responses
+     */
+    private static int keepAliveRequests(int requests) throws IOException {
+        try (Socket socket = new Socket("localhost", PORT)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] request = (FAST_REQUEST + " HTTP/1.1\r\nHost: localhost:" + PORT + "\r\nConnection: keep-alive\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            int served = 0;
+            for (int i = 0; i < requests; i++) {
+                out.write(request);
+                out.flush();
+                if (readResponse(in).startsWith("HTTP/1.1 200")) {
+                    served++;
+                }
+            }
+            return served;
+        }
+    }
+
+    private static String readResponse(InputStream in) throws IOException {
+        StringBuilder header = new StringBuilder();
+        while (header.indexOf("\r\n\r\n") < 0) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("connection closed: " + header);
+            }
+            header.append((char) b);
+        }
+        String lowerHeader = header.toString().toLowerCase(Locale.ROOT);
+        int start = lowerHeader.indexOf("content-length: ") + "content-length: ".length();
+        int length = Integer.parseInt(lowerHeader.substring(start, lowerHeader.indexOf("\r\n", start)).trim());
+        in.readNBytes(length);
+        return header.toString();
+    }
+
+    private void startServer(Integer selectorThreads) throws Exception {
+        Configuration systemConfiguration = new ConfigurationBuilder()
+                .addInteger(RoboBuilder.KEY_SCHEDULER_POOL_SIZE, CLIENTS + 1).build();
+        RoboBuilder builder = new RoboBuilder(systemConfiguration);
+        ConfigurationBuilder configBuilder = new ConfigurationBuilder().addInteger(PROPERTY_SOCKET_PORT, PORT)
+                .addInteger(PROPERTY_REQUEST_WORKERS, REQUEST_WORKERS)
+                .addString(PROPERTY_CODEC_PACKAGES, CODECS_UNITS_TEST_PACKAGE)
+                .addString(PROPERTY_UNIT_PATHS_CONFIG, HttpPathConfigJsonBuilder.Builder().addPath(ID_SLOW_UNIT, HttpMethod.GET)
+                        .addPath(ID_NUMBER_UNIT, HttpMethod.POST).build());
+        if (selectorThreads != null) {
+            configBuilder.addInteger(PROPERTY_SELECTOR_THREADS, selectorThreads);
+        }
+        builder.add(HttpServerUnit.class, configBuilder.build(), "http_server");
+        builder.add(SlowAttributeUnit.class, ID_SLOW_UNIT);
+        builder.add(NumberConsumerUnit.class, ID_NUMBER_UNIT);
+        system = builder.build();
+        system.start();
+        waitForServer();
+    }
+
+    private static String request(String requestLine) throws IOException {
+        return request(requestLine, "");
+    }
+
+    private static String request(String requestLine, String body) throws IOException {
+        try (Socket socket = new Socket("localhost", PORT)) {
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            OutputStream out = socket.getOutputStream();
+            out.write((requestLine + " HTTP/1.1\r\nHost: localhost:" + PORT + "\r\nContent-Length: " + body.length()
+                    + "\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            // The server closes the connection after the response
+            InputStream in = socket.getInputStream();
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void waitForServer() throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            try (Socket socket = new Socket("localhost", PORT)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(20);
+            }
+        }
+    }
+}
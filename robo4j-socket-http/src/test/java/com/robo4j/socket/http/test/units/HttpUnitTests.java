@@ -22,7 +22,12 @@ import com.robo4j.socket.http.codec.SimpleCommandCodec;
 import com.robo4j.socket.http.test.units.config.codec.TestArrayDecoder;
 import com.robo4j.socket.http.test.units.config.codec.TestArrayEncoder;
 import com.robo4j.socket.http.test.units.config.enums.TestCommandEnum;
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboUnit;
+import com.robo4j.reflect.InstanceFactories;
+import com.robo4j.reflect.ReflectionScan;
 import com.robo4j.socket.http.units.CodecRegistry;
+import com.robo4j.socket.http.units.HttpProducer;
 import com.robo4j.socket.http.units.HttpClientUnit;
 import com.robo4j.socket.http.units.HttpServerUnit;
 import com.robo4j.socket.http.units.SocketDecoder;
@@ -34,10 +39,12 @@ import org.junit.jupiter.api.Test;
 import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.util.Base64;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -99,6 +106,31 @@ class HttpUnitTests {
 		assertArrayEquals(originalData, decoded);
 	}
 
+	@Test
+	void testHttpCodecIndexOnlyListsProducers() throws ClassNotFoundException {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		List<String> classes = new ReflectionScan(loader).scanForAnnotated(HttpProducer.class, CODECS_UNITS_TEST_PACKAGE);
+
+		assertTrue(classes.contains(TestArrayDecoder.class.getName()));
+		assertTrue(classes.contains(TestArrayEncoder.class.getName()));
+		for (String className : classes) {
+			assertTrue(loader.loadClass(className).isAnnotationPresent(HttpProducer.class), className);
+		}
+	}
+
+	@Test
+	void testGeneratedInstanceFactories() throws Exception {
+		InstanceFactories factories = InstanceFactories.get(Thread.currentThread().getContextClassLoader());
+
+		assertTrue(factories.newInstance(TestArrayDecoder.class.getName()) instanceof TestArrayDecoder);
+		assertTrue(factories.newInstance(SimpleCommandCodec.class.getName()) instanceof SimpleCommandCodec);
+		assertNull(factories.newInstance(CameraMessage.class.getName()));
+
+		RoboUnit<?> unit = factories.newUnit(HttpServerUnit.class.getName(), new RoboBuilder().build(), "server");
+		assertTrue(unit instanceof HttpServerUnit);
+		assertEquals("server", unit.getId());
+	}
+
 	@Test
 	void testHttpCodecRegistryCodec() {
 		CodecRegistry registry = new CodecRegistry(CODECS_UNITS_TEST_PACKAGE);
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.test.utils.ByteBufferPoolTests;
+import com.robo4j.socket.http.units.HttpServerUnit;
+import com.robo4j.socket.http.units.ImageStreamUnit;
+import com.robo4j.socket.http.util.HttpPathConfigJsonBuilder;
+import com.robo4j.socket.http.util.LatestFrameBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static com.robo4j.socket.http.test.units.HttpUnitTests.CODECS_UNITS_TEST_PACKAGE;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_PACKAGES;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_UNIT_PATHS_CONFIG;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streaming of frames by the {@link HttpServerUnit} from an
+ * {@link ImageStreamUnit}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class ImageStreamTests {
+    private static final int PORT = 8074;
+    private static final String ID_CAMERA = "camera";
+    private static final String STREAM_REQUEST = "GET /units/" + ID_CAMERA + " HTTP/1.1\r\nHost: localhost:" + PORT
+            + "\r\n\r\n";
+    private static final int LARGE_FRAME_SIZE = 200 * 1024;
+    private static final int SLOW_VIEWER_FRAMES = 50;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private RoboContext system;
+    private RoboReference<byte[]> camera;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RoboBuilder builder = new RoboBuilder();
+        Configuration config = new ConfigurationBuilder().addInteger(PROPERTY_SOCKET_PORT, PORT)
+                .addString(PROPERTY_CODEC_PACKAGES, CODECS_UNITS_TEST_PACKAGE)
+                .addString(PROPERTY_UNIT_PATHS_CONFIG, HttpPathConfigJsonBuilder.Builder().addPath(ID_CAMERA, HttpMethod.GET).build())
+                .build();
+        builder.add(HttpServerUnit.class, config, "http_server");
+        builder.add(ImageStreamUnit.class, ID_CAMERA);
+        system = builder.build();
+        system.start();
+        camera = system.getReference(ID_CAMERA);
+        for (int i = 0; i < 50; i++) {
+            try (Socket socket = new Socket("localhost", PORT)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        system.shutdown();
+        ByteBufferPoolTests.assertNoBufferLeaks();
+    }
+
+    @Test
+    void streamToViewersTest() throws Exception {
+        byte[] first = frame(1, 1000);
+        byte[] second = frame(2, LARGE_FRAME_SIZE);
+        frameBuffer().publish(first);
+
+        try (Socket viewer1 = connect(); Socket viewer2 = connect()) {
+            String header1 = readHeader(viewer1.getInputStream());
+            String header2 = readHeader(viewer2.getInputStream());
+            assertTrue(header1.startsWith("HTTP/1.1 200"), header1);
+            assertTrue(header1.toLowerCase(Locale.ROOT).contains("content-type: multipart/x-mixed-replace; boundary="), header1);
+            assertEquals(header1, header2);
+            assertArrayEquals(first, readFrame(viewer1.getInputStream()));
+            assertArrayEquals(first, readFrame(viewer2.getInputStream()));
+            assertEquals(2, camera.getAttribute(ImageStreamUnit.DESCRIPTOR_VIEWERS).get());
+
+            camera.sendMessage(second);
+
+            assertArrayEquals(second, readFrame(viewer1.getInputStream()));
+            assertArrayEquals(second, readFrame(viewer2.getInputStream()));
+        }
+    }
+
+    @Test
+    void viewerClosedTest() throws Exception {
+        try (Socket viewer = connect()) {
+            readHeader(viewer.getInputStream());
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (camera.getAttribute(ImageStreamUnit.DESCRIPTOR_VIEWERS).get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, camera.getAttribute(ImageStreamUnit.DESCRIPTOR_VIEWERS).get());
+    }
+
+    @Test
+    void slowViewerSkipsFramesTest() throws Exception {
+        try (Socket viewer = connect()) {
+            InputStream in = viewer.getInputStream();
+            readHeader(in);
+            LatestFrameBuffer frameBuffer = frameBuffer();
+            for (int i = 0; i < SLOW_VIEWER_FRAMES; i++) {
+                frameBuffer.publish(frame(i, LARGE_FRAME_SIZE));
+            }
+
+            int received = 0;
+            byte[] frame;
+            do {
+                frame = readFrame(in);
+                received++;
+            } while (frame[0] != SLOW_VIEWER_FRAMES - 1);
+
+            assertArrayEquals(frame(SLOW_VIEWER_FRAMES - 1, LARGE_FRAME_SIZE), frame);
+            assertTrue(received < SLOW_VIEWER_FRAMES, "received " + received);
+        }
+    }
+
+    private LatestFrameBuffer frameBuffer() throws Exception {
+        return camera.getAttribute(ImageStreamUnit.DESCRIPTOR_FRAME_BUFFER).get();
+    }
+
+    private static byte[] frame(int number, int size) {
+        byte[] result = new byte[size];
+        new Random(number).nextBytes(result);
+        result[0] = (byte) number;
+        return result;
+    }
+
+    private static Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", PORT);
+        socket.setSoTimeout((int) TIMEOUT_MILLIS);
+        socket.getOutputStream().write(STREAM_REQUEST.getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+        return socket;
+    }
+
+    private static String readHeader(InputStream in) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        while (!header.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("connection closed: " + header);
+            }
+            header.write(b);
+        }
+        return header.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reads one part of the multipart response.
+     */
+    private static byte[] readFrame(InputStream in) throws IOException {
+        String header = readHeader(in).toLowerCase(Locale.ROOT);
+        assertTrue(header.startsWith("--"), header);
+        assertTrue(header.contains("content-type: " + ImageStreamUnit.DEFAULT_CONTENT_TYPE), header);
+        int start = header.indexOf("content-length: ") + "content-length: ".length();
+        int length = Integer.parseInt(header.substring(start, header.indexOf("\r\n", start)).trim());
+        byte[] frame = in.readNBytes(length);
+        assertEquals("\r\n", new String(in.readNBytes(2), StandardCharsets.US_ASCII));
+        return Arrays.copyOf(frame, length);
+    }
+}
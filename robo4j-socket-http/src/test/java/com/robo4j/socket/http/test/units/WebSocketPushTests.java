@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.test.units.config.CounterUnit;
+import com.robo4j.socket.http.test.units.config.HistoryUnit;
+import com.robo4j.socket.http.test.units.config.SlowAttributeUnit;
+import com.robo4j.socket.http.test.utils.ByteBufferPoolTests;
+import com.robo4j.socket.http.units.HttpServerUnit;
+import com.robo4j.socket.http.util.HttpPathConfigJsonBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static com.robo4j.socket.http.test.units.HttpUnitTests.CODECS_UNITS_TEST_PACKAGE;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_PACKAGES;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_PUSH_PERIOD;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_UNIT_PATHS_CONFIG;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pushing of unit attributes to WebSocket clients by the
+ * {@link HttpServerUnit}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class WebSocketPushTests {
+    private static final int PORT = 8075;
+    private static final String ID_COUNTER = "counter";
+    private static final String ID_SLOW = "slow";
+    private static final String ID_HISTORY = "history";
+    // Example of RFC 6455
+    private static final String WEBSOCKET_KEY = "dGhlIHNhbXBsZSBub25jZQ==";
+    private static final String WEBSOCKET_ACCEPT = "s3pPLMBiTxaQ9kYGzzhZRbK+xOo=";
+    private static final String UPGRADE_REQUEST = "GET /ws HTTP/1.1\r\nHost: localhost:" + PORT + "\r\n"
+            + "Upgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Key: " + WEBSOCKET_KEY + "\r\n"
+            + "Sec-WebSocket-Version: 13\r\n\r\n";
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private record Frame(int opcode, byte[] payload) {
+        String text() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+
+    private RoboContext system;
+    private RoboReference<Integer> counter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // The slow unit keeps an attribute reading thread busy
+        RoboBuilder builder = new RoboBuilder(
+                new ConfigurationBuilder().addInteger(RoboBuilder.KEY_SCHEDULER_POOL_SIZE, 4).build());
+        Configuration config = new ConfigurationBuilder().addInteger(PROPERTY_SOCKET_PORT, PORT)
+                .addInteger(PROPERTY_PUSH_PERIOD, 20)
+                .addString(PROPERTY_CODEC_PACKAGES, CODECS_UNITS_TEST_PACKAGE)
+                .addString(PROPERTY_UNIT_PATHS_CONFIG, HttpPathConfigJsonBuilder.Builder().addPath(ID_COUNTER, HttpMethod.GET)
+                        .addPath(ID_SLOW, HttpMethod.GET).addPath(ID_HISTORY, HttpMethod.GET).build())
+                .build();
+        builder.add(HttpServerUnit.class, config, "http_server");
+        builder.add(CounterUnit.class, ID_COUNTER);
+        builder.add(SlowAttributeUnit.class, ID_SLOW);
+        builder.add(HistoryUnit.class, ID_HISTORY);
+        system = builder.build();
+        system.start();
+        counter = system.getReference(ID_COUNTER);
+        for (int i = 0; i < 50; i++) {
+            try (Socket socket = new Socket("localhost", PORT)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        system.shutdown();
+        ByteBufferPoolTests.assertNoBufferLeaks();
+    }
+
+    @Test
+    void handshakeTest() throws Exception {
+        try (Socket socket = new Socket("localhost", PORT)) {
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            socket.getOutputStream().write(UPGRADE_REQUEST.getBytes(StandardCharsets.US_ASCII));
+
+            String header = readHeader(socket.getInputStream());
+
+            assertTrue(header.startsWith("HTTP/1.1 101"), header);
+            assertTrue(header.toLowerCase(Locale.ROOT).contains("upgrade: websocket"), header);
+            assertTrue(header.contains("sec-websocket-accept: " + WEBSOCKET_ACCEPT), header);
+        }
+    }
+
+    @Test
+    void pushToSubscribersTest() throws Exception {
+        try (Socket client1 = connect(); Socket client2 = connect()) {
+            sendText(client1, "subscribe counter count");
+            sendText(client2, "subscribe counter count");
+
+            assertEquals(valueMessage(CounterUnit.ATTR_COUNT, "0"), readText(client1));
+            assertEquals(valueMessage(CounterUnit.ATTR_COUNT, "0"), readText(client2));
+
+            counter.sendMessage(5);
+
+            assertEquals(valueMessage(CounterUnit.ATTR_COUNT, "5"), readText(client1));
+            assertEquals(valueMessage(CounterUnit.ATTR_COUNT, "5"), readText(client2));
+
+            sendText(client2, "unsubscribe counter");
+            sendText(client2, "subscribe counter label");
+            // the commands of a connection are handled in order, so client2
+            // has unsubscribed from the count once it gets the label
+            assertEquals(valueMessage(CounterUnit.ATTR_LABEL, CounterUnit.LABEL), readText(client2));
+            counter.sendMessage(7);
+
+            assertEquals(valueMessage(CounterUnit.ATTR_COUNT, "7"), readText(client1));
+        }
+    }
+
+    @Test
+    void slowAttributeDoesNotHoldBackPushesTest() throws Exception {
+        try (Socket slowClient = connect(); Socket client = connect()) {
+            sendText(slowClient, "subscribe slow");
+            sendText(client, "subscribe counter count");
+            assertEquals(valueMessage(CounterUnit.ATTR_COUNT, "0"), readText(client));
+
+            for (int i = 1; i <= 3; i++) {
+                long start = System.nanoTime();
+                counter.sendMessage(i);
+                assertEquals(valueMessage(CounterUnit.ATTR_COUNT, String.valueOf(i)), readText(client));
+                long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue(latencyMillis < SlowAttributeUnit.DELAY_MILLIS, "latency: " + latencyMillis);
+            }
+            // Pushed once read, even though it takes longer than a period
+            assertEquals("{\"id\":\"" + ID_SLOW + "\",\"attribute\":\"" + SlowAttributeUnit.ATTR_NUMBER
+                    + "\",\"value\":\"42\"}", readText(slowClient));
+        }
+    }
+
+    @Test
+    void pushValueChangedInPlaceTest() throws Exception {
+        RoboReference<Integer> history = system.getReference(ID_HISTORY);
+        try (Socket client = connect()) {
+            sendText(client, "subscribe history");
+            assertEquals(historyMessage("[]"), readText(client));
+
+            history.sendMessage(1);
+            assertEquals(historyMessage("[1]"), readText(client));
+            history.sendMessage(2);
+            assertEquals(historyMessage("[1, 2]"), readText(client));
+        }
+    }
+
+    @Test
+    void subscribeAllAttributesTest() throws Exception {
+        try (Socket client = connect()) {
+            sendText(client, "subscribe counter");
+
+            assertEquals(valueMessage(CounterUnit.ATTR_COUNT, "0"), readText(client));
+            assertEquals(valueMessage(CounterUnit.ATTR_LABEL, CounterUnit.LABEL), readText(client));
+        }
+    }
+
+    @Test
+    void unknownUnitTest() throws Exception {
+        try (Socket client = connect()) {
+            sendText(client, "subscribe http_server");
+            sendText(client, "publish counter");
+
+            assertEquals("{\"id\":\"http_server\",\"error\":\"unknown unit\"}", readText(client));
+            assertEquals("{\"error\":\"unknown command\"}", readText(client));
+        }
+    }
+
+    @Test
+    void pingAndCloseTest() throws Exception {
+        try (Socket client = connect()) {
+            byte[] ping = "robo4j".getBytes(StandardCharsets.US_ASCII);
+            sendFrame(client, OPCODE_PING, ping);
+
+            Frame pong = readFrame(client.getInputStream());
+            assertEquals(OPCODE_PONG, pong.opcode());
+            assertArrayEquals(ping, pong.payload());
+
+            sendFrame(client, OPCODE_CLOSE, new byte[] { 0x03, (byte) 0xE8 });
+
+            Frame close = readFrame(client.getInputStream());
+            assertEquals(OPCODE_CLOSE, close.opcode());
+            assertArrayEquals(new byte[] { 0x03, (byte) 0xE8 }, close.payload());
+            assertEquals(-1, client.getInputStream().read());
+        }
+    }
+
+    private static String valueMessage(String attribute, String value) {
+        return "{\"id\":\"" + ID_COUNTER + "\",\"attribute\":\"" + attribute + "\",\"value\":\"" + value + "\"}";
+    }
+
+    private static String historyMessage(String value) {
+        return "{\"id\":\"" + ID_HISTORY + "\",\"attribute\":\"" + HistoryUnit.ATTR_HISTORY + "\",\"value\":\"" + value + "\"}";
+    }
+
+    private static Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", PORT);
+        socket.setSoTimeout(TIMEOUT_MILLIS);
+        socket.getOutputStream().write(UPGRADE_REQUEST.getBytes(StandardCharsets.US_ASCII));
+        String header = readHeader(socket.getInputStream());
+        assertTrue(header.startsWith("HTTP/1.1 101"), header);
+        return socket;
+    }
+
+    private static String readHeader(InputStream in) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        while (!header.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("connection closed: " + header);
+            }
+            header.write(b);
+        }
+        return header.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static void sendText(Socket socket, String text) throws IOException {
+        sendFrame(socket, OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a masked frame, as clients do.
+     */
+    private static void sendFrame(Socket socket, int opcode, byte[] payload) throws IOException {
+        byte[] mask = { 0x12, 0x34, 0x56, 0x78 };
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(0x80 | opcode);
+        frame.write(0x80 | payload.length);
+        frame.write(mask);
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ mask[i % 4]);
+        }
+        OutputStream out = socket.getOutputStream();
+        out.write(frame.toByteArray());
+        out.flush();
+    }
+
+    private static String readText(Socket socket) throws IOException {
+        Frame frame = readFrame(socket.getInputStream());
+        assertEquals(OPCODE_TEXT, frame.opcode());
+        return frame.text();
+    }
+
+    private static Frame readFrame(InputStream in) throws IOException {
+        int first = in.read();
+        int length = in.read() & 0x7F;
+        if (length == 126) {
+            length = (in.read() << 8) | in.read();
+        }
+        return new Frame(first & 0x0F, in.readNBytes(length));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units.config;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.util.AttributeUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Unit keeping the last number received, with a known attribute for it.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class CounterUnit extends RoboUnit<Integer> {
+    public static final String ATTR_COUNT = "count";
+    public static final String ATTR_LABEL = "label";
+    public static final String LABEL = "counter";
+    public static final DefaultAttributeDescriptor<Integer> DESCRIPTOR_COUNT = DefaultAttributeDescriptor
+            .create(Integer.class, ATTR_COUNT);
+    public static final DefaultAttributeDescriptor<String> DESCRIPTOR_LABEL = DefaultAttributeDescriptor
+            .create(String.class, ATTR_LABEL);
+    public static final Collection<AttributeDescriptor<?>> KNOWN_ATTRIBUTES = Collections
+            .unmodifiableCollection(Arrays.asList(DESCRIPTOR_COUNT, DESCRIPTOR_LABEL));
+
+    private volatile int count;
+
+    public CounterUnit(RoboContext context, String id) {
+        super(Integer.class, context, id);
+    }
+
+    @Override
+    public void onMessage(Integer message) {
+        count = message;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+        if (AttributeUtils.validateAttributeByNameAndType(descriptor, ATTR_COUNT, DESCRIPTOR_COUNT.getAttributeType())) {
+            return (R) Integer.valueOf(count);
+        }
+        if (AttributeUtils.validateAttributeByNameAndType(descriptor, ATTR_LABEL, DESCRIPTOR_LABEL.getAttributeType())) {
+            return (R) LABEL;
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+}
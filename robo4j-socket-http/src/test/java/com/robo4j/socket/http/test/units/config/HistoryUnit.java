@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units.config;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.util.AttributeUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Unit adding the numbers received to a list, which is changed in place and
+ * returned as its attribute.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class HistoryUnit extends RoboUnit<Integer> {
+    public static final String ATTR_HISTORY = "history";
+    @SuppressWarnings("rawtypes")
+    public static final DefaultAttributeDescriptor<List> DESCRIPTOR_HISTORY = DefaultAttributeDescriptor
+            .create(List.class, ATTR_HISTORY);
+    public static final Collection<AttributeDescriptor<?>> KNOWN_ATTRIBUTES = Collections.singletonList(DESCRIPTOR_HISTORY);
+
+    private final List<Integer> history = new CopyOnWriteArrayList<>();
+
+    public HistoryUnit(RoboContext context, String id) {
+        super(Integer.class, context, id);
+    }
+
+    @Override
+    public void onMessage(Integer message) {
+        history.add(message);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+        if (AttributeUtils.validateAttributeByNameAndType(descriptor, ATTR_HISTORY, DESCRIPTOR_HISTORY.getAttributeType())) {
+            return (R) history;
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units.config;
+
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+/**
+ * Unit taking {@link Number} messages, see
+ * {@link com.robo4j.socket.http.test.units.config.codec.TestNumberCodec}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class NumberConsumerUnit extends RoboUnit<Number> {
+
+    public NumberConsumerUnit(RoboContext context, String id) {
+        super(Number.class, context, id);
+    }
+
+    @Override
+    public void onMessage(Number message) {
+    }
+}
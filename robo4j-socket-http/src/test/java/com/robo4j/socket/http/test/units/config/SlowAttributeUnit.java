@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units.config;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Unit taking its time to read its only attribute, for testing that slow
+ * requests do not stall the server.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class SlowAttributeUnit extends RoboUnit<Object> {
+    public static final long DELAY_MILLIS = 300;
+    public static final String ATTR_NUMBER = "number";
+    public static final DefaultAttributeDescriptor<Integer> DESCRIPTOR_NUMBER = DefaultAttributeDescriptor
+            .create(Integer.class, ATTR_NUMBER);
+    private static final Collection<AttributeDescriptor<?>> KNOWN_ATTRIBUTES = List.of(DESCRIPTOR_NUMBER);
+
+    public SlowAttributeUnit(RoboContext context, String id) {
+        super(Object.class, context, id);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+        if (descriptor.getAttributeName().equals(ATTR_NUMBER) && descriptor.getAttributeType() == Integer.class) {
+            try {
+                Thread.sleep(DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return (R) Integer.valueOf(42);
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+}
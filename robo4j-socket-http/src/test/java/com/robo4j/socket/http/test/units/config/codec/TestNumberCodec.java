@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units.config.codec;
+
+import com.robo4j.socket.http.units.HttpProducer;
+import com.robo4j.socket.http.units.SocketDecoder;
+import com.robo4j.socket.http.units.SocketEncoder;
+
+/**
+ * Test codec decoding to a subclass of the decoded class, which the server
+ * can not deliver to a unit taking {@link Number} messages.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@HttpProducer
+public class TestNumberCodec implements SocketDecoder<String, Number>, SocketEncoder<Number, String> {
+    @Override
+    public Number decode(String json) {
+        return Integer.valueOf(json.trim());
+    }
+
+    @Override
+    public Class<Number> getDecodedClass() {
+        return Number.class;
+    }
+
+    @Override
+    public String encode(Number number) {
+        return number.toString();
+    }
+
+    @Override
+    public Class<Number> getEncodedClass() {
+        return Number.class;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.utils;
+
+import com.robo4j.socket.http.util.ByteBufferPool;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reuse and leak tracking of the {@link ByteBufferPool}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class ByteBufferPoolTests {
+    private static final long LEAK_CHECK_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * Asserts that all buffers of the default pool have been given back. The
+     * handlers may still be finishing after the system was shut down, so
+     * waits a little before failing.
+     */
+    public static void assertNoBufferLeaks() throws InterruptedException {
+        ByteBufferPool pool = ByteBufferPool.getDefault();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LEAK_CHECK_TIMEOUT_MILLIS);
+        while (pool.getOutstanding() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        if (pool.getOutstanding() != 0) {
+            List<Throwable> acquisitions = pool.getOutstandingAcquisitions();
+            AssertionError error = new AssertionError("buffers not released: " + pool.getOutstanding());
+            acquisitions.forEach(error::addSuppressed);
+            throw error;
+        }
+    }
+
+    @Test
+    void releasedBufferReusedTest() {
+        ByteBufferPool pool = new ByteBufferPool(2, true);
+
+        ByteBuffer buffer = pool.acquire(100);
+        assertTrue(buffer.isDirect());
+        assertEquals(4096, buffer.capacity());
+        buffer.put((byte) 1);
+        pool.release(buffer);
+        ByteBuffer reused = pool.acquire(4000);
+
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        assertNotSame(reused, pool.acquire(4096));
+        assertEquals(2, pool.getOutstanding());
+    }
+
+    @Test
+    void pooledBuffersBoundedTest() {
+        ByteBufferPool pool = new ByteBufferPool(2, false);
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            buffers.add(pool.acquire(10000));
+        }
+
+        buffers.forEach(pool::release);
+
+        assertEquals(2, pool.getPooled());
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    @Test
+    void largeBufferNotPooledTest() {
+        ByteBufferPool pool = new ByteBufferPool(2, true);
+
+        ByteBuffer buffer = pool.acquire(100000);
+        assertFalse(buffer.isDirect());
+        assertEquals(100000, buffer.capacity());
+        pool.release(buffer);
+
+        assertEquals(0, pool.getPooled());
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    @Test
+    void leakTrackedTest() {
+        ByteBufferPool pool = new ByteBufferPool(2, true);
+
+        ByteBuffer leaked = pool.acquire(100);
+        pool.release(pool.acquire(100));
+
+        assertEquals(1, pool.getOutstanding());
+        List<Throwable> acquisitions = pool.getOutstandingAcquisitions();
+        assertEquals(1, acquisitions.size());
+        StackTraceElement site = acquisitions.get(0).getStackTrace()[1];
+        assertEquals(ByteBufferPoolTests.class.getName(), site.getClassName());
+        assertEquals("leakTrackedTest", site.getMethodName());
+        pool.release(leaked);
+        assertTrue(pool.getOutstandingAcquisitions().isEmpty());
+    }
+
+    @Test
+    void releasedTwiceTest() {
+        ByteBufferPool pool = new ByteBufferPool(2, true);
+        ByteBuffer buffer = pool.acquire(100);
+        pool.release(buffer);
+
+        assertThrows(IllegalStateException.class, () -> pool.release(buffer));
+        assertThrows(IllegalStateException.class, () -> pool.release(ByteBuffer.allocateDirect(4096)));
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    @Test
+    void defaultPoolTracksLeaksTest() {
+        assertTrue(Boolean.getBoolean(ByteBufferPool.PROPERTY_TRACK_LEAKS));
+        ByteBuffer buffer = ByteBufferPool.getDefault().acquire(100);
+        ByteBufferPool.getDefault().release(buffer);
+
+        assertThrows(IllegalStateException.class, () -> ByteBufferPool.getDefault().release(buffer));
+    }
+}
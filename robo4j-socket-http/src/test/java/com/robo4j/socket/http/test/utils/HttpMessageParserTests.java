@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.utils;
+
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.SocketException;
+import com.robo4j.socket.http.enums.StatusCode;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.message.HttpDecoratedResponse;
+import com.robo4j.socket.http.message.HttpRequestDenominator;
+import com.robo4j.socket.http.util.HttpMessageParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parsing of requests and responses by the {@link HttpMessageParser}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class HttpMessageParserTests {
+    private static final String JSON_MESSAGE = "{\"value\":\"move\",\"speed\":42}";
+    private static final String POST_REQUEST = "POST /units/controller HTTP/1.1\r\n"
+            + "Host: 127.0.0.1:8042\r\n"
+            + "User-Agent: robo4j\r\n"
+            + "Accept: */*\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Content-Length: " + JSON_MESSAGE.length() + "\r\n"
+            + "\r\n"
+            + JSON_MESSAGE;
+    private static final String GET_REQUEST = "GET /units/sensor?attributes=number,state HTTP/1.1\r\n"
+            + "Host: 127.0.0.1:8042\r\n"
+            + "\r\n";
+
+    @Test
+    void requestTest() {
+        HttpMessageParser parser = HttpMessageParser.forRequests(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+
+        assertTrue(parser.parse(bufferOf(POST_REQUEST)));
+        HttpDecoratedRequest request = parser.getRequest();
+
+        HttpRequestDenominator denominator = (HttpRequestDenominator) request.getDenominator();
+        assertEquals(HttpMethod.POST, request.getPathMethod().getMethod());
+        assertEquals("/units/controller", request.getPathMethod().getPath());
+        assertEquals(HttpVersion.HTTP_1_1.getValue(), denominator.getVersion());
+        assertEquals("127.0.0.1:8042", request.getHeaderValue(HttpHeaderFieldNames.HOST));
+        assertEquals("keep-alive", request.getHeaderValue(HttpHeaderFieldNames.CONNECTION));
+        assertEquals(JSON_MESSAGE, request.getMessage());
+        assertEquals(POST_REQUEST.length(), request.getLength());
+    }
+
+    @Test
+    void requestWithAttributesTest() {
+        HttpMessageParser parser = HttpMessageParser.forRequests(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+
+        assertTrue(parser.parse(bufferOf(GET_REQUEST)));
+        HttpDecoratedRequest request = parser.getRequest();
+
+        HttpRequestDenominator denominator = (HttpRequestDenominator) request.getDenominator();
+        assertEquals(HttpMethod.GET, request.getPathMethod().getMethod());
+        assertEquals("/units/sensor", request.getPathMethod().getPath());
+        assertEquals(Set.of("number", "state"), denominator.getAttributes().get("attributes"));
+        assertNull(request.getMessage());
+    }
+
+    @Test
+    void knownHeaderNamesInternedTest() {
+        HttpMessageParser parser = HttpMessageParser.forRequests(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+
+        assertTrue(parser.parse(bufferOf("GET / HTTP/1.1\r\nCONTENT-type: text/plain\r\nX-Robot: r2\r\n\r\n")));
+        HttpDecoratedRequest request = parser.getRequest();
+
+        String contentType = request.getHeader().keySet().stream()
+                .filter(HttpHeaderFieldNames.CONTENT_TYPE::equals).findFirst().orElseThrow();
+        assertSame(HttpHeaderFieldNames.CONTENT_TYPE, contentType);
+        assertEquals("text/plain", request.getHeaderValue(HttpHeaderFieldNames.CONTENT_TYPE));
+        assertEquals("r2", request.getHeaderValue("x-robot"));
+    }
+
+    @Test
+    void requestSplitOverReadsTest() {
+        HttpMessageParser parser = HttpMessageParser.forRequests(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+        byte[] bytes = POST_REQUEST.getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < bytes.length - 1; i++) {
+            assertFalse(parser.parse(ByteBuffer.wrap(bytes, i, 1)));
+        }
+        assertTrue(parser.parse(ByteBuffer.wrap(bytes, bytes.length - 1, 1)));
+        assertEquals(JSON_MESSAGE, parser.getRequest().getMessage());
+    }
+
+    @Test
+    void pipelinedRequestsTest() {
+        HttpMessageParser parser = HttpMessageParser.forRequests(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+        ByteBuffer buffer = bufferOf(POST_REQUEST + GET_REQUEST + POST_REQUEST);
+
+        assertTrue(parser.parse(buffer));
+        assertEquals(HttpMethod.POST, parser.getRequest().getPathMethod().getMethod());
+        parser.reset();
+        assertTrue(parser.parse(buffer));
+        assertEquals(HttpMethod.GET, parser.getRequest().getPathMethod().getMethod());
+        parser.reset();
+        assertTrue(parser.parse(buffer));
+        assertEquals(JSON_MESSAGE, parser.getRequest().getMessage());
+        parser.reset();
+        assertFalse(buffer.hasRemaining());
+        assertFalse(parser.isStarted());
+    }
+
+    @Test
+    void requestTooLargeTest() {
+        HttpMessageParser parser = HttpMessageParser.forRequests(64);
+
+        assertThrows(SocketException.class, () -> parser.parse(bufferOf(POST_REQUEST)));
+    }
+
+    @Test
+    void invalidRequestTest() {
+        HttpMessageParser parser = HttpMessageParser.forRequests(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+
+        assertThrows(SocketException.class, () -> parser.parse(bufferOf("nullGET / HTTP/1.1\r\n\r\n")));
+    }
+
+    @Test
+    void responseWithContentLengthTest() {
+        HttpMessageParser parser = HttpMessageParser.forResponses(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+
+        assertTrue(parser.parse(bufferOf("HTTP/1.1 200 OK\r\nContent-Length: " + JSON_MESSAGE.length()
+                + "\r\nConnection: keep-alive\r\n\r\n" + JSON_MESSAGE)));
+        HttpDecoratedResponse response = parser.getResponse();
+
+        assertEquals(StatusCode.OK, response.getCode());
+        assertEquals(JSON_MESSAGE, response.getMessage());
+    }
+
+    @Test
+    void chunkedResponseTest() {
+        HttpMessageParser parser = HttpMessageParser.forResponses(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+        String first = JSON_MESSAGE.substring(0, 10);
+        String second = JSON_MESSAGE.substring(10);
+
+        assertTrue(parser.parse(bufferOf("HTTP/1.1 200 \r\nContent-Type: application/json;charset=UTF-8\r\n"
+                + "Transfer-Encoding: chunked\r\n\r\n" + Integer.toHexString(first.length()) + "\r\n" + first + "\r\n"
+                + Integer.toHexString(second.length()) + ";ext=1\r\n" + second + "\r\n0\r\n\r\n")));
+
+        assertEquals(JSON_MESSAGE, parser.getResponse().getMessage());
+    }
+
+    @Test
+    void responseUntilEndOfStreamTest() {
+        HttpMessageParser parser = HttpMessageParser.forResponses(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+
+        assertFalse(parser.parse(bufferOf("HTTP/1.0 200 OK\r\n\r\n" + JSON_MESSAGE)));
+        assertTrue(parser.finish());
+
+        assertEquals(JSON_MESSAGE, parser.getResponse().getMessage());
+    }
+
+    @Test
+    void bodylessResponseTest() {
+        HttpMessageParser parser = HttpMessageParser.forResponses(HttpMessageParser.DEFAULT_MAX_MESSAGE_SIZE);
+
+        assertTrue(parser.parse(bufferOf("HTTP/1.1 204 No Content\r\n\r\n")));
+        assertNull(parser.getResponse().getMessage());
+    }
+
+    private static ByteBuffer bufferOf(String message) {
+        return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.utils;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboContext;
+import com.robo4j.socket.http.test.units.config.StringConsumer;
+import com.robo4j.socket.http.util.HttpResponseCache;
+import com.robo4j.socket.http.util.LatestFrameBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Caching and invalidation of the GET responses by the
+ * {@link HttpResponseCache}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class HttpResponseCacheTests {
+    private static final int UNITS = 20;
+
+    private RoboContext system;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RoboBuilder builder = new RoboBuilder();
+        for (int i = 0; i < UNITS; i++) {
+            builder.add(StringConsumer.class, "consumer" + i);
+        }
+        system = builder.build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        system.shutdown();
+    }
+
+    @Test
+    void listingCachedUntilStateChangesTest() {
+        HttpResponseCache cache = new HttpResponseCache();
+        AtomicInteger builds = new AtomicInteger();
+        Supplier<String> builder = () -> {
+            builds.incrementAndGet();
+            return listing(system);
+        };
+
+        HttpResponseCache.Entry first = cache.getListing(system, builder);
+        HttpResponseCache.Entry second = cache.getListing(system, builder);
+
+        assertSame(first, second);
+        assertEquals(1, builds.get());
+        assertEquals(listing(system), StandardCharsets.UTF_8.decode(first.body().duplicate()).toString());
+
+        system.start();
+        HttpResponseCache.Entry started = cache.getListing(system, builder);
+
+        assertEquals(2, builds.get());
+        assertNotEquals(first.etag(), started.etag());
+        assertEquals(listing(system), StandardCharsets.UTF_8.decode(started.body().duplicate()).toString());
+    }
+
+    @Test
+    void descriptorBuiltOnceTest() {
+        HttpResponseCache cache = new HttpResponseCache();
+        AtomicInteger builds = new AtomicInteger();
+
+        HttpResponseCache.Entry first = cache.getDescriptor("/units/consumer0", () -> "descriptor" + builds.incrementAndGet());
+        HttpResponseCache.Entry second = cache.getDescriptor("/units/consumer0", () -> "descriptor" + builds.incrementAndGet());
+
+        assertSame(first, second);
+        assertEquals(1, builds.get());
+        assertNull(cache.getDescriptor("/units/consumer1", () -> null));
+    }
+
+    @Test
+    void frameBufferLookedUpOnceTest() throws Exception {
+        HttpResponseCache cache = new HttpResponseCache();
+        LatestFrameBuffer frameBuffer = new LatestFrameBuffer("image/jpeg");
+        AtomicInteger lookups = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertSame(frameBuffer, cache.getFrameBuffer("/units/camera", () -> {
+                lookups.incrementAndGet();
+                return frameBuffer;
+            }));
+            assertNull(cache.getFrameBuffer("/units/consumer0", () -> {
+                lookups.incrementAndGet();
+                return null;
+            }));
+        }
+
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void etagMatchesTest() {
+        HttpResponseCache.Entry entry = new HttpResponseCache().getDescriptor("/", () -> "[]");
+        String etag = entry.etag();
+
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""), etag);
+        assertTrue(entry.matches(etag));
+        assertTrue(entry.matches("\"other\", " + etag));
+        assertTrue(entry.matches("W/" + etag));
+        assertTrue(entry.matches("*"));
+        assertFalse(entry.matches(null));
+        assertFalse(entry.matches("\"other\""));
+    }
+
+    private static String listing(RoboContext context) {
+        return context.getUnits().stream().map(u -> u.getId() + ":" + u.getState()).collect(Collectors.joining(","));
+    }
+}
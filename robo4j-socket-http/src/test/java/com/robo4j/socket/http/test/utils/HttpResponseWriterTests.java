@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.utils;
+
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.enums.StatusCode;
+import com.robo4j.socket.http.message.HttpResponseDenominator;
+import com.robo4j.socket.http.util.HttpMessageBuilder;
+import com.robo4j.socket.http.util.HttpResponseWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Responses written by the {@link HttpResponseWriter}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class HttpResponseWriterTests {
+    private static final String UNIT_UID = "httpServer";
+    private static final long TIMEOUT_SECONDS = 5;
+    private static final String JSON_MESSAGE = "[{\"id\":\"httpServer\",\"state\":\"STARTED\"},"
+            + "{\"id\":\"controller\",\"state\":\"STARTED\"}]";
+    private static final int FILE_SIZE = 300 * 1024 + 17;
+
+    private final HttpResponseWriter writer = new HttpResponseWriter(UNIT_UID, TIMEOUT_SECONDS);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ByteBufferPoolTests.assertNoBufferLeaks();
+    }
+
+    @Test
+    void responseWithBodyTest() throws IOException {
+        CapturingChannel channel = new CapturingChannel();
+
+        writer.write(channel, StatusCode.OK, 42, JSON_MESSAGE);
+
+        String expected = responseBuilder(StatusCode.OK)
+                .addHeaderElement(HttpHeaderFieldNames.CONNECTION, HttpHeaderFieldValues.CONNECTION_KEEP_ALIVE)
+                .addHeaderElement(HttpHeaderFieldNames.KEEP_ALIVE, "timeout=5, max=42")
+                .addHeaderElement(HttpHeaderFieldNames.ROBO_UNIT_UID, UNIT_UID)
+                .addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH, String.valueOf(JSON_MESSAGE.length()))
+                .build(JSON_MESSAGE);
+        assertEquals(expected, channel.toString());
+    }
+
+    @Test
+    void responseWithoutBodyTest() throws IOException {
+        CapturingChannel closeChannel = new CapturingChannel();
+        CapturingChannel defaultChannel = new CapturingChannel();
+
+        writer.write(closeChannel, StatusCode.ACCEPTED, HttpResponseWriter.CONNECTION_CLOSE);
+        writer.write(defaultChannel, StatusCode.BAD_REQUEST, HttpResponseWriter.CONNECTION_DEFAULT);
+
+        assertEquals(responseBuilder(StatusCode.ACCEPTED)
+                .addHeaderElement(HttpHeaderFieldNames.CONNECTION, HttpHeaderFieldValues.CONNECTION_CLOSE)
+                .addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH, "0").build(), closeChannel.toString());
+        assertEquals(responseBuilder(StatusCode.BAD_REQUEST)
+                .addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH, "0").build(), defaultChannel.toString());
+    }
+
+    @Test
+    void contentLengthInBytesTest() throws IOException {
+        CapturingChannel channel = new CapturingChannel();
+        String message = "{\"value\":\"přímo\"}";
+
+        writer.write(channel, StatusCode.OK, HttpResponseWriter.CONNECTION_DEFAULT, message);
+
+        String response = channel.toString();
+        int length = message.getBytes(StandardCharsets.UTF_8).length;
+        assertEquals(message.length() + 2, length);
+        assertEquals(HttpHeaderFieldNames.CONTENT_LENGTH + ": " + length,
+                response.lines().filter(l -> l.startsWith(HttpHeaderFieldNames.CONTENT_LENGTH)).findFirst().orElseThrow());
+        assertEquals(message, response.substring(response.indexOf("\r\n\r\n") + 4));
+    }
+
+    @Test
+    void fileBodyTest(@TempDir Path directory) throws IOException {
+        byte[] content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        Path source = Files.write(directory.resolve("image.jpg"), content);
+        Path target = directory.resolve("response");
+
+        try (FileChannel file = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            writer.write(channel, StatusCode.OK, HttpResponseWriter.CONNECTION_DEFAULT, file);
+            assertEquals(FILE_SIZE, file.position());
+        }
+
+        byte[] header = responseBuilder(StatusCode.OK)
+                .addHeaderElement(HttpHeaderFieldNames.ROBO_UNIT_UID, UNIT_UID)
+                .addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH, String.valueOf(FILE_SIZE)).build()
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] response = Files.readAllBytes(target);
+        assertArrayEquals(header, Arrays.copyOf(response, header.length));
+        assertArrayEquals(content, Arrays.copyOfRange(response, header.length, response.length));
+    }
+
+    @Test
+    void pendingResponseResumedTest(@TempDir Path directory) throws IOException {
+        byte[] content = new byte[FILE_SIZE];
+        new Random(7).nextBytes(content);
+        Path source = Files.write(directory.resolve("image.jpg"), content);
+        FullSocketChannel bufferChannel = new FullSocketChannel();
+        FullSocketChannel fileChannel = new FullSocketChannel();
+
+        int bufferResumes = writeWhenWritable(bufferChannel,
+                writer.prepare(StatusCode.OK, HttpResponseWriter.CONNECTION_DEFAULT, null, ByteBuffer.wrap(content)));
+        int fileResumes = writeWhenWritable(fileChannel,
+                writer.prepare(StatusCode.OK, HttpResponseWriter.CONNECTION_DEFAULT, source));
+
+        byte[] header = responseBuilder(StatusCode.OK)
+                .addHeaderElement(HttpHeaderFieldNames.ROBO_UNIT_UID, UNIT_UID)
+                .addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH, String.valueOf(FILE_SIZE)).build()
+                .getBytes(StandardCharsets.UTF_8);
+        for (byte[] response : List.of(bufferChannel.toByteArray(), fileChannel.toByteArray())) {
+            assertArrayEquals(header, Arrays.copyOf(response, header.length));
+            assertArrayEquals(content, Arrays.copyOfRange(response, header.length, response.length));
+        }
+        assertTrue(bufferResumes > 0 && fileResumes > 0, bufferResumes + ", " + fileResumes);
+    }
+
+    /**
+     * Writes the response like the selector loop, whenever the channel is
+     * writable again.
+     *
+     * @return how often the writing was resumed.
+     */
+    private static int writeWhenWritable(FullSocketChannel channel, HttpResponseWriter.PendingResponse response)
+            throws IOException {
+        int resumes = 0;
+        try {
+            while (!response.writeTo(channel)) {
+                channel.writable = true;
+                resumes++;
+            }
+        } finally {
+            response.release();
+        }
+        return resumes;
+    }
+
+    private static HttpMessageBuilder responseBuilder(StatusCode code) {
+        return HttpMessageBuilder.Build().setDenominator(new HttpResponseDenominator(code, HttpVersion.HTTP_1_1));
+    }
+
+    /**
+     * Consumes everything written, a socket with an empty send buffer.
+     */
+    private static class DiscardingChannel implements GatheringByteChannel, ByteChannel {
+        @Override
+        public int read(ByteBuffer destination) {
+            return -1;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            long result = 0;
+            for (int i = offset; i < offset + length; i++) {
+                result += write(sources[i]);
+            }
+            return result;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            int result = source.remaining();
+            source.position(source.limit());
+            return result;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Keeps everything written, at most a few bytes per write to exercise the
+     * partial writes of a non-blocking socket.
+     */
+    private static class CapturingChannel extends DiscardingChannel {
+        private static final int MAX_WRITE = 7;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (sources[i].hasRemaining()) {
+                    return write(sources[i]);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            int result = Math.min(MAX_WRITE, source.remaining());
+            for (int i = 0; i < result; i++) {
+                out.write(source.get());
+            }
+            return result;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        @Override
+        public String toString() {
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A non-blocking socket whose send buffer fills up after every write,
+     * until the selector finds it writable again.
+     */
+    private static final class FullSocketChannel extends CapturingChannel {
+        private boolean writable = true;
+
+        @Override
+        public int write(ByteBuffer source) {
+            if (!writable) {
+                return 0;
+            }
+            writable = false;
+            return super.write(source);
+        }
+    }
+}
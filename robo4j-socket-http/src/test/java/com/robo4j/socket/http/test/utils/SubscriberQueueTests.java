@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.utils;
+
+import com.robo4j.socket.http.util.SubscriberQueue;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Slow subscriber handling of the {@link SubscriberQueue}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class SubscriberQueueTests {
+
+    @Test
+    void messagesInOrderTest() {
+        SubscriberQueue<Integer> queue = new SubscriberQueue<>(3);
+
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.poll());
+        assertEquals(2, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.getDropped());
+    }
+
+    @Test
+    void oldestDroppedWhenFullTest() {
+        SubscriberQueue<Integer> queue = new SubscriberQueue<>(3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.offer(i));
+        }
+
+        assertFalse(queue.offer(3));
+        assertFalse(queue.offer(4));
+
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.getDropped());
+        assertEquals(2, queue.poll());
+        assertEquals(3, queue.poll());
+        assertEquals(4, queue.poll());
+    }
+
+    @Test
+    void invalidCapacityTest() {
+        assertThrows(IllegalArgumentException.class, () -> new SubscriberQueue<>(0));
+    }
+}
@@ -5,6 +5,7 @@ module robo4j.http.test {
     requires org.junit.jupiter.api;
     requires org.junit.jupiter.engine;
     requires org.slf4j;
+    requires jdk.management;
 
 
     exports com.robo4j.socket.http.test.utils;
@@ -19,6 +19,7 @@ package com.robo4j.units.rpi.http.camera;
 import com.robo4j.ConfigurationException;
 import com.robo4j.CriticalSectionTrait;
 import com.robo4j.RoboContext;
+import com.robo4j.RoboTarget;
 import com.robo4j.RoboUnit;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.socket.http.codec.CameraMessage;
@@ -36,6 +37,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Unit works with commonly shared object {@link CameraImageDTO } and decorates such
  * object by necessary information to able to successfully process HTTP POST
  * request
+ * <p>
+ * With the stream target set, the raw image is also sent to it, typically an
+ * {@link com.robo4j.socket.http.units.ImageStreamUnit} streaming the images to
+ * the viewers. The target is then optional.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
@@ -44,9 +49,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class ImageDecoratorUnit extends RoboUnit<CameraImageDTO> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ImageDecoratorUnit.class);
     private static final String PROPERTY_TARGET = "target";
+    private static final String PROPERTY_STREAM_TARGET = "streamTarget";
 
     private final AtomicInteger imageNumber = new AtomicInteger(0);
-    private String target;
+    private RoboTarget<ClientMessageWrapper> target;
+    private RoboTarget<byte[]> streamTarget;
     private String httpTarget;
 
 
@@ -56,8 +63,16 @@ public class ImageDecoratorUnit extends RoboUnit<CameraImageDTO> {
 
     @Override
     protected void onInitialization(Configuration configuration) throws ConfigurationException {
-        target = configuration.getString(PROPERTY_TARGET, null);
-        Objects.requireNonNull(target, "target not available");
+        String streamTargetId = configuration.getString(PROPERTY_STREAM_TARGET, null);
+        if (streamTargetId != null) {
+            streamTarget = declareTarget(streamTargetId, byte[].class);
+        }
+        String targetId = configuration.getString(PROPERTY_TARGET, null);
+        if (targetId == null && streamTarget != null) {
+            return;
+        }
+        Objects.requireNonNull(targetId, "target not available");
+        target = declareTarget(targetId, ClientMessageWrapper.class);
         httpTarget = configuration.getString("httpTarget", null);
         Objects.requireNonNull(httpTarget, "http target not available");
     }
@@ -65,14 +80,20 @@ public class ImageDecoratorUnit extends RoboUnit<CameraImageDTO> {
     // TODO: 12/10/17 (miro) : review header, try to simplify
     @Override
     public void onMessage(CameraImageDTO image) {
+        if (streamTarget != null) {
+            streamTarget.sendMessage(image.getContent());
+        }
+        if (target == null) {
+            return;
+        }
         final String imageBase64 = JsonUtil.toBase64String(image.getContent());
 
         final CameraMessage cameraMessage = new CameraMessage(image.getEncoding(),
                 String.valueOf(imageNumber.incrementAndGet()), imageBase64);
         final ClientMessageWrapper resultMessage = new ClientMessageWrapper(
                 HttpPathUtils.toPath(SystemPath.UNITS.getPath(), httpTarget), CameraMessage.class, cameraMessage);
-        LOGGER.info("image target:{},resultMessage:{}", target, resultMessage.getPath());
-        getContext().getReference(target).sendMessage(resultMessage);
+        LOGGER.info("image target:{},resultMessage:{}", target.getId(), resultMessage.getPath());
+        target.sendMessage(resultMessage);
 
     }
 
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units.rpi;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training run for the AppCDS archive, see the appcds profile of the pom.
+ * Builds and starts the system of the given example configuration, lets it
+ * run briefly, and exits, so that the archive can be created without anyone
+ * at the keyboard. Hardware that can not be initialized, for example on a
+ * build server, is logged, and the classes loaded so far are still archived.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class AppCdsTrainingExample {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppCdsTrainingExample.class);
+    private static final String DEFAULT_CONFIGURATION = "alphanumericexample.xml";
+    private static final long RUN_MILLIS = 2000;
+
+    public static void main(String[] args) {
+        String configuration = args.length > 0 ? args[0] : DEFAULT_CONFIGURATION;
+        try (InputStream settings = AppCdsTrainingExample.class.getClassLoader().getResourceAsStream(configuration)) {
+            if (settings == null) {
+                throw new IllegalArgumentException("Could not find the configuration " + configuration);
+            }
+            RoboContext ctx = new RoboBuilder().add(settings).build();
+            ctx.start();
+            TimeUnit.MILLISECONDS.sleep(RUN_MILLIS);
+            ctx.shutdown();
+        } catch (Exception e) {
+            LOGGER.warn("Training run of {} failed, archiving the classes loaded so far: {}", configuration, e.getMessage());
+        }
+        // Hardware libraries may leave non daemon threads behind
+        System.exit(0);
+    }
+}
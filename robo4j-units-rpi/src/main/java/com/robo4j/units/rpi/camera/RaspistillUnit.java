@@ -19,7 +19,7 @@ package com.robo4j.units.rpi.camera;
 import com.robo4j.ConfigurationException;
 import com.robo4j.LifecycleState;
 import com.robo4j.RoboContext;
-import com.robo4j.RoboReference;
+import com.robo4j.RoboTarget;
 import com.robo4j.RoboUnit;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.hw.rpi.camera.RaspiDevice;
@@ -47,7 +47,7 @@ public class RaspistillUnit extends RoboUnit<RaspistillRequest> {
     private final AtomicBoolean cameraProgress = new AtomicBoolean(false);
 
     private final RaspiDevice device = new RaspiDevice();
-    private String target;
+    private RoboTarget<ImageDTO> target;
 
     public RaspistillUnit(RoboContext context, String id) {
         super(RaspistillRequest.class, context, id);
@@ -55,10 +55,11 @@ public class RaspistillUnit extends RoboUnit<RaspistillRequest> {
 
     @Override
     protected void onInitialization(Configuration configuration) throws ConfigurationException {
-        target = configuration.getString(PROPERTY_TARGET, null);
-        if (target == null) {
+        String targetId = configuration.getString(PROPERTY_TARGET, null);
+        if (targetId == null) {
             throw ConfigurationException.createMissingConfigNameException(PROPERTY_TARGET);
         }
+        target = declareTarget(targetId, ImageDTO.class);
     }
 
     @Override
@@ -99,10 +100,9 @@ public class RaspistillUnit extends RoboUnit<RaspistillRequest> {
     private void createImage(RaspistillRequest message) {
         try {
             final byte[] image = device.executeCommandRaspistill(message.create());
-            final RoboReference<ImageDTO> targetReference = getContext().getReference(target);
-            if (targetReference != null && image.length > 0) {
+            if (image.length > 0) {
                 ImageDTO imageDTO = CameraUtil.createImageDTOBydMessageAndBytes(message, image);
-                targetReference.sendMessage(imageDTO);
+                target.sendMessage(imageDTO);
             }
             cameraProgress.set(false);
         } catch (Exception e) {
@@ -23,6 +23,7 @@ import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
 import com.robo4j.WorkTrait;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationDiff;
 import com.robo4j.hw.rpi.i2c.gyro.CalibratedGyro;
 import com.robo4j.hw.rpi.i2c.gyro.GyroL3GD20Device;
 import com.robo4j.hw.rpi.i2c.gyro.GyroL3GD20Device.Sensitivity;
@@ -68,7 +69,8 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
     public static final String PROPERTY_KEY_HIGH_PASS_FILTER = "enableHighPass";
 
     /**
-     * This key configures how often to read the gyro in ms. Default is 10.
+     * This key configures how often to read the gyro in ms. Default is 10. Can
+     * be changed while running.
      */
     public static final String PROPERTY_KEY_PERIOD = "period";
 
@@ -80,6 +82,7 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
     public static final Collection<AttributeDescriptor<?>> KNOWN_ATTRIBUTES = Collections
             .unmodifiableCollection(Arrays.asList(DefaultAttributeDescriptor.create(Tuple3f.class, ATTRIBUTE_NAME_STATE)));
     private static final Logger LOGGER = LoggerFactory.getLogger(GyroL3GD20Unit.class);
+    private static final int DEFAULT_PERIOD = 10;
     private final Map<RoboReference<GyroEvent>, GyroNotificationEntry> activeThresholds = new HashMap<>();
 
     private final GyroScanner scanner = new GyroScanner();
@@ -148,7 +151,7 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
     protected void onInitialization(Configuration configuration) throws ConfigurationException {
         super.onInitialization(configuration);
         sensitivity = Sensitivity.valueOf(configuration.getString(PROPERTY_KEY_SENSITIVITY, "DPS_245"));
-        period = configuration.getInteger(PROPERTY_KEY_PERIOD, 10);
+        period = configuration.getInteger(PROPERTY_KEY_PERIOD, DEFAULT_PERIOD);
         highPassFilter = configuration.getBoolean(PROPERTY_KEY_HIGH_PASS_FILTER, true);
         try {
             gyro = new CalibratedGyro(new GyroL3GD20Device(getBus(), getAddress(), sensitivity, highPassFilter));
@@ -158,6 +161,27 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
         }
     }
 
+    @Override
+    protected boolean onReconfigure(ConfigurationDiff diff) throws ConfigurationException {
+        // Anything else requires re-initializing the device
+        if (diff.isChangedExcept(PROPERTY_KEY_PERIOD)) {
+            return false;
+        }
+        int newPeriod = diff.getConfiguration().getInteger(PROPERTY_KEY_PERIOD, DEFAULT_PERIOD);
+        // Checked before cancelling, so that the readings go on when refused
+        if (newPeriod <= 0) {
+            throw new ConfigurationException(String.format("Period must be positive, was %d", newPeriod));
+        }
+        synchronized (this) {
+            period = newPeriod;
+            if (readings != null) {
+                readings.cancel(false);
+                readings = getContext().getScheduler().scheduleAtFixedRate(scanner, 0, period, TimeUnit.MILLISECONDS);
+            }
+        }
+        return true;
+    }
+
     @Override
     public Collection<AttributeDescriptor<?>> getKnownAttributes() {
         return KNOWN_ATTRIBUTES;
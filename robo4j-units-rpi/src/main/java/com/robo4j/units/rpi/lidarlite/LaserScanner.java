@@ -19,6 +19,7 @@ package com.robo4j.units.rpi.lidarlite;
 import com.robo4j.ConfigurationException;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
+import com.robo4j.RoboTarget;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.hw.rpi.i2c.lidar.LidarLiteDevice;
 import com.robo4j.math.geometry.Point2f;
@@ -61,7 +62,7 @@ public class LaserScanner extends I2CRoboUnit<ScanRequest> {
      */
     private final static float DEFAULT_FILTER_MIN_RANGE = 0.08f;
     private Predicate<Point2f> pointFilter;
-    private String pan;
+    private RoboTarget<Float> pan;
     private LidarLiteDevice lidar;
     private float servoRange;
     private float angularSpeed;
@@ -260,7 +261,8 @@ public class LaserScanner extends I2CRoboUnit<ScanRequest> {
     @Override
     protected void onInitialization(Configuration configuration) throws ConfigurationException {
         super.onInitialization(configuration);
-        pan = configuration.getString("servo", "laserscanner.servo");
+        String panId = configuration.getString("servo", "laserscanner.servo");
+        pan = "null".equals(panId) ? null : declareTarget(panId, Float.class);
 
         // Using degrees for convenience
         servoRange = (float) configuration.getFloat("servoRange", 45.0f);
@@ -308,8 +310,7 @@ public class LaserScanner extends I2CRoboUnit<ScanRequest> {
     }
 
     private RoboReference<Float> getPanServo() {
-        RoboReference<Float> servo = getReference(pan);
-        return servo;
+        return pan == null ? null : pan.getReference();
     }
 
     private void scheduleScan(ScanRequest message, RoboReference<Float> servo) {
@@ -348,11 +349,4 @@ public class LaserScanner extends I2CRoboUnit<ScanRequest> {
             return 0;
         }
     }
-
-    private <T> RoboReference<Float> getReference(String unit) {
-        if (unit.equals("null")) {
-            return null;
-        }
-        return getContext().getReference(unit);
-    }
 }